@@ -0,0 +1,42 @@
+package com.pizzadelivery.main;
+
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.IsochroneGrid;
+import com.pizzadelivery.model.Pizzeria;
+
+import java.io.IOException;
+
+/**
+ * Builds the isochrone grid of the pizzeria offline, from the local road network, the route cache and the matrix
+ * endpoint of the API. The grid is completed once a minute while the API quota lets new nodes through, then saved to
+ * {@link GPS#ISOCHRONE_GRID_PATH}, where the application loads it on start.
+ * <p>
+ * Usage: {@code IsochroneGridBuilder [step in degrees, default 0.005]}
+ *
+ * @author Team
+ */
+public class IsochroneGridBuilder {
+    private static final double DEFAULT_STEP_DEGREES = 0.005; // About 550 m by 370 m between two nodes
+    private static final long RETRY_DELAY_MS = 60 * 1000; // The quota of the matrix endpoint is per minute
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        double stepDegrees = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_STEP_DEGREES;
+        IsochroneGrid grid = IsochroneGrid.build(Pizzeria.PIZZERIA_LOCATION, GPS.SERVICE_AREA_MIN_LATITUDE,
+                GPS.SERVICE_AREA_MAX_LATITUDE, GPS.SERVICE_AREA_MIN_LONGITUDE, GPS.SERVICE_AREA_MAX_LONGITUDE,
+                stepDegrees, GPS::hubLegMinutes);
+        int unknown = grid.unknownCount();
+        grid.write(GPS.ISOCHRONE_GRID_PATH);
+        while (unknown > 0) {
+            System.out.println(unknown + " travel times unknown, retrying in a minute");
+            Thread.sleep(RETRY_DELAY_MS);
+            int stillUnknown = grid.fill(GPS::hubLegMinutes);
+            if (stillUnknown == unknown) {
+                break; // The remaining nodes cannot be routed, e.g. in a lake or a forest
+            }
+            unknown = stillUnknown;
+            grid.write(GPS.ISOCHRONE_GRID_PATH);
+        }
+        System.out.println("Isochrone grid saved to " + GPS.ISOCHRONE_GRID_PATH + ", " + unknown
+                + " travel times unknown");
+    }
+}
@@ -0,0 +1,131 @@
+package com.pizzadelivery.model;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Protects a rate-limited API with a token bucket and a circuit breaker.
+ * The bucket holds up to one minute of quota and refills continuously, so bursts are allowed while the average
+ * request rate stays under the quota. The breaker opens after a 429 or after several consecutive failures, then
+ * rejects every request until the open delay has passed; it then lets a single probe through (half-open) and closes
+ * again if the probe succeeds.
+ * <p>
+ * {@link #tryAcquire()} never blocks: a rejected caller is expected to fall back to an estimate right away instead of
+ * waiting for the API.
+ *
+ * @author Team
+ */
+public final class ApiGuard {
+    /**
+     * The states of the circuit breaker.
+     */
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private static final long NANOS_PER_MINUTE = 60_000_000_000L;
+
+    private final int capacity;
+    private final double tokensPerNano;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+    private double tokens;
+    private long lastRefill;
+    private State state;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    /**
+     * Constructs a guard on the system clock.
+     *
+     * @param requestsPerMinute The quota of the API, also the size of the bucket.
+     * @param failureThreshold  The number of consecutive failures that opens the breaker.
+     * @param openMillis        How long the breaker stays open before letting a probe through, in milliseconds.
+     */
+    public ApiGuard(int requestsPerMinute, int failureThreshold, long openMillis) {
+        this(requestsPerMinute, failureThreshold, openMillis, System::nanoTime);
+    }
+
+    /**
+     * Constructs a guard on the given clock.
+     *
+     * @param requestsPerMinute The quota of the API, also the size of the bucket.
+     * @param failureThreshold  The number of consecutive failures that opens the breaker.
+     * @param openMillis        How long the breaker stays open before letting a probe through, in milliseconds.
+     * @param clock             Gives the current time in nanoseconds.
+     */
+    public ApiGuard(int requestsPerMinute, int failureThreshold, long openMillis, LongSupplier clock) {
+        this.capacity = requestsPerMinute;
+        this.tokensPerNano = (double) requestsPerMinute / NANOS_PER_MINUTE;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1_000_000L;
+        this.clock = clock;
+        this.tokens = requestsPerMinute;
+        this.lastRefill = clock.getAsLong();
+        this.state = State.CLOSED;
+    }
+
+    /**
+     * Asks for the permission to send one request.
+     *
+     * @return True if the request can be sent, false if the breaker is open or the quota is used up.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = clock.getAsLong();
+        if (state == State.OPEN) {
+            if (now - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN && probeInFlight) {
+            return false; // Only one probe at a time while the API may still be down
+        }
+
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        if (state == State.HALF_OPEN) {
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    /**
+     * Records a successful request, which closes the breaker.
+     */
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+        probeInFlight = false;
+    }
+
+    /**
+     * Records a failed request. A 429, a failed probe or too many consecutive failures open the breaker.
+     *
+     * @param rateLimited True if the API answered 429.
+     */
+    public synchronized void recordFailure(boolean rateLimited) {
+        consecutiveFailures++;
+        if (rateLimited || state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            probeInFlight = false;
+            if (rateLimited) {
+                tokens = 0; // The API counted more requests than we did, start over from an empty bucket
+            }
+        }
+    }
+
+    /**
+     * Gets the state of the breaker, as of the last request or outcome.
+     *
+     * @return The state of the breaker.
+     */
+    public synchronized State state() {
+        return state;
+    }
+}
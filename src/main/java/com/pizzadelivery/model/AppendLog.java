@@ -0,0 +1,256 @@
+package com.pizzadelivery.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * An append-only log of text records with group commit, used to persist a cache without rewriting it.
+ * Records are queued in memory and written by a background flusher every flush interval, with a single fsync for
+ * the whole group. Once the log holds more records than the cache has live entries, the owner is asked to compact:
+ * it writes a fresh snapshot of the cache, after which the log is truncated.
+ * <p>
+ * At most one flush interval of records can be lost on a crash; a shutdown hook writes the last group when the JVM
+ * exits normally, until the log is closed. A record torn by a crash in the middle of a flush is the unterminated end
+ * of the file: it is dropped, and cut off the file, when the log is read back.
+ *
+ * @author Team
+ */
+public final class AppendLog {
+    private static final int MIN_COMPACTION_THRESHOLD = 1024;
+
+    /**
+     * Writes a snapshot of the owner's state, so the records logged so far are no longer needed.
+     */
+    @FunctionalInterface
+    public interface Compactor {
+        /**
+         * Writes the snapshot. Called by the log while it holds its lock.
+         *
+         * @throws IOException if the snapshot cannot be written, in which case the log is kept
+         */
+        void compact() throws IOException;
+    }
+
+    private final Path logPath;
+    private final Lock fileLock;
+    private final StringBuilder pendingRecords;
+    private final IntSupplier liveEntries;
+    private final Compactor compactor;
+    private final ScheduledExecutorService flusher;
+    private final Thread shutdownHook;
+    private FileChannel logChannel;
+    private int loggedRecords;
+
+    /**
+     * Constructs an append log and starts its background flusher.
+     *
+     * @param logPath             the log file
+     * @param flushIntervalMillis the interval between two group commits, in milliseconds; 0 or less starts no
+     *                            flusher, the records are then only written by {@link #flush()} and {@link #close()}
+     * @param liveEntries         the number of live entries of the owner, compared to the log size to decide when
+     *                            to compact
+     * @param compactor           writes a snapshot of the owner
+     */
+    public AppendLog(Path logPath, long flushIntervalMillis, IntSupplier liveEntries, Compactor compactor) {
+        this.logPath = logPath;
+        this.fileLock = new ReentrantLock();
+        this.pendingRecords = new StringBuilder();
+        this.liveEntries = liveEntries;
+        this.compactor = compactor;
+        if (flushIntervalMillis > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "AppendLog-flusher-" + logPath.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+        // Group commit can hold up to one interval of records, write them before the JVM exits
+        this.shutdownHook = new Thread(this::flush, "AppendLog-shutdown-" + logPath.getFileName());
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Reads the records already in the log file, to be replayed on top of the owner's snapshot.
+     * An unterminated last record was torn by a crash: it is dropped and cut off the file, so that the next records
+     * are not appended to it.
+     *
+     * @return the logged records in order, without their line terminators
+     */
+    public List<String> readRecords() {
+        if (!Files.exists(logPath)) {
+            return new ArrayList<>();
+        }
+        try {
+            fileLock.lock(); // Acquire lock before reading from the log
+            byte[] content = Files.readAllBytes(logPath);
+            int end = content.length;
+            while (end > 0 && content[end - 1] != '\n') {
+                end--;
+            }
+            if (end < content.length) {
+                Logger logger = Logger.getLogger(AppendLog.class.getName());
+                logger.warning("Dropping a torn record at the end of the log: " + logPath);
+                try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+                    channel.truncate(end);
+                    channel.force(false);
+                }
+            }
+            List<String> records = new String(content, 0, end, StandardCharsets.UTF_8).lines()
+                    .collect(Collectors.toCollection(ArrayList::new));
+            loggedRecords = records.size();
+            return records;
+        } catch (IOException e) {
+            Logger logger = Logger.getLogger(AppendLog.class.getName());
+            logger.warning("Exception occurred while reading the log: " + e.getMessage());
+            return new ArrayList<>();
+        } finally {
+            fileLock.unlock(); // Release lock after reading from the log
+        }
+    }
+
+    /**
+     * Queues a record for the next group commit.
+     *
+     * @param record the record, without line terminator
+     */
+    public void append(String record) {
+        synchronized (pendingRecords) {
+            pendingRecords.append(record).append('\n');
+        }
+    }
+
+    /**
+     * Drops the records that have not been written yet.
+     */
+    public void discardPending() {
+        synchronized (pendingRecords) {
+            pendingRecords.setLength(0);
+        }
+    }
+
+    /**
+     * Writes the pending records to the log file and forces them to the disk, then compacts if the log has grown
+     * larger than the owner. Called periodically by the background flusher; it can also be called to make sure
+     * every record appended so far is durable.
+     */
+    public void flush() {
+        try {
+            fileLock.lock(); // Acquire lock before writing to the log
+            String records;
+            synchronized (pendingRecords) {
+                if (pendingRecords.length() == 0) {
+                    return;
+                }
+                records = pendingRecords.toString();
+                pendingRecords.setLength(0);
+            }
+
+            if (logChannel == null) {
+                logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                logChannel.write(buffer);
+            }
+            logChannel.force(false); // One fsync for the whole group of records
+            loggedRecords += countLines(records);
+
+            // Compact once replaying the log would cost more than reading the snapshot
+            if (loggedRecords > Math.max(MIN_COMPACTION_THRESHOLD, liveEntries.getAsInt())) {
+                compact();
+            }
+        } catch (IOException e) {
+            Logger logger = Logger.getLogger(AppendLog.class.getName());
+            logger.warning("Exception occurred while flushing the log: " + e.getMessage());
+        } finally {
+            fileLock.unlock(); // Release lock after writing to the log
+        }
+    }
+
+    /**
+     * Asks the owner for a snapshot, then truncates the log. Every record written so far has been applied to the
+     * owner before being appended, so the snapshot contains all of them.
+     */
+    public void compact() {
+        try {
+            fileLock.lock(); // Acquire lock before rewriting the files
+            compactor.compact();
+            if (logChannel != null) {
+                logChannel.truncate(0);
+                logChannel.force(false);
+            } else {
+                Files.deleteIfExists(logPath);
+            }
+            loggedRecords = 0;
+        } catch (IOException e) {
+            Logger logger = Logger.getLogger(AppendLog.class.getName());
+            logger.warning("Exception occurred while compacting the log: " + e.getMessage());
+        } finally {
+            fileLock.unlock(); // Release lock after rewriting the files
+        }
+    }
+
+    /**
+     * Stops the background flusher after a last flush and closes the log file. The shutdown hook is removed, so a
+     * closed log is no longer reachable from the JVM.
+     */
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // The JVM is already shutting down, the hook writes the last group anyway
+        }
+        flush();
+        try {
+            fileLock.lock();
+            if (logChannel != null) {
+                logChannel.close();
+                logChannel = null;
+            }
+        } catch (IOException e) {
+            Logger logger = Logger.getLogger(AppendLog.class.getName());
+            logger.warning("Exception occurred while closing the log: " + e.getMessage());
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Counts the records of a block of log lines.
+     *
+     * @param records the log lines, each terminated by a new line
+     * @return the number of records
+     */
+    private static int countLines(String records) {
+        int count = 0;
+        for (int i = 0; i < records.length(); i++) {
+            if (records.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
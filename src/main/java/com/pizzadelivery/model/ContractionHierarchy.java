@@ -0,0 +1,762 @@
+package com.pizzadelivery.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A road network preprocessed with contraction hierarchies, answering shortest travel time queries in-process.
+ * <p>
+ * Preprocessing contracts the nodes one by one, least important first (edge difference, contracted neighbors and level,
+ * updated lazily). Contracting a node adds a shortcut between two of its neighbors whenever the path through it is
+ * the only shortest one, as checked by a bounded witness search. Each node then only keeps its edges toward more
+ * important nodes, in compact arrays. A query runs two small Dijkstra searches that only go up the hierarchy, one from
+ * each end, and meet at the most important node of the shortest path; they settle a few hundred nodes even on a city
+ * network, so a query takes microseconds.
+ * <p>
+ * The preprocessed hierarchy is saved to a binary file, big-endian:
+ * <pre>
+ * header : int magic, int version, int nodeCount, int forwardEdgeCount, int backwardEdgeCount
+ * nodes  : double[nodeCount] latitudes, double[nodeCount] longitudes
+ * graphs : forward then backward, int[nodeCount + 1] first edge, int[] head, float[] seconds, float[] meters
+ * </pre>
+ * Instances are immutable and queries are thread-safe.
+ *
+ * @author Team
+ */
+public final class ContractionHierarchy {
+    private static final int MAGIC = 0x50444348; // "PDCH"
+    private static final int VERSION = 1;
+    private static final int WITNESS_SETTLE_LIMIT = 500; // A missed witness only adds a useless shortcut
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    // Edges toward more important nodes, searched from the origin
+    private final int[] forwardFirst;
+    private final int[] forwardHead;
+    private final float[] forwardSeconds;
+    private final float[] forwardMeters;
+    // Reversed edges coming from more important nodes, searched from the destination
+    private final int[] backwardFirst;
+    private final int[] backwardHead;
+    private final float[] backwardSeconds;
+    private final float[] backwardMeters;
+    private final ThreadLocal<Search[]> searches;
+
+    /**
+     * An edge of the graph being contracted.
+     */
+    private static final class Edge {
+        private final int node;
+        private double seconds;
+        private double meters;
+
+        /**
+         * Constructs an edge.
+         *
+         * @param node    The node at the other end.
+         * @param seconds The travel time in seconds.
+         * @param meters  The length in meters.
+         */
+        private Edge(int node, double seconds, double meters) {
+            this.node = node;
+            this.seconds = seconds;
+            this.meters = meters;
+        }
+    }
+
+    /**
+     * Constructs a hierarchy from its arrays.
+     *
+     * @param latitudes  The latitude of each node.
+     * @param longitudes The longitude of each node.
+     * @param forward    The upward graph: first edges, heads, seconds and meters.
+     * @param backward   The reversed downward graph, same layout.
+     */
+    private ContractionHierarchy(double[] latitudes, double[] longitudes, Object[] forward, Object[] backward) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.forwardFirst = (int[]) forward[0];
+        this.forwardHead = (int[]) forward[1];
+        this.forwardSeconds = (float[]) forward[2];
+        this.forwardMeters = (float[]) forward[3];
+        this.backwardFirst = (int[]) backward[0];
+        this.backwardHead = (int[]) backward[1];
+        this.backwardSeconds = (float[]) backward[2];
+        this.backwardMeters = (float[]) backward[3];
+        this.searches = ThreadLocal.withInitial(() -> new Search[]{new Search(latitudes.length),
+                new Search(latitudes.length)});
+    }
+
+    /**
+     * Preprocesses a road network.
+     *
+     * @param graph The road network.
+     * @return The hierarchy.
+     */
+    public static ContractionHierarchy build(RoadGraph graph) {
+        int nodeCount = graph.nodeCount();
+        Contractor contractor = new Contractor(nodeCount);
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            if (graph.edgeFrom(edge) != graph.edgeTo(edge)) {
+                contractor.addEdge(graph.edgeFrom(edge), graph.edgeTo(edge), graph.edgeSeconds(edge),
+                        graph.edgeMeters(edge));
+            }
+        }
+        contractor.contractAll();
+
+        double[] latitudes = new double[nodeCount];
+        double[] longitudes = new double[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            latitudes[node] = graph.latitude(node);
+            longitudes[node] = graph.longitude(node);
+        }
+        return new ContractionHierarchy(latitudes, longitudes, compact(contractor.upward),
+                compact(contractor.downward));
+    }
+
+    /**
+     * Reads a hierarchy saved by {@link #write(Path)}.
+     *
+     * @param path The hierarchy file.
+     * @return The hierarchy.
+     * @throws IOException If the file cannot be read or is not a hierarchy.
+     */
+    public static ContractionHierarchy read(Path path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a contraction hierarchy: " + path);
+            }
+            int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported contraction hierarchy version " + version + ": " + path);
+            }
+            int nodeCount = input.readInt();
+            int forwardEdgeCount = input.readInt();
+            int backwardEdgeCount = input.readInt();
+            double[] latitudes = readDoubles(input, nodeCount);
+            double[] longitudes = readDoubles(input, nodeCount);
+            Object[] forward = readGraph(input, nodeCount, forwardEdgeCount);
+            Object[] backward = readGraph(input, nodeCount, backwardEdgeCount);
+            return new ContractionHierarchy(latitudes, longitudes, forward, backward);
+        }
+    }
+
+    /**
+     * Saves the hierarchy. The file is written next to the target and renamed over it atomically.
+     *
+     * @param path The hierarchy file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tempFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(latitudes.length);
+                output.writeInt(forwardHead.length);
+                output.writeInt(backwardHead.length);
+                for (double latitude : latitudes) {
+                    output.writeDouble(latitude);
+                }
+                for (double longitude : longitudes) {
+                    output.writeDouble(longitude);
+                }
+                writeGraph(output, forwardFirst, forwardHead, forwardSeconds, forwardMeters);
+                writeGraph(output, backwardFirst, backwardHead, backwardSeconds, backwardMeters);
+            }
+            Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of nodes.
+     *
+     * @return The number of nodes.
+     */
+    public int nodeCount() {
+        return latitudes.length;
+    }
+
+    /**
+     * Gets the latitude of a node.
+     *
+     * @param node The node.
+     * @return The latitude in degrees.
+     */
+    public double latitude(int node) {
+        return latitudes[node];
+    }
+
+    /**
+     * Gets the longitude of a node.
+     *
+     * @param node The node.
+     * @return The longitude in degrees.
+     */
+    public double longitude(int node) {
+        return longitudes[node];
+    }
+
+    /**
+     * Finds the fastest route between two nodes.
+     *
+     * @param from The origin node.
+     * @param to   The destination node.
+     * @return The travel time in minutes and the length in kilometers of the fastest route, or null if the
+     * destination cannot be reached.
+     */
+    public RouteFact route(int from, int to) {
+        Search[] pair = searches.get();
+        Search forward = pair[0];
+        Search backward = pair[1];
+        forward.start(from);
+        backward.start(to);
+        double bestSeconds = Double.POSITIVE_INFINITY;
+        double bestMeters = 0;
+        while (true) {
+            double forwardKey = forward.minKey();
+            double backwardKey = backward.minKey();
+            if (Math.min(forwardKey, backwardKey) >= bestSeconds) {
+                break; // Also stops when both searches are exhausted
+            }
+            boolean forwardTurn = forwardKey <= backwardKey;
+            Search search = forwardTurn ? forward : backward;
+            Search other = forwardTurn ? backward : forward;
+            int node = search.poll();
+            if (other.isReached(node) && search.seconds(node) + other.seconds(node) < bestSeconds) {
+                bestSeconds = search.seconds(node) + other.seconds(node);
+                bestMeters = search.meters(node) + other.meters(node);
+            }
+            if (forwardTurn) {
+                search.relaxUnlessStalled(node, forwardFirst, forwardHead, forwardSeconds, forwardMeters,
+                        backwardFirst, backwardHead, backwardSeconds);
+            } else {
+                search.relaxUnlessStalled(node, backwardFirst, backwardHead, backwardSeconds, backwardMeters,
+                        forwardFirst, forwardHead, forwardSeconds);
+            }
+        }
+        return bestSeconds == Double.POSITIVE_INFINITY ? null : new RouteFact(bestSeconds / 60, bestMeters / 1000);
+    }
+
+    /**
+     * Finds the fastest routes from one node to many: the upward search from the origin is done once, then each
+     * destination only needs its own small backward search.
+     *
+     * @param from The origin node.
+     * @param to   The destination nodes.
+     * @return The route to each destination, as in {@link #route(int, int)}; null for an unreachable destination.
+     */
+    public RouteFact[] routes(int from, int[] to) {
+        Search[] pair = searches.get();
+        Search forward = pair[0];
+        Search backward = pair[1];
+        forward.start(from);
+        while (forward.minKey() < Double.POSITIVE_INFINITY) {
+            forward.relaxUnlessStalled(forward.poll(), forwardFirst, forwardHead, forwardSeconds, forwardMeters,
+                    backwardFirst, backwardHead, backwardSeconds);
+        }
+
+        RouteFact[] routes = new RouteFact[to.length];
+        for (int i = 0; i < to.length; i++) {
+            backward.start(to[i]);
+            double bestSeconds = Double.POSITIVE_INFINITY;
+            double bestMeters = 0;
+            while (backward.minKey() < bestSeconds) {
+                int node = backward.poll();
+                if (forward.isReached(node) && backward.seconds(node) + forward.seconds(node) < bestSeconds) {
+                    bestSeconds = backward.seconds(node) + forward.seconds(node);
+                    bestMeters = backward.meters(node) + forward.meters(node);
+                }
+                backward.relaxUnlessStalled(node, backwardFirst, backwardHead, backwardSeconds, backwardMeters,
+                        forwardFirst, forwardHead, forwardSeconds);
+            }
+            routes[i] = bestSeconds == Double.POSITIVE_INFINITY ? null
+                    : new RouteFact(bestSeconds / 60, bestMeters / 1000);
+        }
+        return routes;
+    }
+
+    /**
+     * Packs adjacency lists into compact arrays.
+     *
+     * @param adjacency The edges of each node.
+     * @return The first edge of each node (plus an end marker), the heads, the seconds and the meters.
+     */
+    private static Object[] compact(List<List<Edge>> adjacency) {
+        int[] first = new int[adjacency.size() + 1];
+        for (int node = 0; node < adjacency.size(); node++) {
+            first[node + 1] = first[node] + adjacency.get(node).size();
+        }
+        int[] head = new int[first[adjacency.size()]];
+        float[] seconds = new float[head.length];
+        float[] meters = new float[head.length];
+        for (int node = 0; node < adjacency.size(); node++) {
+            int index = first[node];
+            for (Edge edge : adjacency.get(node)) {
+                head[index] = edge.node;
+                seconds[index] = (float) edge.seconds;
+                meters[index] = (float) edge.meters;
+                index++;
+            }
+        }
+        return new Object[]{first, head, seconds, meters};
+    }
+
+    /**
+     * Writes a compact graph.
+     *
+     * @param output  The stream.
+     * @param first   The first edge of each node.
+     * @param head    The heads.
+     * @param seconds The travel times.
+     * @param meters  The lengths.
+     * @throws IOException If the stream cannot be written.
+     */
+    private static void writeGraph(DataOutputStream output, int[] first, int[] head, float[] seconds,
+                                   float[] meters) throws IOException {
+        for (int value : first) {
+            output.writeInt(value);
+        }
+        for (int value : head) {
+            output.writeInt(value);
+        }
+        for (float value : seconds) {
+            output.writeFloat(value);
+        }
+        for (float value : meters) {
+            output.writeFloat(value);
+        }
+    }
+
+    /**
+     * Reads a compact graph.
+     *
+     * @param input     The stream.
+     * @param nodeCount The number of nodes.
+     * @param edgeCount The number of edges.
+     * @return The first edge of each node, the heads, the seconds and the meters.
+     * @throws IOException If the stream cannot be read.
+     */
+    private static Object[] readGraph(DataInputStream input, int nodeCount, int edgeCount) throws IOException {
+        int[] first = new int[nodeCount + 1];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = input.readInt();
+        }
+        int[] head = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            head[i] = input.readInt();
+        }
+        float[] seconds = new float[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            seconds[i] = input.readFloat();
+        }
+        float[] meters = new float[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            meters[i] = input.readFloat();
+        }
+        return new Object[]{first, head, seconds, meters};
+    }
+
+    /**
+     * Reads an array of doubles.
+     *
+     * @param input The stream.
+     * @param count The number of values.
+     * @return The values.
+     * @throws IOException If the stream cannot be read.
+     */
+    private static double[] readDoubles(DataInputStream input, int count) throws IOException {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = input.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * The graph being contracted, with the edges between the remaining nodes only.
+     */
+    private static final class Contractor {
+        private final List<List<Edge>> outEdges;
+        private final List<List<Edge>> inEdges;
+        private final List<List<Edge>> upward;
+        private final List<List<Edge>> downward;
+        private final int[] contractedNeighbors;
+        private final int[] levels; // Length of the longest chain of contracted nodes below each node
+        private final Search search;
+        // Marks the targets of the current witness search, so it stops once they are all settled
+        private final int[] targetMarks;
+        private int targetMark;
+
+        /**
+         * Constructs a graph without edges.
+         *
+         * @param nodeCount The number of nodes.
+         */
+        private Contractor(int nodeCount) {
+            outEdges = new ArrayList<>(nodeCount);
+            inEdges = new ArrayList<>(nodeCount);
+            for (int node = 0; node < nodeCount; node++) {
+                outEdges.add(new ArrayList<>());
+                inEdges.add(new ArrayList<>());
+            }
+            // Filled as the nodes are contracted
+            upward = new ArrayList<>(Collections.nCopies(nodeCount, null));
+            downward = new ArrayList<>(Collections.nCopies(nodeCount, null));
+            contractedNeighbors = new int[nodeCount];
+            levels = new int[nodeCount];
+            search = new Search(nodeCount);
+            targetMarks = new int[nodeCount];
+        }
+
+        /**
+         * Adds an edge, or shortens the existing edge between the same nodes.
+         *
+         * @param from    The origin.
+         * @param to      The destination.
+         * @param seconds The travel time in seconds.
+         * @param meters  The length in meters.
+         */
+        private void addEdge(int from, int to, double seconds, double meters) {
+            for (Edge edge : outEdges.get(from)) {
+                if (edge.node == to) {
+                    if (seconds < edge.seconds) {
+                        edge.seconds = seconds;
+                        edge.meters = meters;
+                        for (Edge reverse : inEdges.get(to)) {
+                            if (reverse.node == from) {
+                                reverse.seconds = seconds;
+                                reverse.meters = meters;
+                            }
+                        }
+                    }
+                    return;
+                }
+            }
+            outEdges.get(from).add(new Edge(to, seconds, meters));
+            inEdges.get(to).add(new Edge(from, seconds, meters));
+        }
+
+        /**
+         * Contracts every node, least important first, filling the upward and downward edges of each node.
+         */
+        private void contractAll() {
+            int nodeCount = outEdges.size();
+            boolean[] contracted = new boolean[nodeCount];
+            int[] priorities = new int[nodeCount];
+            // Priority in the high bits, node in the low bits
+            PriorityQueue<Long> queue = new PriorityQueue<>();
+            for (int node = 0; node < nodeCount; node++) {
+                priorities[node] = priority(node);
+                queue.add(queueEntry(priorities[node], node));
+            }
+            while (!queue.isEmpty()) {
+                long entry = queue.poll();
+                int node = (int) (entry & 0xFFFFFFFFL);
+                if (contracted[node] || entry != queueEntry(priorities[node], node)) {
+                    continue; // Outdated entry of a node queued again
+                }
+                // Lazy update: the priority may have grown since the node was queued
+                priorities[node] = priority(node);
+                if (!queue.isEmpty() && queueEntry(priorities[node], node) > queue.peek()) {
+                    queue.add(queueEntry(priorities[node], node));
+                    continue;
+                }
+
+                for (Edge[] shortcut : shortcuts(node)) {
+                    addEdge(shortcut[0].node, shortcut[1].node, shortcut[0].seconds + shortcut[1].seconds,
+                            shortcut[0].meters + shortcut[1].meters);
+                }
+                // The remaining neighbors are more important, so these are the upward edges of the node
+                contracted[node] = true;
+                upward.set(node, outEdges.get(node));
+                downward.set(node, inEdges.get(node));
+                for (Edge edge : upward.get(node)) {
+                    inEdges.get(edge.node).removeIf(reverse -> reverse.node == node);
+                }
+                for (Edge edge : downward.get(node)) {
+                    outEdges.get(edge.node).removeIf(reverse -> reverse.node == node);
+                }
+                // The neighbors lost edges and may have gained shortcuts: queue them again with their new priority
+                for (List<Edge> edges : List.of(upward.get(node), downward.get(node))) {
+                    for (Edge edge : edges) {
+                        contractedNeighbors[edge.node]++;
+                        levels[edge.node] = Math.max(levels[edge.node], levels[node] + 1);
+                        priorities[edge.node] = priority(edge.node);
+                        queue.add(queueEntry(priorities[edge.node], edge.node));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Computes the importance of a node: the shortcuts its contraction would add minus the edges it would
+         * remove, plus its contracted neighbors and its level so the contraction spreads evenly over the network.
+         *
+         * @param node The node.
+         * @return The priority, lower is contracted first.
+         */
+        private int priority(int node) {
+            int edgeDifference = shortcuts(node).size() - outEdges.get(node).size() - inEdges.get(node).size();
+            return 2 * edgeDifference + contractedNeighbors[node] + levels[node];
+        }
+
+        /**
+         * Finds the shortcuts needed to contract a node: for each pair of neighbors {@code u → node → w}, a shortcut
+         * is needed unless a witness path from {@code u} to {@code w} avoiding the node is as fast.
+         *
+         * @param node The node.
+         * @return The pairs of edges {@code u → node} (with {@code u} as its node) and {@code node → w} to join.
+         */
+        private List<Edge[]> shortcuts(int node) {
+            List<Edge[]> shortcuts = new ArrayList<>();
+            double maxOut = 0;
+            targetMark++;
+            for (Edge out : outEdges.get(node)) {
+                maxOut = Math.max(maxOut, out.seconds);
+                targetMarks[out.node] = targetMark;
+            }
+            for (Edge in : inEdges.get(node)) {
+                witnessSearch(in.node, node, in.seconds + maxOut, outEdges.get(node).size());
+                for (Edge out : outEdges.get(node)) {
+                    if (out.node != in.node && (!search.isReached(out.node)
+                            || search.seconds(out.node) > in.seconds + out.seconds)) {
+                        shortcuts.add(new Edge[]{in, out});
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Runs a bounded Dijkstra search that avoids a node, to find the witness paths of its contraction.
+         *
+         * @param source      The origin of the search.
+         * @param avoided     The node being contracted.
+         * @param maxSeconds  The search stops beyond this travel time.
+         * @param targetCount The number of marked targets; the search stops once they are all settled.
+         */
+        private void witnessSearch(int source, int avoided, double maxSeconds, int targetCount) {
+            search.start(source);
+            int settled = 0;
+            while (search.minKey() <= maxSeconds && settled < WITNESS_SETTLE_LIMIT && targetCount > 0) {
+                int node = search.poll();
+                settled++;
+                if (targetMarks[node] == targetMark) {
+                    targetCount--;
+                }
+                for (Edge edge : outEdges.get(node)) {
+                    double candidate = search.seconds(node) + edge.seconds;
+                    if (edge.node != avoided
+                            && (!search.isReached(edge.node) || candidate < search.seconds(edge.node))) {
+                        search.reach(edge.node, candidate, 0);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Encodes a node and its priority so that entries sort by priority.
+         *
+         * @param priority The priority.
+         * @param node     The node.
+         * @return The queue entry.
+         */
+        private static long queueEntry(int priority, int node) {
+            return ((long) priority << 32) | node;
+        }
+    }
+
+    /**
+     * The state of one upward Dijkstra search, reused from query to query by a thread. Nodes are reset lazily with
+     * a version stamp, so starting a search costs nothing whatever the size of the network.
+     */
+    private static final class Search {
+        private final double[] seconds;
+        private final double[] meters;
+        private final int[] stamps;
+        private int stamp;
+        // Binary heap of (seconds, node) with stale entries skipped on poll
+        private double[] heapKeys;
+        private int[] heapNodes;
+        private int heapSize;
+
+        /**
+         * Constructs the state of a search.
+         *
+         * @param nodeCount The number of nodes of the network.
+         */
+        private Search(int nodeCount) {
+            seconds = new double[nodeCount];
+            meters = new double[nodeCount];
+            stamps = new int[nodeCount];
+            heapKeys = new double[64];
+            heapNodes = new int[64];
+        }
+
+        /**
+         * Starts a new search.
+         *
+         * @param source The origin of the search.
+         */
+        private void start(int source) {
+            stamp++;
+            if (stamp == 0) {
+                Arrays.fill(stamps, 0); // The stamps wrapped around after four billion searches
+                stamp = 1;
+            }
+            heapSize = 0;
+            reach(source, 0, 0);
+        }
+
+        /**
+         * Checks whether the search has reached a node.
+         *
+         * @param node The node.
+         * @return True if the node has a tentative travel time.
+         */
+        private boolean isReached(int node) {
+            return stamps[node] == stamp;
+        }
+
+        /**
+         * Gets the tentative travel time of a reached node.
+         *
+         * @param node The node.
+         * @return The travel time in seconds.
+         */
+        private double seconds(int node) {
+            return seconds[node];
+        }
+
+        /**
+         * Gets the length of the tentative route to a reached node.
+         *
+         * @param node The node.
+         * @return The length in meters.
+         */
+        private double meters(int node) {
+            return meters[node];
+        }
+
+        /**
+         * Gets the travel time of the next node to settle.
+         *
+         * @return The travel time in seconds, or infinity if the search is exhausted.
+         */
+        private double minKey() {
+            while (heapSize > 0 && heapKeys[0] > seconds[heapNodes[0]]) {
+                removeTop(); // Stale entry of a node reached again by a faster route
+            }
+            return heapSize == 0 ? Double.POSITIVE_INFINITY : heapKeys[0];
+        }
+
+        /**
+         * Settles the next node. {@link #minKey()} must have been called first.
+         *
+         * @return The node.
+         */
+        private int poll() {
+            int node = heapNodes[0];
+            removeTop();
+            return node;
+        }
+
+        /**
+         * Relaxes the edges of a settled node, unless the node is stalled: a more important node already reached has
+         * a faster edge down to it, so the search reached it by a detour and no shortest route goes up through it.
+         * Stalling prunes most of the search space of a query.
+         *
+         * @param node            The node.
+         * @param first           The first edge of each node.
+         * @param head            The heads.
+         * @param seconds         The travel times.
+         * @param meters          The lengths.
+         * @param oppositeFirst   The first edge of each node in the graph of the other direction.
+         * @param oppositeHead    The heads of the other direction.
+         * @param oppositeSeconds The travel times of the other direction.
+         */
+        private void relaxUnlessStalled(int node, int[] first, int[] head, float[] seconds, float[] meters,
+                                        int[] oppositeFirst, int[] oppositeHead, float[] oppositeSeconds) {
+            for (int edge = oppositeFirst[node]; edge < oppositeFirst[node + 1]; edge++) {
+                int higher = oppositeHead[edge];
+                if (isReached(higher) && this.seconds[higher] + oppositeSeconds[edge] < this.seconds[node]) {
+                    return;
+                }
+            }
+            for (int edge = first[node]; edge < first[node + 1]; edge++) {
+                double candidate = this.seconds[node] + seconds[edge];
+                int target = head[edge];
+                if (!isReached(target) || candidate < this.seconds[target]) {
+                    reach(target, candidate, this.meters[node] + meters[edge]);
+                }
+            }
+        }
+
+        /**
+         * Records a tentative route to a node and queues it.
+         *
+         * @param node    The node.
+         * @param seconds The travel time in seconds.
+         * @param meters  The length in meters.
+         */
+        private void reach(int node, double seconds, double meters) {
+            stamps[node] = stamp;
+            this.seconds[node] = seconds;
+            this.meters[node] = meters;
+            if (heapSize == heapKeys.length) {
+                heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+                heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+            }
+            int index = heapSize++;
+            while (index > 0 && heapKeys[(index - 1) / 2] > seconds) {
+                heapKeys[index] = heapKeys[(index - 1) / 2];
+                heapNodes[index] = heapNodes[(index - 1) / 2];
+                index = (index - 1) / 2;
+            }
+            heapKeys[index] = seconds;
+            heapNodes[index] = node;
+        }
+
+        /**
+         * Removes the top of the heap.
+         */
+        private void removeTop() {
+            heapSize--;
+            double key = heapKeys[heapSize];
+            int node = heapNodes[heapSize];
+            int index = 0;
+            while (2 * index + 1 < heapSize) {
+                int child = 2 * index + 1;
+                if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                    child++;
+                }
+                if (heapKeys[child] >= key) {
+                    break;
+                }
+                heapKeys[index] = heapKeys[child];
+                heapNodes[index] = heapNodes[child];
+                index = child;
+            }
+            heapKeys[index] = key;
+            heapNodes[index] = node;
+        }
+    }
+}
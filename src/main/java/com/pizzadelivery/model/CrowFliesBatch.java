@@ -0,0 +1,174 @@
+package com.pizzadelivery.model;
+
+import java.util.List;
+
+/**
+ * Crow-flies distances between many points at once, for screening candidates and filling fallback matrices.
+ * The sines and cosines of each point are computed once when the batch is created. The Haversine formula is then
+ * rewritten with the angle difference identities, {@code sin((b - a) / 2) = sin(b/2)cos(a/2) - cos(b/2)sin(a/2)}, so a
+ * pair of points costs a few multiplications, one square root and one arcsine instead of six trigonometric calls.
+ * The results match {@link GPS#calculateCrowFliesDistance(GPS)} up to rounding errors.
+ * <p>
+ * Each query first fills the haversine terms in a plain arithmetic loop over the coordinate arrays, which the JIT
+ * compiler turns into SIMD instructions, then converts them to distances in a second loop.
+ *
+ * @author Team
+ */
+public final class CrowFliesBatch {
+    private static final double EARTH_RADIUS_KM = 6371; // Same sphere as GPS#calculateCrowFliesDistance
+
+    private final double[] sinHalfLatitudes;
+    private final double[] cosHalfLatitudes;
+    private final double[] cosLatitudes;
+    private final double[] sinHalfLongitudes;
+    private final double[] cosHalfLongitudes;
+
+    /**
+     * Constructs a batch of points.
+     *
+     * @param latitudes  The latitude of each point, in degrees.
+     * @param longitudes The longitude of each point, in degrees.
+     */
+    public CrowFliesBatch(double[] latitudes, double[] longitudes) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Expected as many latitudes as longitudes, got " + latitudes.length
+                    + " and " + longitudes.length);
+        }
+        int size = latitudes.length;
+        sinHalfLatitudes = new double[size];
+        cosHalfLatitudes = new double[size];
+        cosLatitudes = new double[size];
+        sinHalfLongitudes = new double[size];
+        cosHalfLongitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            double halfLatitude = Math.toRadians(latitudes[i]) / 2;
+            double halfLongitude = Math.toRadians(longitudes[i]) / 2;
+            sinHalfLatitudes[i] = Math.sin(halfLatitude);
+            cosHalfLatitudes[i] = Math.cos(halfLatitude);
+            cosLatitudes[i] = Math.cos(2 * halfLatitude);
+            sinHalfLongitudes[i] = Math.sin(halfLongitude);
+            cosHalfLongitudes[i] = Math.cos(halfLongitude);
+        }
+    }
+
+    /**
+     * Constructs a batch of locations.
+     *
+     * @param locations The locations.
+     * @return The batch, with the points in the same order.
+     */
+    public static CrowFliesBatch of(List<GPS> locations) {
+        double[] latitudes = new double[locations.size()];
+        double[] longitudes = new double[locations.size()];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = locations.get(i).latitude();
+            longitudes[i] = locations.get(i).longitude();
+        }
+        return new CrowFliesBatch(latitudes, longitudes);
+    }
+
+    /**
+     * Gets the number of points.
+     *
+     * @return The number of points.
+     */
+    public int size() {
+        return cosLatitudes.length;
+    }
+
+    /**
+     * Calculates the distances from a location to every point of the batch.
+     *
+     * @param origin The location.
+     * @return The distance to each point, in kilometers.
+     */
+    public double[] distancesFrom(GPS origin) {
+        double[] distances = new double[size()];
+        distancesFrom(origin, distances);
+        return distances;
+    }
+
+    /**
+     * Calculates the distances from a location to every point of the batch, without allocating.
+     *
+     * @param origin    The location.
+     * @param distances Receives the distance to each point, in kilometers; at least {@link #size()} long.
+     */
+    public void distancesFrom(GPS origin, double[] distances) {
+        double halfLatitude = Math.toRadians(origin.latitude()) / 2;
+        double halfLongitude = Math.toRadians(origin.longitude()) / 2;
+        haversines(Math.sin(halfLatitude), Math.cos(halfLatitude), Math.cos(2 * halfLatitude),
+                Math.sin(halfLongitude), Math.cos(halfLongitude), distances, 0, size());
+        toKilometers(distances, 0, size());
+    }
+
+    /**
+     * Calculates the distances from one point of the batch to every point, itself included.
+     *
+     * @param origin    The index of the point.
+     * @param distances Receives the distance to each point, in kilometers; at least {@link #size()} long.
+     */
+    public void distancesFrom(int origin, double[] distances) {
+        haversines(sinHalfLatitudes[origin], cosHalfLatitudes[origin], cosLatitudes[origin],
+                sinHalfLongitudes[origin], cosHalfLongitudes[origin], distances, 0, size());
+        toKilometers(distances, 0, size());
+    }
+
+    /**
+     * Calculates the distances between every pair of points. The distance is symmetric, so only the upper triangle is
+     * computed and mirrored.
+     *
+     * @return The matrix of distances in kilometers, indexed like the points.
+     */
+    public double[][] matrix() {
+        int size = size();
+        double[][] matrix = new double[size][size];
+        for (int from = 0; from < size; from++) {
+            double[] row = matrix[from];
+            haversines(sinHalfLatitudes[from], cosHalfLatitudes[from], cosLatitudes[from], sinHalfLongitudes[from],
+                    cosHalfLongitudes[from], row, from + 1, size);
+            toKilometers(row, from + 1, size);
+            for (int to = from + 1; to < size; to++) {
+                matrix[to][from] = row[to];
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Computes the haversine term {@code a} between an origin and a range of points. The loop only multiplies and
+     * adds over arrays, so it is vectorized.
+     *
+     * @param sinHalfLatitude  The sine of half the latitude of the origin.
+     * @param cosHalfLatitude  The cosine of half the latitude of the origin.
+     * @param cosLatitude      The cosine of the latitude of the origin.
+     * @param sinHalfLongitude The sine of half the longitude of the origin.
+     * @param cosHalfLongitude The cosine of half the longitude of the origin.
+     * @param out              Receives the terms.
+     * @param start            The first point, inclusive.
+     * @param end              The last point, exclusive.
+     */
+    private void haversines(double sinHalfLatitude, double cosHalfLatitude, double cosLatitude,
+                            double sinHalfLongitude, double cosHalfLongitude, double[] out, int start, int end) {
+        for (int i = start; i < end; i++) {
+            // Sines of half the latitude and longitude differences
+            double sinHalfDLat = sinHalfLatitudes[i] * cosHalfLatitude - cosHalfLatitudes[i] * sinHalfLatitude;
+            double sinHalfDLon = sinHalfLongitudes[i] * cosHalfLongitude - cosHalfLongitudes[i] * sinHalfLongitude;
+            out[i] = sinHalfDLat * sinHalfDLat + cosLatitudes[i] * cosLatitude * sinHalfDLon * sinHalfDLon;
+        }
+    }
+
+    /**
+     * Converts haversine terms to distances in place.
+     *
+     * @param values The haversine terms, replaced by the distances in kilometers.
+     * @param start  The first value, inclusive.
+     * @param end    The last value, exclusive.
+     */
+    private static void toKilometers(double[] values, int start, int end) {
+        for (int i = start; i < end; i++) {
+            // Rounding can push the term of antipodal points a hair above 1
+            values[i] = 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(Math.min(values[i], 1)));
+        }
+    }
+}
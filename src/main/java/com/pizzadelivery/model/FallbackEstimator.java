@@ -0,0 +1,332 @@
+package com.pizzadelivery.model;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Estimates the road distance and the travel time of a route from its crow-flies distance, when the routing API
+ * cannot be used.
+ * The model is fitted on the real routes of the cache and refitted as new API results arrive. Routes are grouped by
+ * crow-flies distance band and by bearing sector, because short hops and the directions that cross the river or the
+ * ring road detour more than others. Each group keeps running sums only, so an observation costs a few additions and
+ * an estimate reads the current fit without any refit pass:
+ * <ul>
+ *     <li>the detour factor of a group is its total road distance over its total crow-flies distance;</li>
+ *     <li>the travel time of a band is a least-squares line {@code minutes = a + b × road km}, whose intercept
+ *     accounts for the fixed cost of a route (parking, traffic lights).</li>
+ * </ul>
+ * A group with too few routes falls back to its whole band, then to every route, then to the default scooter model.
+ * Estimates are in the units of the cache: minutes and kilometers.
+ * <p>
+ * Reading a whole cache takes time, so an estimator created by {@link #fitLazily} only reads it on a background thread
+ * once the first estimate is asked for; until the fit is done, estimates use the default model on the crow-flies
+ * distance.
+ *
+ * @author Team
+ */
+public final class FallbackEstimator {
+    // Upper bounds of the crow-flies distance bands in kilometers, the last band has no bound
+    private static final double[] BAND_LIMITS_KM = {0.5, 1, 2, 5, 10, 20};
+    private static final int BAND_COUNT = BAND_LIMITS_KM.length + 1;
+    private static final int SECTOR_COUNT = 8; // 45° bearing sectors
+    private static final int MIN_SAMPLES = 10; // Routes a group needs before its own fit is trusted
+    private static final double DEFAULT_DETOUR_FACTOR = 1.3;
+
+    private final double defaultSpeedKmh;
+    // Running sums per group, the band totals are kept in an extra sector and the overall totals in an extra band
+    private final Sums[][] groups;
+    // The routes of the cache to fit on first use, null when there are none
+    private final RouteCache deferredCache;
+    private final int timeField;
+    private final int distanceField;
+    private final AtomicBoolean fitStarted;
+    private volatile boolean fitted;
+
+    /**
+     * Running sums of the routes of a group.
+     */
+    private static final class Sums {
+        private int count;
+        private double crowKm;
+        private double roadKm;
+        private double roadKmSquared;
+        private double minutes;
+        private double roadKmMinutes;
+
+        /**
+         * Adds a route.
+         *
+         * @param crow    The crow-flies distance in kilometers.
+         * @param road    The road distance in kilometers.
+         * @param minutes The travel time in minutes.
+         */
+        private void add(double crow, double road, double minutes) {
+            count++;
+            crowKm += crow;
+            roadKm += road;
+            roadKmSquared += road * road;
+            this.minutes += minutes;
+            roadKmMinutes += road * minutes;
+        }
+    }
+
+    /**
+     * Constructs an estimator without any route, which uses the default model until it observes some.
+     *
+     * @param defaultSpeedKmh The average speed of the default model, in kilometers per hour.
+     */
+    public FallbackEstimator(double defaultSpeedKmh) {
+        this(defaultSpeedKmh, null, 0, 0);
+    }
+
+    /**
+     * Constructs an estimator without any route.
+     *
+     * @param defaultSpeedKmh The average speed of the default model, in kilometers per hour.
+     * @param deferredCache   The route cache to fit on first use, or null.
+     * @param timeField       The index of the travel time in the cached values.
+     * @param distanceField   The index of the distance in the cached values.
+     */
+    private FallbackEstimator(double defaultSpeedKmh, RouteCache deferredCache, int timeField, int distanceField) {
+        this.defaultSpeedKmh = defaultSpeedKmh;
+        this.groups = new Sums[BAND_COUNT + 1][SECTOR_COUNT + 1];
+        for (Sums[] band : groups) {
+            for (int sector = 0; sector < band.length; sector++) {
+                band[sector] = new Sums();
+            }
+        }
+        this.deferredCache = deferredCache;
+        this.timeField = timeField;
+        this.distanceField = distanceField;
+        this.fitStarted = new AtomicBoolean(deferredCache == null);
+        this.fitted = deferredCache == null;
+    }
+
+    /**
+     * Constructs an estimator fitted on the routes of a cache.
+     *
+     * @param cache           The route cache.
+     * @param timeField       The index of the travel time, in minutes, in the cached values.
+     * @param distanceField   The index of the distance, in kilometers, in the cached values.
+     * @param defaultSpeedKmh The average speed used until there are enough routes, in kilometers per hour.
+     * @return The fitted estimator.
+     */
+    public static FallbackEstimator fit(RouteCache cache, int timeField, int distanceField, double defaultSpeedKmh) {
+        FallbackEstimator estimator = new FallbackEstimator(defaultSpeedKmh);
+        estimator.fitOn(cache, timeField, distanceField);
+        return estimator;
+    }
+
+    /**
+     * Constructs an estimator that is fitted on the routes of a cache in the background, once the first estimate is
+     * asked for, so creating it costs nothing. Until the fit is done, the estimates use the default model and the
+     * observed routes are left to the fit, which finds them in the cache.
+     *
+     * @param cache           The route cache, which holds every route that will be observed.
+     * @param timeField       The index of the travel time, in minutes, in the cached values.
+     * @param distanceField   The index of the distance, in kilometers, in the cached values.
+     * @param defaultSpeedKmh The average speed used until there are enough routes, in kilometers per hour.
+     * @return The estimator, not fitted yet.
+     */
+    public static FallbackEstimator fitLazily(RouteCache cache, int timeField, int distanceField,
+                                              double defaultSpeedKmh) {
+        return new FallbackEstimator(defaultSpeedKmh, cache, timeField, distanceField);
+    }
+
+    /**
+     * Checks whether the routes of the cache have been fitted.
+     *
+     * @return True once the fit is done, always true for an estimator that does not fit a cache lazily.
+     */
+    public boolean isFitted() {
+        return fitted;
+    }
+
+    /**
+     * Adds the routes of a cache to the fit.
+     *
+     * @param cache         The route cache.
+     * @param timeField     The index of the travel time in the cached values.
+     * @param distanceField The index of the distance in the cached values.
+     */
+    private void fitOn(RouteCache cache, int timeField, int distanceField) {
+        cache.forEach((from, to, routeValues) -> add(RouteKey.unpack(from), RouteKey.unpack(to),
+                routeValues[timeField], routeValues[distanceField]));
+    }
+
+    /**
+     * Starts the background fit of the cache, the first time only.
+     */
+    private void startFit() {
+        if (!fitStarted.compareAndSet(false, true)) {
+            return;
+        }
+        Thread fitter = new Thread(() -> {
+            try {
+                fitOn(deferredCache, timeField, distanceField);
+            } finally {
+                fitted = true; // A failed fit leaves the routes observed from now on
+            }
+        }, "FallbackEstimator-fit");
+        fitter.setDaemon(true);
+        fitter.start();
+    }
+
+    /**
+     * Adds a real route to the fit.
+     * Routes with an unknown value, unroutable pairs (negative values) and routes between the same point are ignored,
+     * and so are all routes while a lazy fit of the cache is pending: the fit reads them from the cache.
+     *
+     * @param from     The origin.
+     * @param to       The destination.
+     * @param minutes  The travel time in minutes.
+     * @param distance The road distance in kilometers.
+     */
+    public void observe(GPS from, GPS to, double minutes, double distance) {
+        if (fitted) {
+            add(from, to, minutes, distance);
+        }
+    }
+
+    /**
+     * Adds a route to the running sums, unless it is rejected like in {@link #observe}.
+     *
+     * @param from     The origin.
+     * @param to       The destination.
+     * @param minutes  The travel time in minutes.
+     * @param distance The road distance in kilometers.
+     */
+    private void add(GPS from, GPS to, double minutes, double distance) {
+        double crow = from.calculateCrowFliesDistance(to);
+        if (!(minutes >= 0) || !(distance > 0) || crow <= 0) {
+            return; // Also rejects NaN
+        }
+        int band = band(crow);
+        int sector = sector(from, to);
+        synchronized (groups) {
+            groups[band][sector].add(crow, distance, minutes);
+            groups[band][SECTOR_COUNT].add(crow, distance, minutes);
+            groups[BAND_COUNT][SECTOR_COUNT].add(crow, distance, minutes);
+        }
+    }
+
+    /**
+     * Estimates a route.
+     *
+     * @param from The origin.
+     * @param to   The destination.
+     * @return The estimated travel time in minutes and road distance in kilometers.
+     */
+    public RouteFact estimate(GPS from, GPS to) {
+        double crow = from.calculateCrowFliesDistance(to);
+        if (!fitted) {
+            startFit();
+            double road = crow * DEFAULT_DETOUR_FACTOR;
+            return new RouteFact(defaultMinutes(road), road);
+        }
+        int band = band(crow);
+        int sector = sector(from, to);
+        double road;
+        double minutes;
+        synchronized (groups) {
+            Sums detour = trusted(groups[band][sector], groups[band][SECTOR_COUNT], groups[BAND_COUNT][SECTOR_COUNT]);
+            road = crow * (detour == null ? DEFAULT_DETOUR_FACTOR : detour.roadKm / detour.crowKm);
+            Sums speed = trusted(groups[band][SECTOR_COUNT], groups[BAND_COUNT][SECTOR_COUNT]);
+            minutes = speed == null ? defaultMinutes(road) : fittedMinutes(speed, road);
+        }
+        return new RouteFact(minutes, road);
+    }
+
+    /**
+     * Gets the number of routes the estimator has been fitted on.
+     *
+     * @return The number of observed routes.
+     */
+    public int sampleCount() {
+        synchronized (groups) {
+            return groups[BAND_COUNT][SECTOR_COUNT].count;
+        }
+    }
+
+    /**
+     * Picks the most specific group that has enough routes.
+     *
+     * @param candidates The groups, from the most to the least specific.
+     * @return The first group with at least {@value #MIN_SAMPLES} routes, or null.
+     */
+    private static Sums trusted(Sums... candidates) {
+        for (Sums candidate : candidates) {
+            if (candidate.count >= MIN_SAMPLES) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies the travel time line of a group.
+     *
+     * @param sums The routes of the group.
+     * @param road The road distance in kilometers.
+     * @return The travel time in minutes.
+     */
+    private static double fittedMinutes(Sums sums, double road) {
+        double variance = sums.count * sums.roadKmSquared - sums.roadKm * sums.roadKm;
+        double slope;
+        double intercept;
+        if (variance > 1e-9 * sums.count * sums.roadKmSquared) {
+            slope = (sums.count * sums.roadKmMinutes - sums.roadKm * sums.minutes) / variance;
+            intercept = (sums.minutes - slope * sums.roadKm) / sums.count;
+        } else {
+            // All routes of the same length: only an average speed can be fitted
+            slope = sums.minutes / sums.roadKm;
+            intercept = 0;
+        }
+        if (slope <= 0 || intercept < 0) {
+            // Noisy group, the line would make a longer route faster: keep the average speed instead
+            slope = sums.minutes / sums.roadKm;
+            intercept = 0;
+        }
+        return intercept + slope * road;
+    }
+
+    /**
+     * Applies the default scooter model.
+     *
+     * @param road The road distance in kilometers.
+     * @return The travel time in minutes.
+     */
+    private double defaultMinutes(double road) {
+        return road / defaultSpeedKmh * 60;
+    }
+
+    /**
+     * Gets the distance band of a route.
+     *
+     * @param crow The crow-flies distance in kilometers.
+     * @return The index of the band.
+     */
+    private static int band(double crow) {
+        int band = 0;
+        while (band < BAND_LIMITS_KM.length && crow >= BAND_LIMITS_KM[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    /**
+     * Gets the bearing sector of a route, from its initial bearing.
+     *
+     * @param from The origin.
+     * @param to   The destination.
+     * @return The index of the sector, 0 being centered on the north.
+     */
+    private static int sector(GPS from, GPS to) {
+        double lat1 = Math.toRadians(from.latitude());
+        double lat2 = Math.toRadians(to.latitude());
+        double dLon = Math.toRadians(to.longitude() - from.longitude());
+        double bearing = Math.toDegrees(Math.atan2(Math.sin(dLon) * Math.cos(lat2),
+                Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1) * Math.cos(lat2) * Math.cos(dLon)));
+        double sectorWidth = 360.0 / SECTOR_COUNT;
+        return (int) Math.floor((bearing + 360 + sectorWidth / 2) / sectorWidth) % SECTOR_COUNT;
+    }
+}
@@ -0,0 +1,116 @@
+package com.pizzadelivery.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate access counts of the routes of a bounded cache, used as the TinyLFU admission filter.
+ * A count-min sketch of 4-bit counters, sixteen to a {@code long}: each route increments four counters and its
+ * frequency is the smallest of them, so collisions can only overestimate it. Once the sketch has counted ten times as
+ * many accesses as the cache holds routes, every counter is halved, so the popularity of old routes fades away.
+ * Counters are updated with compare-and-set and never block the lock-free reads of the cache.
+ *
+ * @author Team
+ */
+final class FrequencySketch {
+    static final int MAX_FREQUENCY = 15;
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L; // Clears the bit each counter gets from its neighbor
+    private static final int HASH_COUNT = 4;
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L};
+
+    private final AtomicLongArray table;
+    private final int counterMask;
+    private final int sampleSize;
+    private final AtomicInteger additions;
+
+    /**
+     * Constructs an empty sketch.
+     *
+     * @param maximumSize The maximum number of routes of the cache.
+     */
+    FrequencySketch(int maximumSize) {
+        // About four counters per route, rounded to a power of two
+        int counters = Integer.highestOneBit(Math.max(64, Math.min(maximumSize, 1 << 24)) - 1) << 3;
+        this.table = new AtomicLongArray(counters / 16);
+        this.counterMask = counters - 1;
+        this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * maximumSize);
+        this.additions = new AtomicInteger();
+    }
+
+    /**
+     * Counts one access to a route.
+     *
+     * @param hash The hash of the route.
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            added |= incrementCounter(counterIndex(hash, i));
+        }
+        if (added && additions.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Estimates the number of recent accesses to a route.
+     *
+     * @param hash The hash of the route.
+     * @return The estimate, between 0 and {@value #MAX_FREQUENCY}.
+     */
+    int frequency(int hash) {
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int index = counterIndex(hash, i);
+            frequency = Math.min(frequency, (int) (table.get(index >>> 4) >>> ((index & 15) << 2)) & 0xF);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increments a counter unless it is saturated.
+     *
+     * @param index The index of the counter.
+     * @return True if the counter was incremented.
+     */
+    private boolean incrementCounter(int index) {
+        int slot = index >>> 4;
+        int shift = (index & 15) << 2;
+        while (true) {
+            long word = table.get(slot);
+            if (((word >>> shift) & 0xF) == MAX_FREQUENCY) {
+                return false;
+            }
+            if (table.compareAndSet(slot, word, word + (1L << shift))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Halves every counter. Increments racing with the reset may be lost, which only makes the counts approximate.
+     */
+    private synchronized void reset() {
+        if (additions.get() < sampleSize) {
+            return; // Another thread has just reset the sketch
+        }
+        for (int slot = 0; slot < table.length(); slot++) {
+            table.set(slot, (table.get(slot) >>> 1) & RESET_MASK);
+        }
+        additions.set(sampleSize / 2);
+    }
+
+    /**
+     * Gets the index of one of the counters of a route.
+     *
+     * @param hash The hash of the route.
+     * @param i    The index of the hash function.
+     * @return The index of the counter.
+     */
+    private int counterIndex(int hash, int i) {
+        long mixed = (hash + SEEDS[i]) * SEEDS[i];
+        mixed += mixed >>> 32;
+        return (int) mixed & counterMask;
+    }
+}
@@ -1,19 +1,20 @@
 package com.pizzadelivery.model;
 
 import com.pizzadelivery.config.ApiConfig;
-import org.jetbrains.annotations.NotNull;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static java.lang.Math.round;
 
@@ -27,14 +28,66 @@ public record GPS(double latitude, double longitude) implements Serializable {
     private static final Path FILE_PATH = Paths.get("src/main/resources/data/");
     private static final String TIME_CACHE_FILE_NAME = "memoizationCacheTime.txt";
     private static final String DISTANCE_CACHE_FILE_NAME = "memoizationCacheDistance.txt";
-    private static final SaveableHashMap<String, Double> memoizationCacheTime =
-            new SaveableHashMap<>(FILE_PATH.resolve(TIME_CACHE_FILE_NAME));
-    private static final SaveableHashMap<String, Double> memoizationCacheDistance =
-            new SaveableHashMap<>(FILE_PATH.resolve(DISTANCE_CACHE_FILE_NAME));
-    private static final Object fileLock = new Object();
+    private static final String ROUTE_SNAPSHOT_FILE_NAME = "memoizationCacheRoute.bin";
+    private static final String ROAD_HIERARCHY_FILE_NAME = "roadGraph.ch";
+    private static final String ROAD_EDGE_LIST_FILE_NAME = "roadGraph.txt";
+    private static final String ROUTABILITY_FILE_NAME = "routability.bin";
+    private static final String ISOCHRONE_GRID_FILE_NAME = "isochrones.bin";
+    private static final long CACHE_FLUSH_INTERVAL_MS = 1000; // group commit of the cache log every second
+    private static final int TIME_FIELD = 0;
+    private static final int DISTANCE_FIELD = 1;
+    private static final int ROUTE_VALUE_COUNT = 2;
+    // About 30 MB of snapshot; the least used routes are evicted beyond, and routes are refreshed after 90 days so
+    // changes of the road network are picked up
+    private static final RouteCache.Limits ROUTE_CACHE_LIMITS = new RouteCache.Limits(1_000_000, Duration.ofDays(90));
+    // Time and distance of each route in one record, keyed by packed coordinates; the text caches of the previous
+    // versions are migrated into it on first start
+    private static final RouteCache memoizationCacheRoute =
+            RouteCache.open(FILE_PATH.resolve(ROUTE_SNAPSHOT_FILE_NAME), ROUTE_VALUE_COUNT, CACHE_FLUSH_INTERVAL_MS,
+                    ROUTE_CACHE_LIMITS, FILE_PATH.resolve(TIME_CACHE_FILE_NAME),
+                    FILE_PATH.resolve(DISTANCE_CACHE_FILE_NAME));
     private static final double SCOOTER_SPEED_KMH = 50;
-    private static boolean isApiInCooldown = false;
+    // Learns the detours and speeds of the real routes, used when the API cannot be called; the cache is only read
+    // when the first estimate is needed, in the background, so it does not slow the start
+    private static final FallbackEstimator fallbackEstimator =
+            FallbackEstimator.fitLazily(memoizationCacheRoute, TIME_FIELD, DISTANCE_FIELD, SCOOTER_SPEED_KMH);
+    // Nearby locations share the cached routes of a representative within this radius, 0 to key the routes by the
+    // exact coordinates
+    public static final String SNAP_RADIUS_PROPERTY = "routes.snapRadiusMeters";
+    private static final LocationSnapper snapper = openSnapper();
+    // Routes computed in-process from the road network of the delivery area, when an extract is provided; the API is
+    // only called for the locations outside of it
+    private static final LocalRouter localRouter =
+            LocalRouter.open(FILE_PATH.resolve(ROAD_HIERARCHY_FILE_NAME), FILE_PATH.resolve(ROAD_EDGE_LIST_FILE_NAME));
+    // Bounding box of the delivery area, and the cells of about 55 m by 37 m in which the routability of the
+    // locations is learned from the API answers
+    public static final double SERVICE_AREA_MIN_LATITUDE = 48.6199;
+    public static final double SERVICE_AREA_MAX_LATITUDE = 48.80406;
+    public static final double SERVICE_AREA_MIN_LONGITUDE = 1.98761;
+    public static final double SERVICE_AREA_MAX_LONGITUDE = 2.255694;
+    private static final double ROUTABILITY_CELL_DEGREES = 0.0005;
+    private static final RoutabilityMap routability =
+            RoutabilityMap.open(FILE_PATH.resolve(ROUTABILITY_FILE_NAME), SERVICE_AREA_MIN_LATITUDE,
+                    SERVICE_AREA_MAX_LATITUDE, SERVICE_AREA_MIN_LONGITUDE, SERVICE_AREA_MAX_LONGITUDE,
+                    ROUTABILITY_CELL_DEGREES);
+    // Travel times between the pizzeria and the whole delivery area, built offline, see IsochroneGridBuilder
+    public static final Path ISOCHRONE_GRID_PATH = FILE_PATH.resolve(ISOCHRONE_GRID_FILE_NAME);
+    private static final IsochroneGrid isochrones = openIsochrones();
+    // Points the API calls to another server, e.g. a self-hosted ORS instance or a stub in the tests
+    public static final String API_BASE_URL_PROPERTY = "ors.baseUrl";
+    private static final String DEFAULT_API_BASE_URL = "https://api.openrouteservice.org";
+    // Quotas of the free ORS plan, per endpoint
+    private static final int DIRECTIONS_REQUESTS_PER_MINUTE = 40;
+    private static final int MATRIX_REQUESTS_PER_MINUTE = 40;
+    private static final int API_FAILURE_THRESHOLD = 5; // consecutive failures before the breaker opens
     private static final int API_COOLDOWN_TIME_MS = 2 * 60 * 1000; // 2 minutes in milliseconds
+    private static final ApiGuard directionsGuard =
+            new ApiGuard(DIRECTIONS_REQUESTS_PER_MINUTE, API_FAILURE_THRESHOLD, API_COOLDOWN_TIME_MS);
+    private static final ApiGuard matrixGuard =
+            new ApiGuard(MATRIX_REQUESTS_PER_MINUTE, API_FAILURE_THRESHOLD, API_COOLDOWN_TIME_MS);
+    // One HTTP client for every directions call, connections are kept alive between calls
+    private static final RouteClient routeClient =
+            new RouteClient(GPS::apiBaseUrl, ApiConfig.OPENROUTE_API_KEY, directionsGuard);
 
     /**
      * Calls the OpenRouteService API to obtain the route between two GPS locations.
@@ -42,123 +95,384 @@ public record GPS(double latitude, double longitude) implements Serializable {
      * @param source      The source GPS location.
      * @param destination The destination GPS location.
      * @return The JSON response from the OpenRouteService API.
-     * @throws Exception If an error occurs during the API call.
+     * @throws Exception If an error occurs during the API call, a {@link RateLimitException} if the quota is used up
+     *                   or the API is unavailable.
      */
     public static String callOpenRouteServiceApi(GPS source, GPS destination) throws Exception {
-        // Check if the API is in cooldown
-        if (isApiInCooldown) {
-            throw new IOException("API is in cooldown");
+        // A location the API already failed to route would only fail again, and use up a request of the quota
+        for (GPS location : new GPS[]{source, destination}) {
+            if (routability.isKnownUnroutable(location)) {
+                throw new UnroutablePointException("No road known near " + location, location);
+            }
         }
-        // Set up the URL and open a connection
-        HttpURLConnection conn = getHttpURLConnection();
-
-        // Create JSON payload with coordinates
-        JSONObject jsonPayload = new JSONObject();
-        jsonPayload.put("coordinates", new double[][]{
-                {source.longitude, source.latitude},
-                {destination.longitude, destination.latitude}
-        });
-
-        // Send request
-        try (OutputStream os = conn.getOutputStream()) {
-            byte[] input = jsonPayload.toString().getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
+        try {
+            String response = routeClient.directions(source, destination).join();
+            if (RouteClient.parseSummary(response) != null) {
+                routability.recordRoutable(source);
+                routability.recordRoutable(destination);
+            }
+            return response;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UnroutablePointException unroutable) {
+                routability.recordUnroutable(unroutable.location());
+            }
+            throw e.getCause() instanceof Exception cause ? cause : e;
         }
+    }
 
-        // Now check the response code
-        int responseCode = conn.getResponseCode();
-        if (responseCode == 429) {
-            startApiCooldown();
-            throw new IOException("API rate limit exceeded. Waiting before retrying...");
-        }
+    /**
+     * Checks whether the API is known to find no road near a location, from the answers to the previous requests.
+     *
+     * @param location The location.
+     * @return True if the location, or every location tried in its part of the delivery area, could not be routed.
+     */
+    public static boolean isKnownUnroutable(GPS location) {
+        return routability.isKnownUnroutable(location);
+    }
 
-        if (responseCode != HttpURLConnection.HTTP_OK) {
-            // throw an exception and the message from the API
-            throw new IOException("HTTP error code: " + responseCode + ", message: " + conn.getResponseMessage());
-        }
+    /**
+     * Gets the location to send to the API in place of another: itself, unless it is known to be unroutable.
+     *
+     * @param location The location.
+     * @return The location, the center of the nearest area known to be routable, or null if there is none.
+     */
+    private static GPS routableLocation(GPS location) {
+        return routability.isKnownUnroutable(location) ? routability.nearestRoutable(location) : location;
+    }
 
-        // Read and return response
-        StringBuilder response = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(),
-                StandardCharsets.UTF_8))) {
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
-            }
-        }
+    /**
+     * Gets the base URL of the OpenRouteService API, which can be overridden with the
+     * {@value #API_BASE_URL_PROPERTY} system property.
+     *
+     * @return The base URL, without trailing slash.
+     */
+    private static String apiBaseUrl() {
+        return System.getProperty(API_BASE_URL_PROPERTY, DEFAULT_API_BASE_URL);
+    }
 
-        return response.toString();
+    /**
+     * Gets the hit, miss and eviction counts of the route cache, to size it against real traffic.
+     *
+     * @return The counts since the start of the application.
+     */
+    public static RouteCache.Stats routeCacheStats() {
+        return memoizationCacheRoute.stats();
     }
 
-    @NotNull
-    private static HttpURLConnection getHttpURLConnection() throws IOException {
-        URL url = new URL("https://api.openrouteservice.org/v2/directions/driving-car");
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-
-        // Set request method and headers
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Authorization", ApiConfig.OPENROUTE_API_KEY);
-        conn.setRequestProperty("Accept", "application/json");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setDoOutput(true);
-        return conn;
+    /**
+     * Loads the isochrone grid, if it has been built.
+     *
+     * @return The grid, or null if there is none.
+     */
+    private static IsochroneGrid openIsochrones() {
+        if (!ISOCHRONE_GRID_PATH.toFile().exists()) {
+            return null;
+        }
+        try {
+            return IsochroneGrid.read(ISOCHRONE_GRID_PATH);
+        } catch (IOException e) {
+            Logger logger = LoggerFactory.getLogger(GPS.class);
+            logger.warn("Unable to load the isochrone grid, the legs of the hub will be routed: {}", e.getMessage());
+            return null;
+        }
     }
 
     /**
-     * Calculates the time required to travel from this GPS location to another.
+     * Creates the snapper of the route cache, when a radius is set with the {@value #SNAP_RADIUS_PROPERTY} system
+     * property.
      *
-     * @param otherGPS The destination GPS location.
-     * @return The calculated travel time in minutes.
+     * @return The snapper seeded with the cached endpoints, or null if snapping is disabled.
      */
-    public double timeTravel(GPS otherGPS) {
-        String key = this + "|" + otherGPS;
+    private static LocationSnapper openSnapper() {
+        double radiusMeters = Double.parseDouble(System.getProperty(SNAP_RADIUS_PROPERTY, "0"));
+        return radiusMeters > 0 ? LocationSnapper.seed(memoizationCacheRoute, radiusMeters) : null;
+    }
 
-        synchronized (fileLock) {
-            if (memoizationCacheTime.containsKey(key)) {
-                return memoizationCacheTime.get(key);
-            }
-        }
+    /**
+     * Gets the route lookups split by exact and snapped locations, to measure what snapping saves.
+     *
+     * @return The counts since the start of the application, or null if snapping is disabled.
+     */
+    public static LocationSnapper.Stats snapStats() {
+        return snapper == null ? null : snapper.stats();
+    }
 
-        try {
-            // Call the API and parse the response
-            String response = callOpenRouteServiceApi(this, otherGPS);
-            JSONObject jsonResponse = new JSONObject(response);
-            JSONArray routes = jsonResponse.getJSONArray("routes");
+    /**
+     * Gets the key of a location in the route cache: its representative when snapping is enabled.
+     *
+     * @param location The location.
+     * @return The packed key.
+     */
+    private static long cacheKey(GPS location) {
+        long packed = RouteKey.pack(location);
+        return snapper == null ? packed : snapper.snap(packed);
+    }
 
-            // Extract duration from the first route in the response
-            if (!routes.isEmpty()) {
-                JSONObject firstRoute = routes.getJSONObject(0);
-                JSONObject summary = firstRoute.getJSONObject("summary");
+    /**
+     * Looks up the time and the distance of a route in the cache.
+     *
+     * @param from   The origin.
+     * @param to     The destination.
+     * @param cached Receives the cached values.
+     * @return True if both values are cached.
+     */
+    private static boolean lookupRoute(GPS from, GPS to, float[] cached) {
+        long fromKey = cacheKey(from);
+        long toKey = cacheKey(to);
+        boolean hit = memoizationCacheRoute.get(fromKey, toKey, cached)
+                && !Float.isNaN(cached[TIME_FIELD]) && !Float.isNaN(cached[DISTANCE_FIELD]);
+        recordLookup(from, to, fromKey, toKey, hit);
+        return hit;
+    }
 
-                double duration = round(summary.getDouble("duration") / 60);  //divided by 60 because the APIs value is given in seconds
+    /**
+     * Looks up one value of a route in the cache.
+     *
+     * @param from  The origin.
+     * @param to    The destination.
+     * @param field The index of the value.
+     * @return The value, NaN if it is not cached.
+     */
+    private static float lookupRouteValue(GPS from, GPS to, int field) {
+        long fromKey = cacheKey(from);
+        long toKey = cacheKey(to);
+        float value = memoizationCacheRoute.get(fromKey, toKey, field);
+        recordLookup(from, to, fromKey, toKey, !Float.isNaN(value));
+        return value;
+    }
+
+    /**
+     * Counts a lookup as exact or snapped, when snapping is enabled.
+     *
+     * @param from    The origin.
+     * @param to      The destination.
+     * @param fromKey The key the origin was looked up with.
+     * @param toKey   The key the destination was looked up with.
+     * @param hit     True if the route was cached.
+     */
+    private static void recordLookup(GPS from, GPS to, long fromKey, long toKey, boolean hit) {
+        if (snapper != null) {
+            snapper.recordLookup(fromKey != RouteKey.pack(from) || toKey != RouteKey.pack(to), hit);
+        }
+    }
 
-                synchronized (fileLock) {
-                    memoizationCacheTime.put(key, duration);
+    /**
+     * Fetches in bulk the routes between every pair of the given locations that are missing from the cache, through
+     * the matrix endpoint of the API. The time and the distance of each route come from the same response, so the
+     * solvers then find every leg of the dispatch in the cache instead of sending one directions request per pair.
+     *
+     * The local road network, if any, is queried first, one origin to every destination at a time.
+     *
+     * @param locations The locations of a dispatch, duplicates are ignored.
+     * @return The number of matrix requests sent.
+     */
+    public static int prefetchRoutes(Collection<GPS> locations) {
+        if (localRouter != null) {
+            List<GPS> distinctLocations = new ArrayList<>(new LinkedHashSet<>(locations));
+            for (GPS from : distinctLocations) {
+                RouteFact[] routes = localRouter.routes(from, distinctLocations);
+                for (int i = 0; i < routes.length; i++) {
+                    GPS to = distinctLocations.get(i);
+                    if (routes[i] != null && !from.equals(to) && isRouteMissing(from, to)) {
+                        cacheRoute(from, to, routes[i]);
+                    }
                 }
+            }
+        }
+        OpenRouteServiceMatrix matrixClient = new OpenRouteServiceMatrix(apiBaseUrl(), ApiConfig.OPENROUTE_API_KEY,
+                OpenRouteServiceMatrix.DEFAULT_MAX_ELEMENTS, matrixGuard);
+        try {
+            return matrixClient.fetch(new ArrayList<>(new LinkedHashSet<>(locations)), GPS::isRouteMissing,
+                    (from, to, durationSeconds, distanceMeters) -> {
+                        // Same rounding as the directions path: whole minutes and whole kilometers
+                        cacheRoute(from, to, new RouteFact(round(durationSeconds / 60), round(distanceMeters / 1000)));
+                    });
+        } catch (RateLimitException rateLimitException) {
+            return 0; // The breaker of the matrix endpoint is now open
+        } catch (Exception exception) {
+            // The routes that could not be fetched fall back to the directions calls
+            Logger logger = LoggerFactory.getLogger(GPS.class);
+            logger.error("Exception occurred while fetching the route matrix", exception);
+            return 0;
+        }
+    }
 
-                return duration;
+    /**
+     * Gets the travel times between a hub and many locations, to build an {@link IsochroneGrid} offline. Each time
+     * comes from the local road network, else from the route cache, else from the matrix endpoint of the API; the
+     * routes fetched are not cached, they are only asked once per grid.
+     *
+     * @param hub       The hub.
+     * @param locations The locations.
+     * @param outbound  True for the times from the hub to the locations, false for the times back to the hub.
+     * @return The time of each location in minutes, NaN if it could not be routed or the API quota ran out.
+     */
+    public static float[] hubLegMinutes(GPS hub, List<GPS> locations, boolean outbound) {
+        float[] minutes = new float[locations.size()];
+        RouteFact[] localRoutes = localRouter == null || !outbound ? null : localRouter.routes(hub, locations);
+        HashMap<GPS, Integer> missing = new HashMap<>();
+        for (int i = 0; i < minutes.length; i++) {
+            GPS location = locations.get(i);
+            if (location.equals(hub)) {
+                continue; // Zero minutes
             }
-        } catch (IOException ioException) {
-            // Log network or I/O related exceptions if the API is not in cooldown
-            if (!isApiInCooldown) {
-                Logger logger = LoggerFactory.getLogger(GPS.class);
-                logger.error("Network or I/O Exception occurred", ioException);
+            RouteFact localRoute = localRoutes != null ? localRoutes[i]
+                    : localRouter != null ? localRouter.route(location, hub) : null;
+            minutes[i] = localRoute != null ? (float) localRoute.duration()
+                    : outbound ? memoizationCacheRoute.peek(cacheKey(hub), cacheKey(location), TIME_FIELD)
+                    : memoizationCacheRoute.peek(cacheKey(location), cacheKey(hub), TIME_FIELD);
+            if (minutes[i] < 0) {
+                minutes[i] = Float.NaN; // The API has no route for the leg, asking again would not find one
+            } else if (Float.isNaN(minutes[i])) {
+                missing.put(location, i);
             }
-            return calculateCrowTravelTime(otherGPS);
-        } catch (JSONException jsonException) {
-            // Log JSON parsing exceptions
-            Logger logger = LoggerFactory.getLogger(GPS.class);
-            logger.error("JSON Parsing Exception occurred", jsonException);
-            return calculateCrowTravelTime(otherGPS);
-        } catch (Exception generalException) {
-            // Log any other exceptions
+        }
+        if (missing.isEmpty()) {
+            return minutes;
+        }
+
+        List<GPS> matrixLocations = new ArrayList<>();
+        matrixLocations.add(hub);
+        missing.keySet().stream().filter(location -> !location.equals(hub)).forEach(matrixLocations::add);
+        OpenRouteServiceMatrix matrixClient = new OpenRouteServiceMatrix(apiBaseUrl(), ApiConfig.OPENROUTE_API_KEY,
+                OpenRouteServiceMatrix.DEFAULT_MAX_ELEMENTS, matrixGuard);
+        try {
+            // Only the legs of the hub are needed, so only the blocks holding the hub are requested
+            matrixClient.fetch(matrixLocations,
+                    (from, to) -> outbound ? from.equals(hub) && missing.containsKey(to)
+                            : to.equals(hub) && missing.containsKey(from),
+                    (from, to, durationSeconds, distanceMeters) ->
+                            minutes[missing.get(outbound ? to : from)] = (float) (durationSeconds / 60));
+        } catch (RateLimitException rateLimitException) {
+            // The breaker of the matrix endpoint is now open, the remaining times are left unknown
+        } catch (Exception exception) {
             Logger logger = LoggerFactory.getLogger(GPS.class);
-            logger.error("General Exception occurred", generalException);
-            return calculateCrowTravelTime(otherGPS);
+            logger.error("Exception occurred while fetching the legs of the hub", exception);
         }
-        return -1;
+        return minutes;
+    }
 
+    /**
+     * Stores a route in the cache, and teaches its detour and speed to the fallback estimates.
+     *
+     * @param from  The origin.
+     * @param to    The destination.
+     * @param route The route.
+     */
+    private static void cacheRoute(GPS from, GPS to, RouteFact route) {
+        // One record for both values, so the time and the distance of a route cannot drift apart
+        memoizationCacheRoute.put(cacheKey(from), cacheKey(to), (float) route.duration(),
+                (float) route.distance());
+        fallbackEstimator.observe(from, to, route.duration(), route.distance());
+    }
+
+    /**
+     * Brings the route from this GPS location to another into the cache, waiting for the API if it is missing.
+     *
+     * @param destination The destination GPS location.
+     * @return Whether the route was already cached, has been fetched, has no route, or could not be fetched because
+     * the API is unavailable.
+     */
+    public RoutePrefetcher.Outcome prefetchRoute(GPS destination) {
+        if (!isRouteMissing(this, destination)) {
+            return RoutePrefetcher.Outcome.CACHED;
+        }
+        if (routableLocation(this) == null || routableLocation(destination) == null) {
+            return RoutePrefetcher.Outcome.NO_ROUTE; // Nowhere near a known road, the solvers get an estimate
+        }
+        fetchRouteFact(destination);
+        float[] cached = new float[ROUTE_VALUE_COUNT];
+        if (isRouteMissing(this, destination, cached)) {
+            return RoutePrefetcher.Outcome.UNAVAILABLE; // Only an estimate came back
+        }
+        return cached[TIME_FIELD] < 0 ? RoutePrefetcher.Outcome.NO_ROUTE : RoutePrefetcher.Outcome.FETCHED;
+    }
+
+    /**
+     * Checks whether the time or the distance of a route is missing from the caches. The check is not counted as a
+     * lookup of the cache.
+     *
+     * @param from The origin.
+     * @param to   The destination.
+     * @return True if the route has to be fetched.
+     */
+    private static boolean isRouteMissing(GPS from, GPS to) {
+        return isRouteMissing(from, to, new float[ROUTE_VALUE_COUNT]);
+    }
+
+    /**
+     * Checks whether the time or the distance of a route is missing from the caches, and reads them if not. The check
+     * is not counted as a lookup of the cache.
+     *
+     * @param from   The origin.
+     * @param to     The destination.
+     * @param cached Receives the cached values.
+     * @return True if the route has to be fetched.
+     */
+    private static boolean isRouteMissing(GPS from, GPS to, float[] cached) {
+        return !memoizationCacheRoute.peek(cacheKey(from), cacheKey(to), cached)
+                || Float.isNaN(cached[TIME_FIELD]) || Float.isNaN(cached[DISTANCE_FIELD]);
+    }
+
+    /**
+     * Gets the route of a cache record. A record with negative values remembers that the API has no route between
+     * the two locations; the solvers get an estimate for it instead.
+     *
+     * @param from   The origin.
+     * @param to     The destination.
+     * @param cached The cached values.
+     * @return The route, or an estimate.
+     */
+    private static RouteFact cachedRoute(GPS from, GPS to, float[] cached) {
+        return cached[TIME_FIELD] < 0 ? fallbackEstimator.estimate(from, to)
+                : new RouteFact(cached[TIME_FIELD], cached[DISTANCE_FIELD]);
+    }
+
+    /**
+     * Gets the travel time and the distance from this GPS location to another.
+     * Both values come from the same cache record; on a miss, one API call fills both of them.
+     *
+     * @param destination The destination GPS location.
+     * @return The route, or an estimate that is not cached if the API cannot be reached.
+     */
+    public RouteFact routeFact(GPS destination) {
+        float[] cached = new float[ROUTE_VALUE_COUNT];
+        if (lookupRoute(this, destination, cached)) {
+            return cachedRoute(this, destination, cached);
+        }
+        return fetchRouteFact(destination);
+    }
+
+    /**
+     * Calculates the time required to travel from this GPS location to another.
+     *
+     * @param otherGPS The destination GPS location.
+     * @return The calculated travel time in minutes.
+     */
+    public double timeTravel(GPS otherGPS) {
+        float cachedTime = lookupRouteValue(this, otherGPS, TIME_FIELD);
+        if (Float.isNaN(cachedTime)) {
+            return fetchRouteFact(otherGPS).duration();
+        }
+        return cachedTime < 0 ? fallbackEstimator.estimate(this, otherGPS).duration() : cachedTime;
+    }
 
+    /**
+     * Estimates the time required to travel from this GPS location to another. A leg to or from the hub of the
+     * isochrone grid is interpolated from the grid, without the route cache or the network; any other leg, or a
+     * location the grid does not cover, is answered by {@link #timeTravel(GPS)}.
+     *
+     * @param otherGPS The destination GPS location.
+     * @return The estimated travel time in minutes.
+     */
+    public double estimateTimeTravel(GPS otherGPS) {
+        double minutes = Double.NaN;
+        if (isochrones != null && equals(isochrones.hub())) {
+            minutes = isochrones.outboundMinutes(otherGPS);
+        } else if (isochrones != null && otherGPS.equals(isochrones.hub())) {
+            minutes = isochrones.inboundMinutes(this);
+        }
+        return Double.isNaN(minutes) ? timeTravel(otherGPS) : minutes;
     }
 
     /**
@@ -169,53 +483,102 @@ public record GPS(double latitude, double longitude) implements Serializable {
      */
     public double calculateDistance(GPS destination) {
         // Check if the distance is already memoized
-        String memoizationKey = this + "|" + destination;
-        synchronized (fileLock) {
-            if (memoizationCacheDistance.containsKey(memoizationKey)) {
-                return memoizationCacheDistance.get(memoizationKey);
-            }
+        float cachedDistance = lookupRouteValue(this, destination, DISTANCE_FIELD);
+        if (Float.isNaN(cachedDistance)) {
+            return fetchRouteFact(destination).distance();
         }
+        return cachedDistance < 0 ? fallbackEstimator.estimate(this, destination).distance() : cachedDistance;
+    }
 
-        // If not memoized, calculate using the API
-        double distance = -1;
-
-        try {
-            String response = callOpenRouteServiceApi(this, destination);
-            JSONObject jsonResponse = new JSONObject(response);
-            JSONArray routes = jsonResponse.getJSONArray("routes");
+    /**
+     * Gets the travel time and the distance from this GPS location to another without blocking.
+     * A cached route completes right away, and so does a route of the local road network; otherwise the route is
+     * fetched through the shared HTTP client and cached
+     * when the response arrives. Concurrent calls for the same uncached route share a single request.
+     * A location the API is known not to route is replaced by the nearest location it routes, and a location it
+     * fails to route is remembered so it is not sent again. A pair the API finds no route between is cached with
+     * negative values, so it is not sent again either, and answered with an estimate.
+     *
+     * @param destination The destination GPS location.
+     * @return The route, or an estimate that is not cached if the API cannot be reached.
+     */
+    public CompletableFuture<RouteFact> routeFactAsync(GPS destination) {
+        float[] cached = new float[ROUTE_VALUE_COUNT];
+        if (lookupRoute(this, destination, cached)) {
+            return CompletableFuture.completedFuture(cachedRoute(this, destination, cached));
+        }
+        return fetchRouteFactAsync(destination);
+    }
 
-            if (!routes.isEmpty()) {
-                JSONObject firstRoute = routes.getJSONObject(0);
-                JSONObject summary = firstRoute.getJSONObject("summary");
+    /**
+     * Gets a route the cache lookup missed, from the local road network or the API, without blocking.
+     * The cache is checked again, without counting a second lookup, in case the route was stored meanwhile.
+     *
+     * @param destination The destination GPS location.
+     * @return The route, or an estimate that is not cached if the API cannot be reached.
+     */
+    private CompletableFuture<RouteFact> fetchRouteFactAsync(GPS destination) {
+        float[] cached = new float[ROUTE_VALUE_COUNT];
+        if (!isRouteMissing(this, destination, cached)) {
+            return CompletableFuture.completedFuture(cachedRoute(this, destination, cached));
+        }
+        RouteFact localRoute = localRouter == null ? null : localRouter.route(this, destination);
+        if (localRoute != null) {
+            cacheRoute(this, destination, localRoute);
+            return CompletableFuture.completedFuture(localRoute);
+        }
 
-                // Extract distance from the first route in the response
-                distance = round(summary.getDouble("distance") / 1000); //divided by 1000 because the APIs value is given in meters
+        GPS source = routableLocation(this);
+        GPS target = routableLocation(destination);
+        if (source == null || target == null) {
+            // Nowhere near a known road
+            return CompletableFuture.completedFuture(fallbackEstimator.estimate(this, destination));
+        }
 
-                // Memoize the calculated distance
-                synchronized (fileLock) {
-                    memoizationCacheDistance.put(memoizationKey, distance);
+        // A request the guard rejects fails right away, so the caller gets the estimate without waiting
+        return routeClient.fetch(source, target).handle((fact, error) -> {
+            if (error == null) {
+                if (fact == null) {
+                    // The API found no route between the two locations: remembered like a route, so the pair is not
+                    // sent again; the negative values keep it out of the fallback fit, and never leave this class
+                    if (isRouteMissing(this, destination)) {
+                        cacheRoute(this, destination, new RouteFact(-1, -1));
+                    }
+                    return fallbackEstimator.estimate(this, destination);
+                }
+                routability.recordRoutable(source);
+                routability.recordRoutable(target);
+                // Coalesced callers all get the same fact, only the first one needs to store it
+                if (isRouteMissing(this, destination)) {
+                    cacheRoute(this, destination, fact);
                 }
+                return fact;
             }
-        } catch (IOException ioException) {
-            // Log network or I/O related exceptions if the API is not in cooldown
-            if (!isApiInCooldown) {
+
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            // Quota used up or breaker open: the estimate is the expected answer, nothing to log. An unroutable
+            // location is remembered, the next requests go to the nearest routable location instead
+            if (cause instanceof UnroutablePointException unroutable) {
+                routability.recordUnroutable(unroutable.location());
+            } else if (!(cause instanceof RateLimitException)) {
+                // Network or I/O related exceptions include the timeouts
                 Logger logger = LoggerFactory.getLogger(GPS.class);
-                logger.error("Network or I/O Exception occurred", ioException);
+                logger.error(cause instanceof IOException ? "Network or I/O Exception occurred"
+                        : "General Exception occurred", cause);
             }
-            return calculateCrowFliesDistance(destination);
-        } catch (JSONException jsonException) {
-            Logger logger = LoggerFactory.getLogger(GPS.class);
-            logger.error("JSON Parsing Exception occurred while calculating distance", jsonException);
-            return calculateCrowFliesDistance(destination);
-        } catch (Exception generalException) {
-            Logger logger = LoggerFactory.getLogger(GPS.class);
-            logger.error("General Exception occurred while calculating distance", generalException);
-            return calculateCrowFliesDistance(destination);
-        }
-
-        return distance;
+            return fallbackEstimator.estimate(this, destination);
+        });
     }
 
+    /**
+     * Fetches a route the cache lookup missed and waits for it.
+     *
+     * @param destination The destination GPS location.
+     * @return The route, or an estimate that is not cached if the API cannot be reached.
+     */
+    private RouteFact fetchRouteFact(GPS destination) {
+        return fetchRouteFactAsync(destination).join();
+    }
 
     /**
      * Calculates the distance between two GPS locations using the Haversine formula.
@@ -223,7 +586,7 @@ public record GPS(double latitude, double longitude) implements Serializable {
      * @param destination The destination GPS location.
      * @return The calculated distance in kilometers.
      */
-    private double calculateCrowFliesDistance(GPS destination) {
+    double calculateCrowFliesDistance(GPS destination) {
         // Earth's radius in kilometers
         double earthRadius = 6371;
 
@@ -251,14 +614,14 @@ public record GPS(double latitude, double longitude) implements Serializable {
      * Calculates the travel time between two GPS locations based on scooter speed.
      *
      * @param destination The destination GPS location.
-     * @return The calculated travel time in hours.
+     * @return The calculated travel time in minutes, like the cached travel times.
      */
     public double calculateCrowTravelTime(GPS destination) {
         double travelTime = -1;
         try {
             double distance = calculateCrowFliesDistance(destination);
             // Calculate travel time based on scooter speed
-            travelTime = distance / SCOOTER_SPEED_KMH;
+            travelTime = distance / SCOOTER_SPEED_KMH * 60;
         } catch (Exception e) {
             // Log exceptions
             Logger logger = LoggerFactory.getLogger(GPS.class);
@@ -268,25 +631,6 @@ public record GPS(double latitude, double longitude) implements Serializable {
         return travelTime;
     }
 
-    /**
-     * Initiates a cooldown period for the OpenRouteService API.
-     */
-    private static void startApiCooldown() {
-        isApiInCooldown = true;
-
-        new Thread(() -> {
-            try {
-                Thread.sleep(API_COOLDOWN_TIME_MS);
-            } catch (InterruptedException e) {
-                Logger logger = LoggerFactory.getLogger(GPS.class);
-                logger.error("Exception occurred while waiting for API cooldown", e);
-                isApiInCooldown = false;
-                Thread.currentThread().interrupt();
-            }
-            isApiInCooldown = false;
-        }).start();
-    }
-
     /**
      * Returns a string representation of the GPS coordinates.
      *
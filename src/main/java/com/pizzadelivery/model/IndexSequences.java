@@ -0,0 +1,316 @@
+package com.pizzadelivery.model;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy streams of the permutations and combinations of indexes, for the exhaustive searches.
+ * <p>
+ * A sequence is generated only when the stream asks for it, from the previous one, so walking all of them takes
+ * constant memory instead of one list per sequence. Both streams are in lexicographic order, and they are sized and
+ * splittable: a split jumps directly to the middle of its range by unranking it, so a parallel stream spreads evenly
+ * over the cores and still gives the sequences in the same order.
+ * <p>
+ * Each element is a new {@code int[]}, so it can be kept by the consumer.
+ *
+ * @author Team
+ */
+public final class IndexSequences {
+    /**
+     * The largest number of indexes that can be permuted: 20! is the largest factorial that fits in a long.
+     */
+    public static final int MAX_PERMUTATION_SIZE = 20;
+
+    /**
+     * The number of sequences under which a range is no longer split, so a parallel task is not smaller than the
+     * overhead of forking it.
+     */
+    private static final long MIN_SPLIT_SIZE = 1024;
+
+    private IndexSequences() {
+    }
+
+    /**
+     * Streams the permutations of {@code 0 .. n-1}.
+     *
+     * @param n The number of indexes, at most {@link #MAX_PERMUTATION_SIZE}.
+     * @return The n! permutations in lexicographic order, one for n = 0.
+     * @throws IllegalArgumentException If n is negative or too large.
+     */
+    public static Stream<int[]> permutations(int n) {
+        if (n < 0 || n > MAX_PERMUTATION_SIZE) {
+            throw new IllegalArgumentException("Cannot permute " + n + " indexes, the limit is "
+                    + MAX_PERMUTATION_SIZE);
+        }
+        return StreamSupport.stream(new PermutationSpliterator(n, 0, factorial(n)), false);
+    }
+
+    /**
+     * Streams the combinations of k indexes among {@code 0 .. n-1}, each in increasing order.
+     *
+     * @param n The number of indexes.
+     * @param k The size of a combination.
+     * @return The C(n, k) combinations in lexicographic order, one for k = 0.
+     * @throws IllegalArgumentException If k is not between 0 and n, or C(n, k) does not fit in a long.
+     */
+    public static Stream<int[]> combinations(int n, int k) {
+        if (k < 0 || k > n) {
+            throw new IllegalArgumentException("Cannot choose " + k + " indexes among " + n);
+        }
+        return StreamSupport.stream(new CombinationSpliterator(n, k, 0, binomial(n, k)), false);
+    }
+
+    /**
+     * Calculates a factorial.
+     *
+     * @param n The number, at most {@link #MAX_PERMUTATION_SIZE}.
+     * @return n!
+     */
+    static long factorial(int n) {
+        long factorial = 1;
+        for (int i = 2; i <= n; i++) {
+            factorial *= i;
+        }
+        return factorial;
+    }
+
+    /**
+     * Calculates a binomial coefficient.
+     *
+     * @param n The size of the set.
+     * @param k The size of the subsets.
+     * @return C(n, k), 0 if k is not between 0 and n.
+     * @throws IllegalArgumentException If the coefficient does not fit in a long.
+     */
+    static long binomial(int n, int k) {
+        if (k < 0 || k > n) {
+            return 0;
+        }
+        k = Math.min(k, n - k);
+        long binomial = 1;
+        for (int i = 1; i <= k; i++) {
+            // C(n - k + i, i) = C(n - k + i - 1, i - 1) * (n - k + i) / i, always a whole number
+            long numerator = n - k + i;
+            long divisor = gcd(binomial, i);
+            long reduced = binomial / divisor;
+            long factor = numerator / (i / divisor);
+            if (reduced > Long.MAX_VALUE / factor) {
+                throw new IllegalArgumentException("C(" + n + ", " + k + ") does not fit in a long");
+            }
+            binomial = reduced * factor;
+        }
+        return binomial;
+    }
+
+    /**
+     * Calculates the greatest common divisor of two positive numbers.
+     *
+     * @param a The first number.
+     * @param b The second number.
+     * @return The greatest common divisor.
+     */
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+
+    /**
+     * The part of a lexicographic stream of sequences between two ranks.
+     */
+    private abstract static class RangeSpliterator implements Spliterator<int[]> {
+        protected final int[] current;
+        private long rank;
+        private long end;
+
+        /**
+         * Constructs a range.
+         *
+         * @param current The sequence at the first rank.
+         * @param rank    The rank of the first sequence.
+         * @param end     The rank after the last sequence.
+         */
+        RangeSpliterator(int[] current, long rank, long end) {
+            this.current = current;
+            this.rank = rank;
+            this.end = end;
+        }
+
+        /**
+         * Turns the current sequence into the next one in lexicographic order.
+         */
+        protected abstract void advance();
+
+        /**
+         * Creates the range of the sequences between two ranks.
+         *
+         * @param start The rank of the first sequence.
+         * @param end   The rank after the last sequence.
+         * @return The range.
+         */
+        protected abstract RangeSpliterator range(long start, long end);
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            if (rank >= end) {
+                return false;
+            }
+            int[] sequence = current.clone();
+            if (++rank < end) {
+                advance();
+            }
+            action.accept(sequence);
+            return true;
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            long size = end - rank;
+            if (size < 2 * MIN_SPLIT_SIZE) {
+                return null;
+            }
+            // The first half is handed out so the encounter order is kept, this range resumes at the middle
+            long middle = rank + size / 2;
+            RangeSpliterator prefix = range(rank, middle);
+            RangeSpliterator suffix = range(middle, end);
+            System.arraycopy(suffix.current, 0, current, 0, current.length);
+            rank = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - rank;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * Permutations of {@code 0 .. n-1} between two ranks.
+     */
+    private static final class PermutationSpliterator extends RangeSpliterator {
+        PermutationSpliterator(int n, long start, long end) {
+            super(unrankPermutation(n, start), start, end);
+        }
+
+        /**
+         * Gets the permutation at a rank, its digits in the factorial number system giving each element among the
+         * ones left.
+         *
+         * @param n    The number of indexes.
+         * @param rank The rank, below n!.
+         * @return The permutation.
+         */
+        private static int[] unrankPermutation(int n, long rank) {
+            int[] permutation = new int[n];
+            boolean[] used = new boolean[n];
+            for (int position = 0; position < n; position++) {
+                long block = factorial(n - 1 - position);
+                int skip = (int) (rank / block);
+                rank %= block;
+                int element = 0;
+                while (used[element] || skip > 0) {
+                    if (!used[element]) {
+                        skip--;
+                    }
+                    element++;
+                }
+                used[element] = true;
+                permutation[position] = element;
+            }
+            return permutation;
+        }
+
+        @Override
+        protected void advance() {
+            // Narayana's algorithm: swap the last ascent with its smallest larger successor, reverse the tail
+            int i = current.length - 2;
+            while (current[i] > current[i + 1]) {
+                i--;
+            }
+            int j = current.length - 1;
+            while (current[j] < current[i]) {
+                j--;
+            }
+            swap(i, j);
+            for (int left = i + 1, right = current.length - 1; left < right; left++, right--) {
+                swap(left, right);
+            }
+        }
+
+        private void swap(int i, int j) {
+            int element = current[i];
+            current[i] = current[j];
+            current[j] = element;
+        }
+
+        @Override
+        protected RangeSpliterator range(long start, long end) {
+            return new PermutationSpliterator(current.length, start, end);
+        }
+    }
+
+    /**
+     * Combinations of k indexes among {@code 0 .. n-1} between two ranks.
+     */
+    private static final class CombinationSpliterator extends RangeSpliterator {
+        private final int n;
+
+        CombinationSpliterator(int n, int k, long start, long end) {
+            super(unrankCombination(n, k, start), start, end);
+            this.n = n;
+        }
+
+        /**
+         * Gets the combination at a rank, skipping for each position the blocks of combinations that start with a
+         * smaller element.
+         *
+         * @param n    The number of indexes.
+         * @param k    The size of the combination.
+         * @param rank The rank, below C(n, k).
+         * @return The combination.
+         */
+        private static int[] unrankCombination(int n, int k, long rank) {
+            int[] combination = new int[k];
+            int element = 0;
+            for (int position = 0; position < k; position++) {
+                long block = binomial(n - 1 - element, k - 1 - position);
+                while (rank >= block) {
+                    rank -= block;
+                    element++;
+                    block = binomial(n - 1 - element, k - 1 - position);
+                }
+                combination[position] = element++;
+            }
+            return combination;
+        }
+
+        @Override
+        protected void advance() {
+            // Increment the last element that can still grow, the following ones come right after it
+            int k = current.length;
+            int i = k - 1;
+            while (current[i] == n - k + i) {
+                i--;
+            }
+            current[i]++;
+            for (int j = i + 1; j < k; j++) {
+                current[j] = current[j - 1] + 1;
+            }
+        }
+
+        @Override
+        protected RangeSpliterator range(long start, long end) {
+            return new CombinationSpliterator(n, current.length, start, end);
+        }
+    }
+}
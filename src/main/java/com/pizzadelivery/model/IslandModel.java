@@ -0,0 +1,213 @@
+package com.pizzadelivery.model;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * An island-model engine for the genetic solvers: several subpopulations, the islands, evolve side by side on the
+ * common fork-join pool, and every few generations the best individual of each island migrates to the next one.
+ * <p>
+ * The islands only share their best genomes, so each one keeps its own diversity while a good route found anywhere
+ * spreads to the others. An island runs as many generations as a single population would, so with one island per
+ * core the wall-clock time stays about the same while the search grows with the number of cores.
+ * <p>
+ * The operators stay with the solvers: an island is a population of a solver, with its own random generator and
+ * scratch arrays, and the engine only schedules the generations and the migrations.
+ * <p>
+ * A run stops at the first limit of its {@link Budget} reached: a number of generations, a wall-clock time, or every
+ * island having stalled, its best individual unchanged for a number of generations. An easy dispatch converges and
+ * stops early, a hard one keeps improving until its time is up.
+ *
+ * @author Team
+ */
+public final class IslandModel {
+    /**
+     * The number of generations between two migrations.
+     */
+    public static final int MIGRATION_INTERVAL = 10;
+
+    private IslandModel() {
+    }
+
+    /**
+     * The limits of a run.
+     *
+     * @param maxGenerations   The number of generations after which each island stops.
+     * @param stallGenerations The number of generations without improvement after which an island stops, until an
+     *                         immigrant improves it.
+     * @param timeLimit        The wall-clock time after which the run stops, or null for no limit.
+     */
+    public record Budget(int maxGenerations, int stallGenerations, Duration timeLimit) {
+        /**
+         * Validates the limits.
+         */
+        public Budget {
+            if (maxGenerations < 0) {
+                throw new IllegalArgumentException("The number of generations cannot be negative");
+            }
+            if (stallGenerations < 1) {
+                throw new IllegalArgumentException("The number of stalled generations must be at least 1");
+            }
+        }
+
+        /**
+         * Creates a budget of a fixed number of generations.
+         *
+         * @param generations The number of generations.
+         * @return The budget, without stall detection or time limit.
+         */
+        public static Budget generations(int generations) {
+            return new Budget(generations, Integer.MAX_VALUE, null);
+        }
+    }
+
+    /**
+     * A subpopulation of a genetic solver. An island is only used by one thread at a time.
+     */
+    public interface Island {
+        /**
+         * Breeds the next generation of the island.
+         *
+         * @return True if the best individual found by the island improved.
+         */
+        boolean evolve();
+
+        /**
+         * Gets the genome of the best individual, to migrate to another island.
+         *
+         * @return A copy of the genome.
+         */
+        int[] emigrant();
+
+        /**
+         * Replaces the worst individual of the island with an individual from another island.
+         *
+         * @param genome The genome of the individual, owned by the island from now on.
+         * @return True if the immigrant is better than the best individual found by the island.
+         */
+        boolean immigrate(int[] genome);
+    }
+
+    /**
+     * Gets the number of islands that keeps every core busy.
+     *
+     * @return The number of available processors.
+     */
+    public static int defaultIslandCount() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Evolves islands in parallel for a fixed number of generations, with a migration along a ring every
+     * {@link #MIGRATION_INTERVAL} generations.
+     *
+     * @param islands     The islands, with their first generation.
+     * @param generations The number of generations each island breeds.
+     * @param byBest      Orders the islands by their best individual, the best island first.
+     * @param <I>         The type of the islands.
+     * @return The island with the best individual.
+     */
+    public static <I extends Island> I evolve(List<I> islands, int generations, Comparator<? super I> byBest) {
+        return evolve(islands, Budget.generations(generations), byBest);
+    }
+
+    /**
+     * Evolves islands in parallel until the budget is spent, with a migration along a ring every
+     * {@link #MIGRATION_INTERVAL} generations. The time limit is checked before each generation, so a run can exceed
+     * it by the time of one generation.
+     *
+     * @param islands The islands, with their first generation.
+     * @param budget  The limits of the run.
+     * @param byBest  Orders the islands by their best individual, the best island first.
+     * @param <I>     The type of the islands.
+     * @return The island with the best individual.
+     */
+    public static <I extends Island> I evolve(List<I> islands, Budget budget, Comparator<? super I> byBest) {
+        long deadline = deadline(budget.timeLimit());
+        // The generations since the best individual of each island last improved
+        int[] stalledGenerations = new int[islands.size()];
+        int done = 0;
+        while (done < budget.maxGenerations() && !allStalled(stalledGenerations, budget)
+                && System.nanoTime() < deadline) {
+            int epoch = Math.min(MIGRATION_INTERVAL, budget.maxGenerations() - done);
+            IntStream.range(0, islands.size()).parallel().forEach(i -> {
+                Island island = islands.get(i);
+                for (int generation = 0; generation < epoch && stalledGenerations[i] < budget.stallGenerations()
+                        && System.nanoTime() < deadline; generation++) {
+                    stalledGenerations[i] = island.evolve() ? 0 : stalledGenerations[i] + 1;
+                }
+            });
+            done += epoch;
+            if (done < budget.maxGenerations()) {
+                migrate(islands, stalledGenerations);
+            }
+        }
+        I best = islands.get(0);
+        for (I island : islands) {
+            if (byBest.compare(island, best) < 0) {
+                best = island;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the time at which a run must stop.
+     *
+     * @param timeLimit The wall-clock time of the run, or null for no limit.
+     * @return The deadline in the time base of {@link System#nanoTime()}, {@link Long#MAX_VALUE} for no limit.
+     */
+    private static long deadline(Duration timeLimit) {
+        if (timeLimit == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Math.addExact(System.nanoTime(), timeLimit.toNanos());
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE; // Longer than the application will ever run
+        }
+    }
+
+    /**
+     * Checks whether every island has stalled.
+     *
+     * @param stalledGenerations The generations since the best individual of each island last improved.
+     * @param budget             The limits of the run.
+     * @return True if no island improved for the number of stalled generations of the budget.
+     */
+    private static boolean allStalled(int[] stalledGenerations, Budget budget) {
+        for (int stalled : stalledGenerations) {
+            if (stalled < budget.stallGenerations()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends the best individual of each island to the next island of the ring, in place of its worst individual.
+     * An island improved by its immigrant is no longer stalled.
+     *
+     * @param islands            The islands.
+     * @param stalledGenerations The generations since the best individual of each island last improved.
+     */
+    private static void migrate(List<? extends Island> islands, int[] stalledGenerations) {
+        if (islands.size() < 2) {
+            return;
+        }
+        // All the emigrants leave before any arrives, so the result does not depend on the order of the islands
+        List<int[]> emigrants = new ArrayList<>(islands.size());
+        for (Island island : islands) {
+            emigrants.add(island.emigrant());
+        }
+        for (int i = 0; i < islands.size(); i++) {
+            int next = (i + 1) % islands.size();
+            if (islands.get(next).immigrate(emigrants.get(i))) {
+                stalledGenerations[next] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.pizzadelivery.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Travel times between a hub, the pizzeria, and every point of the service area, precomputed on a regular grid so
+ * the first and last legs of a delivery are estimated without the route cache or the network.
+ * <p>
+ * The grid stores the time from the hub to each node and from each node back to the hub; a location is answered by
+ * bilinear interpolation between the four nodes around it. Nodes the routing could not reach are unknown and left out
+ * of the interpolation, and a location whose four nodes are unknown, or outside the grid, has no estimate.
+ * <p>
+ * The grid is built offline by {@link #build} and completed by {@link #fill} until every reachable node is known, then
+ * saved to a binary file, big-endian: an int magic, an int version, the hub (double latitude, double longitude), the
+ * grid (double minimum latitude, double minimum longitude, double step in degrees, int rows, int columns), then the
+ * outbound and the inbound times of the nodes row by row, as floats in minutes, NaN when unknown. Once built, the grid
+ * is read-only and thread-safe.
+ *
+ * @author Team
+ */
+public final class IsochroneGrid {
+    private static final int MAGIC = 0x50444947; // "PDIG"
+    private static final int VERSION = 1;
+
+    /**
+     * Gives the travel times between the hub and a batch of nodes, from whatever source is available.
+     */
+    @FunctionalInterface
+    public interface LegSource {
+        /**
+         * Gets travel times.
+         *
+         * @param hub      The hub.
+         * @param nodes    The nodes.
+         * @param outbound True for the times from the hub to the nodes, false for the times back to the hub.
+         * @return The time of each node in minutes, NaN where it is unknown.
+         */
+        float[] minutes(GPS hub, List<GPS> nodes, boolean outbound);
+    }
+
+    private final GPS hub;
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double stepDegrees;
+    private final int rows;
+    private final int columns;
+    private final float[] outboundMinutes;
+    private final float[] inboundMinutes;
+
+    /**
+     * Constructs a grid.
+     *
+     * @param hub             The hub.
+     * @param minLatitude     The latitude of the first row of nodes, in degrees.
+     * @param minLongitude    The longitude of the first column of nodes, in degrees.
+     * @param stepDegrees     The distance between two rows or two columns, in degrees.
+     * @param rows            The number of rows of nodes.
+     * @param columns         The number of columns of nodes.
+     * @param outboundMinutes The times from the hub to the nodes, row by row.
+     * @param inboundMinutes  The times from the nodes to the hub, row by row.
+     */
+    private IsochroneGrid(GPS hub, double minLatitude, double minLongitude, double stepDegrees, int rows, int columns,
+                          float[] outboundMinutes, float[] inboundMinutes) {
+        this.hub = hub;
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.stepDegrees = stepDegrees;
+        this.rows = rows;
+        this.columns = columns;
+        this.outboundMinutes = outboundMinutes;
+        this.inboundMinutes = inboundMinutes;
+    }
+
+    /**
+     * Builds the grid of a service area.
+     *
+     * @param hub          The hub.
+     * @param minLatitude  The south edge of the service area, in degrees.
+     * @param maxLatitude  The north edge of the service area, in degrees.
+     * @param minLongitude The west edge of the service area, in degrees.
+     * @param maxLongitude The east edge of the service area, in degrees.
+     * @param stepDegrees  The distance between two nodes, in degrees of latitude and of longitude.
+     * @param source       The source of the travel times.
+     * @return The grid, whose nodes may be partly unknown if the source could not answer them all, see {@link #fill}.
+     */
+    public static IsochroneGrid build(GPS hub, double minLatitude, double maxLatitude, double minLongitude,
+                                      double maxLongitude, double stepDegrees, LegSource source) {
+        // One more node than cells on each axis, so the edges of the area are covered; the tolerance keeps a rounding
+        // error of the division from adding a row or a column
+        int rows = (int) Math.ceil((maxLatitude - minLatitude) / stepDegrees - 1e-9) + 1;
+        int columns = (int) Math.ceil((maxLongitude - minLongitude) / stepDegrees - 1e-9) + 1;
+        if (rows < 2 || columns < 2) {
+            throw new IllegalArgumentException("The service area must be wider and higher than the grid step");
+        }
+        float[] outboundMinutes = new float[rows * columns];
+        float[] inboundMinutes = new float[rows * columns];
+        Arrays.fill(outboundMinutes, Float.NaN);
+        Arrays.fill(inboundMinutes, Float.NaN);
+        IsochroneGrid grid = new IsochroneGrid(hub, minLatitude, minLongitude, stepDegrees, rows, columns,
+                outboundMinutes, inboundMinutes);
+        grid.fill(source);
+        return grid;
+    }
+
+    /**
+     * Asks the source again for the unknown nodes, e.g. once the quota of the API is renewed.
+     *
+     * @param source The source of the travel times.
+     * @return The number of times still unknown; the nodes that cannot be routed always remain.
+     */
+    public int fill(LegSource source) {
+        return fill(source, outboundMinutes, true) + fill(source, inboundMinutes, false);
+    }
+
+    /**
+     * Asks the source for the unknown nodes of one direction.
+     *
+     * @param source   The source of the travel times.
+     * @param minutes  The times of the direction.
+     * @param outbound True for the times from the hub.
+     * @return The number of times still unknown in this direction.
+     */
+    private int fill(LegSource source, float[] minutes, boolean outbound) {
+        List<Integer> unknownNodes = new ArrayList<>();
+        List<GPS> locations = new ArrayList<>();
+        for (int node = 0; node < minutes.length; node++) {
+            if (Float.isNaN(minutes[node])) {
+                unknownNodes.add(node);
+                locations.add(location(node));
+            }
+        }
+        if (unknownNodes.isEmpty()) {
+            return 0;
+        }
+        float[] fetched = source.minutes(hub, locations, outbound);
+        int stillUnknown = 0;
+        for (int i = 0; i < unknownNodes.size(); i++) {
+            minutes[unknownNodes.get(i)] = fetched[i];
+            if (Float.isNaN(fetched[i])) {
+                stillUnknown++;
+            }
+        }
+        return stillUnknown;
+    }
+
+    /**
+     * Counts the unknown travel times.
+     *
+     * @return The number of outbound and inbound times that are unknown.
+     */
+    public int unknownCount() {
+        int unknown = 0;
+        for (int node = 0; node < outboundMinutes.length; node++) {
+            unknown += (Float.isNaN(outboundMinutes[node]) ? 1 : 0) + (Float.isNaN(inboundMinutes[node]) ? 1 : 0);
+        }
+        return unknown;
+    }
+
+    /**
+     * Loads a grid.
+     *
+     * @param path The grid file.
+     * @return The grid.
+     * @throws IOException If the file cannot be read or is not a grid.
+     */
+    public static IsochroneGrid read(Path path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not an isochrone grid: " + path);
+            }
+            int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported isochrone grid version " + version + ": " + path);
+            }
+            GPS hub = new GPS(input.readDouble(), input.readDouble());
+            double minLatitude = input.readDouble();
+            double minLongitude = input.readDouble();
+            double stepDegrees = input.readDouble();
+            int rows = input.readInt();
+            int columns = input.readInt();
+            if (rows < 2 || columns < 2 || (long) rows * columns > Integer.MAX_VALUE) {
+                throw new IOException("Invalid isochrone grid size " + rows + " x " + columns + ": " + path);
+            }
+            float[] outboundMinutes = readFloats(input, rows * columns);
+            float[] inboundMinutes = readFloats(input, rows * columns);
+            return new IsochroneGrid(hub, minLatitude, minLongitude, stepDegrees, rows, columns, outboundMinutes,
+                    inboundMinutes);
+        }
+    }
+
+    /**
+     * Saves the grid. The file is written next to the target and renamed over it atomically.
+     *
+     * @param path The grid file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tempFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeDouble(hub.latitude());
+                output.writeDouble(hub.longitude());
+                output.writeDouble(minLatitude);
+                output.writeDouble(minLongitude);
+                output.writeDouble(stepDegrees);
+                output.writeInt(rows);
+                output.writeInt(columns);
+                for (float minutes : outboundMinutes) {
+                    output.writeFloat(minutes);
+                }
+                for (float minutes : inboundMinutes) {
+                    output.writeFloat(minutes);
+                }
+            }
+            Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the hub of the grid.
+     *
+     * @return The hub.
+     */
+    public GPS hub() {
+        return hub;
+    }
+
+    /**
+     * Estimates the travel time from the hub to a location.
+     *
+     * @param location The location.
+     * @return The time in minutes, NaN if the location is outside the grid or its nodes are unknown.
+     */
+    public double outboundMinutes(GPS location) {
+        return interpolate(outboundMinutes, location);
+    }
+
+    /**
+     * Estimates the travel time from a location back to the hub.
+     *
+     * @param location The location.
+     * @return The time in minutes, NaN if the location is outside the grid or its nodes are unknown.
+     */
+    public double inboundMinutes(GPS location) {
+        return interpolate(inboundMinutes, location);
+    }
+
+    /**
+     * Interpolates the times of the four nodes around a location, weighting each known node by its closeness.
+     *
+     * @param minutes  The times of the direction.
+     * @param location The location.
+     * @return The time in minutes, NaN if the location is outside the grid or its nodes are unknown.
+     */
+    private double interpolate(float[] minutes, GPS location) {
+        double y = (location.latitude() - minLatitude) / stepDegrees;
+        double x = (location.longitude() - minLongitude) / stepDegrees;
+        if (!(y >= 0 && y <= rows - 1 && x >= 0 && x <= columns - 1)) {
+            return Double.NaN;
+        }
+        // The last row and column interpolate within the cell before them
+        int row = Math.min((int) y, rows - 2);
+        int column = Math.min((int) x, columns - 2);
+        double dy = y - row;
+        double dx = x - column;
+        int node = row * columns + column;
+        double weightedSum = 0;
+        double weightSum = 0;
+        for (int corner = 0; corner < 4; corner++) {
+            int cornerRow = corner >> 1;
+            int cornerColumn = corner & 1;
+            float value = minutes[node + cornerRow * columns + cornerColumn];
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            double weight = (cornerRow == 0 ? 1 - dy : dy) * (cornerColumn == 0 ? 1 - dx : dx);
+            weightedSum += weight * value;
+            weightSum += weight;
+        }
+        return weightSum > 0 ? weightedSum / weightSum : Double.NaN;
+    }
+
+    /**
+     * Gets the location of a node.
+     *
+     * @param node The index of the node, row by row.
+     * @return The location.
+     */
+    private GPS location(int node) {
+        return new GPS(minLatitude + (node / columns) * stepDegrees, minLongitude + (node % columns) * stepDegrees);
+    }
+
+    /**
+     * Reads an array of floats.
+     *
+     * @param input The stream.
+     * @param count The number of values.
+     * @return The values.
+     * @throws IOException If the stream cannot be read.
+     */
+    private static float[] readFloats(DataInputStream input, int count) throws IOException {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = input.readFloat();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,211 @@
+package com.pizzadelivery.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Answers route queries in-process from a contraction hierarchy of the road network of the delivery area, so the
+ * travel times do not depend on the quota, latency or availability of the API.
+ * A location is snapped to the nearest node of the network, within {@value #MAX_SNAP_KM} km; the legs between the
+ * locations and their nodes are timed at {@value #ACCESS_SPEED_KMH} km/h. Like the API results, the travel times and
+ * distances are rounded to whole minutes and kilometers, so they mix with the cached routes. The router is
+ * thread-safe.
+ *
+ * @author Team
+ */
+public final class LocalRouter {
+    private static final double MAX_SNAP_KM = 0.5; // Farther locations are left to the API
+    private static final double ACCESS_SPEED_KMH = 15; // Walking the scooter down a driveway or a pedestrian street
+    private static final double CELL_DEGREES = 0.01;
+
+    private final ContractionHierarchy hierarchy;
+    // Nodes by grid cell, to snap the locations
+    private final HashMap<Long, int[]> cells;
+
+    /**
+     * Constructs a router.
+     *
+     * @param hierarchy The preprocessed road network.
+     */
+    public LocalRouter(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+        this.cells = new HashMap<>();
+        for (int node = 0; node < hierarchy.nodeCount(); node++) {
+            long key = cellKey(row(hierarchy.latitude(node)), column(hierarchy.longitude(node)));
+            int[] cell = cells.get(key);
+            cell = cell == null ? new int[1] : Arrays.copyOf(cell, cell.length + 1);
+            cell[cell.length - 1] = node;
+            cells.put(key, cell);
+        }
+    }
+
+    /**
+     * Opens the router of the delivery area. The hierarchy file is loaded if it exists; otherwise the edge-list
+     * extract is preprocessed once and the hierarchy saved for the next starts.
+     *
+     * @param hierarchyPath The contraction hierarchy file.
+     * @param edgeListPath  The edge-list extract of the road network, see {@link RoadGraph}.
+     * @return The router, or null if neither file is available or readable.
+     */
+    public static LocalRouter open(Path hierarchyPath, Path edgeListPath) {
+        Logger logger = Logger.getLogger(LocalRouter.class.getName());
+        try {
+            if (Files.exists(hierarchyPath)) {
+                return new LocalRouter(ContractionHierarchy.read(hierarchyPath));
+            }
+            if (!Files.exists(edgeListPath)) {
+                return null;
+            }
+            ContractionHierarchy hierarchy = ContractionHierarchy.build(RoadGraph.read(edgeListPath));
+            try {
+                hierarchy.write(hierarchyPath);
+            } catch (IOException e) {
+                // The hierarchy is still usable, it will be rebuilt on the next start
+                logger.warning("Unable to save the contraction hierarchy: " + e.getMessage());
+            }
+            return new LocalRouter(hierarchy);
+        } catch (IOException e) {
+            logger.warning("Unable to load the road network, routes will come from the API: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds the fastest route between two locations.
+     *
+     * @param from The origin.
+     * @param to   The destination.
+     * @return The route, or null if a location is outside the network or the destination cannot be reached.
+     */
+    public RouteFact route(GPS from, GPS to) {
+        int fromNode = snap(from);
+        int toNode = snap(to);
+        if (fromNode < 0 || toNode < 0) {
+            return null;
+        }
+        return withAccessLegs(from, fromNode, to, toNode, hierarchy.route(fromNode, toNode));
+    }
+
+    /**
+     * Finds the fastest routes from one location to many, sharing the search from the origin.
+     *
+     * @param from The origin.
+     * @param to   The destinations.
+     * @return The route to each destination, as in {@link #route(GPS, GPS)}.
+     */
+    public RouteFact[] routes(GPS from, List<GPS> to) {
+        RouteFact[] routes = new RouteFact[to.size()];
+        int fromNode = snap(from);
+        if (fromNode < 0) {
+            return routes;
+        }
+        int[] toNodes = new int[to.size()];
+        for (int i = 0; i < toNodes.length; i++) {
+            toNodes[i] = snap(to.get(i));
+        }
+        // An unsnapped destination is searched as the origin itself and dropped below
+        RouteFact[] networkRoutes = hierarchy.routes(fromNode,
+                Arrays.stream(toNodes).map(node -> node < 0 ? fromNode : node).toArray());
+        for (int i = 0; i < routes.length; i++) {
+            if (toNodes[i] >= 0) {
+                routes[i] = withAccessLegs(from, fromNode, to.get(i), toNodes[i], networkRoutes[i]);
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * Adds the legs between the locations and their nodes to a route of the network, and rounds it.
+     *
+     * @param from         The origin.
+     * @param fromNode     The node of the origin.
+     * @param to           The destination.
+     * @param toNode       The node of the destination.
+     * @param networkRoute The route between the nodes, or null if there is none.
+     * @return The rounded route, or null if there is none.
+     */
+    private RouteFact withAccessLegs(GPS from, int fromNode, GPS to, int toNode, RouteFact networkRoute) {
+        if (networkRoute == null) {
+            return null;
+        }
+        double accessKm = from.calculateCrowFliesDistance(nodeLocation(fromNode))
+                + nodeLocation(toNode).calculateCrowFliesDistance(to);
+        return new RouteFact(Math.round(networkRoute.duration() + accessKm / ACCESS_SPEED_KMH * 60),
+                Math.round(networkRoute.distance() + accessKm));
+    }
+
+    /**
+     * Finds the node nearest to a location, in its cell and the eight around it.
+     *
+     * @param location The location.
+     * @return The node, or -1 if no node is within {@value #MAX_SNAP_KM} km.
+     */
+    private int snap(GPS location) {
+        int row = row(location.latitude());
+        int column = column(location.longitude());
+        int nearest = -1;
+        double nearestDistance = MAX_SNAP_KM;
+        for (int r = row - 1; r <= row + 1; r++) {
+            for (int c = column - 1; c <= column + 1; c++) {
+                int[] cell = cells.get(cellKey(r, c));
+                if (cell == null) {
+                    continue;
+                }
+                for (int node : cell) {
+                    double distance = location.calculateCrowFliesDistance(nodeLocation(node));
+                    if (distance <= nearestDistance) {
+                        nearest = node;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Gets the location of a node.
+     *
+     * @param node The node.
+     * @return The location.
+     */
+    private GPS nodeLocation(int node) {
+        return new GPS(hierarchy.latitude(node), hierarchy.longitude(node));
+    }
+
+    /**
+     * Gets the grid row of a latitude.
+     *
+     * @param latitude The latitude in degrees.
+     * @return The row.
+     */
+    private static int row(double latitude) {
+        return (int) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    /**
+     * Gets the grid column of a longitude.
+     *
+     * @param longitude The longitude in degrees.
+     * @return The column.
+     */
+    private static int column(double longitude) {
+        return (int) Math.floor(longitude / CELL_DEGREES);
+    }
+
+    /**
+     * Packs a cell into a map key.
+     *
+     * @param row    The row.
+     * @param column The column.
+     * @return The key.
+     */
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+}
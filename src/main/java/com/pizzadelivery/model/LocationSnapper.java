@@ -0,0 +1,231 @@
+package com.pizzadelivery.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Maps each location to a canonical representative within a radius, so nearby locations share their cached routes.
+ * Two customers of the same building, or a repeat customer whose geocode jitters by a few meters, then cost one set
+ * of API calls instead of one each.
+ * <p>
+ * The representatives are the locations seen first: the endpoints already in the route cache, then every new location
+ * that has no representative in range. They are kept in a grid of cells as wide as the radius, so a lookup checks a
+ * few cells around the location. Locations are handled as packed route keys, see {@link RouteKey}.
+ * Lookups do not lock; adding a representative does, so two threads cannot add two of them next to each other.
+ *
+ * @author Team
+ */
+public final class LocationSnapper {
+    private static final double METERS_PER_DEGREE = 111_195; // Along a meridian, on the sphere of the Haversine formula
+    private static final long NONE = Long.MIN_VALUE; // Latitude of -2147°, never a packed location
+
+    /**
+     * Hit and miss counts of the route lookups, split by whether an endpoint was snapped to a representative.
+     *
+     * @param exactHits     Lookups of locations that are their own representative, found in the cache.
+     * @param exactMisses   Lookups of locations that are their own representative, missing from the cache.
+     * @param snappedHits   Lookups with a snapped endpoint, found in the cache.
+     * @param snappedMisses Lookups with a snapped endpoint, missing from the cache.
+     */
+    public record Stats(long exactHits, long exactMisses, long snappedHits, long snappedMisses) {
+        /**
+         * Gets the share of the lookups that found the route thanks to snapping.
+         *
+         * @return The share of the hits that are snapped hits, between 0 and 1, or 0 before the first hit.
+         */
+        public double snappedHitShare() {
+            long hits = exactHits + snappedHits;
+            return hits == 0 ? 0 : (double) snappedHits / hits;
+        }
+    }
+
+    private final double radiusMeters;
+    private final double cellDegrees;
+    private final ConcurrentHashMap<Long, long[]> cells;
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder exactMisses = new LongAdder();
+    private final LongAdder snappedHits = new LongAdder();
+    private final LongAdder snappedMisses = new LongAdder();
+
+    /**
+     * Constructs a snapper without representatives.
+     *
+     * @param radiusMeters The maximum distance between a location and its representative, in meters.
+     */
+    public LocationSnapper(double radiusMeters) {
+        if (!(radiusMeters > 0)) {
+            throw new IllegalArgumentException("The snapping radius must be positive: " + radiusMeters);
+        }
+        this.radiusMeters = radiusMeters;
+        this.cellDegrees = radiusMeters / METERS_PER_DEGREE;
+        this.cells = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Constructs a snapper whose representatives are the endpoints of the cached routes, so new locations snap to
+     * locations whose routes are already known. Every endpoint is a representative, even next to another one, so no
+     * cached route becomes unreachable.
+     *
+     * @param cache        The route cache.
+     * @param radiusMeters The maximum distance between a location and its representative, in meters.
+     * @return The snapper.
+     */
+    public static LocationSnapper seed(RouteCache cache, double radiusMeters) {
+        LocationSnapper snapper = new LocationSnapper(radiusMeters);
+        cache.forEach((from, to, routeValues) -> {
+            snapper.addRepresentative(from);
+            snapper.addRepresentative(to);
+        });
+        return snapper;
+    }
+
+    /**
+     * Gets the representative of a location. A location without a representative in range becomes one.
+     *
+     * @param location The packed location.
+     * @return The packed representative, the location itself if it is a representative.
+     */
+    public long snap(long location) {
+        long representative = nearest(location);
+        if (representative == NONE) {
+            synchronized (this) {
+                representative = nearest(location); // Another thread may have added one meanwhile
+                if (representative == NONE) {
+                    addRepresentative(location);
+                    representative = location;
+                }
+            }
+        }
+        return representative;
+    }
+
+    /**
+     * Counts a route lookup.
+     *
+     * @param snapped True if an endpoint was snapped to another location.
+     * @param hit     True if the route was found in the cache.
+     */
+    public void recordLookup(boolean snapped, boolean hit) {
+        (snapped ? hit ? snappedHits : snappedMisses : hit ? exactHits : exactMisses).increment();
+    }
+
+    /**
+     * Gets the lookup counts.
+     *
+     * @return The counts since the creation of the snapper.
+     */
+    public Stats stats() {
+        return new Stats(exactHits.sum(), exactMisses.sum(), snappedHits.sum(), snappedMisses.sum());
+    }
+
+    /**
+     * Gets the number of representatives.
+     *
+     * @return The number of representatives.
+     */
+    public int size() {
+        return cells.values().stream().mapToInt(cell -> cell.length).sum();
+    }
+
+    /**
+     * Finds the representative nearest to a location.
+     *
+     * @param location The packed location.
+     * @return The packed representative, or {@link #NONE} if there is none within the radius.
+     */
+    private long nearest(long location) {
+        double latitude = RouteKey.latitude(location);
+        double longitude = RouteKey.longitude(location);
+        int row = row(latitude);
+        int column = column(longitude);
+        // Cells are as high as the radius, but narrower than it in meters away from the equator
+        double narrowestLatitude = Math.min(89, Math.abs(latitude) + cellDegrees);
+        int columnSpan = (int) Math.ceil(1 / Math.cos(Math.toRadians(narrowestLatitude)));
+        long nearest = NONE;
+        double nearestMeters = radiusMeters;
+        for (int r = row - 1; r <= row + 1; r++) {
+            for (int c = column - columnSpan; c <= column + columnSpan; c++) {
+                long[] cell = cells.get(cellKey(r, c));
+                if (cell == null) {
+                    continue;
+                }
+                for (long representative : cell) {
+                    if (representative == location) {
+                        return location;
+                    }
+                    double meters = meters(location, representative);
+                    if (meters <= nearestMeters) {
+                        nearest = representative;
+                        nearestMeters = meters;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Gets the distance between two packed locations.
+     *
+     * @param from The first location.
+     * @param to   The second location.
+     * @return The crow-flies distance in meters.
+     */
+    private static double meters(long from, long to) {
+        return RouteKey.unpack(from).calculateCrowFliesDistance(RouteKey.unpack(to)) * 1000;
+    }
+
+    /**
+     * Adds a representative to its cell, unless it is already there.
+     *
+     * @param representative The packed location.
+     */
+    private void addRepresentative(long representative) {
+        long key = cellKey(row(RouteKey.latitude(representative)), column(RouteKey.longitude(representative)));
+        cells.compute(key, (k, cell) -> {
+            if (cell == null) {
+                return new long[]{representative};
+            }
+            for (long known : cell) {
+                if (known == representative) {
+                    return cell;
+                }
+            }
+            long[] appended = Arrays.copyOf(cell, cell.length + 1);
+            appended[cell.length] = representative;
+            return appended;
+        });
+    }
+
+    /**
+     * Gets the grid row of a latitude.
+     *
+     * @param latitude The latitude in degrees.
+     * @return The row.
+     */
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellDegrees);
+    }
+
+    /**
+     * Gets the grid column of a longitude.
+     *
+     * @param longitude The longitude in degrees.
+     * @return The column.
+     */
+    private int column(double longitude) {
+        return (int) Math.floor(longitude / cellDegrees);
+    }
+
+    /**
+     * Packs a cell into a map key.
+     *
+     * @param row    The row.
+     * @param column The column.
+     * @return The key.
+     */
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,249 @@
+package com.pizzadelivery.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A read-only, memory-mapped snapshot of a route cache.
+ * The file is a sorted array of fixed-width records, each made of a packed origin, a packed destination
+ * (see {@link RouteKey}) and a fixed number of {@code float} values. Lookups are a binary search straight against
+ * the mapped buffer, so opening the snapshot costs nothing whatever its size and the cached pairs live off-heap.
+ * <p>
+ * Layout, big-endian:
+ * <pre>
+ * header : int magic, int version, int valueCount, int reserved, long recordCount
+ * record : long from, long to, float[valueCount] values
+ * </pre>
+ * A single mapping is limited to 2 GB, which is about 90 million single-value records.
+ *
+ * @author Team
+ */
+public final class MappedRouteSnapshot {
+    private static final int MAGIC = 0x50445243; // "PDRC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int KEY_SIZE = 16;
+
+    private final MappedByteBuffer buffer;
+    private final int valueCount;
+    private final int recordSize;
+    private final int recordCount;
+
+    /**
+     * Constructs a snapshot over a mapped file whose header has been validated.
+     *
+     * @param buffer      The mapped file.
+     * @param valueCount  The number of values per record.
+     * @param recordCount The number of records.
+     */
+    private MappedRouteSnapshot(MappedByteBuffer buffer, int valueCount, int recordCount) {
+        this.buffer = buffer;
+        this.valueCount = valueCount;
+        this.recordSize = KEY_SIZE + Float.BYTES * valueCount;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Opens and maps a snapshot file.
+     *
+     * @param path The snapshot file.
+     * @return The mapped snapshot.
+     * @throws IOException If the file cannot be read or is not a route cache snapshot.
+     */
+    public static MappedRouteSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a route cache snapshot: " + path);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported route cache snapshot version " + buffer.getInt(4) + ": " + path);
+            }
+            int valueCount = buffer.getInt(8);
+            long recordCount = buffer.getLong(16);
+            long expectedSize = HEADER_SIZE + recordCount * (KEY_SIZE + (long) Float.BYTES * valueCount);
+            if (valueCount <= 0 || buffer.capacity() != expectedSize) {
+                throw new IOException("Truncated route cache snapshot: " + path);
+            }
+            // The mapping stays valid after the channel is closed
+            return new MappedRouteSnapshot(buffer, valueCount, (int) recordCount);
+        }
+    }
+
+    /**
+     * Looks up a value of a route.
+     *
+     * @param from  The packed origin.
+     * @param to    The packed destination.
+     * @param field The index of the value in the record.
+     * @return The value, or {@link Float#NaN} if the route is not in the snapshot.
+     */
+    public float get(long from, long to, int field) {
+        int record = indexOf(from, to);
+        if (record < 0) {
+            return Float.NaN;
+        }
+        return buffer.getFloat(HEADER_SIZE + record * recordSize + KEY_SIZE + field * Float.BYTES);
+    }
+
+    /**
+     * Checks whether a route is in the snapshot.
+     *
+     * @param from The packed origin.
+     * @param to   The packed destination.
+     * @return True if the snapshot has a record for the route.
+     */
+    public boolean contains(long from, long to) {
+        return indexOf(from, to) >= 0;
+    }
+
+    /**
+     * Gets the number of records of the snapshot.
+     *
+     * @return The number of routes.
+     */
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Gets the number of values stored for each route.
+     *
+     * @return The number of values per record.
+     */
+    public int valueCount() {
+        return valueCount;
+    }
+
+    /**
+     * Gets the packed origin of a record, in key order.
+     *
+     * @param record The index of the record.
+     * @return The packed origin.
+     */
+    public long fromAt(int record) {
+        return buffer.getLong(HEADER_SIZE + record * recordSize);
+    }
+
+    /**
+     * Gets the packed destination of a record, in key order.
+     *
+     * @param record The index of the record.
+     * @return The packed destination.
+     */
+    public long toAt(int record) {
+        return buffer.getLong(HEADER_SIZE + record * recordSize + Long.BYTES);
+    }
+
+    /**
+     * Gets a value of a record, in key order.
+     *
+     * @param record The index of the record.
+     * @param field  The index of the value in the record.
+     * @return The value.
+     */
+    public float valueAt(int record, int field) {
+        return buffer.getFloat(HEADER_SIZE + record * recordSize + KEY_SIZE + field * Float.BYTES);
+    }
+
+    /**
+     * Binary search of a route in the mapped records.
+     *
+     * @param from The packed origin.
+     * @param to   The packed destination.
+     * @return The index of the record, or -1 if the route is not in the snapshot.
+     */
+    public int indexOf(long from, long to) {
+        int low = 0;
+        int high = recordCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = HEADER_SIZE + middle * recordSize;
+            int compare = RouteKey.compare(buffer.getLong(position), buffer.getLong(position + Long.BYTES), from, to);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a snapshot file from unsorted records.
+     * The file is written next to the target and renamed over it atomically, so readers never map a half-written
+     * snapshot. The target must not be mapped: Windows refuses to replace a mapped file, so a cache that keeps
+     * serving from its snapshot writes the next one to a new file, see {@link RouteCache}. When the same route
+     * appears several times, the last record wins.
+     *
+     * @param path       The snapshot file to write.
+     * @param valueCount The number of values per record.
+     * @param from       The packed origins.
+     * @param to         The packed destinations.
+     * @param values     The values, {@code valueCount} consecutive values per record.
+     * @param count      The number of records to read from the arrays.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, int valueCount, long[] from, long[] to, float[] values, int count)
+            throws IOException {
+        // Sort the record indexes by key, keeping the insertion order of duplicates so the last one can win
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int compare = RouteKey.compare(from[a], to[a], from[b], to[b]);
+            return compare != 0 ? compare : Integer.compare(a, b);
+        });
+
+        int unique = 0;
+        int[] kept = new int[count];
+        for (int i = 0; i < count; i++) {
+            int record = order[i];
+            if (unique > 0 && from[kept[unique - 1]] == from[record] && to[kept[unique - 1]] == to[record]) {
+                kept[unique - 1] = record; // Later duplicate replaces the earlier one
+            } else {
+                kept[unique++] = record;
+            }
+        }
+
+        int recordSize = KEY_SIZE + Float.BYTES * valueCount;
+        ByteBuffer content = ByteBuffer.allocate(HEADER_SIZE + unique * recordSize).order(ByteOrder.BIG_ENDIAN);
+        content.putInt(MAGIC).putInt(VERSION).putInt(valueCount).putInt(0).putLong(unique);
+        for (int i = 0; i < unique; i++) {
+            int record = kept[i];
+            content.putLong(from[record]).putLong(to[record]);
+            for (int field = 0; field < valueCount; field++) {
+                content.putFloat(values[record * valueCount + field]);
+            }
+        }
+        content.flip();
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+}
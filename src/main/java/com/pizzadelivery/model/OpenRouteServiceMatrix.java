@@ -0,0 +1,232 @@
+package com.pizzadelivery.model;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client of the OpenRouteService {@code /v2/matrix} endpoint, used to fetch many routes in a few requests.
+ * The locations are split into blocks so that each request stays under the element limit of the API
+ * (sources × destinations), and a request is only sent for the pairs of blocks that contain at least one route the
+ * caller still needs. One response gives both the duration and the distance of every route of the block pair.
+ *
+ * @author Team
+ */
+public final class OpenRouteServiceMatrix {
+    public static final String MATRIX_PATH = "/v2/matrix/driving-car";
+    public static final int DEFAULT_MAX_ELEMENTS = 3500; // Limit of the public ORS plan per matrix request
+
+    /**
+     * Tells whether a route still has to be fetched.
+     */
+    @FunctionalInterface
+    public interface RouteFilter {
+        /**
+         * Checks a route.
+         *
+         * @param from The origin.
+         * @param to   The destination.
+         * @return True if the route is needed.
+         */
+        boolean isNeeded(GPS from, GPS to);
+    }
+
+    /**
+     * Receives the routes read from the matrix responses.
+     */
+    @FunctionalInterface
+    public interface RouteConsumer {
+        /**
+         * Accepts a route.
+         *
+         * @param from            The origin.
+         * @param to              The destination.
+         * @param durationSeconds The travel time in seconds.
+         * @param distanceMeters  The distance in meters.
+         */
+        void accept(GPS from, GPS to, double durationSeconds, double distanceMeters);
+    }
+
+    private final String baseUrl;
+    private final String apiKey;
+    private final int blockSize;
+    private final ApiGuard guard;
+
+    /**
+     * Constructs a matrix client without rate limiting.
+     *
+     * @param baseUrl     The base URL of the API, without trailing slash, e.g. {@code https://api.openrouteservice.org}.
+     * @param apiKey      The API key sent in the Authorization header.
+     * @param maxElements The maximum number of routes (sources × destinations) of a single request.
+     */
+    public OpenRouteServiceMatrix(String baseUrl, String apiKey, int maxElements) {
+        this(baseUrl, apiKey, maxElements, null);
+    }
+
+    /**
+     * Constructs a matrix client whose requests go through a guard.
+     *
+     * @param baseUrl     The base URL of the API, without trailing slash, e.g. {@code https://api.openrouteservice.org}.
+     * @param apiKey      The API key sent in the Authorization header.
+     * @param maxElements The maximum number of routes (sources × destinations) of a single request.
+     * @param guard       Rate limiter and circuit breaker of the matrix endpoint, or null.
+     */
+    public OpenRouteServiceMatrix(String baseUrl, String apiKey, int maxElements, ApiGuard guard) {
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+        this.blockSize = Math.max(1, (int) Math.sqrt(maxElements));
+        this.guard = guard;
+    }
+
+    /**
+     * Fetches the needed routes between every pair of distinct locations.
+     *
+     * @param locations The locations, without duplicates.
+     * @param filter    Tells which routes are still needed; a pair of blocks without any is not requested.
+     * @param consumer  Receives every needed route found in the responses. Unroutable pairs are not reported.
+     * @return The number of requests sent. Fetching stops early, without error, when the guard rejects a request.
+     * @throws IOException If a request fails; the routes of the previous requests have already been consumed.
+     */
+    public int fetch(List<GPS> locations, RouteFilter filter, RouteConsumer consumer) throws IOException {
+        int requests = 0;
+        for (int sourceStart = 0; sourceStart < locations.size(); sourceStart += blockSize) {
+            List<GPS> sources = locations.subList(sourceStart, Math.min(sourceStart + blockSize, locations.size()));
+            for (int destinationStart = 0; destinationStart < locations.size(); destinationStart += blockSize) {
+                List<GPS> destinations = locations.subList(destinationStart,
+                        Math.min(destinationStart + blockSize, locations.size()));
+                if (!hasNeededRoute(sources, destinations, filter)) {
+                    continue;
+                }
+                if (guard != null && !guard.tryAcquire()) {
+                    return requests; // The remaining routes are left to the directions calls or the estimates
+                }
+                try {
+                    fetchBlock(sources, destinations, sourceStart == destinationStart, filter, consumer);
+                } catch (IOException e) {
+                    if (guard != null) {
+                        guard.recordFailure(e instanceof RateLimitException);
+                    }
+                    throw e;
+                }
+                if (guard != null) {
+                    guard.recordSuccess();
+                }
+                requests++;
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Checks whether a pair of blocks contains a needed route.
+     *
+     * @param sources      The origins of the block pair.
+     * @param destinations The destinations of the block pair.
+     * @param filter       Tells which routes are still needed.
+     * @return True if at least one route of the block pair is needed.
+     */
+    private static boolean hasNeededRoute(List<GPS> sources, List<GPS> destinations, RouteFilter filter) {
+        for (GPS from : sources) {
+            for (GPS to : destinations) {
+                if (!from.equals(to) && filter.isNeeded(from, to)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends one matrix request for a pair of blocks and hands the needed routes to the consumer.
+     *
+     * @param sources      The origins of the block pair.
+     * @param destinations The destinations of the block pair.
+     * @param sameBlock    True if the origins and the destinations are the same block.
+     * @param filter       Tells which routes are still needed.
+     * @param consumer     Receives the routes.
+     * @throws IOException If the request fails.
+     */
+    private void fetchBlock(List<GPS> sources, List<GPS> destinations, boolean sameBlock, RouteFilter filter,
+                            RouteConsumer consumer) throws IOException {
+        // The origins come first in the locations, the destinations follow unless they are the same block
+        List<GPS> requestLocations = new ArrayList<>(sources);
+        if (!sameBlock) {
+            requestLocations.addAll(destinations);
+        }
+        JSONArray coordinates = new JSONArray();
+        for (GPS location : requestLocations) {
+            coordinates.put(new JSONArray().put(location.longitude()).put(location.latitude()));
+        }
+        JSONArray sourceIndexes = new JSONArray();
+        for (int i = 0; i < sources.size(); i++) {
+            sourceIndexes.put(i);
+        }
+        JSONArray destinationIndexes = new JSONArray();
+        int destinationOffset = sameBlock ? 0 : sources.size();
+        for (int i = 0; i < destinations.size(); i++) {
+            destinationIndexes.put(destinationOffset + i);
+        }
+
+        JSONObject jsonPayload = new JSONObject();
+        jsonPayload.put("locations", coordinates);
+        jsonPayload.put("sources", sourceIndexes);
+        jsonPayload.put("destinations", destinationIndexes);
+        jsonPayload.put("metrics", new JSONArray().put("duration").put("distance"));
+        jsonPayload.put("units", "m");
+
+        JSONObject jsonResponse = new JSONObject(post(jsonPayload.toString()));
+        JSONArray durations = jsonResponse.getJSONArray("durations");
+        JSONArray distances = jsonResponse.getJSONArray("distances");
+        for (int i = 0; i < sources.size(); i++) {
+            JSONArray durationRow = durations.getJSONArray(i);
+            JSONArray distanceRow = distances.getJSONArray(i);
+            for (int j = 0; j < destinations.size(); j++) {
+                GPS from = sources.get(i);
+                GPS to = destinations.get(j);
+                if (from.equals(to) || durationRow.isNull(j) || distanceRow.isNull(j) || !filter.isNeeded(from, to)) {
+                    continue; // ORS answers null for the pairs it cannot route
+                }
+                consumer.accept(from, to, durationRow.getDouble(j), distanceRow.getDouble(j));
+            }
+        }
+    }
+
+    /**
+     * Posts a matrix request, through the client shared with the directions calls and with the same timeouts.
+     *
+     * @param payload The JSON body of the request.
+     * @return The JSON response.
+     * @throws IOException If the request fails, times out or the API does not answer 200.
+     */
+    private String post(String payload) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + MATRIX_PATH))
+                .timeout(RouteClient.REQUEST_TIMEOUT)
+                .header("Authorization", apiKey)
+                .header("Accept", "application/json")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .build();
+
+        HttpResponse<String> response;
+        try {
+            response = RouteClient.HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the matrix endpoint");
+        }
+        if (response.statusCode() == 429) {
+            throw new RateLimitException("API rate limit exceeded on the matrix endpoint");
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP error code: " + response.statusCode());
+        }
+        return response.body();
+    }
+}
@@ -12,6 +12,9 @@ import java.util.ArrayList;
  * @author Team
  */
 public class Order implements Serializable {
+    // Pinned so the serialized test suites stay readable when methods are added to this class
+    private static final long serialVersionUID = -5060087108006741338L;
+
     private final int id;
     private final GPS location;
     private LocalDateTime time;
@@ -114,15 +117,74 @@ public class Order implements Serializable {
         return totalDistance;
     }
 
+    /**
+     * Calculates the delivery time between two orders using a travel matrix of the current dispatch.
+     *
+     * @param order1 The first order.
+     * @param order2 The second order.
+     * @param matrix The travel matrix containing both orders.
+     * @return The calculated delivery time in minutes.
+     */
+    public static double calculateDeliveryTime(Order order1, Order order2, TravelMatrix matrix) {
+        return matrix.time(order1, order2);
+    }
+
+    /**
+     * Calculates the delivery distance between two orders using a travel matrix of the current dispatch.
+     *
+     * @param order1 The first order.
+     * @param order2 The second order.
+     * @param matrix The travel matrix containing both orders.
+     * @return The calculated delivery distance in kilometers.
+     */
+    public static double calculateDeliveryDistance(Order order1, Order order2, TravelMatrix matrix) {
+        return matrix.distance(order1, order2);
+    }
+
+    /**
+     * Calculates the number of orders eligible for a discount using a travel matrix of the current dispatch.
+     *
+     * @param orders The list of orders to analyze.
+     * @param matrix The travel matrix containing every order of the list.
+     * @return The count of orders eligible for a discount.
+     */
+    public static int numberOfDiscount(ArrayList<Order> orders, TravelMatrix matrix) {
+        return matrix.numberOfDiscount(orders);
+    }
+
+    /**
+     * Calculates the total delivery time for a list of orders using a travel matrix of the current dispatch.
+     *
+     * @param orders The list of orders to calculate the total delivery time.
+     * @param matrix The travel matrix containing every order of the list.
+     * @return The total delivery time in minutes.
+     */
+    public static double totalDeliveryTime(ArrayList<Order> orders, TravelMatrix matrix) {
+        return matrix.totalDeliveryTime(orders);
+    }
+
+    /**
+     * Calculates the total delivery distance for a list of orders using a travel matrix of the current dispatch.
+     *
+     * @param orders The list of orders to calculate the total delivery distance.
+     * @param matrix The travel matrix containing every order of the list.
+     * @return The total delivery distance in kilometers.
+     */
+    public static double totalDeliveryDistance(ArrayList<Order> orders, TravelMatrix matrix) {
+        return matrix.totalDeliveryDistance(orders);
+    }
+
     /**
      * Checks if the order is critical based on its waiting time and travel time to the pizzeria.
+     * The travel time is estimated from the isochrone grid of the pizzeria when it has been built, since this check
+     * runs for every pending order on every pass.
      *
      * @return True if the order is critical, false otherwise.
      */
     public boolean isCritical() {
         Duration duration = Duration.between(time, LocalDateTime.now());
         double waitingTime = duration.toMinutes();
-        return waitingTime + Pizzeria.PIZZERIA_LOCATION.timeTravel(location) > 30;
+        return waitingTime + Pizzeria.PIZZERIA_LOCATION.estimateTimeTravel(location) > 30;
     }
 
     /**
@@ -0,0 +1,247 @@
+package com.pizzadelivery.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * A grid of the orders by location, to find the orders nearest to a point without scanning all of them.
+ * The grid cells are about one kilometer wide (0.01°), which keeps a few orders per cell in a city. Orders can be
+ * added and removed at any time, e.g. as they are selected by a solver.
+ * <p>
+ * Queries search the cells in rings of growing size around the point and rank the orders by crow-flies distance.
+ * Road distances and travel times are at least loosely tied to it, so a solver only needs to check the exact route of
+ * the first few candidates. The index is not thread-safe.
+ *
+ * @author Team
+ */
+public final class OrderIndex {
+    private static final double CELL_DEGREES = 0.01;
+    private static final double KM_PER_DEGREE = 111.195; // Along a meridian, on the sphere of the Haversine formula
+
+    private final HashMap<Long, ArrayList<Order>> cells;
+    private int size;
+    // Bounds of the occupied cells, so a search stops once it has covered them
+    private int minRow = Integer.MAX_VALUE;
+    private int maxRow = Integer.MIN_VALUE;
+    private int minColumn = Integer.MAX_VALUE;
+    private int maxColumn = Integer.MIN_VALUE;
+
+    /**
+     * Constructs an empty index.
+     */
+    public OrderIndex() {
+        cells = new HashMap<>();
+    }
+
+    /**
+     * Constructs an index of the given orders.
+     *
+     * @param orders The orders to index.
+     */
+    public OrderIndex(Collection<Order> orders) {
+        this();
+        for (Order order : orders) {
+            add(order);
+        }
+    }
+
+    /**
+     * Adds an order.
+     *
+     * @param order The order.
+     */
+    public void add(Order order) {
+        int row = row(order.location().latitude());
+        int column = column(order.location().longitude());
+        cells.computeIfAbsent(cellKey(row, column), key -> new ArrayList<>(4)).add(order);
+        size++;
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minColumn = Math.min(minColumn, column);
+        maxColumn = Math.max(maxColumn, column);
+    }
+
+    /**
+     * Removes an order.
+     *
+     * @param order The order, compared by identity.
+     * @return True if the order was in the index.
+     */
+    public boolean remove(Order order) {
+        long key = cellKey(row(order.location().latitude()), column(order.location().longitude()));
+        ArrayList<Order> cell = cells.get(key);
+        if (cell == null) {
+            return false;
+        }
+        for (int i = 0; i < cell.size(); i++) {
+            if (cell.get(i) == order) {
+                cell.remove(i);
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of indexed orders.
+     *
+     * @return The number of orders.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the orders nearest to a point.
+     *
+     * @param location The point.
+     * @param k        The maximum number of orders.
+     * @return Up to {@code k} orders, by increasing crow-flies distance.
+     */
+    public List<Order> nearest(GPS location, int k) {
+        List<Order> nearest = new ArrayList<>(Math.min(k, size));
+        Iterator<Order> candidates = nearestFirst(location);
+        while (nearest.size() < k && candidates.hasNext()) {
+            nearest.add(candidates.next());
+        }
+        return nearest;
+    }
+
+    /**
+     * Iterates over the orders by increasing crow-flies distance to a point. The rings of cells are only searched as
+     * the iteration goes, so stopping after a few orders costs a few cells. The index must not be modified during the
+     * iteration.
+     *
+     * @param location The point.
+     * @return The orders, nearest first.
+     */
+    public Iterator<Order> nearestFirst(GPS location) {
+        return new Iterator<>() {
+            private final int row = row(location.latitude());
+            private final int column = column(location.longitude());
+            private final PriorityQueue<Candidate> queue = new PriorityQueue<>();
+            private int ring;
+            private int returned;
+
+            @Override
+            public boolean hasNext() {
+                return returned < size;
+            }
+
+            @Override
+            public Order next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                // An order of the next ring can still be nearer than the head of the queue until it is below the bound
+                while (queue.isEmpty() || queue.peek().distance() > ringLowerBound(location, ring)) {
+                    if (!searchRing()) {
+                        break; // Every occupied cell has been searched
+                    }
+                }
+                returned++;
+                return queue.poll().order();
+            }
+
+            /**
+             * Queues the orders of the next ring of cells.
+             *
+             * @return False if the previous rings already covered every occupied cell.
+             */
+            private boolean searchRing() {
+                int covered = ring - 1; // The rings searched so far cover this square
+                if (row - covered <= minRow && row + covered >= maxRow && column - covered <= minColumn
+                        && column + covered >= maxColumn) {
+                    return false;
+                }
+                for (int r = row - ring; r <= row + ring; r++) {
+                    boolean edgeRow = r == row - ring || r == row + ring;
+                    // Inner rows of the ring only have their first and last cells on the ring
+                    int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                    for (int c = column - ring; c <= column + ring; c += step) {
+                        ArrayList<Order> cell = cells.get(cellKey(r, c));
+                        if (cell != null) {
+                            for (Order order : cell) {
+                                queue.add(new Candidate(order, location.calculateCrowFliesDistance(order.location())));
+                            }
+                        }
+                    }
+                }
+                ring++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * An order and its distance to the query point.
+     *
+     * @param order    The order.
+     * @param distance The crow-flies distance in kilometers.
+     */
+    private record Candidate(Order order, double distance) implements Comparable<Candidate> {
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(distance, other.distance);
+        }
+    }
+
+    /**
+     * Gets a lower bound of the distance from a point to any location in the cells of a ring or farther away: such a
+     * location is at least {@code ring - 1} whole cells away in latitude or in longitude.
+     *
+     * @param location The point.
+     * @param ring     The ring, 0 being the cell of the point.
+     * @return The lower bound in kilometers.
+     */
+    private static double ringLowerBound(GPS location, int ring) {
+        if (ring <= 1) {
+            return 0;
+        }
+        // Meridians converge toward the poles: take the narrowest cell the ring can reach
+        double farthestLatitude = Math.min(89, Math.abs(location.latitude()) + (ring + 1) * CELL_DEGREES);
+        double cellWidth = CELL_DEGREES * KM_PER_DEGREE * Math.cos(Math.toRadians(farthestLatitude));
+        double cellHeight = CELL_DEGREES * KM_PER_DEGREE;
+        return (ring - 1) * Math.min(cellWidth, cellHeight);
+    }
+
+    /**
+     * Gets the grid row of a latitude.
+     *
+     * @param latitude The latitude in degrees.
+     * @return The row.
+     */
+    private static int row(double latitude) {
+        return (int) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    /**
+     * Gets the grid column of a longitude.
+     *
+     * @param longitude The longitude in degrees.
+     * @return The column.
+     */
+    private static int column(double longitude) {
+        return (int) Math.floor(longitude / CELL_DEGREES);
+    }
+
+    /**
+     * Packs a cell into a map key.
+     *
+     * @param row    The row.
+     * @param column The column.
+     * @return The key.
+     */
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+}
@@ -45,14 +45,18 @@ public class PierreAlgorithm {
     // Brute force algorithm with time criterion
     // -----------------------------------------------------------------------------------------------------------------
 
+    private static final double PRUNING_TOLERANCE = 1e-9; // Minutes, far below the precision of the travel times
+
     /**
      * Optimizes the sequence of orders based on delivery time using a brute-force approach.
      * This method explores all possible sequences of the provided orders to find the one with the minimum total delivery time.
-     * It uses a recursive permutation approach to generate all possible orderings of the orders list and then evaluates
+     * It uses a depth-first search that builds the sequences one stop at a time, carrying the delivery time of the
      * <p>
-     * each sequence to determine the one with the lowest total delivery time.
+     * sequence so far, and abandons a sequence as soon as it cannot beat the best one found: its time so far plus the
+     * cheapest legs into the remaining orders and back into the pizzeria is already longer.
      *
-     * <p>The brute-force method guarantees finding the optimal solution, as it exhaustively searches all possibilities.</p>
+     * <p>The brute-force method guarantees finding the optimal solution, as it exhaustively searches all possibilities
+     * that could still be better.</p>
      *
      * <p><b>Advantages:</b>
      * <ul>
@@ -71,45 +75,132 @@ public class PierreAlgorithm {
      * </p>
      *
      * <p><b>Complexity Analysis:</b>
-     * The time complexity is O(n!), where 'n' is the number of orders. Each permutation of the order list is generated
-     * and evaluated, leading to factorial growth in the number of computations.</p>
+     * The time complexity is O(n!) in the worst case, where 'n' is the number of orders, when no branch can be pruned.
+     * Each leg is added once per prefix instead of summing every complete sequence from scratch, and the pruning
+     * usually cuts all but a small part of the permutations, which keeps 8 to 10 orders practical.</p>
      *
      * @param orders An ArrayList of {@code Order} objects representing the available orders.
      * @return An ArrayList of {@code Order} objects representing the optimized sequence.
      */
     public static ArrayList<Order> bruteForceTime(ArrayList<Order> orders) {
-        ArrayList<Order> bestOrderSequence = new ArrayList<>(orders);
-        double[] bestTime = new double[]{Double.MAX_VALUE};
-        // Generate and evaluate all permutations of the order list
-        permute(orders, 0, bestOrderSequence, bestTime);
+        return bruteForceTime(orders, TravelMatrix.of(orders));
+    }
+
+    /**
+     * Optimizes the sequence of orders based on delivery time using a brute-force approach, reading every leg from
+     * the travel matrix of the current dispatch.
+     *
+     * @param orders An ArrayList of {@code Order} objects representing the available orders.
+     * @param matrix The travel matrix containing every order of the list.
+     * @return An ArrayList of {@code Order} objects representing the optimized sequence.
+     * @see #bruteForceTime(ArrayList)
+     */
+    public static ArrayList<Order> bruteForceTime(ArrayList<Order> orders, TravelMatrix matrix) {
+        int n = orders.size();
+        if (n == 0) {
+            return new ArrayList<>(orders);
+        }
+        // Read every leg once; index n stands for the pizzeria
+        int[] matrixIndexes = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            matrixIndexes[i] = matrix.indexOf(orders.get(i));
+        }
+        matrixIndexes[n] = TravelMatrix.PIZZERIA_INDEX;
+        double[] times = new double[(n + 1) * (n + 1)];
+        for (int from = 0; from <= n; from++) {
+            for (int to = 0; to <= n; to++) {
+                times[from * (n + 1) + to] = from == to ? 0 : matrix.time(matrixIndexes[from], matrixIndexes[to]);
+            }
+        }
+
+        // Every order, and the pizzeria at the end, is reached once through one of its legs: the cheapest of them
+        // sum up to a lower bound of the time left
+        double[] cheapestArrivals = new double[n + 1];
+        double remainingBound = 0;
+        for (int to = 0; to <= n; to++) {
+            cheapestArrivals[to] = Double.MAX_VALUE;
+            for (int from = 0; from <= n; from++) {
+                if (from != to) {
+                    cheapestArrivals[to] = Math.min(cheapestArrivals[to], times[from * (n + 1) + to]);
+                }
+            }
+            remainingBound += cheapestArrivals[to];
+        }
+
+        // The given sequence is the first incumbent, so it is kept on a tie like with the plain enumeration
+        int[] bestSequence = new int[n];
+        Arrays.setAll(bestSequence, i -> i);
+        double[] bestTime = new double[]{Order.totalDeliveryTime(orders, matrix)};
+        searchTime(times, cheapestArrivals, new int[n], new boolean[n], new int[n][n], 0, 0, remainingBound,
+                bestSequence, bestTime);
+
+        ArrayList<Order> bestOrderSequence = new ArrayList<>(n);
+        for (int order : bestSequence) {
+            bestOrderSequence.add(orders.get(order));
+        }
         return bestOrderSequence; // Return the sequence with the minimum total delivery time
     }
 
     /**
-     * Recursively generates permutations of the order list and evaluates their total delivery time.
-     * This helper method swaps elements to create different sequences, and for each sequence,
-     * it calculates the total delivery time. If a sequence has a lower delivery time than the current best,
-     * it updates the best sequence and time.
-     *
-     * @param orders            The list of orders to permute.
-     * @param k                 The current index in the permutation process.
-     * @param bestOrderSequence A reference to the current best sequence of orders.
-     * @param bestTime          An array holding the minimum delivery time found so far.
+     * Recursively extends a sequence of orders, carrying its delivery time so far, and evaluates the complete ones.
+     * This helper method tries the unvisited orders as the next stop, nearest first so that a good sequence is
+     * found early. A branch is pruned when its delivery time so far plus a lower bound of the time left cannot beat
+     * the best sequence found, so the search stays exact while visiting a small part of the permutations.
+     *
+     * @param times            The travel time of each leg, row by row, index n standing for the pizzeria.
+     * @param cheapestArrivals The time of the cheapest leg into each order and into the pizzeria.
+     * @param sequence         The sequence being built, valid up to {@code depth}.
+     * @param visited          The orders already in the sequence.
+     * @param candidates       A buffer of candidate orders for each depth.
+     * @param depth            The number of orders in the sequence.
+     * @param prefixTime       The delivery time of the sequence so far, from the pizzeria.
+     * @param remainingBound   The sum of the cheapest arrivals of the unvisited orders and of the pizzeria.
+     * @param bestSequence     A reference to the current best sequence of orders.
+     * @param bestTime         An array holding the minimum delivery time found so far.
      */
-    private static void permute(ArrayList<Order> orders, int k, ArrayList<Order> bestOrderSequence, double[] bestTime) {
-        for (int i = k; i < orders.size(); i++) {
-            Collections.swap(orders, i, k); // Swap to generate a new permutation
-            permute(orders, k + 1, bestOrderSequence, bestTime); // Recurse for the next element
-            Collections.swap(orders, k, i); // Swap back for backtracking
-        }
-        if (k == orders.size() - 1) {
-            double currentTime = Order.totalDeliveryTime(orders); // Calculate the delivery time for the current sequence
+    private static void searchTime(double[] times, double[] cheapestArrivals, int[] sequence, boolean[] visited,
+                                   int[][] candidates, int depth, double prefixTime, double remainingBound,
+                                   int[] bestSequence, double[] bestTime) {
+        int n = visited.length;
+        int previous = depth == 0 ? n : sequence[depth - 1];
+        if (depth == n) {
+            double currentTime = prefixTime + times[previous * (n + 1) + n]; // Back to the pizzeria
             if (currentTime < bestTime[0]) {
                 bestTime[0] = currentTime; // Update the best time
-                bestOrderSequence.clear();
-                bestOrderSequence.addAll(orders); // Update the best sequence
+                System.arraycopy(sequence, 0, bestSequence, 0, n); // Update the best sequence
+            }
+            return;
+        }
+
+        // Sort the unvisited orders by the time of the leg to them
+        int[] nextOrders = candidates[depth];
+        int count = 0;
+        for (int order = 0; order < n; order++) {
+            if (!visited[order]) {
+                int position = count++;
+                while (position > 0 && times[previous * (n + 1) + nextOrders[position - 1]]
+                        > times[previous * (n + 1) + order]) {
+                    nextOrders[position] = nextOrders[position - 1];
+                    position--;
+                }
+                nextOrders[position] = order;
             }
         }
+
+        for (int i = 0; i < count; i++) {
+            int next = nextOrders[i];
+            double time = prefixTime + times[previous * (n + 1) + next];
+            double bound = remainingBound - cheapestArrivals[next];
+            // Only a strictly better sequence replaces the best one; the tolerance absorbs the rounding of the sums
+            if (time + bound >= bestTime[0] + PRUNING_TOLERANCE) {
+                continue;
+            }
+            visited[next] = true;
+            sequence[depth] = next;
+            searchTime(times, cheapestArrivals, sequence, visited, candidates, depth + 1, time, bound, bestSequence,
+                    bestTime);
+            visited[next] = false; // Backtrack
+        }
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -141,9 +232,9 @@ public class PierreAlgorithm {
      * </p>
      *
      * <p><b>Complexity Analysis:</b>
-     * The time complexity is O(n^2) for a set of 'n' orders. This arises because, for each of the 4 steps,
-     * the algorithm iterates through the remaining orders to find the closest
-     * one, leading to a quadratic complexity in the worst case.</p>
+     * The time complexity is O(n) for a set of 'n' orders, spent indexing them by location. At each of the 4 steps,
+     * the algorithm then only compares the few orders nearest to the previous one, whatever the number of
+     * orders.</p>
      *
      * @param orders         An ArrayList of {@code Order} objects representing the available orders.
      * @param mandatoryOrder An {@code Order} object that must be included in the sequence.
@@ -151,6 +242,21 @@ public class PierreAlgorithm {
      * @throws IllegalArgumentException If the number of orders is less than the minimum required (4 in this case).
      */
     public static ArrayList<Order> greedyTime(ArrayList<Order> orders, Order mandatoryOrder) {
+        return greedyTime(orders, mandatoryOrder, TravelMatrix.of(orders, mandatoryOrder));
+    }
+
+    /**
+     * Optimizes the sequence of orders based on delivery time using a greedy algorithm, reading every leg from
+     * the travel matrix of the current dispatch.
+     *
+     * @param orders         An ArrayList of {@code Order} objects representing the available orders.
+     * @param mandatoryOrder An {@code Order} object that must be included in the sequence.
+     * @param matrix         The travel matrix containing every order of the list.
+     * @return An ArrayList of {@code Order} objects representing the optimized sequence.
+     * @throws IllegalArgumentException If the number of orders is less than the minimum required (4 in this case).
+     * @see #greedyTime(ArrayList, Order)
+     */
+    public static ArrayList<Order> greedyTime(ArrayList<Order> orders, Order mandatoryOrder, TravelMatrix matrix) {
         // Validate that there are enough orders
         if (orders.size() < 4) {
             throw new IllegalArgumentException("The number of orders must be at least 4");
@@ -160,18 +266,18 @@ public class PierreAlgorithm {
         // Add the mandatory order as the starting point
         selectedOrders.add(mandatoryOrder);
 
-        // Initialize a set with the remaining orders
-        Set<Order> remainingOrders = new HashSet<>(orders);
-        // Remove the mandatory order from the remaining set
+        // Index the remaining orders by location, without the mandatory order
+        OrderIndex remainingOrders = new OrderIndex(orders);
         remainingOrders.remove(mandatoryOrder);
 
         // Select orders based on closest delivery time
         for (int i = 0; i < 4; i++) {
             // Find and add the closest order
-            Order closestOrder = findClosestOrder(selectedOrders.get(selectedOrders.size() - 1), remainingOrders);
+            Order closestOrder = findClosestOrder(selectedOrders.get(selectedOrders.size() - 1), remainingOrders,
+                    matrix);
             if (closestOrder != null) {
                 selectedOrders.add(closestOrder);
-                // Remove the chosen order from the remaining set
+                // Remove the chosen order from the remaining orders
                 remainingOrders.remove(closestOrder);
             }
         }
@@ -179,6 +285,8 @@ public class PierreAlgorithm {
         return selectedOrders; // Return the list of selected orders
     }
 
+    private static final int CLOSEST_ORDER_CANDIDATES = 8; // Orders whose delivery time is checked at each step
+
     /**
      * Identifies the order closest to a given reference order in terms of delivery time.
      * This method is a key part of the greedy algorithm. It searches through a set of orders to find the one
@@ -190,18 +298,23 @@ public class PierreAlgorithm {
      * <p>This method aids in selecting the next order in the sequence that minimizes the immediate delivery time,
      * contributing to the overall efficiency of the route.</p>
      *
+     * <p>Only the {@value #CLOSEST_ORDER_CANDIDATES} orders nearest to the reference order as the crow flies are
+     * compared: the order with the shortest delivery time is almost always among them, and the others would each cost
+     * a route lookup.</p>
+     *
      * @param referenceOrder The order against which all other orders' delivery times are compared.
-     * @param orders         A set of {@code Order} objects to be considered for selection.
+     * @param orders         The spatial index of the orders to be considered for selection.
+     * @param matrix         The travel matrix of the current dispatch.
      * @return The {@code Order} closest to the reference order in terms of delivery time, or {@code null} if no
      * orders are available.
      */
-    private static Order findClosestOrder(Order referenceOrder, Set<Order> orders) {
+    private static Order findClosestOrder(Order referenceOrder, OrderIndex orders, TravelMatrix matrix) {
         Order closestOrder = null;
         double closestTime = Double.MAX_VALUE;
 
-        // Iterate through each order to find the one with the minimum delivery time
-        for (Order order : orders) {
-            double deliveryTime = Order.calculateDeliveryTime(referenceOrder, order);
+        // Iterate through the nearest orders to find the one with the minimum delivery time
+        for (Order order : orders.nearest(referenceOrder.location(), CLOSEST_ORDER_CANDIDATES)) {
+            double deliveryTime = Order.calculateDeliveryTime(referenceOrder, order, matrix);
             // Update the closest order if a shorter delivery time is found
             if (deliveryTime < closestTime) {
                 closestTime = deliveryTime;
@@ -215,17 +328,23 @@ public class PierreAlgorithm {
     // Dynamic algorithm with distance criterion
     // -----------------------------------------------------------------------------------------------------------------
 
+    private static final int DYNAMIC_PATH_ORDERS = 4; // Orders visited after the mandatory one
+
     /**
      * Calculates the optimal sequence of orders based on delivery distance using a dynamic programming approach.
      * This method is designed to find a sequence of orders that minimizes the total delivery distance,
      * ensuring that a specific mandatory order is included in the resulting path. The algorithm is tailored
      * for scenarios where the number of possible orders is manageable, and precise optimization is required.
      *
-     * <p>The algorithm works by building a memoization table that keeps track of the minimum distance
-     * for each subset of orders, progressively increasing the size of these subsets. For each subset,
-     * it calculates the minimum distance by considering the last order in the set and adding its distance
-     * from the remaining set. This approach ensures that all possible combinations of orders are considered,
-     * and the best sequence is chosen.</p>
+     * <p>The algorithm is the Held–Karp dynamic program: it builds a table that keeps track of the minimum distance
+     * of a path starting at the mandatory order, for each subset of orders and each order of the subset the path ends
+     * at, progressively increasing the size of these subsets. For each subset and last order, it calculates the
+     * minimum distance by extending the best path over the remaining set that ends at each other order. This approach
+     * ensures that all possible sequences of orders are considered, and the best sequence is chosen.</p>
+     *
+     * <p>The orders are numbered by their index in the list and a subset is a bitmask of these indexes. The subsets
+     * of each size are ranked densely, so the tables are primitive arrays indexed by (subset, last order) and the
+     * computation allocates nothing per subset.</p>
      *
      * <p><b>Advantages:</b>
      * <ul>
@@ -242,8 +361,9 @@ public class PierreAlgorithm {
      * </p>
      *
      * <p><b>Complexity Analysis:</b>
-     * The time complexity is O(n^2 * 2^n), where n is the number of orders. This is due to the need to
-     * examine each subset of orders and calculate distances for each pair within these subsets.</p>
+     * The time complexity is O(C(n, 4) * 4^2), where n is the number of orders, since the paths visit 4 orders after
+     * the mandatory one: each subset of up to 4 orders is examined once, with each pair of its orders as the last two
+     * stops. The tables take O(C(n, 3) * n) memory, the subsets of 4 orders are not stored.</p>
      *
      * @param orders         An ArrayList of {@code Order} objects to choose from. The list should contain at least 5
      *                       orders.
@@ -255,256 +375,220 @@ public class PierreAlgorithm {
      *                                  has a sufficient number of orders to perform the optimization.
      */
     public static ArrayList<Order> dynamicDistance(ArrayList<Order> orders, Order mandatoryOrder) {
+        return dynamicDistance(orders, mandatoryOrder, TravelMatrix.of(orders, mandatoryOrder));
+    }
+
+    /**
+     * Calculates the optimal sequence of orders based on delivery distance using a dynamic programming approach,
+     * reading every leg from the travel matrix of the current dispatch.
+     *
+     * @param orders         An ArrayList of {@code Order} objects to choose from.
+     * @param mandatoryOrder An {@code Order} object that must be included in the result.
+     * @param matrix         The travel matrix containing every order of the list.
+     * @return An ArrayList of {@code Order} objects representing the optimal path.
+     * @throws IllegalArgumentException If the number of orders is less than 4.
+     * @see #dynamicDistance(ArrayList, Order)
+     */
+    public static ArrayList<Order> dynamicDistance(ArrayList<Order> orders, Order mandatoryOrder, TravelMatrix matrix) {
         // Validate that the order list has the minimum required size
         validateOrderListSize(orders);
+        int n = orders.size();
 
-        // Initialize a memoization table to store minimum distances for subsets of orders
-        Map<Set<Order>, Double> memoTable = new HashMap<>();
-        // Initialize a map to track the last order in each subset for path construction
-        Map<Set<Order>, Order> lastOrderInSet = new HashMap<>();
-        // Set up the memoization table with the mandatory order as the starting point
-        initializeMemoTable(mandatoryOrder, memoTable, lastOrderInSet);
+        // Read every leg once into dense arrays, indexed like the list
+        double[] startDistances = new double[n];
+        double[] distances = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            startDistances[i] = Order.calculateDeliveryDistance(mandatoryOrder, orders.get(i), matrix);
+            for (int j = 0; j < n; j++) {
+                distances[i * n + j] = i == j ? 0 : Order.calculateDeliveryDistance(orders.get(i), orders.get(j), matrix);
+            }
+        }
+        int[][] binomials = binomials(n, DYNAMIC_PATH_ORDERS);
 
-        // Iterate over subsets of increasing sizes (up to 5) to compute distances
-        for (int size = 2; size <= 5; size++) {
-            // Compute the minimum distances for all subsets of the current size
-            computeDistancesForSubsets(orders, size, mandatoryOrder, memoTable, lastOrderInSet);
+        // Layer k - 1 holds, for each subset of k orders and each order of the subset, the minimum distance of a path
+        // that leaves the mandatory order, visits the subset and ends at that order, and the order visited before it
+        double[][] pathDistances = new double[DYNAMIC_PATH_ORDERS - 1][];
+        int[][] previousOrders = new int[DYNAMIC_PATH_ORDERS - 1][];
+        pathDistances[0] = new double[n * n];
+        previousOrders[0] = new int[n * n];
+        for (int last = 0; last < n; last++) {
+            // The rank of a single order is its index
+            pathDistances[0][last * n + last] = startDistances[last];
+            previousOrders[0][last * n + last] = -1;
+        }
+
+        // The last layer is not stored, only its best path is kept
+        long bestMask = 0;
+        int bestLast = -1;
+        int bestPrevious = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int size = 2; size <= DYNAMIC_PATH_ORDERS; size++) {
+            boolean lastLayer = size == DYNAMIC_PATH_ORDERS;
+            double[] previousLayer = pathDistances[size - 2];
+            double[] layer = lastLayer ? null : new double[binomials[n][size] * n];
+            int[] layerPrevious = lastLayer ? null : new int[layer.length];
+            int rank = 0; // The subsets are enumerated in increasing order of their masks, which is the order of ranks
+            for (long mask = (1L << size) - 1; mask < 1L << n; mask = nextMaskOfSameSize(mask), rank++) {
+                for (long lasts = mask; lasts != 0; lasts &= lasts - 1) {
+                    int last = Long.numberOfTrailingZeros(lasts);
+                    long remaining = mask & ~(1L << last);
+                    int remainingOffset = subsetRank(remaining, binomials) * n;
+
+                    // Extend the best path over the remaining orders that ends closest to the last order
+                    double minDistance = Double.MAX_VALUE;
+                    int previous = -1;
+                    for (long previousOrdersLeft = remaining; previousOrdersLeft != 0;
+                         previousOrdersLeft &= previousOrdersLeft - 1) {
+                        int candidate = Long.numberOfTrailingZeros(previousOrdersLeft);
+                        double distance = previousLayer[remainingOffset + candidate] + distances[candidate * n + last];
+                        if (distance < minDistance) {
+                            minDistance = distance;
+                            previous = candidate;
+                        }
+                    }
+
+                    if (!lastLayer) {
+                        layer[rank * n + last] = minDistance;
+                        layerPrevious[rank * n + last] = previous;
+                    } else if (minDistance < bestDistance) {
+                        bestDistance = minDistance;
+                        bestMask = mask;
+                        bestLast = last;
+                        bestPrevious = previous;
+                    }
+                }
+            }
+            if (!lastLayer) {
+                pathDistances[size - 1] = layer;
+                previousOrders[size - 1] = layerPrevious;
+            }
         }
 
         // Construct and return the optimal path of orders based on the computed distances
-        return buildOptimalPath(memoTable, lastOrderInSet, mandatoryOrder);
+        return buildOptimalPath(orders, mandatoryOrder, previousOrders, binomials, bestMask, bestLast, bestPrevious);
     }
 
     /**
-     * Validates that the list of orders meets the minimum size requirement.
+     * Validates that the list of orders meets the size requirements.
      * This function is an auxiliary part of the dynamic distance algorithm, ensuring that the input
      * list of orders is large enough for the algorithm to work effectively. The algorithm requires
-     * a minimum of four orders to operate correctly. If the size requirement is not met, an
-     * {@code IllegalArgumentException} is thrown, indicating improper usage of the main algorithm.
+     * a minimum of four orders to operate correctly, and a subset of orders must fit in the bits of a {@code long}.
+     * If a size requirement is not met, an {@code IllegalArgumentException} is thrown, indicating improper usage of
+     * the main algorithm.
      *
      * @param orders The ArrayList of {@code Order} objects to be validated.
-     * @throws IllegalArgumentException if the number of orders in the list is less than the required minimum (5).
+     * @throws IllegalArgumentException if the number of orders in the list is less than the required minimum (4) or
+     *                                  more than the maximum (62).
      */
     private static void validateOrderListSize(ArrayList<Order> orders) {
         // Check if the size of the order list is less than the minimum required size
         if (orders.size() < 4) {
             throw new IllegalArgumentException("Number of orders must be at least 4");
         }
+        // Check if the subsets of orders fit in a bitmask whose enumeration does not overflow
+        if (orders.size() > 62) {
+            throw new IllegalArgumentException("Number of orders must be at most 62");
+        }
     }
 
     /**
-     * Initializes the memoization tables for the dynamic distance algorithm.
-     * This method sets up the foundational data structures used in the dynamic programming approach
-     * by initializing the memoization table and the last order in set map. It starts by adding
-     * the mandatory order with a base distance of 0.0, ensuring that this order is always included
-     * in the computed paths.
-     *
-     * <p>This is a crucial step in the dynamic distance algorithm, as it provides the starting point
-     * for building up the subsets of orders and their associated minimum distances.</p>
-     *
-     * @param mandatoryOrder The mandatory {@code Order} object that must be included in all paths.
-     * @param memoTable      A map representing the memoization table, mapping sets of {@code Order} objects
-     *                       to their corresponding minimum delivery distance.
-     * @param lastOrderInSet A map to keep track of the last order in each set of orders for path reconstruction.
-     */
-    private static void initializeMemoTable(Order
-                                                    mandatoryOrder, Map<Set<Order>, Double> memoTable, Map<Set<Order>,
-            Order> lastOrderInSet) {
-        // Set initial conditions for the dynamic programming algorithm with the mandatory order
-        Set<Order> initialSet = new HashSet<>();
-        initialSet.add(mandatoryOrder);
-        memoTable.put(initialSet, 0.0);  // Initializing distance for the mandatory order
-        lastOrderInSet.put(initialSet, mandatoryOrder);  // Setting the mandatory order as the starting point
-    }
-
-    /**
-     * Computes the minimum delivery distances for all subsets of a given size.
-     * This method is an integral part of the dynamic distance algorithm. It iterates over each subset
-     * of orders of a specified size, calculating the minimum delivery distance for that subset. This
-     * is done by considering each order as a potential last order in the subset and calculating the
-     * total distance to reach that order from the rest of the subset.
-     *
-     * <p>The method updates the memoization table and the last order in set map for each subset.
-     * It ensures that the mandatory order is always included in the subsets considered.</p>
-     *
-     * @param orders         The complete list of {@code Order} objects to consider.
-     * @param size           The size of the subsets to be considered.
-     * @param mandatoryOrder The mandatory {@code Order} object that must be included in each subset.
-     * @param memoTable      The memoization table, mapping sets of {@code Order} objects to their
-     *                       corresponding minimum delivery distance.
-     * @param lastOrderInSet A map to keep track of the last order in each subset for path reconstruction.
+     * Computes the binomial coefficients needed to rank the subsets of orders.
+     * This method builds Pascal's triangle up to the number of orders, only keeping the columns up to the size of the
+     * largest subset, since no subset of the dynamic distance algorithm is larger.
+     *
+     * @param n       The number of orders.
+     * @param maxSize The size of the largest subset.
+     * @return The table whose cell {@code [i][k]} is the number of subsets of {@code k} orders among {@code i}.
      */
-    private static void computeDistancesForSubsets(ArrayList<Order> orders, int size, Order mandatoryOrder,
-                                                   Map<Set<Order>, Double> memoTable, Map<Set<Order>, Order> lastOrderInSet) {
-        // Iterate over all subsets of a given size, updating the memoTable and lastOrderInSet
-        for (Set<Order> subset : allSubsetsOfSize(orders, size, mandatoryOrder)) {
-            double minDistance = Double.MAX_VALUE;  // Initialize minDistance to maximum value
-            Order lastOrder = null;                 // Initialize lastOrder to null
-
-            // Iterate over each order in the subset to find the minimum distance
-            for (Order order : subset) {
-                // Skip the iteration if it's the mandatory order and not the only order in the subset
-                if (order.equals(mandatoryOrder) && subset.size() != 1) {
-                    continue;
-                }
-
-                // Create a new subset excluding the current order to find the remaining distance
-                Set<Order> remaining = new HashSet<>(subset);
-                remaining.remove(order);
-                // Calculate the distance to the current order from the remaining subset
-                double distance = memoTable.get(remaining) +
-                        Order.calculateDeliveryDistance(lastOrderInSet.get(remaining), order);
-
-
-                // Update minDistance and lastOrder if a shorter path is found
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    lastOrder = order;
-                }
+    private static int[][] binomials(int n, int maxSize) {
+        int[][] binomials = new int[n + 1][maxSize + 1];
+        for (int i = 0; i <= n; i++) {
+            binomials[i][0] = 1;
+            for (int k = 1; k <= Math.min(i, maxSize); k++) {
+                binomials[i][k] = binomials[i - 1][k - 1] + binomials[i - 1][k];
             }
-
-            // Update the memoTable and lastOrderInSet with the minimum distance and corresponding last order for this subset
-            memoTable.put(subset, minDistance);
-            lastOrderInSet.put(subset, lastOrder);
         }
+        return binomials;
     }
 
     /**
-     * Builds the optimal path of orders based on the computed memoization data.
-     * This method reconstructs the optimal sequence of orders from the memoization table and
-     * last order in set map. It starts with the optimal set of orders that includes the mandatory
-     * order and has the minimum delivery distance, then traces back to build the complete path.
-     *
-     * <p>The method iterates backwards through the sets of orders, selecting the last order in
-     * each set and removing it to find the next set, until all orders are included in the path.
-     * The result is a list of orders that represents the sequence with the minimum total delivery
-     * distance while including the mandatory order.</p>
-     *
-     * @param memoTable      The memoization table, mapping sets of {@code Order} objects to their
-     *                       corresponding minimum delivery distance.
-     * @param lastOrderInSet A map to keep track of the last order in each subset for path reconstruction.
-     * @param mandatoryOrder The mandatory {@code Order} object that must be included in the optimal path.
-     * @return An ArrayList of {@code Order} objects representing the optimal path.
+     * Ranks a subset of orders among the subsets of the same size, so the tables of the dynamic distance algorithm
+     * are dense arrays.
+     * This method uses the combinatorial number system: the subset whose orders are at the indexes
+     * {@code c1 < c2 < ... < ck} has the rank {@code C(c1, 1) + C(c2, 2) + ... + C(ck, k)}. The ranks follow the
+     * numeric order of the masks, and the subsets of {@code k} orders among {@code n} are ranked from 0 to
+     * {@code C(n, k) - 1}.
+     *
+     * @param mask      The subset, bit {@code i} standing for the order at index {@code i} of the list.
+     * @param binomials The binomial coefficients, see {@link #binomials(int, int)}.
+     * @return The rank of the subset.
      */
-    private static ArrayList<Order> buildOptimalPath(Map<Set<Order>, Double> memoTable, Map<Set<Order>,
-            Order> lastOrderInSet, Order mandatoryOrder) {
-        // Find the optimal set of orders including the mandatory order with the minimum distance
-        Set<Order> currentSet = findOptimalSet(memoTable, mandatoryOrder);
-        ArrayList<Order> path = new ArrayList<>();
-
-        // Iteratively build the path by tracing back through the sets in the memoTable
-        while (currentSet != null && !currentSet.isEmpty()) {
-            // Retrieve and add the last order of the current set to the path
-            Order last = lastOrderInSet.get(currentSet);
-            path.add(last);
-            // Remove the last order to move to the next subset in the sequence
-            currentSet.remove(last);
+    private static int subsetRank(long mask, int[][] binomials) {
+        int rank = 0;
+        for (int k = 1; mask != 0; k++, mask &= mask - 1) {
+            rank += binomials[Long.numberOfTrailingZeros(mask)][k];
         }
-        // Reverse the path to get the correct order sequence from start to end
-        Collections.reverse(path);
-        return path; // Return the constructed optimal path
-    }
-
-    /**
-     * Generates all subsets of a specified size from the list of orders, ensuring each subset includes the mandatory order.
-     * This method is a key component of the dynamic distance algorithm, used for generating every possible combination
-     * of orders of a given size that includes the mandatory order. It leverages a recursive helper method
-     * {@code generateSubsets} to build these subsets.
-     *
-     * <p>This method is crucial for the dynamic programming approach, as it provides the set of all potential
-     * subsets that are evaluated to find the optimal delivery path.</p>
-     *
-     * @param orders         The complete list of {@code Order} objects to generate subsets from.
-     * @param size           The size of the subsets to be generated.
-     * @param mandatoryOrder The mandatory {@code Order} object that must be included in each subset.
-     * @return A Set containing Sets of {@code Order} objects, each representing a possible subset of orders of the
-     * specified size.
-     */
-    private static Set<Set<Order>> allSubsetsOfSize(ArrayList<Order> orders, int size, Order mandatoryOrder) {
-        // Initialize a set to hold all subsets of the given size including the mandatory order
-        Set<Set<Order>> allSubsets = new HashSet<>();
-        // Start the recursive process to generate subsets, including the mandatory order in each
-        generateSubsets(orders, size, 0, new HashSet<>(Collections.singletonList(mandatoryOrder)), allSubsets,
-                mandatoryOrder);
-        return allSubsets;  // Return the set of all generated subsets
+        return rank;
     }
 
     /**
-     * Recursively generates all subsets of orders of a specified size, including the mandatory order.
-     * This auxiliary method is used by {@code allSubsetsOfSize} to create subsets of orders. It employs
-     * a recursive approach to generate combinations of orders, ensuring that each combination
-     * includes the mandatory order. The generated subsets are stored in a set of sets.
-     *
-     * <p>This method is a fundamental part of the subset generation process in the dynamic distance
-     * algorithm. It ensures that all potential subsets that could form part of the optimal path
-     * are considered.</p>
-     *
-     * @param orders         The complete list of {@code Order} objects to generate subsets from.
-     * @param size           The size of the subsets to be generated.
-     * @param start          The starting index for generating subsets in the current recursive call.
-     * @param current        The current subset being generated.
-     * @param allSubsets     A set to collect all the generated subsets.
-     * @param mandatoryOrder The mandatory {@code Order} object that must be included in each subset.
+     * Finds the next subset of orders of the same size, in increasing order of the masks.
+     * This method applies Gosper's hack: the lowest block of consecutive orders moves its highest order one place up,
+     * and the others of the block go back to the lowest indexes.
+     *
+     * @param mask The subset, bit {@code i} standing for the order at index {@code i} of the list.
+     * @return The next subset with as many orders.
      */
-    private static void generateSubsets(ArrayList<Order> orders, int size, int start, Set<Order> current,
-                                        Set<Set<Order>> allSubsets, Order mandatoryOrder) {
-        // Base case: if the current subset reaches the desired size and contains the mandatory order, add it to allSubsets
-        if (current.size() == size) {
-            if (current.contains(mandatoryOrder)) {
-                allSubsets.add(new HashSet<>(current));
-            }
-            return;
-        }
-
-        // Recursively generate subsets by adding each order and then backtracking
-        for (int i = start; i < orders.size(); i++) {
-            // Add the next order to the current subset
-            current.add(orders.get(i));
-            // Recursive call to generate further subsets
-            generateSubsets(orders, size, i + 1, current, allSubsets, mandatoryOrder);
-            // Backtrack by removing the last added order
-            current.remove(orders.get(i));
-        }
+    private static long nextMaskOfSameSize(long mask) {
+        long lowest = mask & -mask;
+        long ripple = mask + lowest;
+        return (((ripple ^ mask) >>> 2) / lowest) | ripple;
     }
 
     /**
-     * Identifies the optimal set of orders that includes the mandatory order and has the minimum delivery distance.
-     * This method scans the memoization table to find the subset of orders that constitutes the optimal path.
-     * The optimal path is defined as the set of orders, including the mandatory order, that results in the minimum
-     * total delivery distance.
-     *
-     * <p>This method is an essential component of the dynamic distance algorithm, as it determines the
-     * most efficient sequence of orders that must be followed.</p>
-     *
-     * @param memoTable      The memoization table, mapping sets of {@code Order} objects to their
-     *                       corresponding minimum delivery distance.
-     * @param mandatoryOrder The mandatory {@code Order} object that must be included in the optimal set.
-     * @return The optimal set of {@code Order} objects, or {@code null} if no such set is found.
+     * Builds the optimal path of orders based on the computed tables.
+     * This method reconstructs the optimal sequence of orders by walking back through the layers of the tables,
+     * from the last order of the best path to the mandatory order, removing the last order from the subset at each
+     * step to find the order visited before it.
+     *
+     * @param orders         The list of {@code Order} objects the subsets are made of.
+     * @param mandatoryOrder The mandatory {@code Order} object the path starts with.
+     * @param previousOrders The index of the order visited before the last one, for each layer, subset and last order.
+     * @param binomials      The binomial coefficients, see {@link #binomials(int, int)}.
+     * @param mask           The subset of orders of the best path.
+     * @param last           The index of the last order of the best path.
+     * @param previous       The index of the order visited before the last one in the best path.
+     * @return An ArrayList of {@code Order} objects representing the optimal path.
      */
-    private static Set<Order> findOptimalSet(Map<Set<Order>, Double> memoTable, Order mandatoryOrder) {
-        // Initialize variables to track the optimal set and its minimum distance
-        Set<Order> optimalSet = null;
-        double minDistance = Double.MAX_VALUE;
-
-        // Iterate over each subset in the memoTable to find the one with the minimum distance
-        for (Set<Order> subset : memoTable.keySet()) {
-            // Check if the subset is of the desired size and contains the mandatory order
-            if (subset.size() == 5 && subset.contains(mandatoryOrder)) {
-                double distance = memoTable.get(subset);  // Get the distance for the current subset
-                // Update the optimal set if the current distance is less than the minimum found so far
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    optimalSet = subset;
-                }
-            }
+    private static ArrayList<Order> buildOptimalPath(ArrayList<Order> orders, Order mandatoryOrder,
+                                                     int[][] previousOrders, int[][] binomials, long mask, int last,
+                                                     int previous) {
+        int n = orders.size();
+        ArrayList<Order> path = new ArrayList<>();
+        path.add(orders.get(last));
+        mask &= ~(1L << last);
+        for (int size = DYNAMIC_PATH_ORDERS - 1; size >= 1; size--) {
+            // Retrieve the order visited before, then remove it from the subset to move one layer down
+            int before = previousOrders[size - 1][subsetRank(mask, binomials) * n + previous];
+            path.add(orders.get(previous));
+            mask &= ~(1L << previous);
+            previous = before;
         }
-        return optimalSet;  // Return the found optimal set of orders
+        path.add(mandatoryOrder);
+        // Reverse the path to get the correct order sequence from start to end
+        Collections.reverse(path);
+        return path;
     }
 
     // -----------------------------------------------------------------------------------------------------------------
     // Genetic algorithm with discount criterion
     // -----------------------------------------------------------------------------------------------------------------
 
+    private static final int INDIVIDUAL_SIZE = 5;
+    private static final int POPULATION_SIZE = 10;
+    private static final int MAX_GENERATION = 100; // Generations of a run without budget, the first one included
+    private static final int MAX_MEMOIZED_GENOMES = 4096; // Bounds the memory of the fitness memo of an island
+
     /**
      * Optimizes the sequence of orders based on discounts and delivery time using a genetic algorithm.
      * This method applies a genetic algorithm approach to find an optimal arrangement of orders that
@@ -534,7 +618,9 @@ public class PierreAlgorithm {
      * <p><b>Complexity Analysis:</b>
      * The complexity is O(MAX_GENERATION * POPULATION_SIZE * individualSize), assuming the cost of
      * selection, crossover, and mutation processes are linear with respect to the population size
-     * and individual size.</p>
+     * and individual size. Each individual is scored once, when it is created, and the score is stored next to its
+     * genome: sorting a generation reads the scores instead of evaluating routes, and a genome seen before is scored
+     * from a memo. The genomes are {@code int[]} arrays over the orders, allocated once per run.</p>
      *
      * @param orders         An ArrayList of {@code Order} objects representing the available orders.
      * @param mandatoryOrder An {@code Order} object that must be included in each solution.
@@ -543,34 +629,106 @@ public class PierreAlgorithm {
      * @throws IllegalArgumentException If the number of orders is less than the minimum required (4 in this case).
      */
     public static ArrayList<Order> geneticDiscount(ArrayList<Order> orders, Order mandatoryOrder, boolean display) {
+        return geneticDiscount(orders, mandatoryOrder, display, TravelMatrix.of(orders, mandatoryOrder));
+    }
+
+    /**
+     * Optimizes the sequence of orders based on discounts and delivery time using a genetic algorithm, reading
+     * every leg from the travel matrix of the current dispatch.
+     *
+     * @param orders         An ArrayList of {@code Order} objects representing the available orders.
+     * @param mandatoryOrder An {@code Order} object that must be included in each solution.
+     * @param display        A boolean flag indicating whether to display the state of the population at each generation.
+     * @param matrix         The travel matrix containing every order of the list.
+     * @return An ArrayList of {@code Order} objects representing the optimized order sequence.
+     * @throws IllegalArgumentException If the number of orders is less than the minimum required (4 in this case).
+     * @see #geneticDiscount(ArrayList, Order, boolean)
+     */
+    public static ArrayList<Order> geneticDiscount(ArrayList<Order> orders, Order mandatoryOrder, boolean display,
+                                                   TravelMatrix matrix) {
+        return geneticDiscount(orders, mandatoryOrder, display, matrix, 1);
+    }
+
+    /**
+     * Optimizes the sequence of orders based on discounts and delivery time using a genetic algorithm with several
+     * populations, the islands, evolved in parallel by the {@link IslandModel}. Each island is a population of this
+     * genetic algorithm, with its own random generator, and the best individuals migrate between the islands every
+     * {@value IslandModel#MIGRATION_INTERVAL} generations.
+     *
+     * <p>Every island runs the full number of generations, so the search grows with the number of islands while the
+     * wall-clock time stays the same as long as there is a core per island.</p>
+     *
+     * @param orders         An ArrayList of {@code Order} objects representing the available orders.
+     * @param mandatoryOrder An {@code Order} object that must be included in each solution.
+     * @param display        A boolean flag indicating whether to display the state of the first island at each
+     *                       generation.
+     * @param matrix         The travel matrix containing every order of the list.
+     * @param islandCount    The number of islands, see {@link IslandModel#defaultIslandCount()}.
+     * @return An ArrayList of {@code Order} objects representing the optimized order sequence.
+     * @throws IllegalArgumentException If the number of orders is less than the minimum required (4 in this case),
+     *                                  or there is no island.
+     * @see #geneticDiscount(ArrayList, Order, boolean)
+     */
+    public static ArrayList<Order> geneticDiscount(ArrayList<Order> orders, Order mandatoryOrder, boolean display,
+                                                   TravelMatrix matrix, int islandCount) {
+        return geneticDiscount(orders, mandatoryOrder, display, matrix, islandCount,
+                IslandModel.Budget.generations(MAX_GENERATION - 1), List.of());
+    }
+
+    /**
+     * Optimizes the sequence of orders based on discounts and delivery time using a genetic algorithm on islands,
+     * within a budget and from a warm start.
+     *
+     * <p>The run stops once the budget is spent: its number of generations, its wall-clock time, or as soon as no
+     * island improved its best individual for its number of stalled generations. Easy dispatches converge within a few
+     * generations and stop early, hard ones keep improving until the time is up. The best individual found during the
+     * whole run is returned, not only the best one of the last generation.</p>
+     *
+     * <p>The first population of each island starts with the seeds, e.g. the sequences of the greedy algorithms, up
+     * to half of the population; the rest is random. A seed that is not the mandatory order followed by 4 distinct
+     * orders of the list is ignored.</p>
+     *
+     * @param orders         An ArrayList of {@code Order} objects representing the available orders.
+     * @param mandatoryOrder An {@code Order} object that must be included in each solution.
+     * @param display        A boolean flag indicating whether to display the state of the first island at each
+     *                       generation.
+     * @param matrix         The travel matrix containing every order of the list.
+     * @param islandCount    The number of islands, see {@link IslandModel#defaultIslandCount()}.
+     * @param budget         The limits of the run.
+     * @param seeds          The sequences to start from, the mandatory order first.
+     * @return An ArrayList of {@code Order} objects representing the optimized order sequence.
+     * @throws IllegalArgumentException If the number of orders is less than the minimum required (4 in this case),
+     *                                  or there is no island.
+     * @see #geneticDiscount(ArrayList, Order, boolean)
+     */
+    public static ArrayList<Order> geneticDiscount(ArrayList<Order> orders, Order mandatoryOrder, boolean display,
+                                                   TravelMatrix matrix, int islandCount, IslandModel.Budget budget,
+                                                   List<? extends List<Order>> seeds) {
         if (orders.size() < 4) {
             throw new IllegalArgumentException("The number of orders must be at least 4");
         }
-        // Initialize algorithm parameters
-        final int INDIVIDUAL_SIZE = 5;
-        final int POPULATION_SIZE = 10;
-        final int MAX_GENERATION = 100;
-
-        // Generate the initial population
-        ArrayList<ArrayList<Order>> population = generatePopulation(orders, mandatoryOrder, POPULATION_SIZE, INDIVIDUAL_SIZE);
-        // Sort the population based on the number of discounts
-        sortByDiscountNumber(population);
+        if (islandCount < 1) {
+            throw new IllegalArgumentException("The number of islands must be at least 1");
+        }
 
-        int generation = 1;
-        // Evolve the population through generations
-        while (generation < MAX_GENERATION) {
-            if (display) {
-                displayPopulation(population, "Generation " + generation);
-            }
-            // Generate a new population
-            population = generateNewPopulation(population, orders, mandatoryOrder, POPULATION_SIZE, INDIVIDUAL_SIZE);
-            generation++;
+        // Generate the initial population of each island
+        int expectedGenomes = (int) Math.min(MAX_MEMOIZED_GENOMES, (budget.maxGenerations() + 1L) * POPULATION_SIZE);
+        Random random = new Random();
+        List<DiscountIsland> islands = new ArrayList<>(islandCount);
+        for (int i = 0; i < islandCount; i++) {
+            DiscountEvaluator evaluator = new DiscountEvaluator(orders, mandatoryOrder, matrix, INDIVIDUAL_SIZE,
+                    expectedGenomes);
+            islands.add(new DiscountIsland(evaluator, seeds, new Random(random.nextLong()), display && i == 0));
         }
+
+        // Evolve the populations through generations, the first one being the initial population
+        DiscountIsland bestIsland = IslandModel.evolve(islands, budget, DiscountIsland.BY_BEST);
+        ArrayList<Order> bestIndividual = bestIsland.evaluator.toOrders(bestIsland.bestGenome);
         if (display) {
-            System.out.println(population.get(0));
+            System.out.println(bestIndividual);
         }
 
-        return population.get(0);  // Return the best individual from the final generation
+        return bestIndividual;  // Return the best individual found
 
     }
 
@@ -579,247 +737,251 @@ public class PierreAlgorithm {
      * This method is a crucial step in the genetic algorithm, facilitating the evolution of solutions.
      * It involves selecting a subset of the current population, applying mutations to introduce variability,
      * and then filling the rest of the new population with newly generated individuals until the population
-     * size is met. Finally, the new population is sorted based on the number of discounts and delivery time.
+     * size is met. Finally, the new population is scored and sorted based on the number of discounts and delivery time.
      *
      * <p>This method ensures the genetic diversity and evolution of the population towards better solutions
-     * over successive generations.</p>
-     *
-     * @param population     The current population of individuals (sequences of {@code Order} objects).
-     * @param orders         The complete list of available {@code Order} objects.
-     * @param mandatoryOrder The mandatory {@code Order} that must be included in each individual.
-     * @param populationSize The size of the population to be maintained.
-     * @param individualSize The size of each individual (sequence of orders) in the population.
-     * @return A new population of individuals for the next generation.
+     * over successive generations. The new population is written over the genomes of a previous generation, so a
+     * generation allocates nothing.</p>
+     *
+     * @param population    The current population, sorted by fitness.
+     * @param newPopulation The population to overwrite with the next generation.
+     * @param evaluator     The fitness function of the current dispatch.
+     * @param pool          The genes that can be drawn for a new individual, in any order.
+     * @param inChild       A scratch marker of the genes already in a child, all false.
+     * @param random        The random generator of the run.
      */
-    private static ArrayList<ArrayList<Order>> generateNewPopulation(ArrayList<ArrayList<Order>> population,
-                                                                     ArrayList<Order> orders,
-                                                                     Order mandatoryOrder,
-                                                                     int populationSize, int individualSize) {
+    private static void generateNewPopulation(Population population, Population newPopulation,
+                                              DiscountEvaluator evaluator, int[] pool, boolean[] inChild,
+                                              Random random) {
         // Select a subset of the current population
-        ArrayList<ArrayList<Order>> newPopulation = selection(population);
+        int selected = selection(population, newPopulation, inChild, random);
         // Apply mutations to introduce variability
-        for (ArrayList<Order> individual : newPopulation) {
-            mutate(individual);  // Mutate each individual
+        for (int i = 0; i < selected; i++) {
+            mutate(newPopulation.genomes[i], random);  // Mutate each individual
         }
         // Fill the rest of the population with new individuals
-        while (newPopulation.size() < populationSize) {
-            newPopulation.add(generateIndividual(orders, mandatoryOrder, individualSize));
+        for (int i = selected; i < newPopulation.size(); i++) {
+            generateIndividual(newPopulation.genomes[i], evaluator.mandatoryGene(), pool, random);
+        }
+        // Score each individual once, then sort the new population based on the number of discounts and delivery time
+        for (int i = 0; i < newPopulation.size(); i++) {
+            evaluator.evaluate(newPopulation, i);
         }
-        // Sort the new population based on the number of discounts and delivery time
         sortByDiscountNumber(newPopulation);
-        return newPopulation;  // Return the newly generated population
     }
 
     /**
      * Applies a mutation operation to an individual in the genetic algorithm.
-     * This method randomly swaps two orders in the given individual (sequence of {@code Order} objects),
-     * excluding the first order which is mandatory. This mutation introduces variability and diversity
-     * into the population, aiding in the exploration of the solution space and preventing premature convergence
-     * to local optima.
+     * This method randomly swaps two genes in the given genome, excluding the first gene which is the mandatory
+     * order. This mutation introduces variability and diversity into the population, aiding in the exploration of
+     * the solution space and preventing premature convergence to local optima.
      *
      * <p>The mutation is a key mechanism in genetic algorithms to maintain genetic diversity and enable
      * the algorithm to explore a wide range of solutions over generations.</p>
      *
-     * @param individual The individual (sequence of {@code Order} objects) to be mutated.
+     * @param genome The genome to be mutated in place.
+     * @param random The random generator of the run.
      */
-    private static void mutate(ArrayList<Order> individual) {
-        Random rand = new Random();
-        // Generate two different random indices for the orders to be swapped, excluding the first (mandatory) order
-        int index1 = 1 + rand.nextInt(individual.size() - 1);
-        int index2 = 1 + rand.nextInt(individual.size() - 1);
+    private static void mutate(int[] genome, Random random) {
+        // Generate two different random indices for the genes to be swapped, excluding the first (mandatory) gene
+        int index1 = 1 + random.nextInt(genome.length - 1);
+        int index2 = 1 + random.nextInt(genome.length - 1);
 
         // Ensure that the two indices are different
         while (index1 == index2) {
-            index2 = 1 + rand.nextInt(individual.size() - 1);
+            index2 = 1 + random.nextInt(genome.length - 1);
         }
 
-        // Swap the orders at the generated indices
-        Order temp = individual.get(index1);
-        individual.set(index1, individual.get(index2));
-        individual.set(index2, temp);
+        // Swap the genes at the generated indices
+        int temp = genome[index1];
+        genome[index1] = genome[index2];
+        genome[index2] = temp;
     }
 
     /**
      * Performs the selection operation in the genetic algorithm.
      * This method selects a subset of individuals from the current population to be parents for the next generation.
      * The selection is based on the fitness of the individuals, with a preference for those with better fitness (e.g.,
-     * higher discounts, shorter delivery times). The method includes both direct selection and generation of new
+     * fewer discounts, shorter delivery times). The method includes both direct selection and generation of new
      * individuals through crossover between selected parents.
      *
      * <p>Selection is a crucial process in genetic algorithms, directing the evolution towards better solutions
      * by choosing fitter individuals for reproduction.</p>
      *
-     * @param population The current population of individuals (sequences of {@code Order} objects).
-     * @return A new ArrayList of selected individuals and their offspring.
+     * @param population    The current population, sorted by fitness.
+     * @param newPopulation The population whose first genomes receive the selected individuals and their offspring.
+     * @param inChild       A scratch marker of the genes already in a child, all false.
+     * @param random        The random generator of the run.
+     * @return The number of genomes written.
      */
-    private static ArrayList<ArrayList<Order>> selection(ArrayList<ArrayList<Order>> population) {
-        // Initialize a list to store the selected individuals
-        ArrayList<ArrayList<Order>> selectedIndividuals = new ArrayList<>();
+    private static int selection(Population population, Population newPopulation, boolean[] inChild, Random random) {
+        int[][] parents = population.genomes;
+        int[][] children = newPopulation.genomes;
 
         // Directly select the fittest individual
-        selectedIndividuals.add(population.get(0));
+        System.arraycopy(parents[0], 0, children[0], 0, parents[0].length);
 
         // Generate new individuals by crossover using selected parents
-        selectedIndividuals.add(crossover(population.get(0), population.get(1)));
-        selectedIndividuals.add(crossover(population.get(0), population.get(2)));
-        selectedIndividuals.add(crossover(population.get(1), population.get(2)));
-        selectedIndividuals.add(crossover(population.get(0), population.get(3)));
+        crossover(parents[0], parents[1], children[1], inChild, random);
+        crossover(parents[0], parents[2], children[2], inChild, random);
+        crossover(parents[1], parents[2], children[3], inChild, random);
+        crossover(parents[0], parents[3], children[4], inChild, random);
 
-        return selectedIndividuals;  // Return the list of selected and crossover-generated individuals
+        return 5;  // The selected individual and its four crossover-generated children
     }
 
     /**
      * Performs a crossover operation between two parent individuals in the genetic algorithm.
-     * This method combines parts of two parent individuals (sequences of {@code Order} objects) to create
-     * a new child individual. The first order of the child is always inherited from the first parent,
-     * ensuring the mandatory order is included. For the remaining orders, the method randomly selects
-     * orders from either parent, ensuring no duplicate orders in the child.
+     * This method combines parts of two parent genomes to create a new child genome. The first gene of the child is
+     * always inherited from the first parent, ensuring the mandatory order is included. For the remaining genes, the
+     * method randomly selects genes from either parent, ensuring no duplicate genes in the child.
      *
      * <p>Crossover is a fundamental genetic algorithm operation that allows for the mixing of genetic
      * material (in this case, order sequences) from two parents to produce a new individual, potentially
      * with better fitness.</p>
      *
-     * @param parent1 The first parent individual.
-     * @param parent2 The second parent individual.
-     * @return A new individual (ArrayList of {@code Order}) created by combining orders from both parents.
+     * @param parent1 The first parent genome.
+     * @param parent2 The second parent genome.
+     * @param child   The genome overwritten with the child.
+     * @param inChild A scratch marker of the genes already in the child, all false, and all false again on return.
+     * @param random  The random generator of the run.
      */
-    private static ArrayList<Order> crossover(ArrayList<Order> parent1, ArrayList<Order> parent2) {
-        ArrayList<Order> child = new ArrayList<>();
-        Random rand = new Random();
-
-        // Always inherit the first order from parent1 (mandatory order)
-        child.add(parent1.get(0));
-
-        // For each remaining order, randomly choose from either parent1 or parent2
-        for (int i = 1; i < parent1.size(); i++) {
-            if (rand.nextBoolean()) {
-                // Add order from parent1 if it does not already exist in child
-                addOrderIfNotExists(child, parent1.get(i), parent2);
+    private static void crossover(int[] parent1, int[] parent2, int[] child, boolean[] inChild, Random random) {
+        // Always inherit the first gene from parent1 (mandatory order)
+        child[0] = parent1[0];
+        inChild[child[0]] = true;
+
+        // For each remaining gene, randomly choose from either parent1 or parent2
+        for (int i = 1; i < parent1.length; i++) {
+            if (random.nextBoolean()) {
+                // Add gene from parent1 if it does not already exist in child
+                child[i] = geneIfNotExists(parent1[i], parent2, inChild);
             } else {
-                // Add order from parent2 if it does not already exist in child
-                addOrderIfNotExists(child, parent2.get(i), parent1);
+                // Add gene from parent2 if it does not already exist in child
+                child[i] = geneIfNotExists(parent2[i], parent1, inChild);
             }
+            inChild[child[i]] = true;
         }
 
-        return child;  // Return the newly created child individual
+        // Clear the marker for the next child
+        for (int gene : child) {
+            inChild[gene] = false;
+        }
     }
 
     /**
-     * Adds an order to a child individual if it's not already present, otherwise adds an alternative order.
-     * This method is used during the crossover process in the genetic algorithm. It attempts to add a specified
-     * order to the child individual. If the order is already in the child, the method searches the other parent
-     * for an alternative order that is not yet in the child and adds it. This ensures diversity in the child
-     * individual while avoiding duplicates.
+     * Chooses the gene to add to a child: the given one if it's not already present, otherwise an alternative one.
+     * This method is used during the crossover process in the genetic algorithm. If the gene is already in the
+     * child, the method searches the other parent for the first gene that is not yet in the child. This ensures
+     * diversity in the child individual while avoiding duplicates.
      *
      * <p>This method helps in maintaining a valid sequence of orders in the child individual by preventing
-     * duplicate orders and ensuring a mix of orders from both parents.</p>
+     * duplicate orders and ensuring a mix of orders from both parents. The other parent has as many distinct genes
+     * as the child will have, so an alternative always exists.</p>
      *
-     * @param child       The child individual (sequence of {@code Order} objects) being constructed.
-     * @param order       The order to be added to the child.
-     * @param otherParent The other parent individual used as an alternative source of orders.
+     * @param gene        The gene to be added to the child.
+     * @param otherParent The other parent genome used as an alternative source of genes.
+     * @param inChild     The marker of the genes already in the child.
+     * @return The gene to add.
      */
-    private static void addOrderIfNotExists(ArrayList<Order> child, Order order, ArrayList<Order> otherParent) {
-        // Check if the order is already in the child
-        if (!child.contains(order)) {
-            // If not, add the order to the child
-            child.add(order);
-        } else {
-            // If the order is already in the child, look for an alternative order from the other parent
-            for (Order altOrder : otherParent) {
-                if (!child.contains(altOrder)) {
-                    child.add(altOrder);  // Add the first alternative order found
-                    break;
-                }
+    private static int geneIfNotExists(int gene, int[] otherParent, boolean[] inChild) {
+        // Check if the gene is already in the child
+        if (!inChild[gene]) {
+            return gene;
+        }
+        // If the gene is already in the child, look for an alternative gene from the other parent
+        for (int altGene : otherParent) {
+            if (!inChild[altGene]) {
+                return altGene;  // Add the first alternative gene found
             }
         }
+        throw new IllegalStateException("The parents have duplicate genes");
     }
 
     /**
      * Sorts the population based on the number of discounts and, in case of a tie, total delivery time.
-     * This method is used in the genetic algorithm to order the population of individuals (sequences of {@code Order} objects)
-     * primarily by the number of discounts each individual achieves, and secondarily by the total delivery time in case of
-     * equal discount numbers. This sorting criterion aims to prioritize solutions that maximize discounts while minimizing
-     * delivery time.
+     * This method is used in the genetic algorithm to order the population of individuals primarily by the number of
+     * discounts each individual gives, and secondarily by the total delivery time in case of equal discount numbers.
+     * This sorting criterion aims to prioritize solutions that minimize discounts and delivery time.
      *
      * <p>Sorting the population based on fitness criteria (discounts and delivery time) is crucial in genetic algorithms
-     * for selecting top-performing individuals for further evolution.</p>
+     * for selecting top-performing individuals for further evolution. The fitness is read from the scores stored next
+     * to each genome, so no route is evaluated while sorting. The population is small, a stable insertion sort moves
+     * the genomes without allocating.</p>
      *
-     * @param population The population of individuals to be sorted.
+     * @param population The scored population to be sorted.
      */
-    private static void sortByDiscountNumber(ArrayList<ArrayList<Order>> population) {
-        // Sort the population based on the number of discounts and total delivery time
-        population.sort((individual1, individual2) -> {
-            int discountsForIndividual1 = Order.numberOfDiscount(individual1);
-            int discountsForIndividual2 = Order.numberOfDiscount(individual2);
-
-            // If the number of discounts is the same, sort by total delivery time
-            if (discountsForIndividual1 == discountsForIndividual2) {
-                double totalTimeIndividual1 = Order.totalDeliveryTime(individual1);
-                double totalTimeIndividual2 = Order.totalDeliveryTime(individual2);
-                return Double.compare(totalTimeIndividual1, totalTimeIndividual2);
+    private static void sortByDiscountNumber(Population population) {
+        for (int i = 1; i < population.size(); i++) {
+            int[] genome = population.genomes[i];
+            int discount = population.discounts[i];
+            double time = population.times[i];
+            int j = i - 1;
+            // Shift the individuals that are strictly worse, so equal individuals keep their order
+            while (j >= 0 && (population.discounts[j] > discount
+                    || population.discounts[j] == discount && Double.compare(population.times[j], time) > 0)) {
+                population.genomes[j + 1] = population.genomes[j];
+                population.discounts[j + 1] = population.discounts[j];
+                population.times[j + 1] = population.times[j];
+                j--;
             }
-            // Otherwise, sort by the number of discounts
-            return Integer.compare(discountsForIndividual1, discountsForIndividual2);
-        });
+            population.genomes[j + 1] = genome;
+            population.discounts[j + 1] = discount;
+            population.times[j + 1] = time;
+        }
     }
 
     /**
      * Generates the initial population for the genetic algorithm.
-     * This method creates a population of individuals, each representing a potential solution to the optimization problem.
-     * Each individual is a sequence of {@code Order} objects of a specified size, including the mandatory order.
-     * The initial population is generated randomly, ensuring diversity, which is crucial for the effectiveness
-     * of the genetic algorithm.
+     * This method fills a population with random individuals, each representing a potential solution to the
+     * optimization problem: a sequence of genes of a specified size, starting with the mandatory order. The initial
+     * population is generated randomly, ensuring diversity, which is crucial for the effectiveness of the genetic
+     * algorithm.
      *
      * <p>This initial population serves as the starting point for the genetic algorithm's process of evolution
      * towards optimal solutions.</p>
      *
-     * @param orders         The complete list of available {@code Order} objects.
-     * @param mandatoryOrder The mandatory {@code Order} that must be included in each individual.
-     * @param populationSize The size of the population to be generated.
-     * @param individualSize The size of each individual (sequence of orders) in the population.
-     * @return An ArrayList representing the initial population, where each element is an individual.
+     * @param population The population to fill and score.
+     * @param evaluator  The fitness function of the current dispatch.
+     * @param pool       The genes that can be drawn for a new individual, in any order.
+     * @param random     The random generator of the run.
      */
-    private static ArrayList<ArrayList<Order>> generatePopulation(ArrayList<Order> orders, Order mandatoryOrder,
-                                                                  int populationSize, int individualSize) {
-        ArrayList<ArrayList<Order>> population = new ArrayList<>();
-        // Create each individual in the population
-        for (int i = 0; i < populationSize; i++) {
-            // Generate and add a new individual to the population
-            population.add(generateIndividual(orders, mandatoryOrder, individualSize));
-        }
-        return population; // Return the generated initial population
+    private static void generatePopulation(Population population, DiscountEvaluator evaluator, int[] pool,
+                                           Random random) {
+        // Create and score each individual in the population
+        for (int i = 0; i < population.size(); i++) {
+            generateIndividual(population.genomes[i], evaluator.mandatoryGene(), pool, random);
+            evaluator.evaluate(population, i);
+        }
     }
 
     /**
      * Generates an individual for the genetic algorithm's population.
-     * This method creates a single individual (sequence of {@code Order} objects) for the genetic algorithm's population.
-     * It starts by adding the mandatory order to ensure its presence in every individual. The rest of the individual
-     * is filled with randomly chosen orders from the available list, ensuring that the individual's size matches
-     * the specified size. This random selection contributes to the diversity of the initial population.
+     * This method creates a single genome for the genetic algorithm's population. It starts with the mandatory order
+     * to ensure its presence in every individual. The rest of the genome is filled with distinct random genes, drawn
+     * by a partial Fisher-Yates shuffle of the pool. This random selection contributes to the diversity of the
+     * population.
      *
      * <p>Generating diverse individuals is crucial for the genetic algorithm to effectively explore the solution space.</p>
      *
-     * @param orders         The complete list of available {@code Order} objects.
-     * @param mandatoryOrder The mandatory {@code Order} that must be included in each individual.
-     * @param individualSize The size of the individual to be generated.
-     * @return An individual (ArrayList of {@code Order}), a potential solution for the optimization problem.
+     * @param genome        The genome to overwrite.
+     * @param mandatoryGene The gene of the mandatory order.
+     * @param pool          The genes that can be drawn, in any order; shuffled in place.
+     * @param random        The random generator of the run.
      */
-    private static ArrayList<Order> generateIndividual(ArrayList<Order> orders, Order mandatoryOrder,
-                                                       int individualSize) {
-        ArrayList<Order> individual = new ArrayList<>();
-        ArrayList<Order> ordersCopy = new ArrayList<>(orders);
+    private static void generateIndividual(int[] genome, int mandatoryGene, int[] pool, Random random) {
         // Start the individual with the mandatory order
-        individual.add(mandatoryOrder);
-
-        // Randomly select orders to fill the rest of the individual
-        for (int i = 0; i < individualSize - 1; i++) {
-            if (!ordersCopy.isEmpty()) {
-                int randomIndex = (int) (Math.random() * ordersCopy.size());
-                // Add the randomly selected order and remove it from the copy list
-                individual.add(ordersCopy.remove(randomIndex));
-            }
+        genome[0] = mandatoryGene;
+
+        // Randomly select genes to fill the rest of the individual
+        for (int i = 1; i < genome.length; i++) {
+            int randomIndex = i - 1 + random.nextInt(pool.length - i + 1);
+            int gene = pool[randomIndex];
+            // Move the selected gene out of the part of the pool still to be drawn from
+            pool[randomIndex] = pool[i - 1];
+            pool[i - 1] = gene;
+            genome[i] = gene;
         }
-        return individual;  // Return the generated individual
     }
 
     /**
@@ -832,23 +994,309 @@ public class PierreAlgorithm {
      * <p>
      * assessing the effectiveness of the genetic algorithm's operations like selection, crossover, and mutation.</p>
      *
-     * @param population The population of individuals (sequences of {@code Order} objects) to be displayed.
+     * @param population The scored population to be displayed.
      * @param message    A custom message to be displayed before the population, usually indicating the context or the
      *                   generation number.
+     * @param evaluator  The fitness function of the current dispatch, giving the order of each gene.
      */
-    private static void displayPopulation(ArrayList<ArrayList<Order>> population, String message) {
+    private static void displayPopulation(Population population, String message, DiscountEvaluator evaluator) {
         // Print the custom message header
         System.out.println("---------------------------" + message + "---------------------------");
 
         // Iterate over each individual in the population
-        for (ArrayList<Order> individual : population) {
+        for (int i = 0; i < population.size(); i++) {
             // Print each order 's ID in the individual
-            for (Order order : individual) {
-                System.out.print(order.id() + " ");
+            for (int gene : population.genomes[i]) {
+                System.out.print(evaluator.order(gene).id() + " ");
             }
             // Print the number of discounts and total delivery time for the individual
-            System.out.println(", Number of discount: " + Order.numberOfDiscount(individual) +
-                    ", Total delivery time: " + Order.totalDeliveryTime(individual));
+            System.out.println(", Number of discount: " + population.discounts[i] +
+                    ", Total delivery time: " + population.times[i]);
+        }
+    }
+
+    /**
+     * An island of the genetic algorithm with discount criterion: a population sorted by fitness, the population it
+     * is bred into, the best individual found so far, and the random generator and scratch arrays of its breeding.
+     * The genomes of two generations are allocated once, each generation is written over the one before it.
+     *
+     * <p>The best individual is kept apart because the fittest individual of a generation is mutated like the others
+     * when it is selected, so a generation can be worse than the one before it.</p>
+     */
+    private static final class DiscountIsland implements IslandModel.Island {
+        /**
+         * Orders the islands by their best individual: fewer discounts first, then shorter delivery time.
+         */
+        private static final Comparator<DiscountIsland> BY_BEST = Comparator
+                .<DiscountIsland>comparingInt(island -> island.bestDiscount)
+                .thenComparingDouble(island -> island.bestTime);
+
+        private final DiscountEvaluator evaluator;
+        private final int[] pool;
+        private final boolean[] inChild;
+        private final Random random;
+        private final boolean display;
+        private final int[] bestGenome = new int[INDIVIDUAL_SIZE];
+        private int bestDiscount = Integer.MAX_VALUE;
+        private double bestTime = Double.POSITIVE_INFINITY;
+        private Population population;
+        private Population newPopulation;
+        private int generation = 1;
+
+        /**
+         * Constructs an island and its initial population.
+         *
+         * @param evaluator The fitness function of the island.
+         * @param seeds     The sequences the initial population starts with, up to half of it.
+         * @param random    The random generator of the island.
+         * @param display   True to display the population at each generation.
+         */
+        private DiscountIsland(DiscountEvaluator evaluator, List<? extends List<Order>> seeds, Random random,
+                               boolean display) {
+            this.evaluator = evaluator;
+            this.pool = new int[evaluator.mandatoryGene()];
+            for (int gene = 0; gene < pool.length; gene++) {
+                pool[gene] = gene;
+            }
+            this.inChild = new boolean[evaluator.mandatoryGene() + 1];
+            this.random = random;
+            this.display = display;
+            this.population = new Population(POPULATION_SIZE, INDIVIDUAL_SIZE);
+            this.newPopulation = new Population(POPULATION_SIZE, INDIVIDUAL_SIZE);
+
+            // Generate the initial population, then put the seeds in place of the first random individuals
+            generatePopulation(population, evaluator, pool, random);
+            int seeded = 0;
+            for (List<Order> seed : seeds) {
+                int[] genome = seeded < POPULATION_SIZE / 2 ? evaluator.toGenome(seed, inChild) : null;
+                if (genome != null) {
+                    population.genomes[seeded] = genome;
+                    evaluator.evaluate(population, seeded);
+                    seeded++;
+                }
+            }
+            // Sort the population based on the number of discounts
+            sortByDiscountNumber(population);
+            keepBest();
+        }
+
+        @Override
+        public boolean evolve() {
+            if (display) {
+                displayPopulation(population, "Generation " + generation, evaluator);
+            }
+            // Generate a new population
+            generateNewPopulation(population, newPopulation, evaluator, pool, inChild, random);
+            Population previousPopulation = population;
+            population = newPopulation;
+            newPopulation = previousPopulation;
+            generation++;
+            return keepBest();
+        }
+
+        @Override
+        public int[] emigrant() {
+            return bestGenome.clone();
+        }
+
+        @Override
+        public boolean immigrate(int[] genome) {
+            // The population is sorted, the worst individual is the last one
+            int worst = population.size() - 1;
+            population.genomes[worst] = genome;
+            evaluator.evaluate(population, worst);
+            sortByDiscountNumber(population);
+            return keepBest();
+        }
+
+        /**
+         * Keeps the fittest individual of the population if it is better than the best individual found so far.
+         *
+         * @return True if the best individual improved.
+         */
+        private boolean keepBest() {
+            boolean improved = population.discounts[0] < bestDiscount
+                    || population.discounts[0] == bestDiscount && population.times[0] < bestTime;
+            if (improved) {
+                System.arraycopy(population.genomes[0], 0, bestGenome, 0, INDIVIDUAL_SIZE);
+                bestDiscount = population.discounts[0];
+                bestTime = population.times[0];
+            }
+            return improved;
+        }
+    }
+
+    /**
+     * A population of the genetic algorithm: the genomes, and the fitness of each genome stored next to it.
+     * A genome is a sequence of genes, the indexes of orders in the dense order index of the
+     * {@link DiscountEvaluator}. The genomes are allocated once per run and overwritten by each generation.
+     */
+    private static final class Population {
+        private final int[][] genomes;
+        private final int[] discounts;
+        private final double[] times;
+
+        /**
+         * Allocates a population.
+         *
+         * @param populationSize The number of individuals.
+         * @param individualSize The number of genes of an individual.
+         */
+        private Population(int populationSize, int individualSize) {
+            this.genomes = new int[populationSize][individualSize];
+            this.discounts = new int[populationSize];
+            this.times = new double[populationSize];
+        }
+
+        private int size() {
+            return genomes.length;
+        }
+    }
+
+    /**
+     * The fitness function of the genetic algorithm with discount criterion: the number of discounts and the total
+     * delivery time of a genome, same rules as {@link Order#numberOfDiscount(ArrayList)} and
+     * {@link Order#totalDeliveryTime(ArrayList)}, computed by the travel matrix on the genome.
+     *
+     * <p>The genes are the orders of the list by position, then the mandatory order. Individuals repeat across
+     * generations, the fittest in particular, so the fitness is memoized in an open-addressing table keyed by the
+     * genome packed in a long, a few bits per gene; no key or value is boxed. When a genome does not fit in a long,
+     * or the table is half full, the fitness is computed every time.</p>
+     */
+    private static final class DiscountEvaluator {
+        private static final long EMPTY_KEY = -1;
+
+        private final ArrayList<Order> orders;
+        private final Order mandatoryOrder;
+        private final TravelMatrix matrix;
+        private final int[] matrixIndexes;
+        private final int bitsPerGene;
+        private final boolean packable;
+        private final long[] memoKeys;
+        private final int[] memoDiscounts;
+        private final double[] memoTimes;
+        private int memoSize;
+
+        /**
+         * Constructs the fitness function of a run.
+         *
+         * @param orders          The available orders.
+         * @param mandatoryOrder  The mandatory order.
+         * @param matrix          The travel matrix containing every order of the list and the mandatory order.
+         * @param individualSize  The number of genes of an individual.
+         * @param expectedGenomes The number of distinct genomes the run may evaluate, to size the memo.
+         */
+        private DiscountEvaluator(ArrayList<Order> orders, Order mandatoryOrder, TravelMatrix matrix,
+                                  int individualSize, int expectedGenomes) {
+            this.orders = orders;
+            this.mandatoryOrder = mandatoryOrder;
+            this.matrix = matrix;
+            this.matrixIndexes = new int[orders.size() + 1];
+            for (int gene = 0; gene < orders.size(); gene++) {
+                matrixIndexes[gene] = matrix.indexOf(orders.get(gene));
+            }
+            matrixIndexes[orders.size()] = matrix.indexOf(mandatoryOrder);
+            // The islands evolve on the common pool, where a route lookup must not block
+            matrix.fillTimes(matrixIndexes);
+            this.bitsPerGene = 32 - Integer.numberOfLeadingZeros(orders.size());
+            // A packed key must stay positive, so that it never equals EMPTY_KEY
+            this.packable = bitsPerGene * individualSize < Long.SIZE;
+            int capacity = packable ? Integer.highestOneBit(Math.max(1, expectedGenomes)) << 2 : 0;
+            this.memoKeys = new long[capacity];
+            this.memoDiscounts = new int[capacity];
+            this.memoTimes = new double[capacity];
+            Arrays.fill(memoKeys, EMPTY_KEY);
+        }
+
+        private int mandatoryGene() {
+            return orders.size();
+        }
+
+        private Order order(int gene) {
+            return gene == orders.size() ? mandatoryOrder : orders.get(gene);
+        }
+
+        /**
+         * Stores the fitness of an individual next to its genome, from the memo when the genome was seen before.
+         *
+         * @param population The population.
+         * @param individual The index of the individual in the population.
+         */
+        private void evaluate(Population population, int individual) {
+            int[] genome = population.genomes[individual];
+            if (!packable) {
+                population.discounts[individual] = matrix.numberOfDiscount(genome, matrixIndexes);
+                population.times[individual] = matrix.totalDeliveryTime(genome, matrixIndexes);
+                return;
+            }
+            long key = 0;
+            for (int gene : genome) {
+                key = key << bitsPerGene | gene;
+            }
+            int mask = memoKeys.length - 1;
+            int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+            while (memoKeys[slot] != EMPTY_KEY && memoKeys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (memoKeys[slot] == key) {
+                population.discounts[individual] = memoDiscounts[slot];
+                population.times[individual] = memoTimes[slot];
+                return;
+            }
+            int discount = matrix.numberOfDiscount(genome, matrixIndexes);
+            double time = matrix.totalDeliveryTime(genome, matrixIndexes);
+            population.discounts[individual] = discount;
+            population.times[individual] = time;
+            // Keep the table at most half full so that the probes stay short and always end on an empty slot
+            if (2 * (memoSize + 1) <= memoKeys.length) {
+                memoKeys[slot] = key;
+                memoDiscounts[slot] = discount;
+                memoTimes[slot] = time;
+                memoSize++;
+            }
+        }
+
+        /**
+         * Gets the genome of a sequence of orders.
+         *
+         * @param sequence The orders in delivery sequence, the mandatory order first.
+         * @param inChild  A scratch marker of the genes, all false, and all false again on return.
+         * @return The genome, or null if the sequence is not the mandatory order followed by distinct orders of the
+         * list, {@link #INDIVIDUAL_SIZE} orders in all.
+         */
+        private int[] toGenome(List<Order> sequence, boolean[] inChild) {
+            if (sequence.size() != INDIVIDUAL_SIZE || sequence.get(0) != mandatoryOrder) {
+                return null;
+            }
+            int[] genome = new int[INDIVIDUAL_SIZE];
+            genome[0] = mandatoryGene();
+            int marked = 1;
+            while (marked < INDIVIDUAL_SIZE) {
+                int gene = orders.indexOf(sequence.get(marked));
+                if (gene < 0 || inChild[gene]) {
+                    break;
+                }
+                inChild[gene] = true;
+                genome[marked++] = gene;
+            }
+            for (int i = 1; i < marked; i++) {
+                inChild[genome[i]] = false;
+            }
+            return marked == INDIVIDUAL_SIZE ? genome : null;
+        }
+
+        /**
+         * Gets the orders of a genome.
+         *
+         * @param genome The genome.
+         * @return The orders in delivery sequence.
+         */
+        private ArrayList<Order> toOrders(int[] genome) {
+            ArrayList<Order> individual = new ArrayList<>(genome.length);
+            for (int gene : genome) {
+                individual.add(order(gene));
+            }
+            return individual;
         }
     }
 
@@ -13,18 +13,32 @@ import java.util.logging.Logger;
 public class Pizzeria {
     private final ArrayList<DeliveryPerson> deliveryTeam;
     private final ArrayList<Order> orders;
+    private final RoutePrefetcher routePrefetcher;
 
     // Constants
     public static final GPS PIZZERIA_LOCATION = new GPS(48.7117294, 2.165678);
     public static final int ORDER_MAX_WAIT = 30;
     public static final int DELIVERY_TEAM_SIZE = 15;
     public static final int TIME_TO_WAIT_BEFORE_REFRESH = 5;
+    public static final int PREFETCH_LEGS_PER_ORDER = 12; // Routes fetched ahead for each new order, 0 to disable
 
     /**
      * Constructs a new Pizzeria instance.
      * Initializes the orders list and the delivery team.
      */
     public Pizzeria() {
+        this(PREFETCH_LEGS_PER_ORDER);
+    }
+
+    /**
+     * Constructs a new Pizzeria instance with a given prefetch budget.
+     * Initializes the orders list and the delivery team.
+     *
+     * @param prefetchLegsPerOrder the maximum number of routes fetched in the background for each new order, 0 to
+     *                             only fetch the routes when the orders are dispatched
+     */
+    public Pizzeria(int prefetchLegsPerOrder) {
+        routePrefetcher = new RoutePrefetcher(PIZZERIA_LOCATION, prefetchLegsPerOrder);
         orders = new ArrayList<>();
         deliveryTeam = new ArrayList<>();
         // Initialize delivery team
@@ -66,9 +80,12 @@ public class Pizzeria {
                 ArrayList<Order> copy = new ArrayList<>(orders);
                 copy.removeAll(toRemove);
                 int bestGrade = 0;
-                ArrayList<Order> ordersToDeliver = SailorManAlgorithm.selectAlgorithm(copy, order, bestGrade);
+                // One travel matrix for the whole dispatch, its missing routes fetched in bulk, shared by the selection
+                // and the final sort
+                TravelMatrix matrix = TravelMatrix.of(copy).prefetch();
+                ArrayList<Order> ordersToDeliver = SailorManAlgorithm.selectAlgorithm(copy, order, bestGrade, matrix);
 
-                SailorManAlgorithm.sortOrders(ordersToDeliver, bestGrade);
+                SailorManAlgorithm.sortOrders(ordersToDeliver, bestGrade, matrix);
                 assignOrdersToDeliveryPerson(ordersToDeliver);
 
                 toRemove.addAll(ordersToDeliver);
@@ -130,12 +147,16 @@ public class Pizzeria {
     /**
      * Sets the orders for the Pizzeria.
      * This method is synchronized to handle concurrent modifications to the orders list.
+     * The routes of the new orders are fetched in the background, so they are cached when the orders are dispatched.
      *
      * @param orders the list of new orders to be added
      */
     public void setOrders(ArrayList<Order> orders) {
+        ArrayList<Order> pending;
         synchronized (this.orders) {
+            pending = new ArrayList<>(this.orders);
             this.orders.addAll(orders);
         }
+        routePrefetcher.submit(orders, pending);
     }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.pizzadelivery.model;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the routing API answers 429, so the caller can back off.
+ *
+ * @author Team
+ */
+public class RateLimitException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message The detail message.
+     */
+    public RateLimitException(String message) {
+        super(message);
+    }
+}
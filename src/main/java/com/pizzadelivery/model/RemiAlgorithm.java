@@ -1,7 +1,6 @@
 package com.pizzadelivery.model;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 
 /**
@@ -12,68 +11,116 @@ public class RemiAlgorithm {
     //////////////////////////////////////////////////////////////////////////////////
 /////////////////    BRUTE FORCE PROGRAMMING ALGORITHM ///////////////////////////
 //////////////////////////////////////////////////////////////////////////////////
+    // Every permutation at once, in lexicographic order: prefer IndexSequences.permutations, which is lazy
     public static ArrayList<ArrayList<Order>> generate_combinations(ArrayList<Order> orders) {
         ArrayList<ArrayList<Order>> results = new ArrayList<>();
-        if (orders.isEmpty()) {
-            results.add(new ArrayList<>());
-            return results;
+        IndexSequences.permutations(orders.size()).forEach(permutation -> results.add(toOrders(permutation, orders)));
+        return results;
+    }
+
+    public static ArrayList<Order> bruteForceDistance(ArrayList<Order> orders){
+        return bruteForceDistance(orders, TravelMatrix.of(orders));
+    }
+
+    public static ArrayList<Order> bruteForceDistance(ArrayList<Order> orders, TravelMatrix matrix){
+        int n = orders.size();
+        // Row n is the pizzeria. Every leg is read once up front, so the parallel workers only read a plain array
+        // and the matrix does not fill its cells from several threads
+        int[] matrix_indexes = matrixIndexes(orders, matrix);
+        double[] distances = new double[(n + 1) * (n + 1)];
+        for (int from = 0; from <= n; from++) {
+            for (int to = 0; to <= n; to++) {
+                if (from != to) {
+                    distances[from * (n + 1) + to] = matrix.distance(matrix_indexes[from], matrix_indexes[to]);
+                }
+            }
         }
+        // The permutations are generated one at a time; on a tie the first one in lexicographic order wins
+        return IndexSequences.permutations(n).parallel()
+                .map(permutation -> new ScoredSequence(permutation, routeCost(permutation, n, distances, n + 1)))
+                .min(Comparator.comparingDouble(ScoredSequence::cost))
+                .map(best -> toOrders(best.sequence(), orders))
+                .orElse(null);
+    }
 
+    // Cost of the route from the pizzeria through the sequence and back, legs read from a dense table
+    private static double routeCost(int[] sequence, int pizzeria, double[] costs, int stride) {
+        int previous = pizzeria;
+        double total_cost = 0;
+        for (int current : sequence) {
+            total_cost += costs[previous * stride + current];
+            previous = current;
+        }
+        return total_cost + costs[previous * stride + pizzeria];
+    }
+
+    // Matrix index of each order, followed by the pizzeria
+    private static int[] matrixIndexes(ArrayList<Order> orders, TravelMatrix matrix) {
+        int[] matrix_indexes = new int[orders.size() + 1];
         for (int i = 0; i < orders.size(); i++) {
-            Order current = orders.remove(i);
-            ArrayList<ArrayList<Order>> permutations = generate_combinations(orders);
-            for (ArrayList<Order> permutation : permutations) {
-                permutation.add(0, current);
-            }
-            results.addAll(permutations);
-            orders.add(i, current);
+            matrix_indexes[i] = matrix.indexOf(orders.get(i));
         }
-        return results;
+        matrix_indexes[orders.size()] = TravelMatrix.PIZZERIA_INDEX;
+        return matrix_indexes;
     }
 
-    public static ArrayList<Order> bruteForceDistance(ArrayList<Order> orders){
-        double min_distance = Double.POSITIVE_INFINITY;
-        ArrayList<Order> best_combination = null;
-        ArrayList<ArrayList<Order>> ALL_Orders = generate_combinations(orders);
-        for (ArrayList<Order> order : ALL_Orders) {
-            double total_distance = 0;
-            total_distance += Order.totalDeliveryDistance(order);
-            if (total_distance < min_distance) {
-                min_distance = total_distance;
-                best_combination = new ArrayList<>(order);
-            }
+    private static ArrayList<Order> toOrders(int[] sequence, ArrayList<Order> orders) {
+        ArrayList<Order> result = new ArrayList<>(sequence.length);
+        for (int index : sequence) {
+            result.add(orders.get(index));
         }
-        return best_combination;
+        return result;
+    }
+
+    private record ScoredSequence(int[] sequence, double cost) {
     }
     //////////////////////////////////////////////////////////////////////////////////
 /////////////////    DYNAMIC PROGRAMMING ALGORITHM    ///////////////////////////
 //////////////////////////////////////////////////////////////////////////////////
     public static ArrayList<Order> dynamicTime(ArrayList<Order> allOrders, Order mandatoryOrder) {
-        ArrayList<Order> bestCombination = null;
-        double minDeliveryTime = Double.MAX_VALUE;
-
-        for (int i = 0; i < allOrders.size(); i++) {
-            for (int j = i + 1; j < allOrders.size(); j++) {
-                for (int k = j + 1; k < allOrders.size(); k++) {
-                    for (int l = k + 1; l < allOrders.size(); l++) {
-                        ArrayList<Order> currentCombination = new ArrayList<>();
-                        currentCombination.add(mandatoryOrder);
-                        currentCombination.add(allOrders.get(i));
-                        currentCombination.add(allOrders.get(j));
-                        currentCombination.add(allOrders.get(k));
-                        currentCombination.add(allOrders.get(l));
-
-                        double currentDeliveryTime = Order.totalDeliveryTime(currentCombination);
-                        if (currentDeliveryTime < minDeliveryTime) {
-                            minDeliveryTime = currentDeliveryTime;
-                            bestCombination = new ArrayList<>(currentCombination);
-                        }
-                    }
-                }
+        return dynamicTime(allOrders, mandatoryOrder, TravelMatrix.of(allOrders, mandatoryOrder));
+    }
+
+    public static ArrayList<Order> dynamicTime(ArrayList<Order> allOrders, Order mandatoryOrder, TravelMatrix matrix) {
+        int n = allOrders.size();
+        if (n < 4) {
+            return null;
+        }
+        // Row n is the pizzeria and row n + 1 the mandatory order. Only the legs a combination can use are read,
+        // the mandatory order first and then the others in increasing index, before the parallel workers start
+        int[] matrix_indexes = new int[n + 2];
+        for (int i = 0; i < n; i++) {
+            matrix_indexes[i] = matrix.indexOf(allOrders.get(i));
+        }
+        matrix_indexes[n] = TravelMatrix.PIZZERIA_INDEX;
+        matrix_indexes[n + 1] = matrix.indexOf(mandatoryOrder);
+        int stride = n + 2;
+        double[] times = new double[stride * stride];
+        times[n * stride + n + 1] = matrix.time(matrix_indexes[n], matrix_indexes[n + 1]);
+        for (int i = 0; i < n; i++) {
+            times[(n + 1) * stride + i] = matrix.time(matrix_indexes[n + 1], matrix_indexes[i]);
+            times[i * stride + n] = matrix.time(matrix_indexes[i], matrix_indexes[n]);
+            for (int j = i + 1; j < n; j++) {
+                times[i * stride + j] = matrix.time(matrix_indexes[i], matrix_indexes[j]);
             }
         }
 
-        return bestCombination;
+        // The combinations are generated one at a time; on a tie the first one in lexicographic order wins
+        return IndexSequences.combinations(n, 4).parallel()
+                .map(combination -> {
+                    int[] sequence = {n + 1, combination[0], combination[1], combination[2], combination[3]};
+                    return new ScoredSequence(sequence, routeCost(sequence, n, times, stride));
+                })
+                .min(Comparator.comparingDouble(ScoredSequence::cost))
+                .map(best -> {
+                    ArrayList<Order> bestCombination = new ArrayList<>();
+                    bestCombination.add(mandatoryOrder);
+                    for (int i = 1; i < best.sequence().length; i++) {
+                        bestCombination.add(allOrders.get(best.sequence()[i]));
+                    }
+                    return bestCombination;
+                })
+                .orElse(null);
     }
 //////////////////////////////////////////////////////////////////////////////////
 /////////////////    GENETIC PROGRAMMING ALGORITHM    ///////////////////////////
@@ -83,6 +130,10 @@ public class RemiAlgorithm {
 /////////////////    GREEDY PROGRAMMING ALGORITHM    ///////////////////////////
 //////////////////////////////////////////////////////////////////////////////////
     public static ArrayList<Order> greedyDiscount(ArrayList<Order> allOrders, Order mandatoryOrder) {
+        return greedyDiscount(allOrders, mandatoryOrder, TravelMatrix.of(allOrders, mandatoryOrder));
+    }
+
+    public static ArrayList<Order> greedyDiscount(ArrayList<Order> allOrders, Order mandatoryOrder, TravelMatrix matrix) {
         ArrayList<Order> selectedOrders = new ArrayList<>();
         selectedOrders.add(mandatoryOrder);
 
@@ -94,7 +145,8 @@ public class RemiAlgorithm {
                 if (!selectedOrders.contains(order)) {
                     ArrayList<Order> tempSet = new ArrayList<>(selectedOrders);
                     tempSet.add(order);
-                    int additionalDiscounts = Order.numberOfDiscount(tempSet) - Order.numberOfDiscount(selectedOrders);
+                    int additionalDiscounts = Order.numberOfDiscount(tempSet, matrix)
+                            - Order.numberOfDiscount(selectedOrders, matrix);
 
                     if (additionalDiscounts < minAdditionalDiscounts) {
                         minAdditionalDiscounts = additionalDiscounts;
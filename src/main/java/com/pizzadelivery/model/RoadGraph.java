@@ -0,0 +1,202 @@
+package com.pizzadelivery.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A road network: located nodes and directed edges weighted by travel time and length.
+ * It is read from a plain edge-list extract of the delivery area, one record per line:
+ * <pre>
+ * # comment
+ * n &lt;node id&gt; &lt;latitude&gt; &lt;longitude&gt;
+ * e &lt;from id&gt; &lt;to id&gt; &lt;meters&gt; &lt;seconds&gt;   one-way road
+ * b &lt;from id&gt; &lt;to id&gt; &lt;meters&gt; &lt;seconds&gt;   two-way road
+ * </pre>
+ * Node ids can be any {@code long}, e.g. OSM ids; they are renumbered densely in file order.
+ *
+ * @author Team
+ */
+public final class RoadGraph {
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final double[] edgeMeters;
+    private final double[] edgeSeconds;
+
+    /**
+     * Constructs a road network from its arrays.
+     *
+     * @param latitudes   The latitude of each node, in degrees.
+     * @param longitudes  The longitude of each node, in degrees.
+     * @param edgeFrom    The origin node of each directed edge.
+     * @param edgeTo      The destination node of each directed edge.
+     * @param edgeMeters  The length of each edge in meters.
+     * @param edgeSeconds The travel time of each edge in seconds.
+     */
+    public RoadGraph(double[] latitudes, double[] longitudes, int[] edgeFrom, int[] edgeTo, double[] edgeMeters,
+                     double[] edgeSeconds) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.edgeMeters = edgeMeters;
+        this.edgeSeconds = edgeSeconds;
+    }
+
+    /**
+     * Reads a road network from an edge-list file.
+     *
+     * @param path The edge-list file.
+     * @return The road network.
+     * @throws IOException If the file cannot be read, or a line is invalid or refers to an unknown node.
+     */
+    public static RoadGraph read(Path path) throws IOException {
+        HashMap<Long, Integer> nodeIndexes = new HashMap<>();
+        double[] latitudes = new double[1024];
+        double[] longitudes = new double[1024];
+        int nodeCount = 0;
+        int[] edgeFrom = new int[1024];
+        int[] edgeTo = new int[1024];
+        double[] edgeMeters = new double[1024];
+        double[] edgeSeconds = new double[1024];
+        int edgeCount = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                try {
+                    if (parts[0].equals("n") && parts.length == 4) {
+                        if (nodeCount == latitudes.length) {
+                            latitudes = Arrays.copyOf(latitudes, nodeCount * 2);
+                            longitudes = Arrays.copyOf(longitudes, nodeCount * 2);
+                        }
+                        nodeIndexes.put(Long.parseLong(parts[1]), nodeCount);
+                        latitudes[nodeCount] = Double.parseDouble(parts[2]);
+                        longitudes[nodeCount] = Double.parseDouble(parts[3]);
+                        nodeCount++;
+                    } else if ((parts[0].equals("e") || parts[0].equals("b")) && parts.length == 5) {
+                        Integer from = nodeIndexes.get(Long.parseLong(parts[1]));
+                        Integer to = nodeIndexes.get(Long.parseLong(parts[2]));
+                        if (from == null || to == null) {
+                            throw new IOException("Unknown node on line " + lineNumber + " of " + path);
+                        }
+                        double meters = Double.parseDouble(parts[3]);
+                        double seconds = Double.parseDouble(parts[4]);
+                        int directions = parts[0].equals("b") ? 2 : 1;
+                        if (edgeCount + directions > edgeFrom.length) {
+                            edgeFrom = Arrays.copyOf(edgeFrom, edgeFrom.length * 2);
+                            edgeTo = Arrays.copyOf(edgeTo, edgeTo.length * 2);
+                            edgeMeters = Arrays.copyOf(edgeMeters, edgeMeters.length * 2);
+                            edgeSeconds = Arrays.copyOf(edgeSeconds, edgeSeconds.length * 2);
+                        }
+                        for (int direction = 0; direction < directions; direction++) {
+                            edgeFrom[edgeCount] = direction == 0 ? from : to;
+                            edgeTo[edgeCount] = direction == 0 ? to : from;
+                            edgeMeters[edgeCount] = meters;
+                            edgeSeconds[edgeCount] = seconds;
+                            edgeCount++;
+                        }
+                    } else {
+                        throw new IOException("Invalid line " + lineNumber + " of " + path + ": " + line);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid number on line " + lineNumber + " of " + path, e);
+                }
+            }
+        }
+        return new RoadGraph(Arrays.copyOf(latitudes, nodeCount), Arrays.copyOf(longitudes, nodeCount),
+                Arrays.copyOf(edgeFrom, edgeCount), Arrays.copyOf(edgeTo, edgeCount),
+                Arrays.copyOf(edgeMeters, edgeCount), Arrays.copyOf(edgeSeconds, edgeCount));
+    }
+
+    /**
+     * Gets the number of nodes.
+     *
+     * @return The number of nodes.
+     */
+    public int nodeCount() {
+        return latitudes.length;
+    }
+
+    /**
+     * Gets the number of directed edges.
+     *
+     * @return The number of edges.
+     */
+    public int edgeCount() {
+        return edgeFrom.length;
+    }
+
+    /**
+     * Gets the latitude of a node.
+     *
+     * @param node The node.
+     * @return The latitude in degrees.
+     */
+    public double latitude(int node) {
+        return latitudes[node];
+    }
+
+    /**
+     * Gets the longitude of a node.
+     *
+     * @param node The node.
+     * @return The longitude in degrees.
+     */
+    public double longitude(int node) {
+        return longitudes[node];
+    }
+
+    /**
+     * Gets the origin of an edge.
+     *
+     * @param edge The edge.
+     * @return The origin node.
+     */
+    public int edgeFrom(int edge) {
+        return edgeFrom[edge];
+    }
+
+    /**
+     * Gets the destination of an edge.
+     *
+     * @param edge The edge.
+     * @return The destination node.
+     */
+    public int edgeTo(int edge) {
+        return edgeTo[edge];
+    }
+
+    /**
+     * Gets the length of an edge.
+     *
+     * @param edge The edge.
+     * @return The length in meters.
+     */
+    public double edgeMeters(int edge) {
+        return edgeMeters[edge];
+    }
+
+    /**
+     * Gets the travel time of an edge.
+     *
+     * @param edge The edge.
+     * @return The travel time in seconds.
+     */
+    public double edgeSeconds(int edge) {
+        return edgeSeconds[edge];
+    }
+}
@@ -0,0 +1,283 @@
+package com.pizzadelivery.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.logging.Logger;
+
+/**
+ * What the routing API taught us about where routes can start and end, so that a location it cannot route is not
+ * sent to it again and again.
+ * <p>
+ * Two kinds of knowledge are kept:
+ * <ul>
+ *     <li>a negative cache of the exact locations the API could not route, anywhere;</li>
+ *     <li>a coarse bitmap over the service area, one cell of about 55 m by 37 m per bit, of the cells where a route
+ *     started or ended, and of the cells where the API failed to route a location.</li>
+ * </ul>
+ * A location is known to be unroutable if it failed itself, or if its cell only ever failed. Such a location is
+ * snapped to the center of the nearest cell known to be routable: a route started or ended there, so the API finds a
+ * road within its search radius of 350 m.
+ * <p>
+ * The map is saved to a binary file, big-endian: an int magic, an int version, the grid (double minimum latitude,
+ * double minimum longitude, double cell size in degrees, int rows, int columns), the routable then the unroutable
+ * cells as a long count and the words of a {@link BitSet}, then an int count and the packed unroutable locations. A
+ * file with another grid is ignored. The map is thread-safe.
+ *
+ * @author Team
+ */
+public final class RoutabilityMap {
+    private static final int MAGIC = 0x50445241; // "PDRA"
+    private static final int VERSION = 1;
+    private static final int SAVE_EVERY_ROUTABLE_CELLS = 64; // New failures are saved at once, they are rare
+
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double cellDegrees;
+    private final int rows;
+    private final int columns;
+    private final BitSet routableCells;
+    private final BitSet unroutableCells;
+    private final HashSet<Long> unroutableLocations;
+    private final Path path;
+    private int unsavedRoutableCells;
+
+    /**
+     * Constructs an empty map.
+     *
+     * @param minLatitude  The south edge of the service area, in degrees.
+     * @param maxLatitude  The north edge of the service area, in degrees.
+     * @param minLongitude The west edge of the service area, in degrees.
+     * @param maxLongitude The east edge of the service area, in degrees.
+     * @param cellDegrees  The size of a cell, in degrees of latitude and of longitude.
+     * @param path         The file the map is saved to, or null to keep it in memory.
+     */
+    public RoutabilityMap(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+                          double cellDegrees, Path path) {
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.cellDegrees = cellDegrees;
+        this.rows = (int) Math.ceil((maxLatitude - minLatitude) / cellDegrees);
+        this.columns = (int) Math.ceil((maxLongitude - minLongitude) / cellDegrees);
+        this.routableCells = new BitSet(rows * columns);
+        this.unroutableCells = new BitSet(rows * columns);
+        this.unroutableLocations = new HashSet<>();
+        this.path = path;
+    }
+
+    /**
+     * Opens the map saved in a file, or an empty map if there is none for this grid.
+     *
+     * @param path         The file the map is saved to.
+     * @param minLatitude  The south edge of the service area, in degrees.
+     * @param maxLatitude  The north edge of the service area, in degrees.
+     * @param minLongitude The west edge of the service area, in degrees.
+     * @param maxLongitude The east edge of the service area, in degrees.
+     * @param cellDegrees  The size of a cell, in degrees of latitude and of longitude.
+     * @return The map.
+     */
+    public static RoutabilityMap open(Path path, double minLatitude, double maxLatitude, double minLongitude,
+                                      double maxLongitude, double cellDegrees) {
+        RoutabilityMap map = new RoutabilityMap(minLatitude, maxLatitude, minLongitude, maxLongitude, cellDegrees,
+                path);
+        if (!Files.exists(path)) {
+            return map;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION || input.readDouble() != map.minLatitude
+                    || input.readDouble() != map.minLongitude || input.readDouble() != map.cellDegrees
+                    || input.readInt() != map.rows || input.readInt() != map.columns) {
+                return map; // Another grid: start over, the knowledge will come back with the next routes
+            }
+            map.routableCells.or(readBits(input));
+            map.unroutableCells.or(readBits(input));
+            int locationCount = input.readInt();
+            for (int i = 0; i < locationCount; i++) {
+                map.unroutableLocations.add(input.readLong());
+            }
+        } catch (IOException e) {
+            Logger logger = Logger.getLogger(RoutabilityMap.class.getName());
+            logger.warning("Unable to read the routability map, starting empty: " + e.getMessage());
+            return new RoutabilityMap(minLatitude, maxLatitude, minLongitude, maxLongitude, cellDegrees, path);
+        }
+        return map;
+    }
+
+    /**
+     * Records a location the API routed.
+     *
+     * @param location The location.
+     */
+    public synchronized void recordRoutable(GPS location) {
+        int cell = cell(location);
+        if (cell >= 0 && !routableCells.get(cell)) {
+            routableCells.set(cell);
+            if (++unsavedRoutableCells >= SAVE_EVERY_ROUTABLE_CELLS) {
+                save();
+            }
+        }
+    }
+
+    /**
+     * Records a location the API could not route.
+     *
+     * @param location The location.
+     */
+    public synchronized void recordUnroutable(GPS location) {
+        boolean added = unroutableLocations.add(RouteKey.pack(location));
+        int cell = cell(location);
+        if (cell >= 0) {
+            unroutableCells.set(cell);
+        }
+        if (added) {
+            save();
+        }
+    }
+
+    /**
+     * Checks whether a location is known to be unroutable, without calling the API.
+     *
+     * @param location The location.
+     * @return True if the location failed before, or lies in a cell where every location failed.
+     */
+    public synchronized boolean isKnownUnroutable(GPS location) {
+        if (unroutableLocations.contains(RouteKey.pack(location))) {
+            return true;
+        }
+        int cell = cell(location);
+        return cell >= 0 && unroutableCells.get(cell) && !routableCells.get(cell);
+    }
+
+    /**
+     * Finds the nearest cell known to be routable, searching rings of cells of growing size around a location.
+     *
+     * @param location The location, possibly outside the service area.
+     * @return The center of the nearest routable cell, or null if no cell is known to be routable.
+     */
+    public synchronized GPS nearestRoutable(GPS location) {
+        if (routableCells.isEmpty()) {
+            return null;
+        }
+        int row = Math.max(0, Math.min(rows - 1, (int) Math.floor((location.latitude() - minLatitude) / cellDegrees)));
+        int column = Math.max(0, Math.min(columns - 1,
+                (int) Math.floor((location.longitude() - minLongitude) / cellDegrees)));
+        for (int ring = 0; ring < Math.max(rows, columns); ring++) {
+            GPS nearest = null;
+            double nearestDistance = Double.POSITIVE_INFINITY;
+            for (int r = row - ring; r <= row + ring; r++) {
+                boolean edgeRow = r == row - ring || r == row + ring;
+                // Inner rows of the ring only have their first and last cells on the ring
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int c = column - ring; c <= column + ring; c += step) {
+                    if (r < 0 || r >= rows || c < 0 || c >= columns || !routableCells.get(r * columns + c)) {
+                        continue;
+                    }
+                    GPS center = new GPS(minLatitude + (r + 0.5) * cellDegrees, minLongitude + (c + 0.5) * cellDegrees);
+                    double distance = location.calculateCrowFliesDistance(center);
+                    if (distance < nearestDistance) {
+                        nearest = center;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+            if (nearest != null) {
+                return nearest;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Saves the map, if it has a file. Failures are logged: the knowledge is only lost if the application stops.
+     */
+    public synchronized void save() {
+        if (path == null) {
+            return;
+        }
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tempFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeDouble(minLatitude);
+                output.writeDouble(minLongitude);
+                output.writeDouble(cellDegrees);
+                output.writeInt(rows);
+                output.writeInt(columns);
+                writeBits(output, routableCells);
+                writeBits(output, unroutableCells);
+                output.writeInt(unroutableLocations.size());
+                for (long location : unroutableLocations) {
+                    output.writeLong(location);
+                }
+            }
+            Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            unsavedRoutableCells = 0;
+        } catch (IOException e) {
+            Logger logger = Logger.getLogger(RoutabilityMap.class.getName());
+            logger.warning("Unable to save the routability map: " + e.getMessage());
+            try {
+                if (tempFile != null) {
+                    Files.deleteIfExists(tempFile);
+                }
+            } catch (IOException ignored) {
+                // Nothing more to do, the next save writes another temporary file
+            }
+        }
+    }
+
+    /**
+     * Gets the cell of a location.
+     *
+     * @param location The location.
+     * @return The index of the cell, or -1 if the location is outside the service area.
+     */
+    private int cell(GPS location) {
+        int row = (int) Math.floor((location.latitude() - minLatitude) / cellDegrees);
+        int column = (int) Math.floor((location.longitude() - minLongitude) / cellDegrees);
+        return row < 0 || row >= rows || column < 0 || column >= columns ? -1 : row * columns + column;
+    }
+
+    /**
+     * Writes a bit set.
+     *
+     * @param output The stream.
+     * @param bits   The bit set.
+     * @throws IOException If the stream cannot be written.
+     */
+    private static void writeBits(DataOutputStream output, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        output.writeLong(words.length);
+        for (long word : words) {
+            output.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads a bit set.
+     *
+     * @param input The stream.
+     * @return The bit set.
+     * @throws IOException If the stream cannot be read.
+     */
+    private static BitSet readBits(DataInputStream input) throws IOException {
+        long count = input.readLong();
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Invalid bit set length: " + count);
+        }
+        long[] words = new long[(int) count];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = input.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+}
@@ -0,0 +1,925 @@
+package com.pizzadelivery.model;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.logging.Logger;
+
+/**
+ * A persistent cache of route values keyed by packed coordinate pairs (see {@link RouteKey}).
+ * Routes live in two tiers: a memory-mapped {@link MappedRouteSnapshot} holding everything known at the last
+ * compaction, and an open-addressing primitive map holding the routes found since. The map stores the two
+ * {@code long} halves of each key and its {@code float} values in flat arrays, so a lookup allocates nothing and an
+ * entry costs 16 bytes of key plus 4 bytes per value, against well over 100 bytes for a {@code String} key and a
+ * boxed {@code Double} in a {@code HashMap}.
+ * <p>
+ * New routes are persisted through an {@link AppendLog} of locale-independent {@code from to value...} records.
+ * Compaction merges the map into a new snapshot file and maps it, after which the map starts empty again. Each
+ * compaction writes a new generation of the snapshot, {@code <snapshot>.<generation>}, instead of replacing the file
+ * in place: the previous snapshot is still mapped by the readers, and a mapped file can be neither replaced nor
+ * deleted on Windows. The older generations are deleted once the new one is published, or on a later compaction or
+ * start if they could not be deleted yet; the snapshot file itself is generation 0.
+ * <p>
+ * Reads are lock-free: they run as optimistic reads of a {@link StampedLock} and are only retried if a write happened
+ * meanwhile, so concurrent cache hits never wait on each other. Writers take the write lock for an in-place insert
+ * only. Compaction freezes the map under the lock and installs an empty one, writes the new snapshot file without
+ * holding the lock (readers check the frozen map in the meantime), then publishes the snapshot; the log is written by
+ * its own background flusher. Neither ever holds the lock during I/O.
+ * <p>
+ * A cache opened with {@link Limits} is bounded. Every lookup and write is counted in a {@link FrequencySketch}, and
+ * each compaction keeps at most {@code maxEntries} routes: expired routes are dropped first. Then, as in W-TinyLFU,
+ * the routes found since the last compaction compete with the snapshot on their recent access frequency, and the
+ * least used ones are evicted. The map plays the role of the admission window: it is compacted as soon as it holds an
+ * eighth of the bound, which also bounds the heap it uses. Every route carries the hour it was written at, stored
+ * after its values, so routes older than {@code maxAge} are reported as missing and fetched again.
+ * <p>
+ * The {@code peek} lookups are not counted, neither in the statistics nor in the sketch: they are for the checks of
+ * the application itself, so that {@link #stats()} and the eviction only see the real lookups.
+ *
+ * @author Team
+ */
+public final class RouteCache {
+    private static final long EMPTY = Long.MIN_VALUE; // Never a packed location, latitudes fit in 28 bits
+    private static final int INITIAL_CAPACITY = 256;
+    private static final String LOG_FILE_SUFFIX = ".log";
+    private static final long MILLIS_PER_HOUR = 3_600_000L; // Write times are stored in whole hours, exact in a float
+    private static final int WINDOW_DIVISOR = 8; // Share of the bound the map holds between two compactions
+
+    private final Path snapshotPath;
+    private final int valueCount;
+    private final int stride; // Values of a route plus its write time
+    private final Limits limits;
+    private final float maxAgeHours;
+    private final FrequencySketch sketch;
+    private final float openHour;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder expirations;
+    private final AppendLog log;
+    private final StampedLock lock;
+    // Published under the write lock, read optimistically
+    private volatile Table table;
+    private volatile Table frozen;
+    private volatile MappedRouteSnapshot snapshot;
+    private long generation; // Of the snapshot, -1 before the first one; only changed by the compaction
+    private boolean loading;
+
+    /**
+     * The bounds of a cache.
+     *
+     * @param maxEntries The maximum number of routes kept by a compaction.
+     * @param maxAge     The age after which a route is fetched again, or null to keep routes forever.
+     */
+    public record Limits(int maxEntries, Duration maxAge) {
+        public static final Limits UNBOUNDED = new Limits(Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Hit, miss and eviction counts of a cache since it was opened.
+     *
+     * @param hits        The lookups that found the route.
+     * @param misses      The lookups that did not, expired routes included.
+     * @param evictions   The routes dropped by a compaction to stay under the bound.
+     * @param expirations The routes dropped by a compaction because they were too old.
+     */
+    public record Stats(long hits, long misses, long evictions, long expirations) {
+        /**
+         * Gets the share of the lookups that found the route.
+         *
+         * @return The hit rate, between 0 and 1, or 0 before the first lookup.
+         */
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    /**
+     * Receives the routes of the cache.
+     */
+    @FunctionalInterface
+    public interface RouteVisitor {
+        /**
+         * Visits a route.
+         *
+         * @param from        The packed origin.
+         * @param to          The packed destination.
+         * @param routeValues The values of the route; the array is reused between two calls.
+         */
+        void visit(long from, long to, float[] routeValues);
+    }
+
+    /**
+     * An open-addressing table: two key halves and {@code valueCount} values per slot, in flat arrays.
+     * A table is only modified in place under the write lock; resizing publishes a new table.
+     */
+    private static final class Table {
+        private final long[] keys;
+        private final float[] values;
+        private int size;
+
+        /**
+         * Constructs an empty table.
+         *
+         * @param capacity The number of slots, a power of two.
+         * @param stride   The number of values per slot.
+         */
+        private Table(int capacity, int stride) {
+            this.keys = new long[capacity * 2];
+            this.values = new float[capacity * stride];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /**
+         * Finds the slot of a route with linear probing. The load factor stays under one half, so there is always
+         * an empty slot to stop on, even when an optimistic reader sees a table in the middle of a write.
+         *
+         * @param from The packed origin.
+         * @param to   The packed destination.
+         * @return The slot holding the route, or the empty slot where it would be inserted.
+         */
+        private int findSlot(long from, long to) {
+            int mask = keys.length / 2 - 1;
+            int slot = hash(from, to) & mask;
+            while (keys[slot * 2] != EMPTY && (keys[slot * 2] != from || keys[slot * 2 + 1] != to)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Checks whether a slot holds a route.
+         *
+         * @param slot The slot.
+         * @return True if the slot is used.
+         */
+        private boolean isUsed(int slot) {
+            return keys[slot * 2] != EMPTY;
+        }
+    }
+
+    /**
+     * Constructs an empty cache over a snapshot file.
+     *
+     * @param snapshotPath        The snapshot file, the log is written next to it.
+     * @param valueCount          The number of values stored for each route.
+     * @param flushIntervalMillis The interval between two group commits of the log, in milliseconds, or 0 to only
+     *                            write the log on {@link #flush()} and {@link #close()}.
+     * @param limits              The bounds of the cache.
+     */
+    private RouteCache(Path snapshotPath, int valueCount, long flushIntervalMillis, Limits limits) {
+        this.snapshotPath = snapshotPath;
+        this.valueCount = valueCount;
+        this.stride = valueCount + 1;
+        this.limits = limits;
+        this.maxAgeHours = limits.maxAge() == null ? Float.POSITIVE_INFINITY
+                : Math.max(1, limits.maxAge().toMillis() / MILLIS_PER_HOUR);
+        this.sketch = limits.maxEntries() == Integer.MAX_VALUE ? null : new FrequencySketch(limits.maxEntries());
+        this.openHour = currentHour();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.expirations = new LongAdder();
+        this.lock = new StampedLock();
+        this.table = new Table(INITIAL_CAPACITY, stride);
+        Path logPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + LOG_FILE_SUFFIX);
+        this.log = new AppendLog(logPath, flushIntervalMillis, this::compactionThreshold, this::writeSnapshot);
+    }
+
+    /**
+     * Opens a cache: maps its snapshot and replays its log. When the snapshot does not exist yet, the given legacy
+     * text caches are migrated first, legacy cache {@code i} giving the value {@code i} of each route; a value missing
+     * from one of them is stored as {@link Float#NaN}. The migration is compacted right away, so the next start maps
+     * the snapshot instead; the text files are left in place.
+     *
+     * @param snapshotPath        The snapshot file of the cache.
+     * @param valueCount          The number of values stored for each route.
+     * @param flushIntervalMillis The interval between two group commits of the log, in milliseconds, or 0 to only
+     *                            write the log on {@link #flush()} and {@link #close()}.
+     * @param legacyTextPaths     The legacy text caches to migrate, one per value, or none.
+     * @return The opened cache, empty if none of its files can be read.
+     */
+    public static RouteCache open(Path snapshotPath, int valueCount, long flushIntervalMillis,
+                                  Path... legacyTextPaths) {
+        return open(snapshotPath, valueCount, flushIntervalMillis, Limits.UNBOUNDED, legacyTextPaths);
+    }
+
+    /**
+     * Opens a bounded cache, see {@link #open(Path, int, long, Path...)}.
+     *
+     * @param snapshotPath        The snapshot file of the cache.
+     * @param valueCount          The number of values stored for each route.
+     * @param flushIntervalMillis The interval between two group commits of the log, in milliseconds, or 0 to only
+     *                            write the log on {@link #flush()} and {@link #close()}.
+     * @param limits              The maximum number of routes and their maximum age.
+     * @param legacyTextPaths     The legacy text caches to migrate, one per value, or none.
+     * @return The opened cache, empty if none of its files can be read.
+     */
+    public static RouteCache open(Path snapshotPath, int valueCount, long flushIntervalMillis, Limits limits,
+                                  Path... legacyTextPaths) {
+        RouteCache cache = new RouteCache(snapshotPath, valueCount, flushIntervalMillis, limits);
+        cache.generation = cache.latestGeneration();
+        boolean migrating = cache.generation < 0 && legacyTextPaths.length > 0;
+        try {
+            if (cache.generation >= 0) {
+                cache.snapshot = MappedRouteSnapshot.open(cache.generationPath(cache.generation));
+                cache.deleteOlderGenerations();
+            }
+        } catch (IOException e) {
+            Logger logger = Logger.getLogger(RouteCache.class.getName());
+            logger.warning("Exception occurred while opening the cache snapshot: " + e.getMessage());
+        }
+
+        cache.loading = true;
+        cache.replayLog();
+        if (migrating) {
+            for (int field = 0; field < legacyTextPaths.length && field < valueCount; field++) {
+                cache.importLegacyText(legacyTextPaths[field], field);
+            }
+        }
+        cache.loading = false;
+        if (migrating && cache.size() > 0) {
+            cache.compact(); // If it fails, the migration runs again on the next start
+        }
+        return cache;
+    }
+
+    /**
+     * Looks up a value of a route, without locking. The lookup is counted in the statistics and the frequency sketch.
+     *
+     * @param from  The packed origin.
+     * @param to    The packed destination.
+     * @param field The index of the value.
+     * @return The value, or {@link Float#NaN} if the route is not cached or has expired.
+     */
+    public float get(long from, long to, int field) {
+        float value = peek(from, to, field);
+        recordAccess(from, to, !Float.isNaN(value));
+        return value;
+    }
+
+    /**
+     * Looks up all the values of a route at once, without locking. The values are always those of a single put.
+     * The lookup is counted in the statistics and the frequency sketch.
+     *
+     * @param from        The packed origin.
+     * @param to          The packed destination.
+     * @param routeValues Receives the values of the route, {@code valueCount} of them.
+     * @return True if the route is cached, false if it is not or has expired; the array content is then unspecified.
+     */
+    public boolean get(long from, long to, float[] routeValues) {
+        boolean found = peek(from, to, routeValues);
+        recordAccess(from, to, found);
+        return found;
+    }
+
+    /**
+     * Looks up a value of a route like {@link #get(long, long, int)}, without counting the lookup: for the checks of
+     * the application itself, e.g. whether a route still has to be fetched, which are not traffic.
+     *
+     * @param from  The packed origin.
+     * @param to    The packed destination.
+     * @param field The index of the value.
+     * @return The value, or {@link Float#NaN} if the route is not cached or has expired.
+     */
+    public float peek(long from, long to, int field) {
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            float value = Float.NaN;
+            float writtenAt = Float.NaN;
+            Table current = table;
+            Table compacting = frozen;
+            int slot = current.findSlot(from, to);
+            if (current.isUsed(slot)) {
+                value = current.values[slot * stride + field];
+                writtenAt = current.values[slot * stride + valueCount];
+            } else if (compacting != null && compacting.isUsed(slot = compacting.findSlot(from, to))) {
+                value = compacting.values[slot * stride + field];
+                writtenAt = compacting.values[slot * stride + valueCount];
+            } else {
+                MappedRouteSnapshot mapped = snapshot;
+                int record = mapped == null ? -1 : mapped.indexOf(from, to);
+                if (record >= 0) {
+                    value = mapped.valueAt(record, field);
+                    writtenAt = writtenAt(mapped, record);
+                }
+            }
+            if (lock.validate(stamp)) {
+                return !Float.isNaN(writtenAt) && !isExpired(writtenAt) ? value : Float.NaN;
+            }
+            Thread.onSpinWait(); // A write happened during the read, which may have seen it half done
+        }
+    }
+
+    /**
+     * Looks up all the values of a route like {@link #get(long, long, float[])}, without counting the lookup.
+     *
+     * @param from        The packed origin.
+     * @param to          The packed destination.
+     * @param routeValues Receives the values of the route, {@code valueCount} of them.
+     * @return True if the route is cached, false if it is not or has expired; the array content is then unspecified.
+     */
+    public boolean peek(long from, long to, float[] routeValues) {
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            float writtenAt = Float.NaN;
+            Table current = table;
+            Table compacting = frozen;
+            int slot = current.findSlot(from, to);
+            if (current.isUsed(slot)) {
+                System.arraycopy(current.values, slot * stride, routeValues, 0, valueCount);
+                writtenAt = current.values[slot * stride + valueCount];
+            } else if (compacting != null && compacting.isUsed(slot = compacting.findSlot(from, to))) {
+                System.arraycopy(compacting.values, slot * stride, routeValues, 0, valueCount);
+                writtenAt = compacting.values[slot * stride + valueCount];
+            } else {
+                MappedRouteSnapshot mapped = snapshot;
+                int record = mapped == null ? -1 : mapped.indexOf(from, to);
+                for (int field = 0; record >= 0 && field < valueCount; field++) {
+                    routeValues[field] = mapped.valueAt(record, field);
+                }
+                if (record >= 0) {
+                    writtenAt = writtenAt(mapped, record);
+                }
+            }
+            if (lock.validate(stamp)) {
+                return !Float.isNaN(writtenAt) && !isExpired(writtenAt);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Caches the values of a route and queues them for the next group commit of the log.
+     * Takes the write lock for the insert only; readers retry instead of waiting.
+     *
+     * @param from        The packed origin.
+     * @param to          The packed destination.
+     * @param routeValues The values of the route, {@code valueCount} of them.
+     */
+    public void put(long from, long to, float... routeValues) {
+        if (routeValues.length != valueCount) {
+            throw new IllegalArgumentException("Expected " + valueCount + " values, got " + routeValues.length);
+        }
+        if (sketch != null && !loading) {
+            sketch.increment(hash(from, to));
+        }
+        store(from, to, routeValues, currentHour());
+    }
+
+    /**
+     * Inserts or replaces a route under the write lock, and logs it unless the cache is loading.
+     *
+     * @param from        The packed origin.
+     * @param to          The packed destination.
+     * @param routeValues The values of the route, {@code valueCount} of them.
+     * @param writtenAt   The hour the values were fetched at.
+     */
+    private void store(long from, long to, float[] routeValues, float writtenAt) {
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            int slot = current.findSlot(from, to);
+            if (!current.isUsed(slot)) {
+                if ((current.size + 1) * 2 > current.keys.length / 2) {
+                    current = resize(current); // Keep the load factor under one half so probe sequences stay short
+                    slot = current.findSlot(from, to);
+                }
+                current.keys[slot * 2] = from;
+                current.keys[slot * 2 + 1] = to;
+                current.size++;
+            }
+            System.arraycopy(routeValues, 0, current.values, slot * stride, valueCount);
+            current.values[slot * stride + valueCount] = writtenAt;
+
+            if (!loading) {
+                // Appended under the write lock, so a compaction sees the route before or after, never half of it
+                log.append(logRecord(current, slot));
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gets the number of routes in the cache, snapshot and maps together. A route found again after a compaction
+     * is counted twice until the next one.
+     *
+     * @return The number of cached routes.
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            Table compacting = frozen;
+            MappedRouteSnapshot mapped = snapshot;
+            return table.size + (compacting == null ? 0 : compacting.size) + (mapped == null ? 0 : mapped.size());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Visits every cached route, snapshot records first. Takes the read lock, so writers wait until the visit ends.
+     *
+     * @param visitor Receives each route that has not expired; a route found again after a compaction is visited
+     *                twice, newest last.
+     */
+    public void forEach(RouteVisitor visitor) {
+        long stamp = lock.readLock();
+        try {
+            MappedRouteSnapshot mapped = snapshot;
+            float[] routeValues = new float[valueCount];
+            for (int record = 0; mapped != null && record < mapped.size(); record++) {
+                if (isExpired(writtenAt(mapped, record))) {
+                    continue;
+                }
+                for (int field = 0; field < valueCount; field++) {
+                    routeValues[field] = mapped.valueAt(record, field);
+                }
+                visitor.visit(mapped.fromAt(record), mapped.toAt(record), routeValues);
+            }
+            for (Table current : new Table[]{frozen, table}) {
+                for (int slot = 0; current != null && slot < current.keys.length / 2; slot++) {
+                    if (current.isUsed(slot) && !isExpired(current.values[slot * stride + valueCount])) {
+                        System.arraycopy(current.values, slot * stride, routeValues, 0, valueCount);
+                        visitor.visit(current.keys[slot * 2], current.keys[slot * 2 + 1], routeValues);
+                    }
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the hit, miss and eviction counts of the cache since it was opened.
+     *
+     * @return The counts.
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    /**
+     * Writes the pending log records to the disk.
+     */
+    public void flush() {
+        log.flush();
+    }
+
+    /**
+     * Merges the routes found since the last compaction into the snapshot and truncates the log.
+     */
+    public void compact() {
+        log.compact();
+    }
+
+    /**
+     * Stops the background flusher after a last flush.
+     */
+    public void close() {
+        log.close();
+    }
+
+    /**
+     * Copies a table into a new one with twice the capacity and publishes it. Must be called under the write lock.
+     *
+     * @param current The full table.
+     * @return The new table.
+     */
+    private Table resize(Table current) {
+        Table resized = new Table(current.keys.length, stride); // Twice the old number of slots
+        for (int oldSlot = 0; oldSlot < current.keys.length / 2; oldSlot++) {
+            if (current.isUsed(oldSlot)) {
+                int slot = resized.findSlot(current.keys[oldSlot * 2], current.keys[oldSlot * 2 + 1]);
+                resized.keys[slot * 2] = current.keys[oldSlot * 2];
+                resized.keys[slot * 2 + 1] = current.keys[oldSlot * 2 + 1];
+                System.arraycopy(current.values, oldSlot * stride, resized.values, slot * stride, stride);
+            }
+        }
+        resized.size = current.size;
+        table = resized;
+        return resized;
+    }
+
+    /**
+     * Mixes both halves of a route key into a slot hash (the 64-bit finalizer of MurmurHash3).
+     * Packed coordinates of nearby places share most of their bits, so they must be mixed before masking.
+     *
+     * @param from The packed origin.
+     * @param to   The packed destination.
+     * @return The hash of the route.
+     */
+    private static int hash(long from, long to) {
+        long h = from * 0x9E3779B97F4A7C15L ^ to;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Writes the snapshot and the map into a new snapshot file, maps it and empties the map.
+     * Called by the log compaction while it holds the log lock. The map is frozen and replaced by an empty one under
+     * the write lock, the file is written without it, and the new snapshot is published under it again.
+     *
+     * @throws IOException if the snapshot cannot be written, in which case the frozen routes are put back
+     */
+    private void writeSnapshot() throws IOException {
+        Table compacting;
+        MappedRouteSnapshot oldSnapshot;
+        long stamp = lock.writeLock();
+        try {
+            compacting = table;
+            oldSnapshot = snapshot;
+            frozen = compacting;
+            table = new Table(INITIAL_CAPACITY, stride);
+            // The pending records are those of the frozen routes, which the snapshot will hold. Dropping them keeps
+            // evicted routes from coming back when the log is replayed; the log lock held by the compaction keeps
+            // the flusher from writing them in the meantime.
+            log.discardPending();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        MappedRouteSnapshot newSnapshot;
+        try {
+            newSnapshot = mergeInto(oldSnapshot, compacting);
+        } catch (IOException e) {
+            stamp = lock.writeLock();
+            try {
+                restoreFrozen(compacting);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            throw e;
+        }
+
+        stamp = lock.writeLock();
+        try {
+            snapshot = newSnapshot;
+            frozen = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        generation++;
+        deleteOlderGenerations();
+    }
+
+    /**
+     * Gets the file of a generation of the snapshot.
+     *
+     * @param generation The generation, 0 for the snapshot file itself.
+     * @return The path of the generation.
+     */
+    private Path generationPath(long generation) {
+        return generation == 0 ? snapshotPath
+                : snapshotPath.resolveSibling(snapshotPath.getFileName() + "." + generation);
+    }
+
+    /**
+     * Lists the generations of the snapshot found next to the snapshot file.
+     *
+     * @return The generations, in no particular order.
+     */
+    private List<Long> listGenerations() {
+        List<Long> generations = new ArrayList<>();
+        if (Files.exists(snapshotPath)) {
+            generations.add(0L);
+        }
+        Path directory = snapshotPath.toAbsolutePath().getParent();
+        String prefix = snapshotPath.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.length() < 19 && suffix.chars().allMatch(Character::isDigit)) {
+                    generations.add(Long.parseLong(suffix));
+                }
+            }
+        } catch (IOException e) {
+            Logger logger = Logger.getLogger(RouteCache.class.getName());
+            logger.warning("Exception occurred while listing the cache snapshots: " + e.getMessage());
+        }
+        return generations;
+    }
+
+    /**
+     * Finds the newest generation of the snapshot. A generation only appears once it is completely written.
+     *
+     * @return The newest generation, or -1 if the cache has no snapshot yet.
+     */
+    private long latestGeneration() {
+        long latest = -1;
+        for (long found : listGenerations()) {
+            latest = Math.max(latest, found);
+        }
+        return latest;
+    }
+
+    /**
+     * Deletes the generations older than the current snapshot. A generation that cannot be deleted yet, because
+     * it is still mapped, is left for the next compaction or start.
+     */
+    private void deleteOlderGenerations() {
+        for (long found : listGenerations()) {
+            if (found < generation) {
+                try {
+                    Files.deleteIfExists(generationPath(found));
+                } catch (IOException e) {
+                    Logger logger = Logger.getLogger(RouteCache.class.getName());
+                    logger.fine("Old cache snapshot not deleted yet: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot and a frozen map into a new snapshot file and maps it, dropping the expired routes and, in a
+     * bounded cache, the least frequently used ones.
+     *
+     * @param oldSnapshot The current snapshot, or null.
+     * @param compacting  The frozen map.
+     * @return The new snapshot.
+     * @throws IOException if the snapshot cannot be written
+     */
+    private MappedRouteSnapshot mergeInto(MappedRouteSnapshot oldSnapshot, Table compacting) throws IOException {
+        int snapshotSize = oldSnapshot == null ? 0 : oldSnapshot.size();
+        int capacity = snapshotSize + compacting.size;
+        long[] from = new long[capacity];
+        long[] to = new long[capacity];
+        float[] merged = new float[capacity * stride];
+        int count = 0;
+        for (int record = 0; record < snapshotSize; record++) {
+            long recordFrom = oldSnapshot.fromAt(record);
+            long recordTo = oldSnapshot.toAt(record);
+            if (compacting.isUsed(compacting.findSlot(recordFrom, recordTo))) {
+                continue; // Found again since, the map has the newer values
+            }
+            float writtenAt = writtenAt(oldSnapshot, record);
+            if (isExpired(writtenAt)) {
+                expirations.increment();
+                continue;
+            }
+            from[count] = recordFrom;
+            to[count] = recordTo;
+            for (int field = 0; field < valueCount; field++) {
+                merged[count * stride + field] = oldSnapshot.valueAt(record, field);
+            }
+            merged[count * stride + valueCount] = writtenAt;
+            count++;
+        }
+        int windowStart = count;
+        for (int slot = 0; slot < compacting.keys.length / 2; slot++) {
+            if (compacting.isUsed(slot)) {
+                if (isExpired(compacting.values[slot * stride + valueCount])) {
+                    expirations.increment();
+                    continue;
+                }
+                from[count] = compacting.keys[slot * 2];
+                to[count] = compacting.keys[slot * 2 + 1];
+                System.arraycopy(compacting.values, slot * stride, merged, count * stride, stride);
+                count++;
+            }
+        }
+        if (count > limits.maxEntries()) {
+            count = evict(from, to, merged, count, windowStart);
+        }
+
+        // Written beside the mapped snapshot, never over it
+        Path nextPath = generationPath(generation + 1);
+        MappedRouteSnapshot.write(nextPath, stride, from, to, merged, count);
+        return MappedRouteSnapshot.open(nextPath);
+    }
+
+    /**
+     * Keeps the {@code maxEntries} most frequently used routes of a compaction, moving them to the front of the
+     * arrays. On equal frequency the routes of the window, found since the last compaction, win over the older ones.
+     *
+     * @param from        The packed origins.
+     * @param to          The packed destinations.
+     * @param merged      The values of the routes, {@code stride} per route.
+     * @param count       The number of routes.
+     * @param windowStart The index of the first route of the window.
+     * @return The number of routes kept.
+     */
+    private int evict(long[] from, long[] to, float[] merged, int count, int windowStart) {
+        int[] frequencies = new int[count];
+        int[] histogram = new int[FrequencySketch.MAX_FREQUENCY + 1];
+        for (int record = 0; record < count; record++) {
+            frequencies[record] = sketch.frequency(hash(from[record], to[record]));
+            histogram[frequencies[record]]++;
+        }
+        // The lowest frequency still kept, and how many routes of that frequency fit
+        int threshold = FrequencySketch.MAX_FREQUENCY;
+        int remaining = limits.maxEntries();
+        while (histogram[threshold] < remaining) {
+            remaining -= histogram[threshold];
+            threshold--;
+        }
+
+        int[] keptRecords = new int[limits.maxEntries()];
+        int kept = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            // The window is scanned first so it gets the routes of threshold frequency that still fit
+            int start = pass == 0 ? windowStart : 0;
+            int end = pass == 0 ? count : windowStart;
+            for (int record = start; record < end; record++) {
+                boolean keep = frequencies[record] > threshold || frequencies[record] == threshold && remaining-- > 0;
+                if (keep) {
+                    keptRecords[kept++] = record;
+                }
+            }
+        }
+        Arrays.sort(keptRecords, 0, kept); // Moving a route forward never overwrites a route still to be moved
+        for (int i = 0; i < kept; i++) {
+            int record = keptRecords[i];
+            from[i] = from[record];
+            to[i] = to[record];
+            System.arraycopy(merged, record * stride, merged, i * stride, stride);
+        }
+        evictions.add(count - kept);
+        return kept;
+    }
+
+    /**
+     * Puts the routes of a frozen map back after a failed compaction, unless they were found again meanwhile, and
+     * logs them again. Must be called under the write lock.
+     *
+     * @param compacting The frozen map.
+     */
+    private void restoreFrozen(Table compacting) {
+        Table current = table;
+        for (int oldSlot = 0; oldSlot < compacting.keys.length / 2; oldSlot++) {
+            if (!compacting.isUsed(oldSlot)) {
+                continue;
+            }
+            int slot = current.findSlot(compacting.keys[oldSlot * 2], compacting.keys[oldSlot * 2 + 1]);
+            if (current.isUsed(slot)) {
+                continue; // The newer values win
+            }
+            if ((current.size + 1) * 2 > current.keys.length / 2) {
+                current = resize(current);
+                slot = current.findSlot(compacting.keys[oldSlot * 2], compacting.keys[oldSlot * 2 + 1]);
+            }
+            current.keys[slot * 2] = compacting.keys[oldSlot * 2];
+            current.keys[slot * 2 + 1] = compacting.keys[oldSlot * 2 + 1];
+            System.arraycopy(compacting.values, oldSlot * stride, current.values, slot * stride, stride);
+            current.size++;
+            log.append(logRecord(current, slot)); // Its pending record was dropped when the map was frozen
+        }
+        frozen = null;
+    }
+
+    /**
+     * Formats the log record of a route: {@code from to value... writtenAt}.
+     *
+     * @param current The table holding the route.
+     * @param slot    The slot of the route.
+     * @return The log record.
+     */
+    private String logRecord(Table current, int slot) {
+        StringBuilder record = new StringBuilder().append(current.keys[slot * 2]).append(' ')
+                .append(current.keys[slot * 2 + 1]);
+        for (int field = 0; field < stride; field++) {
+            record.append(' ').append(current.values[slot * stride + field]);
+        }
+        return record.toString();
+    }
+
+    /**
+     * Gets the number of log records after which the log is compacted. A bounded cache compacts once its map, the
+     * admission window, holds an eighth of the bound, so the heap it uses stays bounded too.
+     *
+     * @return The compaction threshold.
+     */
+    private int compactionThreshold() {
+        int liveEntries = size();
+        return sketch == null ? liveEntries : Math.min(liveEntries, limits.maxEntries() / WINDOW_DIVISOR);
+    }
+
+    /**
+     * Counts a lookup in the statistics and, for a bounded cache, in the frequency sketch.
+     *
+     * @param from  The packed origin.
+     * @param to    The packed destination.
+     * @param found True if the lookup found the route.
+     */
+    private void recordAccess(long from, long to, boolean found) {
+        (found ? hits : misses).increment();
+        if (sketch != null) {
+            sketch.increment(hash(from, to));
+        }
+    }
+
+    /**
+     * Gets the hour a snapshot record was written at.
+     *
+     * @param mapped The snapshot.
+     * @param record The index of the record.
+     * @return The hour, or the opening hour of the cache for the snapshots written before routes carried it.
+     */
+    private float writtenAt(MappedRouteSnapshot mapped, int record) {
+        return mapped.valueCount() > valueCount ? mapped.valueAt(record, valueCount) : openHour;
+    }
+
+    /**
+     * Checks whether a route is older than the maximum age.
+     *
+     * @param writtenAt The hour the route was written at.
+     * @return True if the route has expired.
+     */
+    private boolean isExpired(float writtenAt) {
+        return maxAgeHours != Float.POSITIVE_INFINITY && currentHour() - writtenAt > maxAgeHours;
+    }
+
+    /**
+     * Gets the current time in whole hours since the epoch.
+     *
+     * @return The current hour.
+     */
+    private static float currentHour() {
+        return System.currentTimeMillis() / MILLIS_PER_HOUR;
+    }
+
+    /**
+     * Replays the log on top of the snapshot. A torn last record from a crash is skipped.
+     */
+    private void replayLog() {
+        for (String line : log.readRecords()) {
+            String[] parts = line.split(" ");
+            // Records written before the routes carried their write time count as written now
+            if (parts.length != 2 + valueCount && parts.length != 2 + stride) {
+                continue;
+            }
+            try {
+                float[] routeValues = new float[valueCount];
+                for (int field = 0; field < valueCount; field++) {
+                    routeValues[field] = Float.parseFloat(parts[2 + field]);
+                }
+                float writtenAt = parts.length == 2 + stride ? Float.parseFloat(parts[2 + valueCount]) : openHour;
+                store(Long.parseLong(parts[0]), Long.parseLong(parts[1]), routeValues, writtenAt);
+            } catch (NumberFormatException e) {
+                Logger logger = Logger.getLogger(RouteCache.class.getName());
+                logger.warning("Skipping invalid log record: " + line);
+            }
+        }
+    }
+
+    /**
+     * Imports the {@code key:value} lines of a legacy text file into one value of the routes.
+     * Unparsable lines are skipped.
+     *
+     * @param legacyFile The text file of a legacy cache.
+     * @param field      The index of the value the legacy cache holds.
+     */
+    private void importLegacyText(Path legacyFile, int field) {
+        if (!Files.exists(legacyFile)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(legacyFile)) {
+                int separator = line.lastIndexOf(':');
+                long[] key = separator < 0 ? null : RouteKey.parseLegacyKey(line.substring(0, separator));
+                if (key == null || separator == line.length() - 1) {
+                    continue;
+                }
+                try {
+                    mergeValue(key[0], key[1], field, Float.parseFloat(line.substring(separator + 1)));
+                } catch (NumberFormatException e) {
+                    Logger logger = Logger.getLogger(RouteCache.class.getName());
+                    logger.warning("Skipping cache line with an invalid value: " + line);
+                }
+            }
+        } catch (IOException e) {
+            Logger logger = Logger.getLogger(RouteCache.class.getName());
+            logger.warning("Exception occurred while importing " + legacyFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sets one value of a route, keeping its other values or leaving them unknown.
+     *
+     * @param from  The packed origin.
+     * @param to    The packed destination.
+     * @param field The index of the value.
+     * @param value The value.
+     */
+    private void mergeValue(long from, long to, int field, float value) {
+        float[] routeValues = new float[valueCount];
+        if (!peek(from, to, routeValues)) {
+            Arrays.fill(routeValues, Float.NaN);
+        }
+        routeValues[field] = value;
+        put(from, to, routeValues);
+    }
+}
@@ -0,0 +1,239 @@
+package com.pizzadelivery.model;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.Math.round;
+
+/**
+ * Asynchronous client of the OpenRouteService directions endpoint.
+ * A single {@link HttpClient} is shared by every call, matrix requests included, so connections are kept alive and
+ * reused instead of opening a new one per route, and every request has a connect and a response timeout. Calls return
+ * a {@link CompletableFuture} right away; concurrent calls for the same route share one in-flight request.
+ *
+ * @author Team
+ */
+public final class RouteClient {
+    public static final String DIRECTIONS_PATH = "/v2/directions/driving-car";
+    static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(15);
+    /**
+     * The client of every call to the routing API, directions and matrix, so they share the pool of connections.
+     */
+    static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .build();
+    private static final String UNROUTABLE_POINT_CODE = "\"code\":2010"; // No road within 350 m of a coordinate
+    private static final Pattern UNROUTABLE_COORDINATE = Pattern.compile("specified coordinate (\\d+)");
+
+    /**
+     * The key of an in-flight request.
+     *
+     * @param from The packed origin.
+     * @param to   The packed destination.
+     */
+    private record RouteRequest(long from, long to) {
+    }
+
+    private final Supplier<String> baseUrl;
+    private final String apiKey;
+    private final ConcurrentHashMap<RouteRequest, CompletableFuture<RouteFact>> inFlight;
+    private final ApiGuard guard;
+
+    /**
+     * Constructs a directions client without rate limiting.
+     *
+     * @param baseUrl Gives the base URL of the API, without trailing slash; read on every request.
+     * @param apiKey  The API key sent in the Authorization header.
+     */
+    public RouteClient(Supplier<String> baseUrl, String apiKey) {
+        this(baseUrl, apiKey, null);
+    }
+
+    /**
+     * Constructs a directions client whose requests go through a guard.
+     *
+     * @param baseUrl Gives the base URL of the API, without trailing slash; read on every request.
+     * @param apiKey  The API key sent in the Authorization header.
+     * @param guard   Rate limiter and circuit breaker of the API, or null.
+     */
+    public RouteClient(Supplier<String> baseUrl, String apiKey, ApiGuard guard) {
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+        this.inFlight = new ConcurrentHashMap<>();
+        this.guard = guard;
+    }
+
+    /**
+     * Fetches the travel time and the distance of a route. If the same route is already being fetched, the pending
+     * call is returned instead of sending a second request.
+     *
+     * @param source      The source GPS location.
+     * @param destination The destination GPS location.
+     * @return The route in whole minutes and kilometers, or null if the API found no route. Completes exceptionally
+     * with an {@link IOException} if the request fails, an {@link UnroutablePointException} if a location is too far
+     * from any road, a {@link RateLimitException} on 429 or when the guard does not let the request through.
+     */
+    public CompletableFuture<RouteFact> fetch(GPS source, GPS destination) {
+        RouteRequest key = new RouteRequest(RouteKey.pack(source), RouteKey.pack(destination));
+        CompletableFuture<RouteFact> pending = inFlight.get(key);
+        if (pending != null) {
+            return pending;
+        }
+        CompletableFuture<RouteFact> created = new CompletableFuture<>();
+        pending = inFlight.putIfAbsent(key, created);
+        if (pending != null) {
+            return pending; // Another thread registered the same route in the meantime
+        }
+
+        directions(source, destination).whenComplete((body, error) -> {
+            // Unregister first, so a caller arriving after the result sends a new request or hits the cache
+            inFlight.remove(key, created);
+            if (error != null) {
+                created.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            } else {
+                created.complete(parseSummary(body));
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Sends a directions request if the guard lets it through, and reports its outcome to the guard.
+     *
+     * @param source      The source GPS location.
+     * @param destination The destination GPS location.
+     * @return The JSON response. Completes exceptionally with an {@link IOException} if the API does not answer 200,
+     * an {@link UnroutablePointException} if a location is too far from any road, a {@link RateLimitException} on 429
+     * or when the request is not sent.
+     */
+    public CompletableFuture<String> directions(GPS source, GPS destination) {
+        if (guard == null) {
+            return send(source, destination);
+        }
+        if (!guard.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RateLimitException("Routing API quota used up, request not sent"));
+        }
+        return send(source, destination).whenComplete((body, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (error == null || cause instanceof UnroutablePointException) {
+                guard.recordSuccess(); // The API works, the location is the problem
+            } else {
+                guard.recordFailure(cause instanceof RateLimitException);
+            }
+        });
+    }
+
+    /**
+     * Sends a directions request.
+     *
+     * @param source      The source GPS location.
+     * @param destination The destination GPS location.
+     * @return The JSON response. Completes exceptionally with an {@link IOException} if the API does not answer 200,
+     * an {@link UnroutablePointException} if a location is too far from any road.
+     */
+    private CompletableFuture<String> send(GPS source, GPS destination) {
+        String payload = "{\"coordinates\":[[" + source.longitude() + "," + source.latitude() + "],["
+                + destination.longitude() + "," + destination.latitude() + "]]}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl.get() + DIRECTIONS_PATH))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", apiKey)
+                .header("Accept", "application/json")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .build();
+
+        return HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() == 429) {
+                throw new CompletionException(
+                        new RateLimitException("API rate limit exceeded. Waiting before retrying..."));
+            }
+            if (response.statusCode() != 200) {
+                int coordinate = unroutableCoordinate(response.body());
+                if (coordinate >= 0) {
+                    throw new CompletionException(new UnroutablePointException("No road near coordinate "
+                            + coordinate + " of the request", coordinate == 0 ? source : destination));
+                }
+                throw new CompletionException(new IOException("HTTP error code: " + response.statusCode()));
+            }
+            return response.body();
+        });
+    }
+
+    /**
+     * Reads the duration and the distance of the first route of a directions response, without building the JSON
+     * tree: the summary object of a route only holds numbers, so both values are found between its braces.
+     *
+     * @param body The JSON response.
+     * @return The route in whole minutes and kilometers, or null if the response has no route.
+     * @throws CompletionException If the summary cannot be read.
+     */
+    static RouteFact parseSummary(String body) {
+        int summary = body.indexOf("\"summary\"");
+        if (summary < 0) {
+            return null; // "routes":[] when the API cannot route the pair
+        }
+        int start = body.indexOf('{', summary);
+        int end = body.indexOf('}', start);
+        double duration = numberField(body, "duration", start, end);
+        double distance = numberField(body, "distance", start, end);
+        if (Double.isNaN(duration) || Double.isNaN(distance)) {
+            throw new CompletionException(new IOException("Route summary without duration or distance"));
+        }
+        // The API gives seconds and meters
+        return new RouteFact(round(duration / 60), round(distance / 1000));
+    }
+
+    /**
+     * Finds the coordinate the API could not route in an error response.
+     *
+     * @param body The JSON error response.
+     * @return The index of the coordinate in the request, or -1 if the error is about something else.
+     */
+    static int unroutableCoordinate(String body) {
+        if (body == null || !body.replace(" ", "").contains(UNROUTABLE_POINT_CODE)) {
+            return -1;
+        }
+        Matcher matcher = UNROUTABLE_COORDINATE.matcher(body);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Reads a number field of a flat JSON object.
+     *
+     * @param body  The JSON text.
+     * @param field The name of the field.
+     * @param start The index of the opening brace of the object.
+     * @param end   The index of the closing brace of the object.
+     * @return The value, or {@link Double#NaN} if the object has no such field.
+     */
+    private static double numberField(String body, String field, int start, int end) {
+        int name = body.indexOf("\"" + field + "\"", start);
+        if (name < 0 || name > end) {
+            return Double.NaN;
+        }
+        int valueStart = body.indexOf(':', name) + 1;
+        while (valueStart < end && Character.isWhitespace(body.charAt(valueStart))) {
+            valueStart++;
+        }
+        int valueEnd = valueStart;
+        while (valueEnd < end && "+-.eE0123456789".indexOf(body.charAt(valueEnd)) >= 0) {
+            valueEnd++;
+        }
+        try {
+            return Double.parseDouble(body.substring(valueStart, valueEnd));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.pizzadelivery.model;
+
+/**
+ * The travel time and the distance of a route, as returned by one routing request and cached together.
+ *
+ * @param duration The travel time in minutes.
+ * @param distance The distance in kilometers.
+ * @author Team
+ */
+public record RouteFact(double duration, double distance) {
+}
@@ -0,0 +1,156 @@
+package com.pizzadelivery.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Packs GPS coordinates into primitive keys for the route caches.
+ * A coordinate is quantized to fixed-point micro-degrees (six decimals, the precision the caches always used),
+ * and the latitude and longitude are packed into the high and low halves of a {@code long}. A route is keyed by the
+ * packed origin and the packed destination, which makes a 128-bit key that does not depend on the default locale.
+ * <p>
+ * Coordinates are rounded like the {@code %.6f} keys of the legacy text caches, half-way values away from zero, so a
+ * migrated route is found again under the same location.
+ *
+ * @author Team
+ */
+public final class RouteKey {
+    private static final double MICRO_DEGREES = 1_000_000d;
+    private static final int DECIMALS = 6;
+    // Far above the rounding error of the product, which is a few ulps of at most 180,000,000
+    private static final double HALF_WAY_TOLERANCE = 1e-6;
+
+    private RouteKey() {
+    }
+
+    /**
+     * Packs a GPS location into a single {@code long}.
+     *
+     * @param location The GPS location to pack.
+     * @return The packed location.
+     */
+    public static long pack(GPS location) {
+        return pack(location.latitude(), location.longitude());
+    }
+
+    /**
+     * Packs a latitude and a longitude into a single {@code long}.
+     *
+     * @param latitude  The latitude in degrees.
+     * @param longitude The longitude in degrees.
+     * @return The packed location.
+     */
+    public static long pack(double latitude, double longitude) {
+        long lat = quantize(latitude);
+        long lon = quantize(longitude);
+        return (lat << 32) | (lon & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Rounds a coordinate to micro-degrees as {@code String.format("%.6f")} does: the shortest decimal spelling of
+     * the double, rounded half up. Only a coordinate close to a half-way point needs the decimal spelling, since
+     * the product by a million may then fall on either side of it.
+     *
+     * @param degrees The coordinate in degrees.
+     * @return The coordinate in micro-degrees.
+     */
+    private static long quantize(double degrees) {
+        double scaled = degrees * MICRO_DEGREES;
+        if (Math.abs(scaled - Math.floor(scaled) - 0.5) > HALF_WAY_TOLERANCE) {
+            return Math.round(scaled);
+        }
+        return new BigDecimal(Double.toString(degrees)).setScale(DECIMALS, RoundingMode.HALF_UP)
+                .movePointRight(DECIMALS).longValueExact();
+    }
+
+    /**
+     * Gets the latitude of a packed location.
+     *
+     * @param packed The packed location.
+     * @return The latitude in degrees, with six decimals.
+     */
+    public static double latitude(long packed) {
+        return (int) (packed >> 32) / MICRO_DEGREES;
+    }
+
+    /**
+     * Gets the longitude of a packed location.
+     *
+     * @param packed The packed location.
+     * @return The longitude in degrees, with six decimals.
+     */
+    public static double longitude(long packed) {
+        return (int) packed / MICRO_DEGREES;
+    }
+
+    /**
+     * Unpacks a packed location into a GPS location.
+     *
+     * @param packed The packed location.
+     * @return The GPS location, quantized to six decimals.
+     */
+    public static GPS unpack(long packed) {
+        return new GPS(latitude(packed), longitude(packed));
+    }
+
+    /**
+     * Compares two route keys, origin first then destination.
+     *
+     * @param from1 The packed origin of the first route.
+     * @param to1   The packed destination of the first route.
+     * @param from2 The packed origin of the second route.
+     * @param to2   The packed destination of the second route.
+     * @return A negative number, zero or a positive number as the first route sorts before, with or after the second.
+     */
+    public static int compare(long from1, long to1, long from2, long to2) {
+        int compare = Long.compare(from1, from2);
+        return compare != 0 ? compare : Long.compare(to1, to2);
+    }
+
+    /**
+     * Parses a route key of the legacy text caches, {@code GPS{latitude=..., longitude=...}|GPS{...}}.
+     * Both the dot and the comma decimal separators are accepted, since the text files were written with the
+     * default locale of whoever ran the application.
+     *
+     * @param key The legacy text key.
+     * @return The packed origin and destination, or null if the key cannot be parsed.
+     */
+    public static long[] parseLegacyKey(String key) {
+        int separator = key.indexOf('|');
+        if (separator < 0) {
+            return null;
+        }
+        long from = parseLegacyLocation(key.substring(0, separator));
+        long to = parseLegacyLocation(key.substring(separator + 1));
+        if (from == Long.MIN_VALUE || to == Long.MIN_VALUE) {
+            return null;
+        }
+        return new long[]{from, to};
+    }
+
+    /**
+     * Parses one location of a legacy text key, {@code GPS{latitude=48,705672, longitude=2,144803}}.
+     *
+     * @param location The legacy text location.
+     * @return The packed location, or {@link Long#MIN_VALUE} if the location cannot be parsed.
+     */
+    private static long parseLegacyLocation(String location) {
+        int latitudeStart = location.indexOf("latitude=");
+        int longitudeStart = location.indexOf("longitude=");
+        int end = location.lastIndexOf('}');
+        if (latitudeStart < 0 || longitudeStart < 0 || end < 0) {
+            return Long.MIN_VALUE;
+        }
+        // The separator between the two fields is ", ", the decimal separator may be a comma too
+        int latitudeEnd = location.lastIndexOf(", ", longitudeStart);
+        try {
+            double latitude = Double.parseDouble(location.substring(latitudeStart + "latitude=".length(), latitudeEnd)
+                    .replace(',', '.'));
+            double longitude = Double.parseDouble(location.substring(longitudeStart + "longitude=".length(), end)
+                    .replace(',', '.'));
+            return pack(latitude, longitude);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
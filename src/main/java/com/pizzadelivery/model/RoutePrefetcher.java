@@ -0,0 +1,156 @@
+package com.pizzadelivery.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Fetches in the background the routes a new order will need, so they are cached by the time the order becomes
+ * critical and the solvers run.
+ * For each new order, the legs are fetched in this order: pizzeria to order, order to pizzeria, then both directions
+ * between the order and the pending orders, nearest first. Legs already cached are free; at most {@code legBudget}
+ * legs per order are requested from the API, so a burst of orders cannot use up the quota the dispatch itself needs.
+ * A batch stops as soon as the API cannot be reached; its remaining legs are left to the dispatch.
+ *
+ * @author Team
+ */
+public final class RoutePrefetcher {
+    /**
+     * What happened to a leg.
+     */
+    public enum Outcome {CACHED, FETCHED, NO_ROUTE, UNAVAILABLE}
+
+    /**
+     * Brings a route into the cache.
+     */
+    @FunctionalInterface
+    public interface RouteLoader {
+        /**
+         * Loads a route.
+         *
+         * @param from The origin.
+         * @param to   The destination.
+         * @return {@link Outcome#CACHED} if the route was already cached, {@link Outcome#FETCHED} if it was requested
+         * from the API, {@link Outcome#NO_ROUTE} if the API has no route for it, {@link Outcome#UNAVAILABLE} if the
+         * API could not be reached.
+         */
+        Outcome load(GPS from, GPS to);
+    }
+
+    private final GPS pizzeriaLocation;
+    private final int legBudget;
+    private final RouteLoader loader;
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a prefetcher that loads the routes through the GPS cache.
+     *
+     * @param pizzeriaLocation The location of the pizzeria.
+     * @param legBudget        The maximum number of legs requested from the API for each new order.
+     */
+    public RoutePrefetcher(GPS pizzeriaLocation, int legBudget) {
+        this(pizzeriaLocation, legBudget, GPS::prefetchRoute);
+    }
+
+    /**
+     * Constructs a prefetcher.
+     *
+     * @param pizzeriaLocation The location of the pizzeria.
+     * @param legBudget        The maximum number of legs requested from the API for each new order.
+     * @param loader           Brings the routes into the cache.
+     */
+    public RoutePrefetcher(GPS pizzeriaLocation, int legBudget, RouteLoader loader) {
+        this.pizzeriaLocation = pizzeriaLocation;
+        this.legBudget = legBudget;
+        this.loader = loader;
+        // One thread: the legs are requested one at a time, nearest first, instead of flooding the rate limiter
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "route-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues the prefetching of the legs of new orders and returns right away.
+     *
+     * @param newOrders     The orders that just arrived.
+     * @param pendingOrders The orders already waiting, copied by the caller.
+     */
+    public void submit(Collection<Order> newOrders, Collection<Order> pendingOrders) {
+        if (legBudget <= 0 || newOrders.isEmpty()) {
+            return;
+        }
+        List<Order> batch = new ArrayList<>(newOrders);
+        List<Order> pending = new ArrayList<>(pendingOrders);
+        executor.execute(() -> prefetch(batch, pending));
+    }
+
+    /**
+     * Fetches the legs of new orders, each new order also being a neighbor of the next ones.
+     *
+     * @param newOrders     The orders that just arrived.
+     * @param pendingOrders The orders already waiting.
+     */
+    private void prefetch(List<Order> newOrders, List<Order> pendingOrders) {
+        try {
+            List<Order> neighbors = new ArrayList<>(pendingOrders);
+            for (Order order : newOrders) {
+                if (!prefetchLegs(order, neighbors)) {
+                    return;
+                }
+                neighbors.add(order);
+            }
+        } catch (RuntimeException e) {
+            Logger logger = Logger.getLogger(RoutePrefetcher.class.getName());
+            logger.warning("Exception occurred while prefetching routes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fetches the legs of one order, within the budget.
+     *
+     * @param order     The new order.
+     * @param neighbors The other orders, in any order.
+     * @return False if the API could not be reached and the batch must stop.
+     */
+    private boolean prefetchLegs(Order order, List<Order> neighbors) {
+        GPS location = order.location();
+        List<GPS[]> legs = new ArrayList<>();
+        legs.add(new GPS[]{pizzeriaLocation, location});
+        legs.add(new GPS[]{location, pizzeriaLocation});
+        // Every distance is computed once in a batch, instead of twice per comparison of the sort
+        double[] distances = CrowFliesBatch.of(neighbors.stream().map(Order::location).toList())
+                .distancesFrom(location);
+        Integer[] nearest = new Integer[neighbors.size()];
+        Arrays.setAll(nearest, i -> i);
+        Arrays.sort(nearest, Comparator.comparingDouble(i -> distances[i]));
+        for (int i : nearest) {
+            Order neighbor = neighbors.get(i);
+            if (!neighbor.location().equals(location)) {
+                legs.add(new GPS[]{location, neighbor.location()});
+                legs.add(new GPS[]{neighbor.location(), location});
+            }
+        }
+
+        int requested = 0;
+        for (GPS[] leg : legs) {
+            if (requested >= legBudget) {
+                return true;
+            }
+            Outcome outcome = loader.load(leg[0], leg[1]);
+            if (outcome == Outcome.UNAVAILABLE) {
+                return false;
+            }
+            if (outcome == Outcome.FETCHED || outcome == Outcome.NO_ROUTE) {
+                requested++; // A cached leg costs nothing, a leg without route may have cost a request all the same
+            }
+        }
+        return true;
+    }
+}
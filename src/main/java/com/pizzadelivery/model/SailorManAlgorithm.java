@@ -1,6 +1,8 @@
 package com.pizzadelivery.model;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The SailorManAlgorithm class provides methods for selecting and sorting orders based on different algorithms.
@@ -24,6 +26,11 @@ public class SailorManAlgorithm {
     // Constants
     public static final int GREEDY_SIZE = 50;
     public static final int GENETIC_SIZE = 20;
+    /**
+     * The budget of each genetic algorithm: it stops once its islands have not improved for 30 generations, or after
+     * 100 ms, whichever comes first.
+     */
+    public static final IslandModel.Budget GENETIC_BUDGET = new IslandModel.Budget(1000, 30, Duration.ofMillis(100));
 
     /**
      * Selects an algorithm based on the number of orders and applies it to select the optimal combination of orders.
@@ -36,6 +43,23 @@ public class SailorManAlgorithm {
      * @throws IllegalArgumentException If the orderToTake is not present in the list of orders.
      */
     public static ArrayList<Order> selectAlgorithm(ArrayList<Order> orders, Order orderToTake, int bestGrade) {
+        return selectAlgorithm(orders, orderToTake, bestGrade, TravelMatrix.of(orders));
+    }
+
+    /**
+     * Selects an algorithm based on the number of orders and applies it to select the optimal combination of orders.
+     * Every solver and every grade of this dispatch reads its legs from the same travel matrix.
+     *
+     * @param orders      The list of orders to select from.
+     * @param orderToTake The order that must be included in the selected combination.
+     * @param bestGrade   The best grade of the current list of orders.
+     * @param matrix      The travel matrix built over the pizzeria and every order of the list.
+     * @return The selected combination of orders based on the chosen algorithm.
+     * @throws IllegalArgumentException If the orderToTake is not present in the list of orders.
+     * @see TravelMatrix
+     */
+    public static ArrayList<Order> selectAlgorithm(ArrayList<Order> orders, Order orderToTake, int bestGrade,
+                                                   TravelMatrix matrix) {
         if (!orders.contains(orderToTake)) {
             throw new IllegalArgumentException("Order to take is not in the list");
         }
@@ -61,38 +85,46 @@ public class SailorManAlgorithm {
             case BRUTE_FORCE -> {
                 orders.add(mandatoryOrder); // in this case we need to add the mandatory order because our bruteforce algorithm needs it
                 System.out.println("Brute force");
-                comb1 = SamuelAlgorithm.bruteForceDiscount(new ArrayList<>(orders));
-                comb2 = PierreAlgorithm.bruteForceTime(new ArrayList<>(orders));
+                comb1 = SamuelAlgorithm.bruteForceDiscount(new ArrayList<>(orders), matrix);
+                comb2 = PierreAlgorithm.bruteForceTime(new ArrayList<>(orders), matrix);
                 //comb3 = RemiAlgorithm.bruteForceDistance(new ArrayList<>(orders));
-                grade1 = calculateGrade(comb1);
-                grade2 = calculateGrade(comb2);
+                grade1 = calculateGrade(comb1, matrix);
+                grade2 = calculateGrade(comb2, matrix);
                 //grade3 = calculateGrade(comb3);
             }
             case DYNAMIC -> {
                 System.out.println("Dynamic");
-                comb1 = SamuelAlgorithm.dynamicDiscount(new ArrayList<>(orders), mandatoryOrder);
-                comb2 = PierreAlgorithm.dynamicDistance(new ArrayList<>(orders), mandatoryOrder);
+                comb1 = SamuelAlgorithm.dynamicDiscount(new ArrayList<>(orders), mandatoryOrder, matrix);
+                comb2 = PierreAlgorithm.dynamicDistance(new ArrayList<>(orders), mandatoryOrder, matrix);
                 //comb3 = RemiAlgorithm.dynamicTime(new ArrayList<>(orders), mandatoryOrder);
-                grade1 = calculateGrade(comb1);
-                grade2 = calculateGrade(comb2);
+                grade1 = calculateGrade(comb1, matrix);
+                grade2 = calculateGrade(comb2, matrix);
                 //grade3 = calculateGrade(comb3);
             }
             case GENETIC -> {
                 System.out.println("Genetic");
-                comb1 = SamuelAlgorithm.geneticTime(new ArrayList<>(orders), 15, 100, mandatoryOrder);
-                comb2 = PierreAlgorithm.geneticDiscount(new ArrayList<>(orders), mandatoryOrder, false);
+                // One island per core for each genetic algorithm, they run one after the other. Both start from the
+                // greedy combinations, which take a fraction of their budget
+                int islandCount = IslandModel.defaultIslandCount();
+                List<ArrayList<Order>> seeds = List.of(
+                        PierreAlgorithm.greedyTime(new ArrayList<>(orders), mandatoryOrder, matrix),
+                        SamuelAlgorithm.greedyDistance(new ArrayList<>(orders), mandatoryOrder, matrix));
+                comb1 = SamuelAlgorithm.geneticTime(new ArrayList<>(orders), 15, GENETIC_BUDGET, mandatoryOrder, matrix,
+                        islandCount, seeds);
+                comb2 = PierreAlgorithm.geneticDiscount(new ArrayList<>(orders), mandatoryOrder, false, matrix,
+                        islandCount, GENETIC_BUDGET, seeds);
                 //comb3 = RemiAlgorithm.geneticDistance(orders, 15, 4,orderToTake);
-                grade1 = calculateGrade(comb1);
-                grade2 = calculateGrade(comb2);
+                grade1 = calculateGrade(comb1, matrix);
+                grade2 = calculateGrade(comb2, matrix);
                 //grade3 = calculateGrade(comb3);
             }
             case GREEDY -> {
                 System.out.println("Greedy");
-                comb1 = SamuelAlgorithm.greedyDistance(new ArrayList<>(orders), mandatoryOrder);
-                comb2 = PierreAlgorithm.greedyTime(new ArrayList<>(orders), mandatoryOrder);
+                comb1 = SamuelAlgorithm.greedyDistance(new ArrayList<>(orders), mandatoryOrder, matrix);
+                comb2 = PierreAlgorithm.greedyTime(new ArrayList<>(orders), mandatoryOrder, matrix);
                 //comb3 = RemiAlgorithm.greedyDiscount(new ArrayList<>(orders), mandatoryOrder);
-                grade1 = calculateGrade(comb1);
-                grade2 = calculateGrade(comb2);
+                grade1 = calculateGrade(comb1, matrix);
+                grade2 = calculateGrade(comb2, matrix);
                 //grade3 = calculateGrade(comb3);
             }
         }
@@ -101,7 +133,7 @@ public class SailorManAlgorithm {
 
         if ((grade1 == maxGrade && grade2 == maxGrade) || (grade3 == maxGrade && grade1 == maxGrade) || (grade2 == maxGrade && grade3 == maxGrade)) {
             //maxComb = getPriorityComb(comb1, comb2, comb3);
-            maxComb = getPriorityComb(comb1, comb2);
+            maxComb = getPriorityComb(comb1, comb2, matrix);
             if (maxComb == comb1) {
                 System.out.println("we take Samuel's algorithm, its grade is: " + grade1);
             } else if (maxComb == comb2) {
@@ -130,18 +162,19 @@ public class SailorManAlgorithm {
      *
      * @param comb1 The first combination of orders to be considered.
      * @param comb2 The second combination of orders to be considered.
+     * @param matrix The travel matrix of the current dispatch.
      * @return The selected combination with the highest priority based on discounts and total delivery time.
      */
     private static ArrayList<Order> getPriorityComb
-            (ArrayList<Order> comb1, ArrayList<Order> comb2/*,ArrayList<Order> comb3*/) {
-        int discountsForComb1 = Order.numberOfDiscount(comb1);
-        int discountsForComb2 = Order.numberOfDiscount(comb2);
+            (ArrayList<Order> comb1, ArrayList<Order> comb2/*,ArrayList<Order> comb3*/, TravelMatrix matrix) {
+        int discountsForComb1 = Order.numberOfDiscount(comb1, matrix);
+        int discountsForComb2 = Order.numberOfDiscount(comb2, matrix);
         //int discountsForComb3 = Order.numberOfDiscount(comb3);
 
         if (discountsForComb1 == discountsForComb2) {
             // In case of equality in discounts between comb1 and comb2
-            double totalTimeComb1 = Order.totalDeliveryTime(comb1);
-            double totalTimeComb2 = Order.totalDeliveryTime(comb2);
+            double totalTimeComb1 = Order.totalDeliveryTime(comb1, matrix);
+            double totalTimeComb2 = Order.totalDeliveryTime(comb2, matrix);
 
             if (totalTimeComb1 <= totalTimeComb2) {
                 return comb1;
@@ -194,9 +227,21 @@ public class SailorManAlgorithm {
      * @return The calculated grade for the given combination of orders.
      */
     public static int calculateGrade(ArrayList<Order> orders) {
+        return calculateGrade(orders, TravelMatrix.of(orders));
+    }
+
+    /**
+     * Calculates the grade of a given combination of orders, reading every leg from the travel matrix of the current
+     * dispatch.
+     *
+     * @param orders The list of orders to calculate the grade for.
+     * @param matrix The travel matrix containing every order of the list.
+     * @return The calculated grade for the given combination of orders.
+     */
+    public static int calculateGrade(ArrayList<Order> orders, TravelMatrix matrix) {
         int grade = 0;
-        double totalTime = Order.totalDeliveryTime(orders);
-        int totalDiscount = Order.numberOfDiscount(orders);
+        double totalTime = Order.totalDeliveryTime(orders, matrix);
+        int totalDiscount = Order.numberOfDiscount(orders, matrix);
 
         int[] noteMaxTimes = {
                 Grades.NOTE_10_MAX_TIME,
@@ -229,15 +274,27 @@ public class SailorManAlgorithm {
      * @param bestGrade The best grade of the current list of orders.
      */
     public static void sortOrders(ArrayList<Order> orders, int bestGrade) {
+        sortOrders(orders, bestGrade, TravelMatrix.of(orders));
+    }
+
+    /**
+     * Sorts the given list of orders using a brute force algorithm based on discount, time, and distance, reading
+     * every leg from the travel matrix of the dispatch that selected them.
+     *
+     * @param orders    The list of orders to be sorted.
+     * @param bestGrade The best grade of the current list of orders.
+     * @param matrix    The travel matrix containing every order of the list.
+     */
+    public static void sortOrders(ArrayList<Order> orders, int bestGrade, TravelMatrix matrix) {
         System.out.println("Brute force sort");
         ArrayList<Order> copyOrders = new ArrayList<>(orders);
-        ArrayList<Order> comb1 = SamuelAlgorithm.bruteForceDiscount(new ArrayList<>(copyOrders));
-        ArrayList<Order> comb2 = PierreAlgorithm.bruteForceTime(new ArrayList<>(copyOrders));
-        ArrayList<Order> comb3 = RemiAlgorithm.bruteForceDistance(new ArrayList<>(copyOrders));
+        ArrayList<Order> comb1 = SamuelAlgorithm.bruteForceDiscount(new ArrayList<>(copyOrders), matrix);
+        ArrayList<Order> comb2 = PierreAlgorithm.bruteForceTime(new ArrayList<>(copyOrders), matrix);
+        ArrayList<Order> comb3 = RemiAlgorithm.bruteForceDistance(new ArrayList<>(copyOrders), matrix);
 
-        int grade1 = calculateGrade(comb1);
-        int grade2 = calculateGrade(comb2);
-        int grade3 = calculateGrade(comb3);
+        int grade1 = calculateGrade(comb1, matrix);
+        int grade2 = calculateGrade(comb2, matrix);
+        int grade3 = calculateGrade(comb3, matrix);
 
         int maxGrade = Math.max(Math.max(grade1, grade2), grade3);
 
@@ -245,7 +302,7 @@ public class SailorManAlgorithm {
             if ((grade1 == maxGrade && grade2 == maxGrade) || (grade3 == maxGrade && grade1 == maxGrade) || (grade2 == maxGrade && grade3 == maxGrade)) {
                 System.out.println("two or more grades are equals to maxGrade");
                 //orders = getPriorityComb(comb1, comb2, comb3);
-                orders = getPriorityComb(comb1, comb2);
+                orders = getPriorityComb(comb1, comb2, matrix);
             } else if (maxGrade == grade1) {
                 orders = comb1;
                 System.out.println("Samuel's brute force algorithm grade: " + grade1);
@@ -1,8 +1,6 @@
 package com.pizzadelivery.model;
 
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.logging.Logger;
 
 
 /**
@@ -31,57 +29,122 @@ public class SamuelAlgorithm {
       --------------------------------------------------------------------------------------*/
 
     /**
-     * Generates all possible combinations of orders using a recursive permutation approach.
-     * The method aims to find the combination with the least discount, updating the result in the provided containers.
+     * Recursively extends a sequence of orders, carrying its number of discounts so far, to find the sequence with
+     * the least discount, updating the result in the provided containers.
      *
-     * @param orders            The list of orders to generate combinations from.
-     * @param k                 The current index in the recursive permutation process.
-     * @param bestOrderSequence A container to store the best combination of orders with the least discount.
-     * @param leastDiscount     An array to store the least discount found during the recursive permutations.
-     * @implNote The method uses a recursive approach to generate all permutations of orders,
-     * swapping elements to explore different combinations. It updates the bestOrderSequence
-     * and leastDiscount containers when a combination with a lower discount is found.
-     * @see Order#numberOfDiscount(ArrayList)
+     * @param lateLegs        Whether each leg earns a discount, row by row, index n standing for the pizzeria.
+     * @param alwaysLate      Whether each order earns a discount whatever the stop before it.
+     * @param sequence        The sequence being built, valid up to {@code depth}.
+     * @param visited         The orders already in the sequence.
+     * @param depth           The number of orders in the sequence.
+     * @param prefixDiscount  The number of discounts of the sequence so far.
+     * @param remainingBound  The number of unvisited orders that always earn a discount.
+     * @param bestSequence    A container to store the best sequence of orders with the least discount.
+     * @param leastDiscount   An array to store the least discount found so far.
+     * @implNote The method tries each unvisited order as the next stop. A branch is pruned as soon as its discounts so
+     * far plus the orders left that earn a discount from any stop cannot beat the least discount found, so the search
+     * stops early once a sequence without discount is found.
+     * @see Order#numberOfDiscount(ArrayList, TravelMatrix)
      */
-    private static void generateCombinations(ArrayList<Order> orders, int k, ArrayList<Order> bestOrderSequence, int[] leastDiscount) {
-        for (int i = k; i < orders.size(); i++) {
-            Collections.swap(orders, i, k);
-            generateCombinations(orders, k + 1, bestOrderSequence, leastDiscount);
-            Collections.swap(orders, k, i);
+    private static void generateCombinations(boolean[] lateLegs, boolean[] alwaysLate, int[] sequence,
+                                             boolean[] visited, int depth, int prefixDiscount, int remainingBound,
+                                             int[] bestSequence, int[] leastDiscount) {
+        int n = visited.length;
+        if (depth == n) {
+            if (prefixDiscount < leastDiscount[0]) {
+                leastDiscount[0] = prefixDiscount;
+                System.arraycopy(sequence, 0, bestSequence, 0, n);
+            }
+            return;
         }
-        if (k == orders.size() - 1) {
-            int currentDiscount = Order.numberOfDiscount(orders);
-            if (currentDiscount < leastDiscount[0]) {
-                leastDiscount[0] = currentDiscount;
-                bestOrderSequence.clear();
-                bestOrderSequence.addAll(orders);
+        int previous = depth == 0 ? n : sequence[depth - 1];
+        for (int next = 0; next < n; next++) {
+            if (visited[next]) {
+                continue;
             }
+            int discount = prefixDiscount + (lateLegs[previous * n + next] ? 1 : 0);
+            int bound = remainingBound - (alwaysLate[next] ? 1 : 0);
+            if (discount + bound >= leastDiscount[0]) {
+                continue; // Cannot beat the best sequence
+            }
+            visited[next] = true;
+            sequence[depth] = next;
+            generateCombinations(lateLegs, alwaysLate, sequence, visited, depth + 1, discount, bound, bestSequence,
+                    leastDiscount);
+            visited[next] = false;
         }
     }
 
 
     /**
      * Applies a brute-force approach to find the optimal combination of orders with the least discount.
-     * The method generates all possible combinations of orders and selects the one with the minimum discount.
+     * The method searches the possible sequences of orders and selects the one with the minimum discount.
      *
      * @param allOrders The list of orders for which the optimal combination is to be determined.
      * @return An ArrayList containing the best combination of orders with the least discount.
-     * @implNote The method utilizes the {@link #generateCombinations(ArrayList, int, ArrayList, int[])} method
-     * to explore all possible permutations of orders.
-     * @complexity The time complexity of this algorithm is O(n!), where n is the number of orders.
-     * This is due to the generation of all possible permutations of orders using a recursive approach.
-     * The space complexity is O(n) for the recursive call stack and O(1) for other variables.
-     * @see #generateCombinations(ArrayList, int, ArrayList, int[])
+     * @implNote The method utilizes the
+     * {@link #generateCombinations(boolean[], boolean[], int[], boolean[], int, int, int, int[], int[])} method to
+     * explore the permutations of orders depth first, pruning the ones that cannot beat the best found.
+     * @complexity The time complexity of this algorithm is O(n!) in the worst case, where n is the number of orders.
+     * Each leg is counted once per prefix instead of recounting every complete permutation, and a sequence without
+     * discount ends the search, which keeps 8 to 10 orders practical.
+     * The space complexity is O(n^2) for the table of legs and O(n) for the recursive call stack.
+     * @see #generateCombinations(boolean[], boolean[], int[], boolean[], int, int, int, int[], int[])
      */
     public static ArrayList<Order> bruteForceDiscount(ArrayList<Order> allOrders) {
-        // Initialize containers to store the best combination and least discount
-        ArrayList<Order> bestCombination = new ArrayList<>();
-        int[] leastDiscount = {Integer.MAX_VALUE};
+        return bruteForceDiscount(allOrders, TravelMatrix.of(allOrders));
+    }
 
-        // Generate all combinations and update the best combination and least discount
-        generateCombinations(allOrders, 0, bestCombination, leastDiscount);
+    /**
+     * Applies the brute-force discount approach with the travel matrix of the current dispatch.
+     *
+     * @param allOrders The list of orders for which the optimal combination is to be determined.
+     * @param matrix    The travel matrix containing every order of the list.
+     * @return An ArrayList containing the best combination of orders with the least discount.
+     * @see #bruteForceDiscount(ArrayList)
+     */
+    public static ArrayList<Order> bruteForceDiscount(ArrayList<Order> allOrders, TravelMatrix matrix) {
+        int n = allOrders.size();
+        if (n == 0) {
+            return new ArrayList<>();
+        }
+        // Read every leg once; index n stands for the pizzeria. Same rules as Order#numberOfDiscount: the first leg
+        // earns a discount beyond the maximum wait, the next ones from the maximum wait on
+        int[] matrixIndexes = new int[n];
+        for (int i = 0; i < n; i++) {
+            matrixIndexes[i] = matrix.indexOf(allOrders.get(i));
+        }
+        boolean[] lateLegs = new boolean[(n + 1) * n];
+        boolean[] alwaysLate = new boolean[n];
+        int remainingBound = 0;
+        for (int to = 0; to < n; to++) {
+            lateLegs[n * n + to] = matrix.time(TravelMatrix.PIZZERIA_INDEX, matrixIndexes[to])
+                    > Pizzeria.ORDER_MAX_WAIT;
+            alwaysLate[to] = lateLegs[n * n + to];
+            for (int from = 0; from < n; from++) {
+                if (from != to) {
+                    lateLegs[from * n + to] = matrix.time(matrixIndexes[from], matrixIndexes[to])
+                            >= Pizzeria.ORDER_MAX_WAIT;
+                    alwaysLate[to] &= lateLegs[from * n + to];
+                }
+            }
+            remainingBound += alwaysLate[to] ? 1 : 0;
+        }
+
+        // The given sequence is the first incumbent, so it is kept on a tie like with the plain enumeration
+        int[] bestSequence = new int[n];
+        Arrays.setAll(bestSequence, i -> i);
+        int[] leastDiscount = {Order.numberOfDiscount(allOrders, matrix)};
+
+        // Search the sequences and update the best combination and least discount
+        generateCombinations(lateLegs, alwaysLate, new int[n], new boolean[n], 0, 0, remainingBound, bestSequence,
+                leastDiscount);
 
         // Return the best combination found
+        ArrayList<Order> bestCombination = new ArrayList<>(n);
+        for (int order : bestSequence) {
+            bestCombination.add(allOrders.get(order));
+        }
         return bestCombination;
     }
 
@@ -91,6 +154,8 @@ public class SamuelAlgorithm {
                                  GREEDY distance ALGORITHM
       --------------------------------------------------------------------------------------*/
 
+    private static final double ROAD_DISTANCE_ROUNDING_KM = 0.5; // Cached road distances are rounded to the kilometer
+
     /**
      * Applies a greedy approach to construct a combination of orders with the minimum total distance traveled.
      * The method iteratively selects the order with the nearest location to the previous order.
@@ -101,31 +166,61 @@ public class SamuelAlgorithm {
      * @implNote The method initializes with an initial order and iteratively selects the order with the nearest
      * location to the previous order until the combination reaches the desired size or there are no more orders.
      * The total distance is minimized during the process.
-     * @complexity The time complexity of this algorithm is O(n^2), where n is the number of orders.
-     * This is due to the nested loop structure, where for each order in the outer loop, all remaining orders
-     * are considered in the inner loop to find the order with the nearest location.
-     * The space complexity is O(1) for variables and containers used in the method.
+     * @complexity The worst-case time complexity of this algorithm is O(n^2), where n is the number of orders,
+     * when every remaining order is considered to find the one with the nearest location. With an {@link OrderIndex},
+     * the orders are considered by increasing crow-flies distance and the search stops once none of them can be
+     * nearer by road, so only a handful of route lookups are done at each step.
+     * The space complexity is O(n) for the spatial index.
      */
     public static ArrayList<Order> greedyDistance(ArrayList<Order> orders, Order orderToTake) {
+        return greedyDistance(orders, orderToTake, TravelMatrix.of(orders, orderToTake));
+    }
+
+    /**
+     * Applies the greedy distance approach with the travel matrix of the current dispatch.
+     *
+     * @param orders      The list of orders to be considered for constructing the combination.
+     * @param orderToTake The initial order to be included in the combination.
+     * @param matrix      The travel matrix containing every order of the list.
+     * @return An ArrayList containing a combination of orders with the least total distance traveled.
+     * @see #greedyDistance(ArrayList, Order)
+     */
+    public static ArrayList<Order> greedyDistance(ArrayList<Order> orders, Order orderToTake, TravelMatrix matrix) {
         ArrayList<Order> bestCombination = new ArrayList<>();
-        Order previousOrder = new Order(0, Pizzeria.PIZZERIA_LOCATION, LocalDateTime.now());
+        int previousIndex = TravelMatrix.PIZZERIA_INDEX;
+        GPS previousLocation = Pizzeria.PIZZERIA_LOCATION;
+        // Candidates come nearest first by crow-flies distance, so only the few orders that can still beat the best
+        // road distance are looked up in the matrix
+        OrderIndex index = new OrderIndex(orders);
         while (!orders.isEmpty() && bestCombination.size() < 4) {
             double minDistance = Double.MAX_VALUE;
-            int selectedIndex = -1;
-
-            for (int i = 0; i < orders.size(); i++) {
-                double distance = previousOrder.location().calculateDistance(orders.get(i).location());
-                if (distance < minDistance) {
+            Order selectedOrder = null;
+
+            Iterator<Order> candidates = index.nearestFirst(previousLocation);
+            while (candidates.hasNext()) {
+                Order candidate = candidates.next();
+                // Road distances are whole kilometers and never shorter than the straight line before rounding
+                double crowFliesDistance = previousLocation.calculateCrowFliesDistance(candidate.location());
+                if (crowFliesDistance - ROAD_DISTANCE_ROUNDING_KM > minDistance) {
+                    break;
+                }
+                double distance = matrix.distance(previousIndex, matrix.indexOf(candidate));
+                // On a tie the order that comes first in the list wins, as with a scan of the list
+                if (distance < minDistance || distance == minDistance
+                        && orders.indexOf(candidate) < orders.indexOf(selectedOrder)) {
                     minDistance = distance;
-                    selectedIndex = i;
+                    selectedOrder = candidate;
                 }
             }
 
-            if (selectedIndex != -1) {
-                previousOrder = orders.get(selectedIndex);
-                bestCombination.add(previousOrder);
-                orders.remove(selectedIndex);
+            if (selectedOrder == null) {
+                break;
             }
+            orders.remove(selectedOrder);
+            index.remove(selectedOrder);
+            previousIndex = matrix.indexOf(selectedOrder);
+            previousLocation = selectedOrder.location();
+            bestCombination.add(selectedOrder);
         }
         bestCombination.add(0, orderToTake);
         return bestCombination;
@@ -154,8 +249,22 @@ public class SamuelAlgorithm {
      * @see Pizzeria#PIZZERIA_LOCATION
      */
     public static ArrayList<Order> dynamicDiscount(ArrayList<Order> orders, Order orderToTake) {
+        return dynamicDiscount(orders, orderToTake, TravelMatrix.of(orders, orderToTake));
+    }
+
+    /**
+     * Applies the dynamic discount approach with the travel matrix of the current dispatch.
+     *
+     * @param orders      The list of orders for which the optimal combination is to be determined.
+     * @param orderToTake The initial order to be included in the combination.
+     * @param matrix      The travel matrix containing every order of the list.
+     * @return An ArrayList containing the best combination of orders with the least total discount.
+     * @see #dynamicDiscount(ArrayList, Order)
+     */
+    public static ArrayList<Order> dynamicDiscount(ArrayList<Order> orders, Order orderToTake, TravelMatrix matrix) {
         // Sort orders based on delivery time from Pizzeria.PIZZERIA_LOCATION in ascending order
-        orders.sort(Comparator.comparingDouble(order -> Pizzeria.PIZZERIA_LOCATION.timeTravel(order.location())));
+        orders.sort(Comparator.comparingDouble(order ->
+                matrix.time(TravelMatrix.PIZZERIA_INDEX, matrix.indexOf(order))));
 
         // Create a list to store combinations of orders with 0 discount tickets
         ArrayList<ArrayList<Order>> discountCombinations = new ArrayList<>();
@@ -168,7 +277,7 @@ public class SamuelAlgorithm {
 
             // Find additional orders with 0 discount tickets to complete the combination
             for (int j = i + 1; j < orders.size(); j++) {
-                if (Order.numberOfDiscount(currentCombination) == 0) {
+                if (Order.numberOfDiscount(currentCombination, matrix) == 0) {
                     currentCombination.add(orders.get(j));
                     if (currentCombination.size() == 4) {
                         // Store the combination if it has exactly 4 orders
@@ -184,7 +293,7 @@ public class SamuelAlgorithm {
         int minTotalDiscount = Integer.MAX_VALUE;
 
         for (ArrayList<Order> combination : discountCombinations) {
-            int totalDiscount = Order.numberOfDiscount(combination);
+            int totalDiscount = Order.numberOfDiscount(combination, matrix);
             if (totalDiscount < minTotalDiscount) {
                 minTotalDiscount = totalDiscount;
                 bestCombination = combination;
@@ -199,6 +308,10 @@ public class SamuelAlgorithm {
                                         GENETIC time ALGORITHM
       --------------------------------------------------------------------------------------*/
 
+    private static final int INDIVIDUAL_SIZE = 4; // Orders chosen in addition to the order to take
+    private static final int TOURNAMENT_SIZE = 3; // Individuals drawn to select a parent
+    private static final int BREEDING_CHUNK_SIZE = 64; // Children bred by one task, small populations use one thread
+
     /**
      * Applies a genetic algorithm to find the optimal combination of orders with the minimum total delivery time.
      * The method uses a population of individuals, performs crossover and mutation operations, and selects the best individuals.
@@ -208,199 +321,447 @@ public class SamuelAlgorithm {
      * @param generations    The number of generations to run the genetic algorithm.
      * @param orderToTake    The initial order to be included in the combination.
      * @return An ArrayList containing the best combination of orders with the least total delivery time.
+     * @throws IllegalArgumentException If there are fewer than 4 orders or no individual in the population.
      * @implNote The method initializes a population, iteratively applies crossover and mutation operations,
      * and selects the best individuals in each generation. The final result is the combination with the least
-     * total delivery time.
-     * @see #generatePopulation(ArrayList, int)
-     * @see #selectParent(ArrayList<ArrayList<Order>>)
-     * @see #crossover(ArrayList, ArrayList)
-     * @see #mutate(ArrayList)
-     * @see #findBestIndividual(ArrayList)
-     * @see Order#totalDeliveryTime(ArrayList)
+     * total delivery time. Each individual is scored once, when it is bred, and parents are chosen by tournaments
+     * among the scored individuals, so a generation costs O(populationSize) route evaluations. The children are bred
+     * and scored in chunks of {@value #BREEDING_CHUNK_SIZE}, in parallel on the common fork-join pool; each chunk draws
+     * from its own {@link SplittableRandom}.
+     * @see #generatePopulation(int[][], double[], Breeder[], int[], TravelMatrix)
+     * @see #breed(int[][], double[], int[][], double[], Breeder[], int[], TravelMatrix)
+     * @see #findBestIndividual(double[])
+     * @see Order#totalDeliveryTime(ArrayList, TravelMatrix)
      */
     public static ArrayList<Order> geneticTime(ArrayList<Order> orders, int populationSize, int generations, Order orderToTake) {
-        ArrayList<ArrayList<Order>> population = generatePopulation(orders, populationSize);
-
-        for (int generation = 0; generation < generations; generation++) {
-            ArrayList<ArrayList<Order>> newPopulation = new ArrayList<>();
+        return geneticTime(orders, populationSize, generations, orderToTake, TravelMatrix.of(orders, orderToTake));
+    }
 
-            for (int i = 0; i < populationSize; i++) {
-                if (population.size() > 1) {
-                    ArrayList<Order> parent1 = selectParent(population);
-                    ArrayList<Order> parent2 = selectParent(population);
+    /**
+     * Applies the genetic time approach with the travel matrix of the current dispatch.
+     *
+     * @param orders         The list of orders for which the optimal combination is to be determined.
+     * @param populationSize The size of the population of individuals.
+     * @param generations    The number of generations to run the genetic algorithm.
+     * @param orderToTake    The initial order to be included in the combination.
+     * @param matrix         The travel matrix containing every order of the list.
+     * @return An ArrayList containing the best combination of orders with the least total delivery time.
+     * @see #geneticTime(ArrayList, int, int, Order)
+     */
+    public static ArrayList<Order> geneticTime(ArrayList<Order> orders, int populationSize, int generations,
+                                               Order orderToTake, TravelMatrix matrix) {
+        return geneticTime(orders, populationSize, generations, orderToTake, matrix, 1);
+    }
 
-                    ArrayList<Order> child = crossover(parent1, parent2);
-                    mutate(child);
+    /**
+     * Applies the genetic time approach to several populations, the islands, evolved in parallel by the
+     * {@link IslandModel}.
+     *
+     * @param orders         The list of orders for which the optimal combination is to be determined.
+     * @param populationSize The size of the population of each island.
+     * @param generations    The number of generations each island runs.
+     * @param orderToTake    The initial order to be included in the combination.
+     * @param matrix         The travel matrix containing every order of the list.
+     * @param islandCount    The number of islands, see {@link IslandModel#defaultIslandCount()}.
+     * @return An ArrayList containing the best combination of orders with the least total delivery time.
+     * @throws IllegalArgumentException If there are fewer than 4 orders, no individual in a population, or no island.
+     * @implNote Each island breeds like a single population, with its own random generators, and the best
+     * individuals migrate between the islands every {@value IslandModel#MIGRATION_INTERVAL} generations. The result
+     * is the best individual of all the islands.
+     * @see #geneticTime(ArrayList, int, int, Order, TravelMatrix)
+     */
+    public static ArrayList<Order> geneticTime(ArrayList<Order> orders, int populationSize, int generations,
+                                               Order orderToTake, TravelMatrix matrix, int islandCount) {
+        return geneticTime(orders, populationSize, IslandModel.Budget.generations(generations), orderToTake, matrix,
+                islandCount, List.of());
+    }
 
-                    newPopulation.add(child);
-                } else {
-                    // Handle the case where population size is 0 or 1
-                    // You may choose to add new individuals to the population in this case
-                    ArrayList<Order> newIndividual = generateIndividual(orders);
-                    newPopulation.add(newIndividual);
-                }
+    /**
+     * Applies the genetic time approach on islands, within a budget and from a warm start.
+     *
+     * @param orders         The list of orders for which the optimal combination is to be determined.
+     * @param populationSize The size of the population of each island.
+     * @param budget         The limits of the run.
+     * @param orderToTake    The initial order to be included in the combination.
+     * @param matrix         The travel matrix containing every order of the list.
+     * @param islandCount    The number of islands, see {@link IslandModel#defaultIslandCount()}.
+     * @param seeds          The combinations to start from, the order to take first, e.g. those of the greedy
+     *                       algorithms.
+     * @return An ArrayList containing the best combination of orders with the least total delivery time.
+     * @throws IllegalArgumentException If there are fewer than 4 orders, no individual in a population, or no island.
+     * @implNote The run stops once the budget is spent: its number of generations, its wall-clock time, or as soon
+     * as no island improved its best individual for its number of stalled generations, so an easy dispatch stops
+     * early and a hard one uses its full time. The first population of each island starts with the seeds, up to half
+     * of it, and the rest is random; a seed that is not the order to take followed by 4 distinct orders of the list
+     * is ignored.
+     * @see #geneticTime(ArrayList, int, int, Order, TravelMatrix, int)
+     */
+    public static ArrayList<Order> geneticTime(ArrayList<Order> orders, int populationSize, IslandModel.Budget budget,
+                                               Order orderToTake, TravelMatrix matrix, int islandCount,
+                                               List<? extends List<Order>> seeds) {
+        if (orders.size() < INDIVIDUAL_SIZE) {
+            throw new IllegalArgumentException("The number of orders must be at least " + INDIVIDUAL_SIZE);
+        }
+        if (populationSize < 1) {
+            throw new IllegalArgumentException("The population must have at least one individual");
+        }
+        if (islandCount < 1) {
+            throw new IllegalArgumentException("The number of islands must be at least 1");
+        }
+        // The genes of an individual are positions in the list of orders
+        int[] matrixIndexes = new int[orders.size()];
+        for (int gene = 0; gene < orders.size(); gene++) {
+            matrixIndexes[gene] = matrix.indexOf(orders.get(gene));
+        }
+        // The islands breed on the common pool, where a route lookup must not block
+        matrix.fillTimes(matrixIndexes);
+        List<int[]> seedGenomes = new ArrayList<>();
+        for (List<Order> seed : seeds) {
+            int[] genome = toGenome(seed, orders, orderToTake);
+            if (genome != null) {
+                seedGenomes.add(genome);
             }
+        }
 
-            population = newPopulation;
+        SplittableRandom random = new SplittableRandom();
+        List<TimeIsland> islands = new ArrayList<>(islandCount);
+        for (int i = 0; i < islandCount; i++) {
+            islands.add(new TimeIsland(populationSize, orders.size(), random.split(), matrixIndexes, matrix,
+                    seedGenomes));
         }
+        TimeIsland bestIsland = IslandModel.evolve(islands, budget,
+                Comparator.comparingDouble(island -> island.times[findBestIndividual(island.times)]));
 
         // Finding the best individual in the final population
-        ArrayList<Order> bestIndividual = findBestIndividual(population);
-        bestIndividual.add(0, orderToTake);
+        ArrayList<Order> bestIndividual = new ArrayList<>(INDIVIDUAL_SIZE + 1);
+        bestIndividual.add(orderToTake);
+        for (int gene : bestIsland.population[findBestIndividual(bestIsland.times)]) {
+            bestIndividual.add(orders.get(gene));
+        }
         return bestIndividual;
     }
 
     /**
-     * Generates an individual for the genetic algorithm by randomly selecting orders from the given list.
+     * Gets the genome of a combination of orders.
      *
-     * @param orders The list of orders from which to generate an individual.
-     * @return An ArrayList representing an individual with a combination of orders.
-     * @implNote The method randomly selects orders from the list, avoiding duplicates, to form an individual.
+     * @param combination The combination, the order to take first.
+     * @param orders      The list of orders, whose positions are the genes.
+     * @param orderToTake The order to take.
+     * @return The genome, or null if the combination is not the order to take followed by 4 distinct orders of the
+     * list.
      */
-    private static ArrayList<Order> generateIndividual(ArrayList<Order> orders) {
-        Random random = new Random();
-        ArrayList<Order> individual = new ArrayList<>();
-
-        for (int j = 0; j < 4; j++) {
-            Order randomOrder = orders.get(random.nextInt(orders.size()));
-            if (!individual.contains(randomOrder)) {
-                individual.add(randomOrder);
-            } else {
-                j--;
+    private static int[] toGenome(List<Order> combination, ArrayList<Order> orders, Order orderToTake) {
+        if (combination.size() != INDIVIDUAL_SIZE + 1 || combination.get(0) != orderToTake) {
+            return null;
+        }
+        int[] genome = new int[INDIVIDUAL_SIZE];
+        for (int i = 0; i < INDIVIDUAL_SIZE; i++) {
+            genome[i] = orders.indexOf(combination.get(i + 1));
+            for (int j = 0; j < i; j++) {
+                if (genome[j] == genome[i]) {
+                    return null;
+                }
+            }
+            if (genome[i] < 0) {
+                return null;
             }
         }
-
-        return individual;
+        return genome;
     }
 
     /**
-     * Generates an initial population of individuals for the genetic algorithm.
+     * Generates an initial population of individuals for the genetic algorithm and scores them.
      *
-     * @param orders         The list of orders from which to generate individuals.
-     * @param populationSize The size of the population to be generated.
-     * @return An ArrayList containing the initial population of individuals.
-     * @implNote The method creates a population by generating individuals using the {@link #generateIndividual(ArrayList)} method.
+     * @param population    The genomes to fill.
+     * @param times         The total delivery time of each genome, filled.
+     * @param breeders      The breeders of the chunks of the population.
+     * @param matrixIndexes The index in the travel matrix of each gene.
+     * @param matrix        The travel matrix of the current dispatch.
+     * @implNote Each chunk is filled in parallel by its breeder, see {@link Breeder#generateIndividual(int[])}.
      */
-    private static ArrayList<ArrayList<Order>> generatePopulation(ArrayList<Order> orders, int populationSize) {
-        ArrayList<ArrayList<Order>> population = new ArrayList<>(populationSize);
-        for (int i = 0; i < populationSize; i++) {
-            ArrayList<Order> individual = generateIndividual(orders);
-            population.add(individual);
-        }
-        return population;
+    private static void generatePopulation(int[][] population, double[] times, Breeder[] breeders,
+                                           int[] matrixIndexes, TravelMatrix matrix) {
+        Arrays.stream(breeders).parallel().forEach(breeder -> {
+            for (int i = breeder.from; i < breeder.to; i++) {
+                breeder.generateIndividual(population[i]);
+                times[i] = matrix.totalDeliveryTime(population[i], matrixIndexes);
+            }
+        });
     }
 
     /**
-     * Selects a parent individual from the given population based on their total delivery time.
+     * Breeds the next generation from the current one, and scores it.
      *
-     * @param population The population of individuals from which to select a parent.
-     * @return An ArrayList representing the selected parent individual.
-     * @throws RuntimeException if an exception occurs during the total delivery time calculation.
-     * @implNote The method sorts the population based on total delivery time and selects the top performer as the parent.
-     * @see Order#totalDeliveryTime(ArrayList)
+     * @param population    The genomes of the current generation, left unchanged.
+     * @param times         The total delivery time of each genome of the current generation.
+     * @param newPopulation The genomes overwritten with the next generation.
+     * @param newTimes      The total delivery time of each genome of the next generation, filled.
+     * @param breeders      The breeders of the chunks of the population.
+     * @param matrixIndexes The index in the travel matrix of each gene.
+     * @param matrix        The travel matrix of the current dispatch.
+     * @implNote The best individual is kept as is in the first slot, every other child is the crossover of two
+     * tournament winners, mutated. The chunks are bred in parallel: they only read the current generation and each
+     * writes its own slots of the next one.
      */
-    private static ArrayList<Order> selectParent(ArrayList<ArrayList<Order>> population) {
-        population.sort(Comparator.comparingDouble(individual -> {
-            try {
-                return Order.totalDeliveryTime(individual);
-            } catch (Exception e) {
-                Logger logger = Logger.getLogger(SamuelAlgorithm.class.getName());
-                logger.warning("Exception occurred: " + e.getMessage());
-                throw (e);
+    private static void breed(int[][] population, double[] times, int[][] newPopulation, double[] newTimes,
+                              Breeder[] breeders, int[] matrixIndexes, TravelMatrix matrix) {
+        int best = findBestIndividual(times);
+        System.arraycopy(population[best], 0, newPopulation[0], 0, INDIVIDUAL_SIZE);
+        newTimes[0] = times[best];
+
+        Arrays.stream(breeders).parallel().forEach(breeder -> {
+            for (int i = Math.max(1, breeder.from); i < breeder.to; i++) {
+                int[] parent1 = population[breeder.selectParent(times)];
+                int[] parent2 = population[breeder.selectParent(times)];
+                breeder.crossover(parent1, parent2, newPopulation[i]);
+                breeder.mutate(newPopulation[i]);
+                newTimes[i] = matrix.totalDeliveryTime(newPopulation[i], matrixIndexes);
             }
-        }));
-
-        ArrayList<Order> topPerformer = population.remove(0);
-
-        return new ArrayList<>(topPerformer);
+        });
     }
 
     /**
-     * Applies a crossover operation between two parent individuals to create a child individual.
+     * Finds the best individual with the minimum total delivery time in the given population.
      *
-     * @param parent1 The first parent individual.
-     * @param parent2 The second parent individual.
-     * @return An ArrayList representing the child individual resulting from the crossover operation.
-     * @implNote The method selects a subset of genes from one parent and copies them to the child,
-     * filling in the remaining positions with genes from the other parent while avoiding duplicates.
+     * @param times The total delivery time of each individual of the population.
+     * @return The index of the best individual, the first one in case of a tie.
+     * @implNote The method reads the times computed when the individuals were bred, no route is evaluated.
      */
-    private static ArrayList<Order> crossover(ArrayList<Order> parent1, ArrayList<Order> parent2) {
-        int size = parent1.size();
-        ArrayList<Order> child = new ArrayList<>(Collections.nCopies(size, null));
-
-        // Step 1: Select a subset of genes (crossover segment)
-        int start = new Random().nextInt(size);
-        int end = new Random().nextInt(size);
-        if (end < start) {
-            int temp = start;
-            start = end;
-            end = temp;
+    private static int findBestIndividual(double[] times) {
+        int best = 0;
+        for (int i = 1; i < times.length; i++) {
+            if (times[i] < times[best]) {
+                best = i;
+            }
         }
+        return best;
+    }
 
-        // Step 2: Copy the crossover segment from parent1 to the child
-        for (int i = start; i <= end; i++) {
-            child.set(i, parent1.get(i));
+    /**
+     * An island of the genetic time algorithm: a scored population, the population it is bred into, and the breeders
+     * of its chunks. Two generations are allocated once, each new generation is written over the one before the last.
+     */
+    private static final class TimeIsland implements IslandModel.Island {
+        private final Breeder[] breeders;
+        private final int[] matrixIndexes;
+        private final TravelMatrix matrix;
+        private int[][] population;
+        private double[] times;
+        private int[][] newPopulation;
+        private double[] newTimes;
+        private double bestTime;
+
+        /**
+         * Constructs an island and its initial population.
+         *
+         * @param populationSize The size of the population.
+         * @param orderCount     The number of orders, so the number of distinct genes.
+         * @param random         The random generator of the island, split between its breeders.
+         * @param matrixIndexes  The index in the travel matrix of each gene.
+         * @param matrix         The travel matrix of the current dispatch.
+         * @param seedGenomes    The genomes the initial population starts with, up to half of it.
+         */
+        private TimeIsland(int populationSize, int orderCount, SplittableRandom random, int[] matrixIndexes,
+                           TravelMatrix matrix, List<int[]> seedGenomes) {
+            // Each chunk of the population is bred by its own breeder, with its own random generator
+            this.breeders = new Breeder[(populationSize + BREEDING_CHUNK_SIZE - 1) / BREEDING_CHUNK_SIZE];
+            for (int chunk = 0; chunk < breeders.length; chunk++) {
+                breeders[chunk] = new Breeder(random.split(), chunk * BREEDING_CHUNK_SIZE,
+                        Math.min(populationSize, (chunk + 1) * BREEDING_CHUNK_SIZE), orderCount);
+            }
+            this.matrixIndexes = matrixIndexes;
+            this.matrix = matrix;
+            this.population = new int[populationSize][INDIVIDUAL_SIZE];
+            this.times = new double[populationSize];
+            this.newPopulation = new int[populationSize][INDIVIDUAL_SIZE];
+            this.newTimes = new double[populationSize];
+            generatePopulation(population, times, breeders, matrixIndexes, matrix);
+            // Put the seeds in place of the first random individuals
+            for (int i = 0; i < seedGenomes.size() && i < Math.max(1, populationSize / 2); i++) {
+                System.arraycopy(seedGenomes.get(i), 0, population[i], 0, INDIVIDUAL_SIZE);
+                times[i] = matrix.totalDeliveryTime(population[i], matrixIndexes);
+            }
+            this.bestTime = times[findBestIndividual(times)];
         }
 
-        // Step 3: Fill in the remaining positions with genes from parent2, avoiding duplicates
-        int currentIndex = (end + 1) % size;
-        for (int i = 0; i < size; i++) {
-            if (child.get(currentIndex) == null) {
-                Order currentOrder = parent2.get(i);
-                if (!child.contains(currentOrder)) {
-                    child.set(currentIndex, currentOrder);
-                    currentIndex = (currentIndex + 1) % size;
+        @Override
+        public boolean evolve() {
+            breed(population, times, newPopulation, newTimes, breeders, matrixIndexes, matrix);
+
+            int[][] previousPopulation = population;
+            double[] previousTimes = times;
+            population = newPopulation;
+            times = newTimes;
+            newPopulation = previousPopulation;
+            newTimes = previousTimes;
+            return keepBest();
+        }
+
+        @Override
+        public int[] emigrant() {
+            return population[findBestIndividual(times)].clone();
+        }
+
+        @Override
+        public boolean immigrate(int[] genome) {
+            int worst = 0;
+            for (int i = 1; i < times.length; i++) {
+                if (times[i] > times[worst]) {
+                    worst = i;
                 }
             }
+            population[worst] = genome;
+            times[worst] = matrix.totalDeliveryTime(genome, matrixIndexes);
+            return keepBest();
         }
 
-        return child;
+        /**
+         * Checks whether the best individual of the population is better than the best one found so far.
+         *
+         * @return True if the best individual improved.
+         * @implNote The best individual is carried over to each new generation, so the best one of the population is
+         * also the best one found.
+         */
+        private boolean keepBest() {
+            double time = times[findBestIndividual(times)];
+            if (time < bestTime) {
+                bestTime = time;
+                return true;
+            }
+            return false;
+        }
     }
 
     /**
-     * Applies a mutation operation to a child individual by swapping two distinct positions.
-     *
-     * @param child The child individual to be mutated.
-     * @implNote The method randomly chooses two distinct positions in the child and swaps the orders at those positions.
+     * Breeds one chunk of the population of the genetic algorithm, the slots from {@code from} to {@code to}.
+     * A breeder owns its random generator and its scratch arrays, so the chunks can be bred on different threads.
      */
-    private static void mutate(ArrayList<Order> child) {
-        Random random = new Random();
+    private static final class Breeder {
+        private final SplittableRandom random;
+        private final int from;
+        private final int to;
+        private final int[] pool;
+        private final boolean[] inChild;
+
+        /**
+         * Constructs a breeder.
+         *
+         * @param random     The random generator of the chunk.
+         * @param from       The first slot of the chunk.
+         * @param to         The slot after the last one of the chunk.
+         * @param orderCount The number of orders, so the number of distinct genes.
+         */
+        private Breeder(SplittableRandom random, int from, int to, int orderCount) {
+            this.random = random;
+            this.from = from;
+            this.to = to;
+            this.pool = new int[orderCount];
+            for (int gene = 0; gene < orderCount; gene++) {
+                pool[gene] = gene;
+            }
+            this.inChild = new boolean[orderCount];
+        }
 
-        int size = child.size();
+        /**
+         * Generates an individual for the genetic algorithm by randomly selecting orders.
+         *
+         * @param genome The genome to overwrite.
+         * @implNote The method draws distinct genes with a partial Fisher-Yates shuffle of the pool of genes.
+         */
+        private void generateIndividual(int[] genome) {
+            for (int i = 0; i < genome.length; i++) {
+                int randomIndex = i + random.nextInt(pool.length - i);
+                int gene = pool[randomIndex];
+                pool[randomIndex] = pool[i];
+                pool[i] = gene;
+                genome[i] = gene;
+            }
+        }
+
+        /**
+         * Selects a parent individual from the given population based on their total delivery time.
+         *
+         * @param times The total delivery time of each individual of the population.
+         * @return The index of the selected parent.
+         * @implNote The method runs a tournament: the fastest of {@value #TOURNAMENT_SIZE} individuals drawn at
+         * random wins. The population is not changed, and the selection costs O(1).
+         */
+        private int selectParent(double[] times) {
+            int winner = random.nextInt(times.length);
+            for (int round = 1; round < TOURNAMENT_SIZE; round++) {
+                int challenger = random.nextInt(times.length);
+                if (times[challenger] < times[winner]) {
+                    winner = challenger;
+                }
+            }
+            return winner;
+        }
 
-        // Choose two distinct positions in the child
-        int position1 = random.nextInt(size);
-        int position2;
-        do {
-            position2 = random.nextInt(size);
-        } while (position1 == position2);
+        /**
+         * Applies a crossover operation between two parent individuals to create a child individual.
+         *
+         * @param parent1 The first parent individual.
+         * @param parent2 The second parent individual.
+         * @param child   The genome overwritten with the child.
+         * @implNote The method selects a subset of genes from one parent and copies them to the child,
+         * filling in the remaining positions with genes from the other parent while avoiding duplicates.
+         */
+        private void crossover(int[] parent1, int[] parent2, int[] child) {
+            int size = parent1.length;
+
+            // Step 1: Select a subset of genes (crossover segment)
+            int start = random.nextInt(size);
+            int end = random.nextInt(size);
+            if (end < start) {
+                int temp = start;
+                start = end;
+                end = temp;
+            }
 
-        // Swap the orders at the chosen positions
-        Order order1 = child.get(position1);
-        Order order2 = child.get(position2);
+            // Step 2: Copy the crossover segment from parent1 to the child
+            for (int i = start; i <= end; i++) {
+                child[i] = parent1[i];
+                inChild[parent1[i]] = true;
+            }
 
-        child.set(position1, order2);
-        child.set(position2, order1);
-    }
+            // Step 3: Fill in the remaining positions with genes from parent2, avoiding duplicates
+            int currentIndex = (end + 1) % size;
+            for (int i = 0; i < size && currentIndex != start; i++) {
+                int gene = parent2[i];
+                if (!inChild[gene]) {
+                    child[currentIndex] = gene;
+                    inChild[gene] = true;
+                    currentIndex = (currentIndex + 1) % size;
+                }
+            }
 
-    /**
-     * Finds the best individual with the minimum total delivery time in the given population.
-     *
-     * @param population The population of individuals from which to find the best individual.
-     * @return An ArrayList representing the best individual with the least total delivery time.
-     * @implNote The method iterates through the population and selects the individual with the minimum total delivery time.
-     * The result is the combination of orders with the least total delivery time.
-     * @see Order#totalDeliveryTime(ArrayList)
-     */
-    private static ArrayList<Order> findBestIndividual(ArrayList<ArrayList<Order>> population) {
-        double minTime = Integer.MAX_VALUE;
-        ArrayList<Order> minArray = new ArrayList<>();
-        for (ArrayList<Order> orders : population) {
-            if (Order.totalDeliveryTime(orders) < minTime) {
-                minTime = Order.totalDeliveryTime(orders);
-                minArray = orders;
+            // Clear the marker for the next child
+            for (int gene : child) {
+                inChild[gene] = false;
             }
         }
-        return minArray;
+
+        /**
+         * Applies a mutation operation to a child individual by swapping two distinct positions.
+         *
+         * @param child The child individual to be mutated.
+         * @implNote The method randomly chooses two distinct positions in the child and swaps the orders at those
+         * positions.
+         */
+        private void mutate(int[] child) {
+            int size = child.length;
+
+            // Choose two distinct positions in the child
+            int position1 = random.nextInt(size);
+            int position2;
+            do {
+                position2 = random.nextInt(size);
+            } while (position1 == position2);
+
+            // Swap the orders at the chosen positions
+            int gene = child[position1];
+            child[position1] = child[position2];
+            child[position2] = gene;
+        }
     }
 }
@@ -1,8 +1,14 @@
 package com.pizzadelivery.model;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +19,16 @@ import java.util.logging.Logger;
 /**
  * A HashMap implementation that automatically saves its content to a file upon any modification.
  * This class extends HashMap and adds functionality to persist the map's state to a file.
+ * <p>
+ * Two persistence modes are available:
+ * <ul>
+ * <li>{@link PersistenceMode#SNAPSHOT}: every modification rewrites the whole file. Simple, but a put costs a full
+ * file rewrite, which becomes quadratic when many entries are added one by one.</li>
+ * <li>{@link PersistenceMode#APPEND_LOG}: every modification is appended to a log file next to the snapshot. Log
+ * records are group-committed by a background flusher every flush interval, and the log is compacted into the
+ * snapshot (written to a temporary file and renamed atomically) once it grows larger than the map. A put only
+ * costs an in-memory append; at most one flush interval of modifications can be lost on a crash.</li>
+ * </ul>
  *
  * @param <K> the type of keys maintained by this map
  * @param <V> the type of mapped values
@@ -20,19 +36,57 @@ import java.util.logging.Logger;
  * @author Team
  */
 public class SaveableHashMap<K, V> extends HashMap<K, V> {
+    private static final String LOG_FILE_SUFFIX = ".log";
+
+    /**
+     * The ways the map can be persisted to its file.
+     */
+    public enum PersistenceMode {SNAPSHOT, APPEND_LOG}
+
     private final Lock fileLock;
     private final Path filePath;
+    private final PersistenceMode mode;
+    private final AppendLog log;
+    private boolean loading;
 
     /**
      * Constructs a SaveableHashMap instance that stores data to the specified file path.
+     * The whole file is rewritten on every modification.
      *
      * @param filePath the file path where the map data will be saved
      */
     public SaveableHashMap(Path filePath) {
+        this(filePath, PersistenceMode.SNAPSHOT, 0);
+    }
+
+    /**
+     * Constructs a SaveableHashMap instance that stores data to the specified file path with the given mode.
+     *
+     * @param filePath            the file path where the map data will be saved
+     * @param mode                the persistence mode of the map
+     * @param flushIntervalMillis the interval between two group commits of the log, in milliseconds, or 0 to only
+     *                            write the log on {@link #flush()} and {@link #close()}; ignored in
+     *                            {@link PersistenceMode#SNAPSHOT} mode
+     */
+    public SaveableHashMap(Path filePath, PersistenceMode mode, long flushIntervalMillis) {
         super();
         this.filePath = filePath;
+        this.mode = mode;
         this.fileLock = new ReentrantLock();
-        this.putAll(loadFromFile(this.filePath)); // Load existing data from the file
+        if (mode == PersistenceMode.APPEND_LOG) {
+            Path logPath = filePath.resolveSibling(filePath.getFileName() + LOG_FILE_SUFFIX);
+            this.log = new AppendLog(logPath, flushIntervalMillis, this::size, this::writeSnapshot);
+        } else {
+            this.log = null;
+        }
+
+        // Load existing data from the file, without writing it back
+        loading = true;
+        this.putAll(loadFromFile(this.filePath));
+        if (mode == PersistenceMode.APPEND_LOG) {
+            replayLog();
+        }
+        loading = false;
     }
 
     /**
@@ -44,7 +98,11 @@ public class SaveableHashMap<K, V> extends HashMap<K, V> {
      */
     @Override
     public V put(K key, V value) {
-        V result = super.put(key, value);
+        V result;
+        synchronized (this) {
+            result = super.put(key, value);
+            appendRecord(key, value);
+        }
         saveToFile(); // Save changes to file
         return result;
     }
@@ -56,7 +114,12 @@ public class SaveableHashMap<K, V> extends HashMap<K, V> {
      */
     @Override
     public void putAll(Map<? extends K, ? extends V> m) {
-        super.putAll(m);
+        synchronized (this) {
+            super.putAll(m);
+            for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+                appendRecord(entry.getKey(), entry.getValue());
+            }
+        }
         saveToFile(); // Save changes to file
     }
 
@@ -68,20 +131,55 @@ public class SaveableHashMap<K, V> extends HashMap<K, V> {
      */
     @Override
     public V remove(Object key) {
-        V result = super.remove(key);
+        V result;
+        synchronized (this) {
+            result = super.remove(key);
+            appendRecord(key, null); // An empty value is a removal record
+        }
         saveToFile(); // Save changes to file
         return result;
     }
 
     /**
      * Overrides the clear method to save changes to the file after clearing all key-value pairs from the map.
+     * In {@link PersistenceMode#APPEND_LOG} mode the map is compacted right away, so the log never has to replay
+     * entries that were cleared.
      */
     @Override
     public void clear() {
-        super.clear();
+        synchronized (this) {
+            super.clear();
+            if (log != null) {
+                log.discardPending(); // Records of cleared entries must not be replayed
+            }
+        }
+        if (mode == PersistenceMode.APPEND_LOG && !loading) {
+            log.compact();
+        }
         saveToFile(); // Save changes to file
     }
 
+    /**
+     * Writes the pending log records to the log file and forces them to the disk.
+     * Called periodically by the background flusher; it can also be called to make sure every modification made so
+     * far is durable. Does nothing in {@link PersistenceMode#SNAPSHOT} mode.
+     */
+    public void flush() {
+        if (log != null) {
+            log.flush();
+        }
+    }
+
+    /**
+     * Stops the background flusher after a last flush. The map is still usable afterwards, but modifications are
+     * no longer written to the log automatically.
+     */
+    public void close() {
+        if (log != null) {
+            log.close();
+        }
+    }
+
     /**
      * Loads the map data from the specified file path.
      * This method acquires a lock before reading to ensure thread safety.
@@ -113,6 +211,30 @@ public class SaveableHashMap<K, V> extends HashMap<K, V> {
         }
     }
 
+    /**
+     * Replays the log file on top of the loaded snapshot.
+     * Records are applied in order, a record with an empty value removes its key.
+     */
+    private void replayLog() {
+        try {
+            for (String line : log.readRecords()) {
+                String[] parts = line.split(":", -1);
+                if (parts.length != 2) {
+                    continue; // Torn record from a crash in the middle of a flush
+                }
+                K key = (K) parts[0]; // Assuming the key is a String
+                if (parts[1].isEmpty()) {
+                    super.remove(key);
+                } else {
+                    super.put(key, convertValue(parts[1]));
+                }
+            }
+        } catch (Exception e) {
+            Logger logger = Logger.getLogger(SaveableHashMap.class.getName());
+            logger.warning("Exception occurred while replaying the log: " + e.getMessage());
+        }
+    }
+
     /**
      * Converts a string value to the appropriate type for the map.
      * Override this method if a different conversion is required.
@@ -131,19 +253,31 @@ public class SaveableHashMap<K, V> extends HashMap<K, V> {
         }
     }
 
+    /**
+     * Queues a log record for the next group commit. Must be called while holding the map's monitor.
+     *
+     * @param key   the modified key
+     * @param value the new value, or null for a removal
+     */
+    private void appendRecord(Object key, Object value) {
+        if (mode != PersistenceMode.APPEND_LOG || loading) {
+            return;
+        }
+        log.append(value != null ? key + ":" + value : key + ":");
+    }
+
     /**
      * Saves the current state of the map to the file.
-     * This method acquires a lock before writing to ensure thread safety.
+     * In {@link PersistenceMode#APPEND_LOG} mode the modification is already queued for the next group commit, so
+     * there is nothing to write here.
      */
     private void saveToFile() {
+        if (mode == PersistenceMode.APPEND_LOG || loading) {
+            return;
+        }
         try {
             fileLock.lock(); // Acquire lock before writing to file
-            StringBuilder content = new StringBuilder();
-            for (Map.Entry<K, V> entry : entrySet()) {
-                content.append(entry.getKey()).append(":").append(entry.getValue()).append("\n");
-            }
-
-            Files.writeString(filePath, content.toString(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            writeSnapshot();
         } catch (Exception e) {
             Logger logger = Logger.getLogger(SaveableHashMap.class.getName());
             logger.warning("Exception occurred while saving data to file: " + e.getMessage());
@@ -151,4 +285,39 @@ public class SaveableHashMap<K, V> extends HashMap<K, V> {
             fileLock.unlock(); // Release lock after writing to file
         }
     }
+
+    /**
+     * Writes the map to a temporary file next to the snapshot, then renames it over the snapshot.
+     * A crash in the middle of the write leaves the previous snapshot untouched. Must be called while holding the
+     * file lock, or from the log compaction in {@link PersistenceMode#APPEND_LOG} mode.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    private void writeSnapshot() throws IOException {
+        List<String> lines;
+        synchronized (this) {
+            lines = new ArrayList<>(size());
+            for (Map.Entry<K, V> entry : entrySet()) {
+                lines.add(entry.getKey() + ":" + entry.getValue());
+            }
+        }
+
+        Path directory = filePath.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, filePath.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap((String.join("\n", lines) + (lines.isEmpty() ? "" : "\n"))
+                    .getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tempFile, filePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
 }
\ No newline at end of file
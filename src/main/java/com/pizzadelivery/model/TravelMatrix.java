@@ -0,0 +1,364 @@
+package com.pizzadelivery.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A dense snapshot of the travel times and distances between the pizzeria and a fixed set of orders.
+ * The matrix is built once per dispatch and shared by every solver, so route evaluations in the hot loops
+ * are plain array reads instead of cache lookups through {@link GPS}.
+ * <p>
+ * Index {@link #PIZZERIA_INDEX} is the pizzeria, the distinct orders follow in the order they were given. Orders are
+ * found by identity in an open-addressing table of primitive indexes; the solvers resolve the indexes of their orders
+ * once and then read the cells by index.
+ * <p>
+ * Cells are filled lazily from {@link GPS#timeTravel(GPS)} and {@link GPS#calculateDistance(GPS)} the first time
+ * they are read, so a greedy solver that only needs a few legs does not pay for the whole matrix. The fill of a cell
+ * is atomic and the first value wins, so every reader sees the same value for a leg even when two threads looked it
+ * up at once, e.g. one getting the route from the API and the other a fallback estimate. A lookup can block on the
+ * API, though, so a solver that reads the matrix from several threads calls {@link #fillTimes(int[])} first, on
+ * its own thread: its parallel sections then only read memory.
+ *
+ * @author Team
+ */
+public final class TravelMatrix {
+    public static final int PIZZERIA_INDEX = 0;
+
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long UNKNOWN = Double.doubleToRawLongBits(Double.NaN);
+
+    private final int size;
+    private final GPS[] locations;
+    private final Order[] orders;
+    // Identity hash table of the orders, a power of two at most half full; the slot of an order holds its index
+    private final Order[] indexKeys;
+    private final int[] indexValues;
+    // Raw bits of the doubles, so a cell is filled with a compare-and-set
+    private final long[] times;
+    private final long[] distances;
+
+    /**
+     * Constructs a matrix over the pizzeria and the given orders.
+     *
+     * @param orders The orders that can appear in the routes evaluated against this matrix.
+     */
+    private TravelMatrix(Collection<Order> orders) {
+        this.indexKeys = new Order[Integer.highestOneBit(Math.max(1, orders.size()) * 2) * 2];
+        this.indexValues = new int[indexKeys.length];
+        List<Order> distinctOrders = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            int slot = slotOf(order);
+            if (indexKeys[slot] == null) { // The same order given twice only needs one row
+                distinctOrders.add(order);
+                indexKeys[slot] = order;
+                indexValues[slot] = distinctOrders.size();
+            }
+        }
+
+        this.size = distinctOrders.size() + 1;
+        this.locations = new GPS[size];
+        this.orders = new Order[size];
+        this.locations[PIZZERIA_INDEX] = Pizzeria.PIZZERIA_LOCATION;
+        for (int index = 1; index < size; index++) {
+            this.orders[index] = distinctOrders.get(index - 1);
+            this.locations[index] = this.orders[index].location();
+        }
+
+        this.times = new long[size * size];
+        this.distances = new long[size * size];
+        Arrays.fill(times, UNKNOWN);
+        Arrays.fill(distances, UNKNOWN);
+        for (int i = 0; i < size; i++) {
+            // Staying in place costs nothing, no need to ask the route cache for it
+            times[i * size + i] = Double.doubleToRawLongBits(0);
+            distances[i * size + i] = Double.doubleToRawLongBits(0);
+        }
+    }
+
+    /**
+     * Finds the slot of an order in the identity table: its own slot, or the empty slot where it would go.
+     *
+     * @param order The order.
+     * @return The slot.
+     */
+    private int slotOf(Order order) {
+        int mask = indexKeys.length - 1;
+        int hash = System.identityHashCode(order);
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (indexKeys[slot] != null && indexKeys[slot] != order) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Builds a matrix over the pizzeria and the given orders.
+     *
+     * @param orders The candidate orders of the dispatch.
+     * @return A new matrix whose cells are filled on first access.
+     */
+    public static TravelMatrix of(Collection<Order> orders) {
+        return new TravelMatrix(orders);
+    }
+
+    /**
+     * Builds a matrix over the pizzeria, the given orders and one extra order.
+     * Used by the solvers that receive the mandatory order apart from the candidate list.
+     *
+     * @param orders         The candidate orders of the dispatch.
+     * @param mandatoryOrder The order that must be part of the route.
+     * @return A new matrix whose cells are filled on first access.
+     */
+    public static TravelMatrix of(Collection<Order> orders, Order mandatoryOrder) {
+        ArrayList<Order> all = new ArrayList<>(orders.size() + 1);
+        all.add(mandatoryOrder);
+        all.addAll(orders);
+        return new TravelMatrix(all);
+    }
+
+    /**
+     * Fetches in bulk every route of this matrix that is missing from the GPS caches, see
+     * {@link GPS#prefetchRoutes(Collection)}. The cells are then filled from the caches on first access.
+     *
+     * @return This matrix.
+     */
+    public TravelMatrix prefetch() {
+        GPS.prefetchRoutes(Arrays.asList(locations));
+        return this;
+    }
+
+    /**
+     * Fills on the calling thread the travel times between the pizzeria and the given indexes, for a solver about to
+     * read them from several threads. The cells already filled are kept.
+     *
+     * @param indexes The indexes of the orders the solver routes.
+     * @return This matrix.
+     */
+    public TravelMatrix fillTimes(int[] indexes) {
+        for (int from : indexes) {
+            time(PIZZERIA_INDEX, from);
+            time(from, PIZZERIA_INDEX);
+            for (int to : indexes) {
+                if (to != from) {
+                    time(from, to);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Gets the dense index of an order in this matrix.
+     *
+     * @param order The order to look up.
+     * @return The index of the order, never {@link #PIZZERIA_INDEX}.
+     * @throws IllegalArgumentException If the order is not part of this matrix.
+     */
+    public int indexOf(Order order) {
+        int slot = slotOf(order);
+        if (indexKeys[slot] == null) {
+            throw new IllegalArgumentException("Order " + order.id() + " is not part of the travel matrix");
+        }
+        return indexValues[slot];
+    }
+
+    /**
+     * Checks whether an order is part of this matrix.
+     *
+     * @param order The order to check.
+     * @return True if the order has an index in this matrix, false otherwise.
+     */
+    public boolean contains(Order order) {
+        return indexKeys[slotOf(order)] != null;
+    }
+
+    /**
+     * Gets the order stored at a dense index.
+     *
+     * @param index The index of the order.
+     * @return The order, or null for {@link #PIZZERIA_INDEX}.
+     */
+    public Order orderAt(int index) {
+        return orders[index];
+    }
+
+    /**
+     * Gets the number of rows of the matrix, pizzeria included.
+     *
+     * @return The size of the matrix.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the travel time between two indexes of the matrix.
+     *
+     * @param from The index of the origin.
+     * @param to   The index of the destination.
+     * @return The travel time in minutes.
+     */
+    public double time(int from, int to) {
+        int cell = from * size + to;
+        long time = (long) CELLS.getOpaque(times, cell);
+        if (time == UNKNOWN) {
+            time = fill(times, cell, locations[from].timeTravel(locations[to]));
+        }
+        return Double.longBitsToDouble(time);
+    }
+
+    /**
+     * Gets the distance between two indexes of the matrix.
+     *
+     * @param from The index of the origin.
+     * @param to   The index of the destination.
+     * @return The distance in kilometers.
+     */
+    public double distance(int from, int to) {
+        int cell = from * size + to;
+        long distance = (long) CELLS.getOpaque(distances, cell);
+        if (distance == UNKNOWN) {
+            distance = fill(distances, cell, locations[from].calculateDistance(locations[to]));
+        }
+        return Double.longBitsToDouble(distance);
+    }
+
+    /**
+     * Fills a cell unless another thread filled it first.
+     *
+     * @param cells The cells of the times or of the distances.
+     * @param cell  The index of the cell.
+     * @param value The value looked up by this thread.
+     * @return The raw bits of the value of the cell, the one of the first thread that filled it.
+     */
+    private static long fill(long[] cells, int cell, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        long witness = (long) CELLS.compareAndExchange(cells, cell, UNKNOWN, bits);
+        return witness == UNKNOWN ? bits : witness;
+    }
+
+    /**
+     * Gets the travel time between two orders of the matrix.
+     *
+     * @param from The origin order.
+     * @param to   The destination order.
+     * @return The travel time in minutes.
+     */
+    public double time(Order from, Order to) {
+        return time(indexOf(from), indexOf(to));
+    }
+
+    /**
+     * Gets the distance between two orders of the matrix.
+     *
+     * @param from The origin order.
+     * @param to   The destination order.
+     * @return The distance in kilometers.
+     */
+    public double distance(Order from, Order to) {
+        return distance(indexOf(from), indexOf(to));
+    }
+
+    /**
+     * Calculates the total delivery time of a route, same rules as {@link Order#totalDeliveryTime(ArrayList)}.
+     *
+     * @param route The orders in delivery sequence.
+     * @return The total delivery time in minutes, pizzeria legs included.
+     */
+    public double totalDeliveryTime(List<Order> route) {
+        int previous = indexOf(route.get(0));
+        double totalTime = time(PIZZERIA_INDEX, previous);
+        for (int i = 1; i < route.size(); i++) {
+            int current = indexOf(route.get(i));
+            totalTime += time(previous, current);
+            previous = current;
+        }
+        return totalTime + time(previous, PIZZERIA_INDEX);
+    }
+
+    /**
+     * Calculates the number of discounts of a route, same rules as {@link Order#numberOfDiscount(ArrayList)}.
+     *
+     * @param route The orders in delivery sequence.
+     * @return The count of legs that exceed the maximum waiting time.
+     */
+    public int numberOfDiscount(List<Order> route) {
+        int discountCount = 0;
+        int previous = indexOf(route.get(0));
+        if (time(PIZZERIA_INDEX, previous) > Pizzeria.ORDER_MAX_WAIT) {
+            discountCount++;
+        }
+        for (int i = 1; i < route.size(); i++) {
+            int current = indexOf(route.get(i));
+            if (time(previous, current) >= Pizzeria.ORDER_MAX_WAIT) {
+                discountCount++;
+            }
+            previous = current;
+        }
+        return discountCount;
+    }
+
+    /**
+     * Calculates the total delivery time of a route given as genes, same rules as
+     * {@link #totalDeliveryTime(List)}. Nothing is allocated, for the fitness functions of the genetic solvers.
+     *
+     * @param genome        The route, as genes in delivery sequence.
+     * @param matrixIndexes The index in the matrix of each gene.
+     * @return The total delivery time in minutes, pizzeria legs included.
+     */
+    public double totalDeliveryTime(int[] genome, int[] matrixIndexes) {
+        int previous = matrixIndexes[genome[0]];
+        double totalTime = time(PIZZERIA_INDEX, previous);
+        for (int i = 1; i < genome.length; i++) {
+            int current = matrixIndexes[genome[i]];
+            totalTime += time(previous, current);
+            previous = current;
+        }
+        return totalTime + time(previous, PIZZERIA_INDEX);
+    }
+
+    /**
+     * Calculates the number of discounts of a route given as genes, same rules as {@link #numberOfDiscount(List)}.
+     *
+     * @param genome        The route, as genes in delivery sequence.
+     * @param matrixIndexes The index in the matrix of each gene.
+     * @return The count of legs that exceed the maximum waiting time.
+     */
+    public int numberOfDiscount(int[] genome, int[] matrixIndexes) {
+        int discountCount = 0;
+        int previous = matrixIndexes[genome[0]];
+        if (time(PIZZERIA_INDEX, previous) > Pizzeria.ORDER_MAX_WAIT) {
+            discountCount++;
+        }
+        for (int i = 1; i < genome.length; i++) {
+            int current = matrixIndexes[genome[i]];
+            if (time(previous, current) >= Pizzeria.ORDER_MAX_WAIT) {
+                discountCount++;
+            }
+            previous = current;
+        }
+        return discountCount;
+    }
+
+    /**
+     * Calculates the total delivery distance of a route, same rules as
+     * {@link Order#totalDeliveryDistance(ArrayList)}.
+     *
+     * @param route The orders in delivery sequence.
+     * @return The total delivery distance in kilometers, pizzeria legs included.
+     */
+    public double totalDeliveryDistance(List<Order> route) {
+        int previous = indexOf(route.get(0));
+        double totalDistance = distance(PIZZERIA_INDEX, previous);
+        for (int i = 1; i < route.size(); i++) {
+            int current = indexOf(route.get(i));
+            totalDistance += distance(previous, current);
+            previous = current;
+        }
+        return totalDistance + distance(previous, PIZZERIA_INDEX);
+    }
+}
@@ -0,0 +1,35 @@
+package com.pizzadelivery.model;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the routing API finds no road near one of the locations of a request, so the caller can remember that
+ * location instead of asking again.
+ *
+ * @author Team
+ */
+public class UnroutablePointException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final GPS location;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message  The detail message.
+     * @param location The location the API could not route.
+     */
+    public UnroutablePointException(String message, GPS location) {
+        super(message);
+        this.location = location;
+    }
+
+    /**
+     * Gets the location the API could not route.
+     *
+     * @return The location.
+     */
+    public GPS location() {
+        return location;
+    }
+}
@@ -0,0 +1,77 @@
+import com.pizzadelivery.model.ApiGuard;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the token bucket and the circuit breaker of the API guard on a manual clock.
+ */
+public class ApiGuardTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private AtomicLong clock;
+    private ApiGuard guard;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new AtomicLong();
+        // 60 requests per minute, opens after 3 failures, stays open 10 seconds
+        guard = new ApiGuard(60, 3, 10_000, clock::get);
+    }
+
+    @Test
+    public void testBucketAllowsBurstThenRefills() {
+        for (int i = 0; i < 60; i++) {
+            assertTrue(guard.tryAcquire(), "request " + i + " of the burst must pass");
+        }
+        assertFalse(guard.tryAcquire(), "the bucket must be empty after a full burst");
+
+        clock.addAndGet(SECOND); // One request per second comes back
+        assertTrue(guard.tryAcquire());
+        assertFalse(guard.tryAcquire());
+    }
+
+    @Test
+    public void testRateLimitOpensBreakerUntilProbe() {
+        assertTrue(guard.tryAcquire());
+        guard.recordFailure(true);
+        assertEquals(ApiGuard.State.OPEN, guard.state());
+        assertFalse(guard.tryAcquire());
+
+        clock.addAndGet(10 * SECOND);
+        assertTrue(guard.tryAcquire(), "one probe must pass once the breaker delay is over");
+        assertEquals(ApiGuard.State.HALF_OPEN, guard.state());
+        assertFalse(guard.tryAcquire(), "only one probe at a time");
+
+        guard.recordSuccess();
+        assertEquals(ApiGuard.State.CLOSED, guard.state());
+        assertTrue(guard.tryAcquire());
+    }
+
+    @Test
+    public void testFailedProbeOpensBreakerAgain() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(guard.tryAcquire());
+            guard.recordFailure(false);
+        }
+        assertEquals(ApiGuard.State.OPEN, guard.state(), "three consecutive failures must open the breaker");
+
+        clock.addAndGet(10 * SECOND);
+        assertTrue(guard.tryAcquire());
+        guard.recordFailure(false);
+        assertEquals(ApiGuard.State.OPEN, guard.state());
+        assertFalse(guard.tryAcquire());
+    }
+
+    @Test
+    public void testSuccessResetsFailureCount() {
+        guard.recordFailure(false);
+        guard.recordFailure(false);
+        guard.recordSuccess();
+        guard.recordFailure(false);
+        assertEquals(ApiGuard.State.CLOSED, guard.state());
+    }
+}
@@ -0,0 +1,130 @@
+import com.pizzadelivery.model.AppendLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the replay, the torn record recovery and the compaction of the append log on temporary files.
+ */
+public class AppendLogTest {
+    private static final long NO_FLUSHER = 0; // Records are only written when the tests flush
+
+    private Path directory;
+    private Path logPath;
+    private AtomicInteger compactions;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("appendLog");
+        logPath = directory.resolve("cache.log");
+        compactions = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Opens a log whose owner has no live entry and counts its compactions.
+     *
+     * @return The log.
+     */
+    private AppendLog openLog() {
+        return new AppendLog(logPath, NO_FLUSHER, () -> 0, compactions::incrementAndGet);
+    }
+
+    @Test
+    public void testRecordsAreReplayedInOrder() {
+        AppendLog log = openLog();
+        log.append("1 2 10.0");
+        log.append("3 4 20.0");
+        assertFalse(Files.exists(logPath), "records wait for the next group commit");
+        log.flush();
+        log.append("1 2 11.0");
+        log.close(); // Writes the last group
+
+        AppendLog reopened = openLog();
+        assertEquals(List.of("1 2 10.0", "3 4 20.0", "1 2 11.0"), reopened.readRecords());
+        reopened.close();
+    }
+
+    @Test
+    public void testDiscardedRecordsAreNotWritten() {
+        AppendLog log = openLog();
+        log.append("1 2 10.0");
+        log.discardPending();
+        log.append("3 4 20.0");
+        log.close();
+
+        AppendLog reopened = openLog();
+        assertEquals(List.of("3 4 20.0"), reopened.readRecords());
+        reopened.close();
+    }
+
+    @Test
+    public void testTornRecordIsCutOff() throws IOException {
+        Files.write(logPath, "1 2 10.0\n3 4 20.0\n5 6 3".getBytes(StandardCharsets.UTF_8));
+        AppendLog log = openLog();
+        assertEquals(List.of("1 2 10.0", "3 4 20.0"), log.readRecords());
+        assertEquals("1 2 10.0\n3 4 20.0\n", Files.readString(logPath));
+
+        // The next record starts on its own line instead of completing the torn one
+        log.append("5 6 30.0");
+        log.close();
+        AppendLog reopened = openLog();
+        assertEquals(List.of("1 2 10.0", "3 4 20.0", "5 6 30.0"), reopened.readRecords());
+        reopened.close();
+    }
+
+    @Test
+    public void testLogLargerThanTheOwnerIsCompacted() throws IOException {
+        AppendLog log = openLog();
+        for (int record = 0; record < 1024; record++) {
+            log.append(record + " 0 1.0");
+        }
+        log.flush();
+        assertEquals(0, compactions.get(), "small logs are not compacted");
+
+        log.append("1024 0 1.0");
+        log.flush();
+        assertEquals(1, compactions.get());
+        assertEquals(0, Files.size(logPath));
+
+        log.append("1 2 10.0");
+        log.close();
+        AppendLog reopened = openLog();
+        assertEquals(List.of("1 2 10.0"), reopened.readRecords());
+        reopened.close();
+    }
+
+    @Test
+    public void testFailedCompactionKeepsTheLog() {
+        AppendLog log = new AppendLog(logPath, NO_FLUSHER, () -> 0, () -> {
+            throw new IOException("disk full");
+        });
+        log.append("1 2 10.0");
+        log.flush();
+        log.compact();
+        log.close();
+
+        AppendLog reopened = openLog();
+        assertEquals(List.of("1 2 10.0"), reopened.readRecords());
+        reopened.close();
+    }
+}
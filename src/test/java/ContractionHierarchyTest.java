@@ -0,0 +1,205 @@
+import com.pizzadelivery.model.ContractionHierarchy;
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.LocalRouter;
+import com.pizzadelivery.model.RoadGraph;
+import com.pizzadelivery.model.RouteFact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the contraction hierarchy against a plain Dijkstra search on a synthetic road network, without any network
+ * access.
+ */
+public class ContractionHierarchyTest {
+    private static final int GRID_SIZE = 12;
+    private static final double NODE_SPACING_DEGREES = 0.002;
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("roadGraph");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Creates a grid of streets with random travel times, some of them one-way, and one isolated node.
+     *
+     * @param random The random generator.
+     * @return The road network.
+     */
+    private static RoadGraph randomGrid(Random random) {
+        int nodeCount = GRID_SIZE * GRID_SIZE + 1;
+        double[] latitudes = new double[nodeCount];
+        double[] longitudes = new double[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            latitudes[node] = 48.7 + (node / GRID_SIZE) * NODE_SPACING_DEGREES;
+            longitudes[node] = 2.1 + (node % GRID_SIZE) * NODE_SPACING_DEGREES;
+        }
+        int[] from = new int[4 * nodeCount];
+        int[] to = new int[from.length];
+        double[] meters = new double[from.length];
+        double[] seconds = new double[from.length];
+        int edgeCount = 0;
+        for (int node = 0; node < GRID_SIZE * GRID_SIZE; node++) {
+            int row = node / GRID_SIZE;
+            int column = node % GRID_SIZE;
+            for (int neighbor : new int[]{column + 1 < GRID_SIZE ? node + 1 : -1,
+                    row + 1 < GRID_SIZE ? node + GRID_SIZE : -1}) {
+                if (neighbor < 0) {
+                    continue;
+                }
+                double length = 150 + random.nextDouble() * 100;
+                double time = length / (5 + random.nextDouble() * 10);
+                boolean oneWay = random.nextInt(5) == 0;
+                from[edgeCount] = node;
+                to[edgeCount] = neighbor;
+                meters[edgeCount] = length;
+                seconds[edgeCount++] = time;
+                if (!oneWay) {
+                    from[edgeCount] = neighbor;
+                    to[edgeCount] = node;
+                    meters[edgeCount] = length;
+                    seconds[edgeCount++] = time;
+                }
+            }
+        }
+        return new RoadGraph(latitudes, longitudes, Arrays.copyOf(from, edgeCount), Arrays.copyOf(to, edgeCount),
+                Arrays.copyOf(meters, edgeCount), Arrays.copyOf(seconds, edgeCount));
+    }
+
+    /**
+     * Computes the fastest travel times from a node with a plain Dijkstra search.
+     *
+     * @param graph  The road network.
+     * @param source The origin.
+     * @return The travel time to each node in seconds, infinite if it cannot be reached.
+     */
+    private static double[] dijkstra(RoadGraph graph, int source) {
+        double[] seconds = new double[graph.nodeCount()];
+        boolean[] settled = new boolean[graph.nodeCount()];
+        Arrays.fill(seconds, Double.POSITIVE_INFINITY);
+        seconds[source] = 0;
+        while (true) {
+            int next = -1;
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                if (!settled[node] && seconds[node] < Double.POSITIVE_INFINITY
+                        && (next < 0 || seconds[node] < seconds[next])) {
+                    next = node;
+                }
+            }
+            if (next < 0) {
+                return seconds;
+            }
+            settled[next] = true;
+            for (int edge = 0; edge < graph.edgeCount(); edge++) {
+                if (graph.edgeFrom(edge) == next) {
+                    seconds[graph.edgeTo(edge)] = Math.min(seconds[graph.edgeTo(edge)],
+                            seconds[next] + graph.edgeSeconds(edge));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRoutesMatchDijkstra() {
+        RoadGraph graph = randomGrid(new Random(7));
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        int[] everyNode = new int[graph.nodeCount()];
+        Arrays.setAll(everyNode, node -> node);
+        for (int from = 0; from < graph.nodeCount(); from++) {
+            double[] expected = dijkstra(graph, from);
+            RouteFact[] oneToMany = hierarchy.routes(from, everyNode);
+            for (int to = 0; to < graph.nodeCount(); to++) {
+                RouteFact route = hierarchy.route(from, to);
+                if (expected[to] == Double.POSITIVE_INFINITY) {
+                    assertNull(route, from + " -> " + to);
+                    assertNull(oneToMany[to], from + " -> " + to);
+                } else {
+                    assertEquals(expected[to] / 60, route.duration(), 1e-3, from + " -> " + to);
+                    assertEquals(route.duration(), oneToMany[to].duration(), 1e-9, from + " -> " + to);
+                    assertEquals(route.distance(), oneToMany[to].distance(), 1e-9, from + " -> " + to);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(randomGrid(new Random(11)));
+        Path path = directory.resolve("roadGraph.ch");
+        hierarchy.write(path);
+        ContractionHierarchy reloaded = ContractionHierarchy.read(path);
+
+        assertEquals(hierarchy.nodeCount(), reloaded.nodeCount());
+        for (int to = 0; to < hierarchy.nodeCount() - 1; to++) {
+            assertEquals(hierarchy.route(0, to).duration(), reloaded.route(0, to).duration(), 1e-9);
+            assertEquals(hierarchy.route(0, to).distance(), reloaded.route(0, to).distance(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testReadRejectsOtherFiles() throws IOException {
+        Path path = directory.resolve("roadGraph.ch");
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> ContractionHierarchy.read(path));
+    }
+
+    @Test
+    public void testLocalRouterFromEdgeList() throws IOException {
+        // A two-way street of 1 km in 2 minutes, then a one-way street of 1 km in 1 minute
+        Files.writeString(directory.resolve("roadGraph.txt"), """
+                # Synthetic extract
+                n 100 48.700 2.100
+                n 200 48.709 2.100
+                n 300 48.718 2.100
+                b 100 200 1000 120
+                e 200 300 1000 60
+                """);
+        LocalRouter router = LocalRouter.open(directory.resolve("roadGraph.ch"), directory.resolve("roadGraph.txt"));
+        assertNotNull(router);
+        assertTrue(Files.exists(directory.resolve("roadGraph.ch")));
+
+        GPS start = new GPS(48.700, 2.100);
+        GPS end = new GPS(48.718, 2.100);
+        RouteFact route = router.route(start, end);
+        assertEquals(3, route.duration(), 1e-9);
+        assertEquals(2, route.distance(), 1e-9);
+        assertNull(router.route(end, start)); // Against the one-way street
+        assertNull(router.route(start, new GPS(48.8, 2.1))); // Outside the network
+
+        RouteFact[] routes = router.routes(start, List.of(end, new GPS(48.8, 2.1), new GPS(48.709, 2.100)));
+        assertEquals(3, routes[0].duration(), 1e-9);
+        assertNull(routes[1]);
+        assertEquals(2, routes[2].duration(), 1e-9);
+
+        // The saved hierarchy is loaded on the next start
+        LocalRouter reopened = LocalRouter.open(directory.resolve("roadGraph.ch"), directory.resolve("missing.txt"));
+        assertEquals(3, reopened.route(start, end).duration(), 1e-9);
+    }
+
+    @Test
+    public void testLocalRouterWithoutExtract() {
+        assertNull(LocalRouter.open(directory.resolve("roadGraph.ch"), directory.resolve("roadGraph.txt")));
+    }
+}
@@ -0,0 +1,76 @@
+import com.pizzadelivery.model.CrowFliesBatch;
+import com.pizzadelivery.model.GPS;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the batch crow-flies distances against the plain Haversine formula.
+ */
+public class CrowFliesBatchTest {
+
+    /**
+     * Calculates the crow-flies distance between two points.
+     *
+     * @param from The first point.
+     * @param to   The second point.
+     * @return The distance in kilometers.
+     */
+    private static double haversine(GPS from, GPS to) {
+        double dLat = Math.toRadians(to.latitude() - from.latitude());
+        double dLon = Math.toRadians(to.longitude() - from.longitude());
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(from.latitude()))
+                * Math.cos(Math.toRadians(to.latitude())) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 6371 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    @Test
+    public void testDistancesMatchHaversine() {
+        Random random = new Random(3);
+        List<GPS> points = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            // Half in the delivery area, half anywhere on the globe
+            points.add(i % 2 == 0 ? new GPS(48.62 + random.nextDouble() * 0.18, 1.99 + random.nextDouble() * 0.26)
+                    : new GPS(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+        CrowFliesBatch batch = CrowFliesBatch.of(points);
+        assertEquals(200, batch.size());
+
+        GPS origin = new GPS(48.7, 2.1);
+        double[] fromOrigin = batch.distancesFrom(origin);
+        double[] fromPoint = new double[batch.size()];
+        batch.distancesFrom(7, fromPoint);
+        double[][] matrix = batch.matrix();
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(haversine(origin, points.get(i)), fromOrigin[i], 1e-9);
+            assertEquals(haversine(points.get(7), points.get(i)), fromPoint[i], 1e-9);
+            for (int j = 0; j < points.size(); j++) {
+                assertEquals(haversine(points.get(i), points.get(j)), matrix[i][j], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testEdgeCases() {
+        CrowFliesBatch batch = new CrowFliesBatch(new double[]{48.7, -48.7, 90, 0},
+                new double[]{2.1, -177.9, 0, 180});
+        double[] distances = batch.distancesFrom(new GPS(48.7, 2.1));
+        assertEquals(0, distances[0], 1e-12); // Same point
+        assertEquals(Math.PI * 6371, distances[1], 1e-6); // Antipode
+        assertEquals(haversine(new GPS(48.7, 2.1), new GPS(90, 0)), distances[2], 1e-9);
+        assertEquals(haversine(new GPS(48.7, 2.1), new GPS(0, 180)), distances[3], 1e-9);
+        // A few meters apart
+        CrowFliesBatch close = new CrowFliesBatch(new double[]{48.70001}, new double[]{2.10001});
+        assertEquals(haversine(new GPS(48.7, 2.1), new GPS(48.70001, 2.10001)),
+                close.distancesFrom(new GPS(48.7, 2.1))[0], 1e-12);
+    }
+
+    @Test
+    public void testMismatchedArrays() {
+        assertThrows(IllegalArgumentException.class, () -> new CrowFliesBatch(new double[2], new double[3]));
+    }
+}
@@ -0,0 +1,112 @@
+import com.pizzadelivery.model.FallbackEstimator;
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.RouteCache;
+import com.pizzadelivery.model.RouteFact;
+import com.pizzadelivery.model.RouteKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the fallback estimator on synthetic routes around Paris.
+ */
+public class FallbackEstimatorTest {
+    private static final GPS ORIGIN = new GPS(48.8566, 2.3522);
+
+    /**
+     * Gets a point at a given distance to the north of the origin.
+     *
+     * @param kilometers The distance in kilometers.
+     * @return The point.
+     */
+    private static GPS north(double kilometers) {
+        return new GPS(ORIGIN.latitude() + kilometers / 111.195, ORIGIN.longitude());
+    }
+
+    @Test
+    public void testDefaultModelIsInMinutes() {
+        FallbackEstimator estimator = new FallbackEstimator(50);
+        RouteFact estimate = estimator.estimate(ORIGIN, north(10));
+        // 10 km crow-flies, 1.3 detour, 50 km/h: 13 km in about 15.6 minutes, not 0.26 hours
+        assertEquals(13, estimate.distance(), 0.1);
+        assertEquals(15.6, estimate.duration(), 0.2);
+        assertEquals(12, ORIGIN.calculateCrowTravelTime(north(10)), 0.1);
+    }
+
+    @Test
+    public void testFitsDetourAndSpeed() {
+        FallbackEstimator estimator = new FallbackEstimator(50);
+        for (int i = 0; i < 40; i++) {
+            double crow = 2 + i * 0.05;
+            double road = crow * 1.5;
+            // 3 minutes to start and park, then 20 km/h
+            estimator.observe(ORIGIN, north(crow), 3 + road * 3, road);
+        }
+        assertEquals(40, estimator.sampleCount());
+
+        RouteFact estimate = estimator.estimate(ORIGIN, north(3));
+        assertEquals(4.5, estimate.distance(), 0.05);
+        assertEquals(3 + 4.5 * 3, estimate.duration(), 0.2);
+    }
+
+    @Test
+    public void testIgnoresUnroutableAndUnknownRoutes() {
+        FallbackEstimator estimator = new FallbackEstimator(50);
+        estimator.observe(ORIGIN, north(3), -1, -1);
+        estimator.observe(ORIGIN, north(3), Double.NaN, 4);
+        estimator.observe(ORIGIN, ORIGIN, 0, 0);
+        assertEquals(0, estimator.sampleCount());
+    }
+
+    @Test
+    public void testRefitsWithNewRoutes() {
+        FallbackEstimator estimator = new FallbackEstimator(50);
+        for (int i = 0; i < 20; i++) {
+            estimator.observe(ORIGIN, north(3), 10, 4);
+        }
+        double before = estimator.estimate(ORIGIN, north(3)).duration();
+        for (int i = 0; i < 20; i++) {
+            estimator.observe(ORIGIN, north(3), 20, 4);
+        }
+        assertEquals(10, before, 0.01);
+        assertEquals(15, estimator.estimate(ORIGIN, north(3)).duration(), 0.01);
+    }
+
+    @Test
+    public void testFitsTheCacheLazily() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("fallbackEstimator");
+        RouteCache cache = RouteCache.open(directory.resolve("routes.bin"), 2, 3_600_000);
+        try {
+            for (int i = 0; i < 20; i++) {
+                cache.put(RouteKey.pack(ORIGIN), RouteKey.pack(north(3 + i * 0.001)), 10, 4);
+            }
+            FallbackEstimator estimator = FallbackEstimator.fitLazily(cache, 0, 1, 50);
+            assertFalse(estimator.isFitted());
+            estimator.observe(ORIGIN, north(3), 10, 4);
+            assertEquals(0, estimator.sampleCount(), "the route is left to the fit, which finds it in the cache");
+
+            // The first estimate uses the default model and starts the fit
+            assertEquals(3 * 1.3 / 50 * 60, estimator.estimate(ORIGIN, north(3)).duration(), 0.05);
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (!estimator.isFitted() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(estimator.isFitted());
+            assertEquals(20, estimator.sampleCount());
+            assertEquals(10, estimator.estimate(ORIGIN, north(3)).duration(), 0.1);
+        } finally {
+            cache.close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
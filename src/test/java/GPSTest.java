@@ -0,0 +1,125 @@
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.RouteCache;
+import com.pizzadelivery.model.RouteClient;
+import com.pizzadelivery.model.RouteFact;
+import com.pizzadelivery.model.RoutePrefetcher;
+import com.pizzadelivery.model.UnroutablePointException;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests how the routes the API cannot give are remembered, and how the lookups are counted, against a local stub of
+ * the directions endpoint.
+ * The locations are drawn at random in the ocean, so they are not in the route cache of a previous run.
+ */
+public class GPSTest {
+    private HttpServer server;
+    private AtomicInteger requestCount;
+    private volatile int status;
+    private volatile String body;
+
+    @BeforeEach
+    public void startStub() throws IOException {
+        requestCount = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(RouteClient.DIRECTIONS_PATH, exchange -> {
+            requestCount.incrementAndGet();
+            byte[] response = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        server.start();
+        System.setProperty(GPS.API_BASE_URL_PROPERTY, "http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void stopStub() {
+        System.clearProperty(GPS.API_BASE_URL_PROPERTY);
+        server.stop(0);
+    }
+
+    /**
+     * Draws a location in the middle of the Atlantic.
+     *
+     * @return The location.
+     */
+    private static GPS oceanLocation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new GPS(random.nextDouble(30, 40), random.nextDouble(-40, -30));
+    }
+
+    @Test
+    public void testOneRequestGivesTimeAndDistance() {
+        status = 200;
+        body = "{\"routes\":[{\"summary\":{\"distance\":12345.6,\"duration\":754.2}}],\"metadata\":{}}";
+        GPS from = oceanLocation();
+        GPS to = oceanLocation();
+        assertEquals(13, from.timeTravel(to), 1e-9);
+        assertEquals(1, requestCount.get());
+
+        // Both values were cached from the same response
+        assertEquals(12, from.calculateDistance(to), 1e-9);
+        RouteFact fact = from.routeFact(to);
+        assertEquals(13, fact.duration(), 1e-9);
+        assertEquals(12, fact.distance(), 1e-9);
+        assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    public void testPairWithoutRouteIsNotAskedAgain() {
+        status = 200;
+        body = "{\"routes\":[],\"metadata\":{}}";
+        GPS from = oceanLocation();
+        GPS to = oceanLocation();
+        RouteCache.Stats before = GPS.routeCacheStats();
+        double estimate = from.timeTravel(to);
+        assertTrue(estimate >= 0, "the solvers get an estimate, never the negative values of the cache");
+        assertEquals(1, requestCount.get());
+        // The checks made while fetching the route are not lookups
+        assertEquals(before.misses() + 1, GPS.routeCacheStats().misses());
+
+        // Answered from the cache, time and distance alike
+        assertEquals(estimate, from.timeTravel(to), 1e-9);
+        assertTrue(from.calculateDistance(to) >= 0);
+        assertEquals(estimate, from.routeFact(to).duration(), 1e-9);
+        assertEquals(RoutePrefetcher.Outcome.CACHED, from.prefetchRoute(to));
+        assertEquals(1, requestCount.get());
+        assertEquals(before.hits() + 3, GPS.routeCacheStats().hits());
+
+        assertEquals(RoutePrefetcher.Outcome.NO_ROUTE, oceanLocation().prefetchRoute(oceanLocation()));
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void testUnroutableLocationIsKnown() {
+        status = 404;
+        body = "{\"error\":{\"code\":2010,\"message\":\"Could not find routable point within a radius of 350.0 "
+                + "meters of specified coordinate 1: 2.1100000 48.7100000.\"},\"info\":{}}";
+        GPS from = oceanLocation();
+        GPS to = oceanLocation();
+        assertFalse(GPS.isKnownUnroutable(to));
+        from.timeTravel(to);
+        assertEquals(1, requestCount.get());
+        assertTrue(GPS.isKnownUnroutable(to));
+        assertFalse(GPS.isKnownUnroutable(from));
+
+        // No routable location is known near the destination, the next legs to it are answered without a request
+        assertTrue(oceanLocation().timeTravel(to) >= 0);
+        assertEquals(RoutePrefetcher.Outcome.NO_ROUTE, oceanLocation().prefetchRoute(to));
+        assertThrows(UnroutablePointException.class, () -> GPS.callOpenRouteServiceApi(oceanLocation(), to));
+        assertEquals(1, requestCount.get());
+    }
+}
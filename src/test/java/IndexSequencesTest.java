@@ -0,0 +1,75 @@
+import com.pizzadelivery.model.IndexSequences;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the lazy permutation and combination streams.
+ */
+public class IndexSequencesTest {
+
+    @Test
+    public void testPermutationsAreLexicographic() {
+        List<String> permutations = IndexSequences.permutations(3).map(Arrays::toString).toList();
+        assertEquals(List.of("[0, 1, 2]", "[0, 2, 1]", "[1, 0, 2]", "[1, 2, 0]", "[2, 0, 1]", "[2, 1, 0]"),
+                permutations);
+        assertEquals(1, IndexSequences.permutations(0).count());
+    }
+
+    @Test
+    public void testCombinationsAreLexicographic() {
+        List<String> combinations = IndexSequences.combinations(4, 2).map(Arrays::toString).toList();
+        assertEquals(List.of("[0, 1]", "[0, 2]", "[0, 3]", "[1, 2]", "[1, 3]", "[2, 3]"), combinations);
+        assertEquals(1, IndexSequences.combinations(5, 0).count());
+        assertEquals(1, IndexSequences.combinations(5, 5).count());
+    }
+
+    @Test
+    public void testParallelStreamsKeepTheOrder() {
+        // Large enough to be split many times, each split unranking the middle of its range
+        List<String> sequential = IndexSequences.permutations(8).map(Arrays::toString).toList();
+        List<String> parallel = IndexSequences.permutations(8).parallel().map(Arrays::toString).toList();
+        assertEquals(40320, sequential.size());
+        assertEquals(sequential, parallel);
+        assertEquals(40320, parallel.stream().collect(Collectors.toSet()).size());
+
+        List<String> combinations = IndexSequences.combinations(20, 5).map(Arrays::toString).toList();
+        assertEquals(15504, combinations.size());
+        assertEquals(combinations, IndexSequences.combinations(20, 5).parallel().map(Arrays::toString).toList());
+    }
+
+    @Test
+    public void testSplitsCoverTheRange() {
+        Spliterator<int[]> suffix = IndexSequences.permutations(7).spliterator();
+        Spliterator<int[]> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        assertEquals(5040, prefix.estimateSize() + suffix.estimateSize());
+        int[][] first = new int[1][];
+        assertTrue(suffix.tryAdvance(permutation -> first[0] = permutation));
+        assertArrayEquals(new int[]{3, 4, 0, 1, 2, 5, 6}, first[0],
+                "the suffix starts at rank 2520 = 3 * 6! + 3 * 5!");
+
+        // A small range is not worth splitting
+        assertNull(IndexSequences.permutations(5).spliterator().trySplit());
+    }
+
+    @Test
+    public void testElementsAreNotReused() {
+        List<int[]> permutations = IndexSequences.permutations(3).toList();
+        assertArrayEquals(new int[]{0, 1, 2}, permutations.get(0));
+        assertArrayEquals(new int[]{2, 1, 0}, permutations.get(5));
+    }
+
+    @Test
+    public void testInvalidSizesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> IndexSequences.permutations(21));
+        assertThrows(IllegalArgumentException.class, () -> IndexSequences.permutations(-1));
+        assertThrows(IllegalArgumentException.class, () -> IndexSequences.combinations(3, 4));
+        assertThrows(IllegalArgumentException.class, () -> IndexSequences.combinations(200, 100));
+    }
+}
@@ -0,0 +1,149 @@
+import com.pizzadelivery.model.IslandModel;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the scheduling and the migrations of the island-model engine with islands that record what happens to them.
+ */
+public class IslandModelTest {
+
+    /**
+     * An island whose only individual is its fitness, lower being better, and that improves during its first
+     * generations.
+     */
+    private static final class RecordingIsland implements IslandModel.Island {
+        private int best;
+        private int generations;
+        private int improvingGenerations = Integer.MAX_VALUE;
+        private long generationMillis;
+        private final List<Integer> immigrants = new ArrayList<>();
+
+        private RecordingIsland(int best) {
+            this.best = best;
+        }
+
+        @Override
+        public boolean evolve() {
+            generations++;
+            if (generationMillis > 0) {
+                try {
+                    Thread.sleep(generationMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (generations <= improvingGenerations) {
+                best--;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public int[] emigrant() {
+            return new int[]{best};
+        }
+
+        @Override
+        public boolean immigrate(int[] genome) {
+            immigrants.add(genome[0]);
+            if (genome[0] < best) {
+                best = genome[0];
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static List<RecordingIsland> islands(int... bests) {
+        List<RecordingIsland> islands = new ArrayList<>();
+        for (int best : bests) {
+            islands.add(new RecordingIsland(best));
+        }
+        return islands;
+    }
+
+    @Test
+    public void testEveryIslandRunsEveryGeneration() {
+        List<RecordingIsland> islands = islands(5, 3, 9, 7);
+        IslandModel.evolve(islands, 25, Comparator.comparingInt(island -> island.best));
+        for (RecordingIsland island : islands) {
+            assertEquals(25, island.generations);
+            // Migrations after generations 10 and 20, none after the last one
+            assertEquals(2, island.immigrants.size());
+        }
+    }
+
+    @Test
+    public void testBestIndividualsMigrateAlongTheRing() {
+        List<RecordingIsland> islands = islands(5, 3, 9, 7);
+        for (RecordingIsland island : islands) {
+            island.improvingGenerations = 0;
+        }
+        RecordingIsland best = IslandModel.evolve(islands, IslandModel.MIGRATION_INTERVAL + 1,
+                Comparator.comparingInt(island -> island.best));
+
+        // Each island received the best individual of the island before it, as it was before the migration
+        assertEquals(List.of(7), islands.get(0).immigrants);
+        assertEquals(List.of(5), islands.get(1).immigrants);
+        assertEquals(List.of(3), islands.get(2).immigrants);
+        assertEquals(List.of(9), islands.get(3).immigrants);
+        assertEquals(3, best.best);
+        assertSame(islands.get(1), best, "the first of the best islands wins a tie");
+    }
+
+    @Test
+    public void testStalledIslandsStop() {
+        List<RecordingIsland> islands = islands(5, 3);
+        islands.get(0).improvingGenerations = 4;
+        islands.get(1).improvingGenerations = 12;
+        IslandModel.evolve(islands, new IslandModel.Budget(1000, 5, null),
+                Comparator.comparingInt(island -> island.best));
+
+        // The first island improves to 1 and stalls after generation 9. Each migration then brings it a better
+        // individual from the second island, -7 after generation 10 and -9 after generation 20, which revives it for
+        // 5 more generations
+        RecordingIsland first = islands.get(0);
+        assertEquals(List.of(-7, -9, -9), first.immigrants);
+        assertEquals(9 + 5 + 5, first.generations);
+        // The second island improves to -9 and stalls after generation 17, nothing it receives is better
+        RecordingIsland second = islands.get(1);
+        assertEquals(List.of(1, -7, -9), second.immigrants);
+        assertEquals(17, second.generations);
+        assertEquals(-9, second.best);
+    }
+
+    @Test
+    public void testTimeLimitStopsTheRun() {
+        List<RecordingIsland> islands = islands(5);
+        islands.get(0).generationMillis = 5;
+        long start = System.nanoTime();
+        IslandModel.evolve(islands, new IslandModel.Budget(100_000, Integer.MAX_VALUE, Duration.ofMillis(100)),
+                Comparator.comparingInt(island -> island.best));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis >= 100, "the run uses its whole time");
+        assertTrue(elapsedMillis < 1000, "the run stops soon after its time is up: " + elapsedMillis + " ms");
+        assertTrue(islands.get(0).generations < 100);
+    }
+
+    @Test
+    public void testInvalidBudgetIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new IslandModel.Budget(-1, 10, null));
+        assertThrows(IllegalArgumentException.class, () -> new IslandModel.Budget(100, 0, null));
+    }
+
+    @Test
+    public void testSingleIslandHasNoMigration() {
+        List<RecordingIsland> islands = islands(4);
+        assertSame(islands.get(0), IslandModel.evolve(islands, 30, Comparator.comparingInt(island -> island.best)));
+        assertEquals(30, islands.get(0).generations);
+        assertTrue(islands.get(0).immigrants.isEmpty());
+    }
+}
@@ -0,0 +1,126 @@
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.IsochroneGrid;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the isochrone grid with synthetic travel times, without any network access.
+ */
+public class IsochroneGridTest {
+    private static final GPS HUB = new GPS(48.65, 2.05);
+    private static final double STEP_DEGREES = 0.01;
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("isochrones");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Gives times that are linear in the coordinates, so the bilinear interpolation is exact, and one minute longer
+     * on the way back.
+     *
+     * @param hub      The hub.
+     * @param nodes    The nodes.
+     * @param outbound True for the times from the hub.
+     * @return The times in minutes.
+     */
+    private static float[] linearMinutes(GPS hub, List<GPS> nodes, boolean outbound) {
+        float[] minutes = new float[nodes.size()];
+        for (int i = 0; i < minutes.length; i++) {
+            GPS node = nodes.get(i);
+            minutes[i] = (float) (100 * (node.latitude() - 48.6) + 200 * (node.longitude() - 2.0) + (outbound ? 0 : 1));
+        }
+        return minutes;
+    }
+
+    private static IsochroneGrid build(IsochroneGrid.LegSource source) {
+        return IsochroneGrid.build(HUB, 48.6, 48.7, 2.0, 2.1, STEP_DEGREES, source);
+    }
+
+    @Test
+    public void testInterpolation() {
+        IsochroneGrid grid = build(IsochroneGridTest::linearMinutes);
+        assertEquals(0, grid.unknownCount());
+
+        GPS node = new GPS(48.63, 2.04);
+        assertEquals(3 + 8, grid.outboundMinutes(node), 1e-3);
+        GPS between = new GPS(48.6325, 2.0471);
+        assertEquals(3.25 + 9.42, grid.outboundMinutes(between), 1e-3);
+        assertEquals(3.25 + 9.42 + 1, grid.inboundMinutes(between), 1e-3);
+
+        // The north and east edges of the area are covered too
+        assertEquals(10 + 20, grid.outboundMinutes(new GPS(48.7, 2.1)), 1e-3);
+        assertTrue(Double.isNaN(grid.outboundMinutes(new GPS(48.75, 2.05))));
+        assertTrue(Double.isNaN(grid.inboundMinutes(new GPS(48.65, 1.95))));
+    }
+
+    @Test
+    public void testUnknownNodesAreLeftOut() {
+        // Every node south of 48.625 is unknown, e.g. beyond a river
+        IsochroneGrid grid = build((hub, nodes, outbound) -> {
+            float[] minutes = linearMinutes(hub, nodes, outbound);
+            for (int i = 0; i < minutes.length; i++) {
+                if (nodes.get(i).latitude() < 48.625) {
+                    minutes[i] = Float.NaN;
+                }
+            }
+            return minutes;
+        });
+        assertEquals(2 * 3 * 11, grid.unknownCount());
+
+        // Between the rows 48.62 and 48.63, only the northern nodes count
+        assertEquals(3 + 10, grid.outboundMinutes(new GPS(48.621, 2.05)), 1e-3);
+        assertTrue(Double.isNaN(grid.outboundMinutes(new GPS(48.61, 2.05))));
+
+        // Filling again only asks for the unknown nodes
+        int[] asked = new int[1];
+        int stillUnknown = grid.fill((hub, nodes, outbound) -> {
+            asked[0] += nodes.size();
+            return linearMinutes(hub, nodes, outbound);
+        });
+        assertEquals(2 * 3 * 11, asked[0]);
+        assertEquals(0, stillUnknown);
+        assertEquals(1 + 10, grid.outboundMinutes(new GPS(48.61, 2.05)), 1e-3);
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        IsochroneGrid grid = build(IsochroneGridTest::linearMinutes);
+        Path path = directory.resolve("isochrones.bin");
+        grid.write(path);
+        IsochroneGrid reloaded = IsochroneGrid.read(path);
+
+        assertEquals(HUB, reloaded.hub());
+        GPS location = new GPS(48.6789, 2.0123);
+        assertEquals(grid.outboundMinutes(location), reloaded.outboundMinutes(location), 1e-9);
+        assertEquals(grid.inboundMinutes(location), reloaded.inboundMinutes(location), 1e-9);
+    }
+
+    @Test
+    public void testReadRejectsOtherFiles() throws IOException {
+        Path path = directory.resolve("isochrones.bin");
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> IsochroneGrid.read(path));
+    }
+}
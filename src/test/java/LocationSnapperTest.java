@@ -0,0 +1,107 @@
+import com.pizzadelivery.model.LocationSnapper;
+import com.pizzadelivery.model.RouteCache;
+import com.pizzadelivery.model.RouteKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the snapping of nearby locations to a common representative.
+ */
+public class LocationSnapperTest {
+    private static final double METERS_PER_MICRO_DEGREE = 0.111195; // Of latitude
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapper");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Packs a location some meters north and east of a point.
+     *
+     * @param north The offset to the north, in meters.
+     * @param east  The offset to the east, in meters.
+     * @return The packed location.
+     */
+    private static long offset(double north, double east) {
+        double latitude = 48.7;
+        return RouteKey.pack(latitude + north / METERS_PER_MICRO_DEGREE / 1e6,
+                2.1 + east / METERS_PER_MICRO_DEGREE / Math.cos(Math.toRadians(latitude)) / 1e6);
+    }
+
+    @Test
+    public void testSnapsWithinRadius() {
+        LocationSnapper snapper = new LocationSnapper(25);
+        long building = offset(0, 0);
+        assertEquals(building, snapper.snap(building)); // The first location becomes the representative
+        assertEquals(building, snapper.snap(offset(10, -10)));
+        assertEquals(building, snapper.snap(offset(0, 24)));
+        assertEquals(building, snapper.snap(offset(-24, 0)));
+        assertEquals(1, snapper.size());
+
+        long farther = offset(0, 40);
+        assertEquals(farther, snapper.snap(farther));
+        assertEquals(farther, snapper.snap(offset(0, 60)));
+        assertEquals(2, snapper.size());
+        // Between both representatives, the nearest wins
+        assertEquals(building, snapper.snap(offset(0, 15)));
+        assertEquals(farther, snapper.snap(offset(0, 25)));
+    }
+
+    @Test
+    public void testSeedKeepsCachedEndpoints() {
+        RouteCache cache = RouteCache.open(directory.resolve("routes.bin"), 2, 3_600_000);
+        long first = offset(0, 0);
+        long second = offset(5, 5); // Within the radius of the first, but its routes are cached too
+        cache.put(first, offset(5_000, 0), 10, 5);
+        cache.put(second, offset(0, 5_000), 12, 6);
+
+        LocationSnapper snapper = LocationSnapper.seed(cache, 25);
+        assertEquals(4, snapper.size());
+        assertEquals(first, snapper.snap(first));
+        assertEquals(second, snapper.snap(second));
+        assertEquals(second, snapper.snap(offset(6, 6)));
+        cache.close();
+    }
+
+    @Test
+    public void testStats() {
+        LocationSnapper snapper = new LocationSnapper(25);
+        snapper.recordLookup(false, true);
+        snapper.recordLookup(false, false);
+        snapper.recordLookup(true, true);
+        snapper.recordLookup(true, true);
+        snapper.recordLookup(true, false);
+
+        LocationSnapper.Stats stats = snapper.stats();
+        assertEquals(1, stats.exactHits());
+        assertEquals(1, stats.exactMisses());
+        assertEquals(2, stats.snappedHits());
+        assertEquals(1, stats.snappedMisses());
+        assertEquals(2.0 / 3, stats.snappedHitShare(), 1e-9);
+    }
+
+    @Test
+    public void testRejectsInvalidRadius() {
+        assertThrows(IllegalArgumentException.class, () -> new LocationSnapper(0));
+    }
+}
@@ -0,0 +1,97 @@
+import com.pizzadelivery.model.MappedRouteSnapshot;
+import com.pizzadelivery.model.RouteKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the memory-mapped route snapshots on temporary files.
+ */
+public class MappedRouteSnapshotTest {
+    private Path directory;
+    private Path snapshotPath;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("routeSnapshot");
+        snapshotPath = directory.resolve("routes.bin");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void testRecordsAreFoundByBinarySearch() throws IOException {
+        long[] from = {5, 1, 3, 1};
+        long[] to = {6, 9, 4, 2};
+        float[] values = {50, 5, 10, 1, 30, 3, 20, 2};
+        MappedRouteSnapshot.write(snapshotPath, 2, from, to, values, 4);
+
+        MappedRouteSnapshot snapshot = MappedRouteSnapshot.open(snapshotPath);
+        assertEquals(4, snapshot.size());
+        assertEquals(2, snapshot.valueCount());
+        for (int record = 0; record < 4; record++) {
+            assertTrue(snapshot.contains(from[record], to[record]));
+            assertEquals(values[record * 2], snapshot.get(from[record], to[record], 0));
+            assertEquals(values[record * 2 + 1], snapshot.get(from[record], to[record], 1));
+        }
+        assertFalse(snapshot.contains(1, 3));
+        assertTrue(Float.isNaN(snapshot.get(6, 5, 0)));
+        assertEquals(-1, snapshot.indexOf(0, 0));
+
+        // The records are in key order
+        for (int record = 1; record < snapshot.size(); record++) {
+            assertTrue(RouteKey.compare(snapshot.fromAt(record - 1), snapshot.toAt(record - 1),
+                    snapshot.fromAt(record), snapshot.toAt(record)) < 0);
+        }
+        assertEquals(20f, snapshot.valueAt(snapshot.indexOf(1, 2), 0));
+    }
+
+    @Test
+    public void testLastDuplicateWins() throws IOException {
+        MappedRouteSnapshot.write(snapshotPath, 1, new long[]{1, 2, 1}, new long[]{2, 1, 2}, new float[]{10, 20, 11},
+                3);
+
+        MappedRouteSnapshot snapshot = MappedRouteSnapshot.open(snapshotPath);
+        assertEquals(2, snapshot.size());
+        assertEquals(11f, snapshot.get(1, 2, 0));
+        assertEquals(20f, snapshot.get(2, 1, 0));
+    }
+
+    @Test
+    public void testEmptySnapshot() throws IOException {
+        MappedRouteSnapshot.write(snapshotPath, 3, new long[0], new long[0], new float[0], 0);
+
+        MappedRouteSnapshot snapshot = MappedRouteSnapshot.open(snapshotPath);
+        assertEquals(0, snapshot.size());
+        assertFalse(snapshot.contains(1, 2));
+    }
+
+    @Test
+    public void testInvalidFilesAreRejected() throws IOException {
+        Files.writeString(snapshotPath, "1 2 10.0\n");
+        assertThrows(IOException.class, () -> MappedRouteSnapshot.open(snapshotPath));
+
+        MappedRouteSnapshot.write(snapshotPath, 1, new long[]{1, 2}, new long[]{2, 1}, new float[]{10, 20}, 2);
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(snapshotPath) - 2);
+        }
+        assertThrows(IOException.class, () -> MappedRouteSnapshot.open(snapshotPath));
+    }
+}
@@ -0,0 +1,145 @@
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.OpenRouteServiceMatrix;
+import com.pizzadelivery.model.RateLimitException;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the matrix client against a local stub of the OpenRouteService matrix endpoint.
+ * The stub answers a duration of {@code 100 * source + destination} seconds and a distance of
+ * {@code 1000 * source + destination} meters, where source and destination are the indexes of the locations in the
+ * test list (recovered from their longitude), so every value can be checked.
+ */
+public class OpenRouteServiceMatrixTest {
+    private HttpServer server;
+    private AtomicInteger requestCount;
+    private int maxRequestElements;
+    private String baseUrl;
+
+    @BeforeEach
+    public void startStub() throws IOException {
+        requestCount = new AtomicInteger();
+        maxRequestElements = 0;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(OpenRouteServiceMatrix.MATRIX_PATH, exchange -> {
+            requestCount.incrementAndGet();
+            JSONObject request = new JSONObject(new String(exchange.getRequestBody().readAllBytes(),
+                    StandardCharsets.UTF_8));
+            JSONArray locations = request.getJSONArray("locations");
+            JSONArray sources = request.getJSONArray("sources");
+            JSONArray destinations = request.getJSONArray("destinations");
+            maxRequestElements = Math.max(maxRequestElements, sources.length() * destinations.length());
+
+            JSONArray durations = new JSONArray();
+            JSONArray distances = new JSONArray();
+            for (int i = 0; i < sources.length(); i++) {
+                int source = locationIndex(locations.getJSONArray(sources.getInt(i)));
+                JSONArray durationRow = new JSONArray();
+                JSONArray distanceRow = new JSONArray();
+                for (int j = 0; j < destinations.length(); j++) {
+                    int destination = locationIndex(locations.getJSONArray(destinations.getInt(j)));
+                    durationRow.put(100 * source + destination);
+                    distanceRow.put(1000 * source + destination);
+                }
+                durations.put(durationRow);
+                distances.put(distanceRow);
+            }
+            byte[] response = new JSONObject().put("durations", durations).put("distances", distances).toString()
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void stopStub() {
+        server.stop(0);
+    }
+
+    private static int locationIndex(JSONArray coordinates) {
+        return (int) Math.round((coordinates.getDouble(0) - 2) * 1000);
+    }
+
+    private static List<GPS> locations(int count) {
+        List<GPS> locations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            locations.add(new GPS(48.7, 2 + i / 1000.0));
+        }
+        return locations;
+    }
+
+    @Test
+    public void testFetchAllPairsInChunks() throws IOException {
+        List<GPS> locations = locations(5);
+        Map<String, double[]> routes = new HashMap<>();
+        // 4 elements per request: blocks of 2 locations, so 3 x 3 block pairs, minus the last block with itself
+        // which only holds the route from location 4 to itself
+        OpenRouteServiceMatrix client = new OpenRouteServiceMatrix(baseUrl, "key", 4);
+        int requests = client.fetch(locations, (from, to) -> true,
+                (from, to, duration, distance) -> routes.put(locations.indexOf(from) + ">" + locations.indexOf(to),
+                        new double[]{duration, distance}));
+
+        assertEquals(8, requests);
+        assertEquals(8, requestCount.get());
+        assertTrue(maxRequestElements <= 4, "a request exceeded the element limit");
+        assertEquals(20, routes.size(), "every ordered pair of distinct locations must be fetched once");
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                if (i == j) {
+                    continue;
+                }
+                double[] route = routes.get(i + ">" + j);
+                assertNotNull(route);
+                assertEquals(100 * i + j, route[0], 1e-9);
+                assertEquals(1000 * i + j, route[1], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyBlocksWithMissingRoutesAreRequested() throws IOException {
+        List<GPS> locations = locations(6);
+        List<String> fetched = new ArrayList<>();
+        OpenRouteServiceMatrix client = new OpenRouteServiceMatrix(baseUrl, "key", 4);
+        // Only the route from location 0 to location 5 is missing: one block pair out of nine
+        int requests = client.fetch(locations,
+                (from, to) -> from.equals(locations.get(0)) && to.equals(locations.get(5)),
+                (from, to, duration, distance) -> fetched.add(locations.indexOf(from) + ">" + locations.indexOf(to)));
+
+        assertEquals(1, requests);
+        assertEquals(1, requestCount.get());
+        assertEquals(List.of("0>5"), fetched);
+    }
+
+    @Test
+    public void testRateLimitIsReported() {
+        server.removeContext(OpenRouteServiceMatrix.MATRIX_PATH);
+        server.createContext(OpenRouteServiceMatrix.MATRIX_PATH, exchange -> {
+            exchange.sendResponseHeaders(429, -1);
+            exchange.close();
+        });
+        OpenRouteServiceMatrix client = new OpenRouteServiceMatrix(baseUrl, "key", 4);
+        assertThrows(RateLimitException.class,
+                () -> client.fetch(locations(3), (from, to) -> true, (from, to, duration, distance) -> { }));
+    }
+}
@@ -0,0 +1,98 @@
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.Order;
+import com.pizzadelivery.model.OrderIndex;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the spatial index of the orders against a sort of every order by crow-flies distance.
+ */
+public class OrderIndexTest {
+
+    /**
+     * Creates random orders in the delivery area.
+     *
+     * @param random The random generator.
+     * @param count  The number of orders.
+     * @return The orders.
+     */
+    private static List<Order> randomOrders(Random random, int count) {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            GPS location = new GPS(48.62 + random.nextDouble() * 0.18, 1.99 + random.nextDouble() * 0.26);
+            orders.add(new Order(i, location, LocalDateTime.now()));
+        }
+        return orders;
+    }
+
+    /**
+     * Sorts orders by crow-flies distance to a point, with the Haversine formula.
+     *
+     * @param orders   The orders.
+     * @param location The point.
+     * @return The distances of the sorted orders.
+     */
+    private static double[] sortedDistances(List<Order> orders, GPS location) {
+        return orders.stream().mapToDouble(order -> haversine(location, order.location())).sorted().toArray();
+    }
+
+    /**
+     * Calculates the crow-flies distance between two points.
+     *
+     * @param from The first point.
+     * @param to   The second point.
+     * @return The distance in kilometers.
+     */
+    private static double haversine(GPS from, GPS to) {
+        double dLat = Math.toRadians(to.latitude() - from.latitude());
+        double dLon = Math.toRadians(to.longitude() - from.longitude());
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(from.latitude()))
+                * Math.cos(Math.toRadians(to.latitude())) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 6371 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    @Test
+    public void testNearestFirstMatchesFullSort() {
+        Random random = new Random(42);
+        List<Order> orders = randomOrders(random, 300);
+        OrderIndex index = new OrderIndex(orders);
+        for (int query = 0; query < 20; query++) {
+            // Some queries fall outside of the delivery area, like the pizzeria may
+            GPS location = new GPS(48.5 + random.nextDouble() * 0.4, 1.9 + random.nextDouble() * 0.4);
+            double[] expected = sortedDistances(orders, location);
+            Iterator<Order> iterator = index.nearestFirst(location);
+            for (double distance : expected) {
+                assertTrue(iterator.hasNext());
+                assertEquals(distance, haversine(location, iterator.next().location()), 1e-9);
+            }
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    public void testNearestAfterRemovals() {
+        Random random = new Random(7);
+        List<Order> orders = randomOrders(random, 100);
+        OrderIndex index = new OrderIndex(orders);
+        GPS location = orders.get(0).location();
+        List<Order> remaining = new ArrayList<>(orders);
+        for (int i = 0; i < 50; i += 2) {
+            assertTrue(index.remove(orders.get(i)));
+            remaining.remove(orders.get(i));
+        }
+        assertFalse(index.remove(orders.get(0)), "an order can only be removed once");
+        assertEquals(75, index.size());
+
+        remaining.sort(Comparator.comparingDouble(order -> haversine(location, order.location())));
+        assertEquals(remaining.subList(0, 5), index.nearest(location, 5));
+        assertEquals(75, index.nearest(location, 80).size());
+    }
+}
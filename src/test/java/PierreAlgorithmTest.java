@@ -1,13 +1,17 @@
 import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.IslandModel;
 import com.pizzadelivery.model.Order;
 import com.pizzadelivery.model.PierreAlgorithm;
+import com.pizzadelivery.model.TravelMatrix;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class PierreAlgorithmTest extends AlgorithmTest {
@@ -27,6 +31,38 @@ public class PierreAlgorithmTest extends AlgorithmTest {
         System.out.println("Time: " + Order.totalDeliveryTime(selectedOrders));
     }
 
+    @Test
+    public void testBruteForceTimeIsOptimal() {
+        // With 8 orders, the pruned search must find a sequence as fast as the fastest of the 40320 permutations
+        ArrayList<Order> orders = new ArrayList<>(dynamicTestSuite.subList(0, 8));
+        TravelMatrix matrix = TravelMatrix.of(orders);
+        ArrayList<Order> selectedOrders = PierreAlgorithm.bruteForceTime(new ArrayList<>(orders), matrix);
+
+        assertEquals(new HashSet<>(orders), new HashSet<>(selectedOrders));
+        assertEquals(fastestPermutationTime(orders, 0, matrix), matrix.totalDeliveryTime(selectedOrders), 1e-9);
+    }
+
+    /**
+     * Enumerates every permutation of the orders after a given position.
+     *
+     * @param orders The orders, permuted in place and restored.
+     * @param k      The first position to permute.
+     * @param matrix The travel matrix containing every order.
+     * @return The shortest total delivery time.
+     */
+    private static double fastestPermutationTime(ArrayList<Order> orders, int k, TravelMatrix matrix) {
+        if (k == orders.size()) {
+            return matrix.totalDeliveryTime(orders);
+        }
+        double fastest = Double.MAX_VALUE;
+        for (int i = k; i < orders.size(); i++) {
+            Collections.swap(orders, i, k);
+            fastest = Math.min(fastest, fastestPermutationTime(orders, k + 1, matrix));
+            Collections.swap(orders, k, i);
+        }
+        return fastest;
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     // greedy algorithm with time criterion
     // -----------------------------------------------------------------------------------------------------------------
@@ -59,6 +95,41 @@ public class PierreAlgorithmTest extends AlgorithmTest {
         System.out.println("Distance: " + Order.totalDeliveryDistance(selectedOrders));
     }
 
+    @Test
+    public void testDynamicDistanceIsOptimal() {
+        // The path must be as short as the shortest of every sequence of 4 distinct orders after the mandatory one
+        ArrayList<Order> orders = new ArrayList<>(dynamicTestSuite);
+        Order mandatoryOrder = orders.remove(0);
+        TravelMatrix matrix = TravelMatrix.of(orders, mandatoryOrder);
+        ArrayList<Order> selectedOrders = PierreAlgorithm.dynamicDistance(new ArrayList<>(orders), mandatoryOrder,
+                matrix);
+
+        assertEquals(5, selectedOrders.size());
+        assertSame(mandatoryOrder, selectedOrders.get(0));
+        assertEquals(5, new HashSet<>(selectedOrders).size(), "the orders of the path must be distinct");
+        double pathDistance = 0;
+        for (int i = 0; i < selectedOrders.size() - 1; i++) {
+            pathDistance += matrix.distance(selectedOrders.get(i), selectedOrders.get(i + 1));
+        }
+
+        double shortestDistance = Double.MAX_VALUE;
+        for (Order first : orders) {
+            for (Order second : orders) {
+                for (Order third : orders) {
+                    for (Order fourth : orders) {
+                        if (new HashSet<>(List.of(first, second, third, fourth)).size() < 4) {
+                            continue;
+                        }
+                        shortestDistance = Math.min(shortestDistance, matrix.distance(mandatoryOrder, first)
+                                + matrix.distance(first, second) + matrix.distance(second, third)
+                                + matrix.distance(third, fourth));
+                    }
+                }
+            }
+        }
+        assertEquals(shortestDistance, pathDistance, 1e-9);
+    }
+
     // ------------------------------------------------------------------------------------------------------------------
     // Genetic algorithm with discount criterion
     // ------------------------------------------------------------------------------------------------------------------
@@ -70,5 +141,68 @@ public class PierreAlgorithmTest extends AlgorithmTest {
         Order mandatoryOrder = orders.remove(0);
         ArrayList<Order> selectedOrders = PierreAlgorithm.geneticDiscount(orders, mandatoryOrder, true);
     }
-}
 
+    @Test
+    public void testGeneticDiscountGivesValidIndividuals() {
+        // The genomes are reused from one generation to the next: every result must still be a sequence of 5
+        // distinct orders starting with the mandatory one
+        ArrayList<Order> orders = new ArrayList<>(geneticTestSuite.subList(1, geneticTestSuite.size()));
+        Order mandatoryOrder = geneticTestSuite.get(0);
+        TravelMatrix matrix = TravelMatrix.of(orders, mandatoryOrder);
+        for (int run = 0; run < 20; run++) {
+            ArrayList<Order> selectedOrders = PierreAlgorithm.geneticDiscount(orders, mandatoryOrder, false, matrix);
+            assertEquals(5, selectedOrders.size());
+            assertSame(mandatoryOrder, selectedOrders.get(0));
+            assertEquals(5, new HashSet<>(selectedOrders).size());
+            assertTrue(orders.containsAll(selectedOrders.subList(1, 5)));
+        }
+    }
+
+    @Test
+    public void testGeneticDiscountOnIslands() {
+        // The individuals migrating between islands are genomes over the same list of orders
+        ArrayList<Order> orders = new ArrayList<>(geneticTestSuite.subList(1, geneticTestSuite.size()));
+        Order mandatoryOrder = geneticTestSuite.get(0);
+        TravelMatrix matrix = TravelMatrix.of(orders, mandatoryOrder);
+        ArrayList<Order> selectedOrders = PierreAlgorithm.geneticDiscount(orders, mandatoryOrder, false, matrix, 4);
+        assertEquals(5, selectedOrders.size());
+        assertSame(mandatoryOrder, selectedOrders.get(0));
+        assertEquals(5, new HashSet<>(selectedOrders).size());
+        assertThrows(IllegalArgumentException.class,
+                () -> PierreAlgorithm.geneticDiscount(orders, mandatoryOrder, false, matrix, 0));
+    }
+
+    @Test
+    public void testGeneticDiscountKeepsItsGreedySeed() {
+        ArrayList<Order> orders = new ArrayList<>(geneticTestSuite.subList(1, geneticTestSuite.size()));
+        Order mandatoryOrder = geneticTestSuite.get(0);
+        TravelMatrix matrix = TravelMatrix.of(orders, mandatoryOrder);
+        ArrayList<Order> seed = PierreAlgorithm.greedyTime(new ArrayList<>(orders), mandatoryOrder, matrix);
+        // Stops as soon as the islands stall, the best individual ever found is at least as good as the seed
+        IslandModel.Budget budget = new IslandModel.Budget(100, 1, null);
+        ArrayList<Order> selectedOrders = PierreAlgorithm.geneticDiscount(orders, mandatoryOrder, false, matrix, 2,
+                budget, List.of(seed));
+        assertEquals(5, selectedOrders.size());
+        assertSame(mandatoryOrder, selectedOrders.get(0));
+        assertTrue(matrix.numberOfDiscount(selectedOrders) <= matrix.numberOfDiscount(seed));
+    }
+
+    @Test
+    public void testGeneticDiscountIgnoresInvalidSeeds() {
+        ArrayList<Order> orders = new ArrayList<>(geneticTestSuite.subList(1, geneticTestSuite.size()));
+        Order mandatoryOrder = geneticTestSuite.get(0);
+        TravelMatrix matrix = TravelMatrix.of(orders, mandatoryOrder);
+        // A repeated order, an order that is not in the list after valid ones, and a sequence too short
+        List<List<Order>> seeds = List.of(
+                List.of(mandatoryOrder, orders.get(0), orders.get(1), orders.get(0), orders.get(2)),
+                List.of(mandatoryOrder, orders.get(3), orders.get(4), orders.get(5), mandatoryOrder),
+                List.of(mandatoryOrder, orders.get(6)));
+        for (int run = 0; run < 20; run++) {
+            ArrayList<Order> selectedOrders = PierreAlgorithm.geneticDiscount(new ArrayList<>(orders), mandatoryOrder,
+                    false, matrix, 2, IslandModel.Budget.generations(20), seeds);
+            assertEquals(5, selectedOrders.size());
+            assertSame(mandatoryOrder, selectedOrders.get(0));
+            assertEquals(5, new HashSet<>(selectedOrders).size());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.RoutabilityMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the routability map of the delivery area, without any network access.
+ */
+public class RoutabilityMapTest {
+    private static final double MIN_LATITUDE = 48.6;
+    private static final double MAX_LATITUDE = 48.7;
+    private static final double MIN_LONGITUDE = 2.0;
+    private static final double MAX_LONGITUDE = 2.1;
+    private static final double CELL_DEGREES = 0.001;
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("routability");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private RoutabilityMap open(Path path) {
+        return RoutabilityMap.open(path, MIN_LATITUDE, MAX_LATITUDE, MIN_LONGITUDE, MAX_LONGITUDE, CELL_DEGREES);
+    }
+
+    @Test
+    public void testFailedLocationIsKnown() {
+        RoutabilityMap map = open(directory.resolve("routability.bin"));
+        GPS lake = new GPS(48.6505, 2.0505);
+        GPS shore = new GPS(48.6509, 2.0509); // Same cell
+        assertFalse(map.isKnownUnroutable(lake));
+
+        map.recordUnroutable(lake);
+        assertTrue(map.isKnownUnroutable(lake));
+        assertTrue(map.isKnownUnroutable(shore), "a cell where every location failed is unroutable");
+
+        map.recordRoutable(shore);
+        assertTrue(map.isKnownUnroutable(lake), "the location itself failed");
+        assertFalse(map.isKnownUnroutable(new GPS(48.6501, 2.0501)), "the cell also has a routable location");
+    }
+
+    @Test
+    public void testFailedLocationOutsideTheAreaIsKnown() {
+        RoutabilityMap map = open(directory.resolve("routability.bin"));
+        GPS faraway = new GPS(45.0, 5.0);
+        map.recordUnroutable(faraway);
+        assertTrue(map.isKnownUnroutable(faraway));
+        assertFalse(map.isKnownUnroutable(new GPS(45.0001, 5.0)));
+    }
+
+    @Test
+    public void testNearestRoutableCell() {
+        RoutabilityMap map = open(directory.resolve("routability.bin"));
+        assertNull(map.nearestRoutable(new GPS(48.65, 2.05)));
+
+        map.recordRoutable(new GPS(48.6525, 2.0505)); // Two cells north
+        map.recordRoutable(new GPS(48.6505, 2.0585)); // Eight cells east
+        GPS nearest = map.nearestRoutable(new GPS(48.6505, 2.0505));
+        assertEquals(48.6525, nearest.latitude(), 1e-9);
+        assertEquals(2.0505, nearest.longitude(), 1e-9);
+
+        // A location outside the area snaps to the edge of the area
+        GPS outside = map.nearestRoutable(new GPS(48.9, 2.0505));
+        assertEquals(48.6525, outside.latitude(), 1e-9);
+    }
+
+    @Test
+    public void testSaveAndReopen() {
+        Path path = directory.resolve("routability.bin");
+        RoutabilityMap map = open(path);
+        GPS failed = new GPS(48.6505, 2.0505);
+        map.recordRoutable(new GPS(48.6605, 2.0605));
+        map.recordUnroutable(failed); // Saved at once
+
+        RoutabilityMap reopened = open(path);
+        assertTrue(reopened.isKnownUnroutable(failed));
+        GPS nearest = reopened.nearestRoutable(failed);
+        assertEquals(48.6605, nearest.latitude(), 1e-9);
+        assertEquals(2.0605, nearest.longitude(), 1e-9);
+
+        // A map of another grid starts empty
+        RoutabilityMap otherGrid = RoutabilityMap.open(path, MIN_LATITUDE, MAX_LATITUDE, MIN_LONGITUDE, MAX_LONGITUDE,
+                CELL_DEGREES * 2);
+        assertFalse(otherGrid.isKnownUnroutable(failed));
+        assertNull(otherGrid.nearestRoutable(failed));
+    }
+
+    @Test
+    public void testCorruptFileStartsEmpty() throws IOException {
+        Path path = directory.resolve("routability.bin");
+        Files.write(path, new byte[]{1, 2, 3});
+        RoutabilityMap map = open(path);
+        assertNull(map.nearestRoutable(new GPS(48.65, 2.05)));
+    }
+}
@@ -0,0 +1,299 @@
+import com.pizzadelivery.model.MappedRouteSnapshot;
+import com.pizzadelivery.model.RouteCache;
+import com.pizzadelivery.model.RouteKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the bounds and the statistics of the route cache on temporary files.
+ */
+public class RouteCacheTest {
+    private static final long NO_FLUSH = 3_600_000; // Compactions only happen when the tests ask for them
+
+    private Path directory;
+    private Path snapshotPath;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("routeCache");
+        snapshotPath = directory.resolve("routes.bin");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void testStatsCountHitsAndMisses() {
+        RouteCache cache = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        cache.put(1, 2, 10, 5);
+        assertEquals(10f, cache.get(1, 2, 0));
+        assertTrue(Float.isNaN(cache.get(2, 1, 0)));
+        assertFalse(cache.get(3, 4, new float[2]));
+
+        RouteCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(1.0 / 3, stats.hitRate(), 1e-9);
+        cache.close();
+    }
+
+    @Test
+    public void testPeekIsNotCounted() {
+        RouteCache cache = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        cache.put(1, 2, 10, 5);
+        float[] routeValues = new float[2];
+        assertTrue(cache.peek(1, 2, routeValues));
+        assertArrayEquals(new float[]{10, 5}, routeValues);
+        assertEquals(5f, cache.peek(1, 2, 1));
+        assertFalse(cache.peek(3, 4, routeValues));
+        assertTrue(Float.isNaN(cache.peek(3, 4, 0)));
+
+        RouteCache.Stats stats = cache.stats();
+        assertEquals(0, stats.hits());
+        assertEquals(0, stats.misses());
+        cache.close();
+    }
+
+    @Test
+    public void testCompactionEvictsLeastFrequentlyUsed() throws IOException {
+        RouteCache cache = RouteCache.open(snapshotPath, 2, NO_FLUSH, new RouteCache.Limits(100, null));
+        for (int route = 0; route < 100; route++) {
+            cache.put(route, route + 1, route, 1);
+        }
+        for (int lookup = 0; lookup < 3; lookup++) {
+            for (int route = 0; route < 50; route++) {
+                cache.get(route, route + 1, 0);
+            }
+        }
+        cache.compact();
+
+        // A burst of routes used once must not push the popular ones out
+        for (int route = 1000; route < 1100; route++) {
+            cache.put(route, route + 1, route, 1);
+        }
+        cache.compact();
+
+        assertEquals(100, cache.size());
+        assertEquals(100, cache.stats().evictions());
+        for (int route = 0; route < 50; route++) {
+            assertEquals((float) route, cache.get(route, route + 1, 0), "popular route " + route + " was evicted");
+        }
+        cache.close();
+
+        RouteCache reopened = RouteCache.open(snapshotPath, 2, NO_FLUSH, new RouteCache.Limits(100, null));
+        assertEquals(100, reopened.size());
+        assertEquals(49f, reopened.get(49, 50, 0));
+        reopened.close();
+    }
+
+    @Test
+    public void testExpiredRoutesAreMissing() throws IOException {
+        float now = System.currentTimeMillis() / 3_600_000L;
+        Files.write(directory.resolve("routes.bin.log"), List.of(
+                "1 2 10.0 5.0 " + (now - 24 * 40), // Written 40 days ago
+                "3 4 20.0 8.0 " + now,
+                "5 6 30.0 9.0")); // Written before routes carried their write time
+        RouteCache cache = RouteCache.open(snapshotPath, 2, NO_FLUSH,
+                new RouteCache.Limits(Integer.MAX_VALUE, Duration.ofDays(30)));
+
+        assertTrue(Float.isNaN(cache.get(1, 2, 0)));
+        assertEquals(20f, cache.get(3, 4, 0));
+        assertEquals(30f, cache.get(5, 6, 0));
+        cache.compact();
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.stats().expirations());
+
+        cache.put(1, 2, 11, 5);
+        assertEquals(11f, cache.get(1, 2, 0), "a refreshed route must be found again");
+        cache.close();
+    }
+
+    @Test
+    public void testCompactionWritesANewSnapshotFile() {
+        RouteCache cache = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        cache.put(1, 2, 10, 5);
+        cache.compact();
+        assertTrue(Files.exists(snapshotPath));
+
+        // The mapped snapshot is never replaced, the next one is a new file and the old one is deleted
+        cache.put(3, 4, 20, 8);
+        cache.compact();
+        assertFalse(Files.exists(snapshotPath));
+        assertTrue(Files.exists(directory.resolve("routes.bin.1")));
+        cache.put(5, 6, 30, 9);
+        cache.compact();
+        assertFalse(Files.exists(directory.resolve("routes.bin.1")));
+        assertTrue(Files.exists(directory.resolve("routes.bin.2")));
+        assertEquals(10f, cache.get(1, 2, 0));
+        assertEquals(20f, cache.get(3, 4, 0));
+        cache.close();
+
+        RouteCache reopened = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        assertEquals(3, reopened.size());
+        assertEquals(9f, reopened.get(5, 6, 1));
+        reopened.close();
+    }
+
+    @Test
+    public void testNewestSnapshotFileWins() throws IOException {
+        RouteCache cache = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        for (int value = 10; value <= 12; value++) {
+            cache.put(1, 2, value, 5);
+            cache.compact();
+        }
+        cache.close();
+        // Older generations left behind, as when they were still mapped on Windows
+        MappedRouteSnapshot.write(snapshotPath, 3, new long[]{1}, new long[]{2}, new float[]{10, 5, 0}, 1);
+        MappedRouteSnapshot.write(directory.resolve("routes.bin.1"), 3, new long[]{1}, new long[]{2},
+                new float[]{11, 5, 0}, 1);
+
+        RouteCache reopened = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        assertEquals(12f, reopened.get(1, 2, 0));
+        assertFalse(Files.exists(snapshotPath));
+        assertFalse(Files.exists(directory.resolve("routes.bin.1")));
+        reopened.close();
+    }
+
+    @Test
+    public void testTornLogRecordIsDropped() throws IOException {
+        Path logPath = directory.resolve("routes.bin.log");
+        Files.writeString(logPath, "1 2 10.0 5.0 0.0\n3 4 20.0 8.0 0.0\n5 6 30.0 9");
+        RouteCache cache = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        assertEquals(2, cache.size());
+        assertFalse(cache.peek(5, 6, new float[2]), "the torn record must not be replayed");
+
+        cache.put(5, 6, 30, 9);
+        cache.close();
+        RouteCache reopened = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        assertEquals(3, reopened.size());
+        assertEquals(9f, reopened.get(5, 6, 1));
+        assertEquals(20f, reopened.get(3, 4, 0));
+        reopened.close();
+    }
+
+    @Test
+    public void testLogIsReplayedOnTheSnapshot() {
+        RouteCache cache = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        cache.put(1, 2, 10, 5);
+        cache.put(3, 4, 20, 8);
+        cache.compact();
+        // Logged after the compaction: a new route, and a newer value of a route of the snapshot
+        cache.put(5, 6, 30, 9);
+        cache.put(3, 4, 21, 8);
+        cache.close();
+
+        RouteCache reopened = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        assertEquals(10f, reopened.get(1, 2, 0));
+        assertEquals(21f, reopened.get(3, 4, 0));
+        assertEquals(30f, reopened.get(5, 6, 0));
+
+        // The next compaction keeps one record per route, with the newest values
+        reopened.compact();
+        assertEquals(3, reopened.size());
+        assertEquals(21f, reopened.get(3, 4, 0));
+        reopened.close();
+        RouteCache compacted = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        assertEquals(3, compacted.size());
+        assertEquals(21f, compacted.get(3, 4, 0));
+        compacted.close();
+    }
+
+    @Test
+    public void testLegacyTimeAndDistanceCachesMergeIntoOneRecord() throws IOException {
+        String paris = "GPS{latitude=48.856600, longitude=2.352200}";
+        String lyon = "GPS{latitude=45,764000, longitude=4,835700}"; // Written with a French locale
+        Path timePath = directory.resolve("time.txt");
+        Path distancePath = directory.resolve("distance.txt");
+        Files.write(timePath, List.of(paris + "|" + lyon + ":280.0", lyon + "|" + paris + ":285.0"));
+        Files.write(distancePath, List.of(paris + "|" + lyon + ":465.0"));
+
+        RouteCache cache = RouteCache.open(snapshotPath, 2, NO_FLUSH, timePath, distancePath);
+        long parisKey = RouteKey.pack(48.8566, 2.3522);
+        long lyonKey = RouteKey.pack(45.764, 4.8357);
+        float[] routeValues = new float[2];
+        assertTrue(cache.get(parisKey, lyonKey, routeValues));
+        assertArrayEquals(new float[]{280, 465}, routeValues);
+        // The distance cache never had the way back
+        assertTrue(cache.get(lyonKey, parisKey, routeValues));
+        assertEquals(285f, routeValues[0]);
+        assertTrue(Float.isNaN(routeValues[1]));
+        cache.close();
+
+        // The migration was compacted into the snapshot, the text files are kept
+        assertTrue(Files.exists(snapshotPath));
+        assertTrue(Files.exists(timePath));
+        RouteCache reopened = RouteCache.open(snapshotPath, 2, NO_FLUSH, timePath, distancePath);
+        assertEquals(2, reopened.size());
+        assertEquals(465f, reopened.get(parisKey, lyonKey, 1));
+        reopened.close();
+    }
+
+    @Test
+    public void testReadersNeverMissARouteDuringCompaction() throws InterruptedException {
+        RouteCache cache = RouteCache.open(snapshotPath, 2, NO_FLUSH);
+        for (int route = 0; route < 2000; route++) {
+            cache.put(route, route + 1, route, -route);
+        }
+        cache.compact();
+
+        // Every route is in the snapshot, the map or the frozen map at any time, and its two values always come
+        // from the same put
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                float[] routeValues = new float[2];
+                while (running.get() && failure.get() == null) {
+                    int route = random.nextInt(2000);
+                    if (!cache.get(route, route + 1, routeValues)) {
+                        failure.set("route " + route + " was missing");
+                    } else if (routeValues[1] != -routeValues[0]) {
+                        failure.set("route " + route + " mixed two puts: " + routeValues[0] + ", " + routeValues[1]);
+                    }
+                }
+            });
+            readers[i].start();
+        }
+
+        for (int round = 1; round <= 20; round++) {
+            for (int route = 0; route < 2000; route += 3) {
+                cache.put(route, route + 1, route + round, -(route + round));
+            }
+            for (int route = 2000 * round; route < 2000 * round + 500; route++) {
+                cache.put(route, route + 1, route, -route);
+            }
+            cache.compact();
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(20f, cache.get(0, 1, 0));
+        assertEquals(2000 + 20 * 500, cache.size());
+        cache.close();
+    }
+}
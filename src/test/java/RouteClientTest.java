@@ -0,0 +1,129 @@
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.RateLimitException;
+import com.pizzadelivery.model.RouteClient;
+import com.pizzadelivery.model.RouteFact;
+import com.pizzadelivery.model.UnroutablePointException;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the directions client against a local stub of the OpenRouteService directions endpoint.
+ */
+public class RouteClientTest {
+    private static final String ROUTE_RESPONSE = "{\"routes\":[{\"summary\":{\"distance\":12345.6,\"duration\":754.2},"
+            + "\"segments\":[{\"distance\":99999.0,\"duration\":99999.0}]}],\"metadata\":{}}";
+
+    private HttpServer server;
+    private AtomicInteger requestCount;
+    private CountDownLatch release;
+    private volatile int status;
+    private volatile String body;
+    private RouteClient client;
+
+    @BeforeEach
+    public void startStub() throws IOException {
+        requestCount = new AtomicInteger();
+        release = new CountDownLatch(0);
+        status = 200;
+        body = ROUTE_RESPONSE;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(RouteClient.DIRECTIONS_PATH, exchange -> {
+            requestCount.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] response = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        server.start();
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = new RouteClient(() -> baseUrl, "key");
+    }
+
+    @AfterEach
+    public void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testSummaryIsParsed() {
+        RouteFact fact = client.fetch(new GPS(48.7, 2.1), new GPS(48.71, 2.11)).join();
+        // 754.2 s and 12345.6 m, rounded like the cache: whole minutes and kilometers
+        assertEquals(13, fact.duration(), 1e-9);
+        assertEquals(12, fact.distance(), 1e-9);
+    }
+
+    @Test
+    public void testNoRouteGivesNull() {
+        body = "{\"routes\":[],\"metadata\":{}}";
+        assertNull(client.fetch(new GPS(48.7, 2.1), new GPS(48.71, 2.11)).join());
+    }
+
+    @Test
+    public void testConcurrentCallsAreCoalesced() {
+        release = new CountDownLatch(1);
+        GPS from = new GPS(48.7, 2.1);
+        GPS to = new GPS(48.71, 2.11);
+        List<CompletableFuture<RouteFact>> calls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            calls.add(client.fetch(from, to));
+        }
+        release.countDown();
+        for (CompletableFuture<RouteFact> call : calls) {
+            assertEquals(13, call.join().duration(), 1e-9);
+        }
+        assertEquals(1, requestCount.get(), "the same route must only be requested once at a time");
+
+        // Once completed, the route is no longer in flight and a new call sends a new request
+        client.fetch(from, to).join();
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void testRateLimitIsReported() {
+        status = 429;
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> client.fetch(new GPS(48.7, 2.1), new GPS(48.71, 2.11)).join());
+        assertTrue(exception.getCause() instanceof RateLimitException);
+    }
+
+    @Test
+    public void testUnroutablePointIsReported() {
+        status = 404;
+        body = "{\"error\":{\"code\":2010,\"message\":\"Could not find routable point within a radius of 350.0 "
+                + "meters of specified coordinate 1: 2.1100000 48.7100000.\"},\"info\":{}}";
+        GPS destination = new GPS(48.71, 2.11);
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> client.fetch(new GPS(48.7, 2.1), destination).join());
+        assertTrue(exception.getCause() instanceof UnroutablePointException);
+        assertEquals(destination, ((UnroutablePointException) exception.getCause()).location());
+
+        // Any other error stays a plain I/O failure
+        body = "{\"error\":{\"code\":2099,\"message\":\"Unknown internal error.\"}}";
+        status = 500;
+        exception = assertThrows(CompletionException.class, () -> client.fetch(new GPS(48.7, 2.1), destination).join());
+        assertTrue(exception.getCause() instanceof IOException);
+        assertFalse(exception.getCause() instanceof UnroutablePointException);
+    }
+}
@@ -0,0 +1,85 @@
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.RouteKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the packed route keys, and that they match the keys of the legacy text caches.
+ */
+public class RouteKeyTest {
+
+    /**
+     * Writes a location as the legacy caches did, with {@code GPS#toString} under a given default locale.
+     *
+     * @param locale   The default locale of whoever wrote the cache.
+     * @param location The location.
+     * @return The legacy text location.
+     */
+    private static String legacyLocation(Locale locale, GPS location) {
+        return String.format(locale, "GPS{latitude=%.6f, longitude=%.6f}", location.latitude(),
+                location.longitude());
+    }
+
+    @Test
+    public void testPackedLocationIsQuantizedToMicroDegrees() {
+        long packed = RouteKey.pack(48.7056721, -2.1448029);
+        assertEquals(48.705672, RouteKey.latitude(packed), 1e-9);
+        assertEquals(-2.144803, RouteKey.longitude(packed), 1e-9);
+        assertEquals(packed, RouteKey.pack(RouteKey.unpack(packed)));
+        assertEquals(RouteKey.pack(-33.86882, 151.209296), RouteKey.pack(new GPS(-33.86882, 151.209296)));
+    }
+
+    @Test
+    public void testRoutesSortByOriginThenDestination() {
+        long paris = RouteKey.pack(48.8566, 2.3522);
+        long lyon = RouteKey.pack(45.764, 4.8357);
+        assertTrue(RouteKey.compare(lyon, paris, paris, lyon) < 0);
+        assertTrue(RouteKey.compare(paris, paris, paris, lyon) > 0);
+        assertEquals(0, RouteKey.compare(paris, lyon, paris, lyon));
+    }
+
+    @Test
+    public void testLegacyKeysParseInEveryLocale() {
+        GPS from = new GPS(48.705672, 2.144803);
+        GPS to = new GPS(48.7114, -2.1079);
+        for (Locale locale : new Locale[]{Locale.ROOT, Locale.FRANCE}) {
+            long[] key = RouteKey.parseLegacyKey(legacyLocation(locale, from) + "|" + legacyLocation(locale, to));
+            assertArrayEquals(new long[]{RouteKey.pack(from), RouteKey.pack(to)}, key, locale.toString());
+        }
+    }
+
+    @Test
+    public void testInvalidLegacyKeysAreSkipped() {
+        assertNull(RouteKey.parseLegacyKey("GPS{latitude=48.1, longitude=2.1}"));
+        assertNull(RouteKey.parseLegacyKey("GPS{latitude=abc, longitude=2.1}|GPS{latitude=48.1, longitude=2.1}"));
+        assertNull(RouteKey.parseLegacyKey("48.1 2.1|48.2 2.2"));
+    }
+
+    @Test
+    public void testNoMigratedKeyIsLost() {
+        // Half of the locations sit exactly half-way between two micro-degrees, where rounding the product by a
+        // million and rounding the decimal spelling can disagree
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            double latitude;
+            double longitude;
+            if (i % 2 == 0) {
+                latitude = (random.nextInt(180_000_000) - 90_000_000 + 0.5) / 1_000_000;
+                longitude = (random.nextInt(360_000_000) - 180_000_000 - 0.5) / 1_000_000;
+            } else {
+                latitude = random.nextDouble() * 180 - 90;
+                longitude = random.nextDouble() * 360 - 180;
+            }
+            GPS location = new GPS(latitude, longitude);
+            long[] key = RouteKey.parseLegacyKey(legacyLocation(Locale.FRANCE, location) + "|"
+                    + legacyLocation(Locale.ROOT, location));
+            assertNotNull(key);
+            assertEquals(RouteKey.pack(location), key[0], location.toString());
+            assertEquals(RouteKey.pack(location), key[1], location.toString());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.Order;
+import com.pizzadelivery.model.RoutePrefetcher;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the order and the budget of the background route prefetching with a fake loader.
+ */
+public class RoutePrefetcherTest {
+    private static final GPS PIZZERIA = new GPS(48.7117294, 2.165678);
+
+    /**
+     * Creates an order at a given distance to the east of the pizzeria.
+     *
+     * @param id    The id of the order.
+     * @param steps The distance in hundredths of a degree of longitude.
+     * @return The order.
+     */
+    private static Order order(int id, int steps) {
+        return new Order(id, new GPS(PIZZERIA.latitude(), PIZZERIA.longitude() + steps * 0.01), LocalDateTime.now());
+    }
+
+    @Test
+    public void testLegsAreFetchedNearestFirstWithinBudget() throws InterruptedException {
+        List<GPS[]> loaded = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(6);
+        RoutePrefetcher prefetcher = new RoutePrefetcher(PIZZERIA, 6, (from, to) -> {
+            loaded.add(new GPS[]{from, to});
+            finished.countDown();
+            return RoutePrefetcher.Outcome.FETCHED;
+        });
+        Order newOrder = order(1, 10);
+        Order near = order(2, 11);
+        Order far = order(3, 30);
+        Order middle = order(4, 15);
+        prefetcher.submit(List.of(newOrder), List.of(far, near, middle));
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100); // A seventh leg would be loaded by now
+        assertEquals(6, loaded.size(), "the budget must cap the legs of an order");
+        GPS location = newOrder.location();
+        assertArrayEquals(new GPS[]{PIZZERIA, location}, loaded.get(0));
+        assertArrayEquals(new GPS[]{location, PIZZERIA}, loaded.get(1));
+        assertArrayEquals(new GPS[]{location, near.location()}, loaded.get(2));
+        assertArrayEquals(new GPS[]{near.location(), location}, loaded.get(3));
+        assertArrayEquals(new GPS[]{location, middle.location()}, loaded.get(4));
+    }
+
+    @Test
+    public void testCachedLegsAreFreeAndUnavailableApiStopsTheBatch() throws InterruptedException {
+        List<GPS[]> loaded = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(3);
+        RoutePrefetcher prefetcher = new RoutePrefetcher(PIZZERIA, 1, (from, to) -> {
+            loaded.add(new GPS[]{from, to});
+            finished.countDown();
+            // The pizzeria legs are cached, the API then goes down
+            if (from.equals(PIZZERIA) || to.equals(PIZZERIA)) {
+                return RoutePrefetcher.Outcome.CACHED;
+            }
+            return RoutePrefetcher.Outcome.UNAVAILABLE;
+        });
+        prefetcher.submit(List.of(order(1, 10), order(2, 20)), List.of(order(3, 11)));
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        // Two free pizzeria legs, one failed leg, and nothing for the second order
+        assertEquals(3, loaded.size());
+    }
+}
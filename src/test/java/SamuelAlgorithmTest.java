@@ -1,11 +1,16 @@
+import com.pizzadelivery.model.IslandModel;
 import com.pizzadelivery.model.Order;
 import com.pizzadelivery.model.PierreAlgorithm;
 import com.pizzadelivery.model.SamuelAlgorithm;
+import com.pizzadelivery.model.TravelMatrix;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 
 public class SamuelAlgorithmTest extends AlgorithmTest{
     @Test
@@ -18,6 +23,38 @@ public class SamuelAlgorithmTest extends AlgorithmTest{
         System.out.println();
     }
 
+    @Test
+    public void testBruteForceDiscountIsOptimal() {
+        // With 8 orders, the pruned search must find as few discounts as the best of the 40320 permutations
+        ArrayList<Order> orders = new ArrayList<>(dynamicTestSuite.subList(3, 11));
+        TravelMatrix matrix = TravelMatrix.of(orders);
+        ArrayList<Order> optimizedOrders = SamuelAlgorithm.bruteForceDiscount(new ArrayList<>(orders), matrix);
+
+        assertEquals(new HashSet<>(orders), new HashSet<>(optimizedOrders));
+        assertEquals(leastPermutationDiscount(orders, 0, matrix), matrix.numberOfDiscount(optimizedOrders));
+    }
+
+    /**
+     * Enumerates every permutation of the orders after a given position.
+     *
+     * @param orders The orders, permuted in place and restored.
+     * @param k      The first position to permute.
+     * @param matrix The travel matrix containing every order.
+     * @return The least number of discounts.
+     */
+    private static int leastPermutationDiscount(ArrayList<Order> orders, int k, TravelMatrix matrix) {
+        if (k == orders.size()) {
+            return matrix.numberOfDiscount(orders);
+        }
+        int least = Integer.MAX_VALUE;
+        for (int i = k; i < orders.size(); i++) {
+            Collections.swap(orders, i, k);
+            least = Math.min(least, leastPermutationDiscount(orders, k + 1, matrix));
+            Collections.swap(orders, k, i);
+        }
+        return least;
+    }
+
     @Test
     public void testGreedyDistance() {
         // Test to ensure that the greedy algorithm selects the correct orders
@@ -59,4 +96,51 @@ public class SamuelAlgorithmTest extends AlgorithmTest{
         }
         System.out.println();
     }
+
+    @Test
+    public void testGeneticTimeGivesValidIndividuals() {
+        // A population of 200 is bred in several chunks, each with its own random generator
+        ArrayList<Order> orders = new ArrayList<>(geneticTestSuite.subList(1, geneticTestSuite.size()));
+        Order mandatoryOrder = geneticTestSuite.get(0);
+        TravelMatrix matrix = TravelMatrix.of(orders, mandatoryOrder);
+        for (int populationSize : new int[]{1, 15, 200}) {
+            ArrayList<Order> bestCombination = SamuelAlgorithm.geneticTime(orders, populationSize, 20, mandatoryOrder,
+                    matrix);
+            assertEquals(5, bestCombination.size());
+            assertSame(mandatoryOrder, bestCombination.get(0));
+            assertEquals(5, new HashSet<>(bestCombination).size());
+            assertTrue(orders.containsAll(bestCombination.subList(1, 5)));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> SamuelAlgorithm.geneticTime(new ArrayList<>(orders.subList(0, 3)), 15, 100, mandatoryOrder));
+    }
+
+    @Test
+    public void testGeneticTimeOnIslands() {
+        ArrayList<Order> orders = new ArrayList<>(geneticTestSuite.subList(1, geneticTestSuite.size()));
+        Order mandatoryOrder = geneticTestSuite.get(0);
+        TravelMatrix matrix = TravelMatrix.of(orders, mandatoryOrder);
+        ArrayList<Order> bestCombination = SamuelAlgorithm.geneticTime(orders, 15, 100, mandatoryOrder, matrix, 4);
+        assertEquals(5, bestCombination.size());
+        assertSame(mandatoryOrder, bestCombination.get(0));
+        assertEquals(5, new HashSet<>(bestCombination).size());
+        assertThrows(IllegalArgumentException.class,
+                () -> SamuelAlgorithm.geneticTime(orders, 15, 100, mandatoryOrder, matrix, 0));
+    }
+
+    @Test
+    public void testGeneticTimeKeepsItsGreedySeed() {
+        ArrayList<Order> orders = new ArrayList<>(geneticTestSuite.subList(1, geneticTestSuite.size()));
+        Order mandatoryOrder = geneticTestSuite.get(0);
+        TravelMatrix matrix = TravelMatrix.of(orders, mandatoryOrder);
+        ArrayList<Order> seed = PierreAlgorithm.greedyTime(new ArrayList<>(orders), mandatoryOrder, matrix);
+        // Stops as soon as the islands stall, the seed is in the first population so the result is at least as good
+        IslandModel.Budget budget = new IslandModel.Budget(100, 1, null);
+        ArrayList<Order> bestCombination = SamuelAlgorithm.geneticTime(orders, 15, budget, mandatoryOrder, matrix, 2,
+                List.of(seed));
+        assertEquals(5, bestCombination.size());
+        assertSame(mandatoryOrder, bestCombination.get(0));
+        assertTrue(matrix.totalDeliveryTime(bestCombination.subList(1, 5))
+                <= matrix.totalDeliveryTime(seed.subList(1, 5)));
+    }
 }
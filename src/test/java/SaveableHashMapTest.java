@@ -0,0 +1,110 @@
+import com.pizzadelivery.model.SaveableHashMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests both persistence modes of the saveable map on temporary files.
+ */
+public class SaveableHashMapTest {
+    private Path directory;
+    private Path filePath;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("saveableHashMap");
+        filePath = directory.resolve("cache.txt");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Opens the map in append log mode, without background flusher.
+     *
+     * @return The map.
+     */
+    private SaveableHashMap<String, Double> openLogged() {
+        return new SaveableHashMap<>(filePath, SaveableHashMap.PersistenceMode.APPEND_LOG, 0);
+    }
+
+    @Test
+    public void testSnapshotIsRewrittenOnEveryChange() {
+        SaveableHashMap<String, Double> map = new SaveableHashMap<>(filePath);
+        map.put("a", 1.0);
+        map.put("b", 2.0);
+        map.remove("a");
+
+        SaveableHashMap<String, Double> reopened = new SaveableHashMap<>(filePath);
+        assertEquals(1, reopened.size());
+        assertEquals(2.0, reopened.get("b"));
+    }
+
+    @Test
+    public void testLogIsReplayedOnTheSnapshot() {
+        SaveableHashMap<String, Double> map = openLogged();
+        map.put("a", 1.0);
+        map.put("b", 2.0);
+        map.put("a", 3.0);
+        map.remove("b");
+        map.close();
+        assertFalse(Files.exists(filePath), "changes are only logged until the log is compacted");
+
+        SaveableHashMap<String, Double> reopened = openLogged();
+        assertEquals(1, reopened.size());
+        assertEquals(3.0, reopened.get("a"));
+        reopened.close();
+    }
+
+    @Test
+    public void testTornRecordIsNotReplayed() throws IOException {
+        SaveableHashMap<String, Double> map = openLogged();
+        map.put("a", 1.0);
+        map.close();
+        Files.writeString(directory.resolve("cache.txt.log"), "b:2.5", StandardOpenOption.APPEND);
+
+        // Only "b:2" reached the disk of "b:2.5\n", it must not come back as 2
+        SaveableHashMap<String, Double> reopened = openLogged();
+        assertEquals(1.0, reopened.get("a"));
+        assertFalse(reopened.containsKey("b"));
+        reopened.put("c", 4.0);
+        reopened.close();
+
+        SaveableHashMap<String, Double> again = openLogged();
+        assertEquals(List.of(1.0, 4.0), List.of(again.get("a"), again.get("c")));
+        again.close();
+    }
+
+    @Test
+    public void testClearCompactsTheLog() throws IOException {
+        SaveableHashMap<String, Double> map = openLogged();
+        map.put("a", 1.0);
+        map.flush();
+        map.clear();
+        map.put("b", 2.0);
+        map.close();
+        assertTrue(Files.exists(filePath));
+        assertEquals(List.of("b:2.0"), Files.readAllLines(directory.resolve("cache.txt.log")));
+
+        SaveableHashMap<String, Double> reopened = openLogged();
+        assertEquals(1, reopened.size());
+        assertEquals(2.0, reopened.get("b"));
+        reopened.close();
+    }
+}
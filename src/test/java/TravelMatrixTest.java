@@ -0,0 +1,182 @@
+import com.pizzadelivery.model.GPS;
+import com.pizzadelivery.model.Order;
+import com.pizzadelivery.model.RouteClient;
+import com.pizzadelivery.model.TravelMatrix;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the indexes and the lazy fill of the travel matrix, against a local stub of the directions endpoint.
+ * The orders are drawn at random in the ocean, so their routes are not in the route cache of a previous run.
+ */
+public class TravelMatrixTest {
+    private static final String ROUTE_RESPONSE = "{\"routes\":[{\"summary\":{\"distance\":12345.6,"
+            + "\"duration\":754.2}}],\"metadata\":{}}";
+
+    private HttpServer server;
+    private AtomicInteger requestCount;
+
+    @BeforeEach
+    public void startStub() throws IOException {
+        requestCount = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(RouteClient.DIRECTIONS_PATH, exchange -> {
+            requestCount.incrementAndGet();
+            byte[] response = ROUTE_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        server.start();
+        System.setProperty(GPS.API_BASE_URL_PROPERTY, "http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void stopStub() {
+        System.clearProperty(GPS.API_BASE_URL_PROPERTY);
+        server.stop(0);
+    }
+
+    /**
+     * Creates orders in the middle of the Atlantic.
+     *
+     * @param count The number of orders.
+     * @return The orders.
+     */
+    private static List<Order> oceanOrders(int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            GPS location = new GPS(random.nextDouble(30, 40), random.nextDouble(-40, -30));
+            orders.add(new Order(i, location, LocalDateTime.now()));
+        }
+        return orders;
+    }
+
+    @Test
+    public void testDiagonalIsNotLookedUp() {
+        TravelMatrix matrix = TravelMatrix.of(oceanOrders(5));
+        for (int i = 0; i < matrix.size(); i++) {
+            assertEquals(0, matrix.time(i, i), 1e-9);
+            assertEquals(0, matrix.distance(i, i), 1e-9);
+        }
+        assertEquals(0, requestCount.get());
+    }
+
+    @Test
+    public void testCellsAreFilledOnFirstAccess() {
+        List<Order> orders = oceanOrders(3);
+        TravelMatrix matrix = TravelMatrix.of(orders);
+        assertEquals(0, requestCount.get());
+
+        int from = matrix.indexOf(orders.get(0));
+        int to = matrix.indexOf(orders.get(2));
+        assertEquals(13, matrix.time(from, to), 1e-9);
+        assertEquals(1, requestCount.get());
+        // The same route record gives the distance, and the cell is not looked up again
+        assertEquals(12, matrix.distance(from, to), 1e-9);
+        assertEquals(13, matrix.time(orders.get(0), orders.get(2)), 1e-9);
+        assertEquals(1, requestCount.get());
+        assertEquals(orders.get(0).location().timeTravel(orders.get(2).location()), matrix.time(from, to), 1e-9);
+    }
+
+    @Test
+    public void testFillTimesLooksUpEveryLegOfTheSolver() {
+        List<Order> orders = oceanOrders(4);
+        TravelMatrix matrix = TravelMatrix.of(orders);
+        int[] indexes = {matrix.indexOf(orders.get(0)), matrix.indexOf(orders.get(1)), matrix.indexOf(orders.get(2))};
+        matrix.fillTimes(indexes);
+        // Both directions between the pizzeria and 3 orders, and between the 3 orders
+        assertEquals(6 + 6, requestCount.get());
+
+        for (int from : indexes) {
+            assertEquals(13, matrix.time(TravelMatrix.PIZZERIA_INDEX, from), 1e-9);
+            for (int to : indexes) {
+                assertEquals(from == to ? 0 : 13, matrix.time(from, to), 1e-9);
+            }
+        }
+        assertEquals(12, requestCount.get());
+    }
+
+    @Test
+    public void testGenomeGivesTheSameTotalsAsTheRoute() {
+        List<Order> orders = oceanOrders(4);
+        TravelMatrix matrix = TravelMatrix.of(orders);
+        int[] matrixIndexes = new int[orders.size()];
+        for (int gene = 0; gene < orders.size(); gene++) {
+            matrixIndexes[gene] = matrix.indexOf(orders.get(gene));
+        }
+        int[] genome = {2, 0, 3};
+        List<Order> route = List.of(orders.get(2), orders.get(0), orders.get(3));
+        assertEquals(matrix.totalDeliveryTime(route), matrix.totalDeliveryTime(genome, matrixIndexes), 1e-9);
+        assertEquals(matrix.numberOfDiscount(route), matrix.numberOfDiscount(genome, matrixIndexes));
+        assertEquals(4 * 13, matrix.totalDeliveryTime(genome, matrixIndexes), 1e-9);
+    }
+
+    @Test
+    public void testConcurrentReadersSeeTheSameValue() throws InterruptedException {
+        List<Order> orders = oceanOrders(2);
+        TravelMatrix matrix = TravelMatrix.of(orders);
+        int from = matrix.indexOf(orders.get(0));
+        int to = matrix.indexOf(orders.get(1));
+        double[] seen = new double[8];
+        Thread[] readers = new Thread[seen.length];
+        for (int i = 0; i < readers.length; i++) {
+            int reader = i;
+            readers[i] = new Thread(() -> seen[reader] = matrix.time(from, to));
+            readers[i].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        for (double time : seen) {
+            assertEquals(matrix.time(from, to), time, 0);
+        }
+    }
+
+    @Test
+    public void testOrdersGivenTwiceHaveOneRow() {
+        List<Order> orders = oceanOrders(3);
+        List<Order> withDuplicates = new ArrayList<>(orders);
+        withDuplicates.add(orders.get(1));
+        withDuplicates.add(orders.get(0));
+        withDuplicates.add(orders.get(2));
+        TravelMatrix matrix = TravelMatrix.of(withDuplicates, orders.get(0));
+
+        // The extra order comes first, then the others in the order they were first given
+        assertEquals(orders.size() + 1, matrix.size());
+        for (int i = 0; i < orders.size(); i++) {
+            assertEquals(i + 1, matrix.indexOf(orders.get(i)));
+            assertSame(orders.get(i), matrix.orderAt(i + 1));
+        }
+        assertNull(matrix.orderAt(TravelMatrix.PIZZERIA_INDEX));
+    }
+
+    @Test
+    public void testOrderOutsideTheMatrixIsRejected() {
+        List<Order> orders = oceanOrders(40);
+        TravelMatrix matrix = TravelMatrix.of(orders.subList(0, 20));
+        for (Order order : orders.subList(0, 20)) {
+            assertTrue(matrix.contains(order));
+        }
+        for (Order order : orders.subList(20, 40)) {
+            assertFalse(matrix.contains(order));
+            assertThrows(IllegalArgumentException.class, () -> matrix.indexOf(order));
+        }
+    }
+}